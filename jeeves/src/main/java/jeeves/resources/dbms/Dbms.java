@@ -37,6 +37,7 @@ import java.sql.Types;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Vector;
 import jeeves.constants.Jeeves;
 import jeeves.utils.Log;
@@ -275,6 +276,48 @@ public class Dbms
 		}
 	}
 
+	//--------------------------------------------------------------------------
+	/** Executes the same statement once for each array of arguments, sending
+	  * them to the database in a single JDBC batch. Returns the number of
+	  * statements executed
+	  */
+
+	public int executeBatch(String query, List<Object[]> argsList) throws SQLException
+	{
+		if (argsList.isEmpty())
+			return 0;
+
+		Log.debug(Log.Dbms.EXECUTE, "Query    : "+ query);
+		Log.debug(Log.Dbms.EXECUTE, "Batch    : "+ argsList.size());
+
+		PreparedStatement stmt = conn.prepareStatement(query);
+
+		try
+		{
+			for (Object[] args : argsList)
+			{
+				for(int i=0; i<args.length; i++)
+					setObject(stmt, i, args[i]);
+
+				stmt.addBatch();
+			}
+
+			long start = System.currentTimeMillis();
+			int result[] = stmt.executeBatch();
+			long end = System.currentTimeMillis();
+
+			float time = end - start;
+
+			Log.debug(Log.Dbms.EXECUTE, "Executed "+ result.length +" statements in "+ time/1000 +" secs");
+
+			return result.length;
+		}
+		finally
+		{
+			stmt.close();
+		}
+	}
+
 	//--------------------------------------------------------------------------
 	//---
 	//--- Private methods
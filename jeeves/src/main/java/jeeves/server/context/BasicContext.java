@@ -100,6 +100,13 @@ public class BasicContext
 
 	//--------------------------------------------------------------------------
 
+	protected Hashtable getHandlerContexts()
+	{
+		return htContexts;
+	}
+
+	//--------------------------------------------------------------------------
+
 	public void debug  (String message) { logger.debug  (message); }
 	public void info   (String message) { logger.info   (message); }
 	public void warning(String message) { logger.warning(message); }
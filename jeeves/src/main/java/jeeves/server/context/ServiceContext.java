@@ -143,6 +143,32 @@ public class ServiceContext extends BasicContext
 	{
 		this.headers = headers;
 	}
+
+	//--------------------------------------------------------------------------
+	/** Returns a context for the same request but with its own resource
+	  * manager, so that it can be used by another thread. The resources it
+	  * opens must be closed by the caller.
+	  */
+
+	public ServiceContext copy()
+	{
+		ServiceContext context = new ServiceContext(service, getProviderManager(), getSerialFactory(),
+																  profilMan, getHandlerContexts());
+		context.setLogger(logger);
+		context.setBaseUrl(getBaseUrl());
+		context.setAppPath(getAppPath());
+		context.setLanguage(language);
+		context.setIpAddress(ipAddress);
+		context.setUploadDir(uploadDir);
+		context.setMaxUploadSize(maxUploadSize);
+		context.setServlet(servlet);
+		context.setInputMethod(input);
+		context.setOutputMethod(output);
+		context.setHeaders(headers);
+		context.setUserSession(userSession);
+
+		return context;
+	}
 }
 
 //=============================================================================
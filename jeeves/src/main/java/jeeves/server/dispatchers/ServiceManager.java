@@ -55,6 +55,7 @@ import jeeves.utils.BinaryFile;
 import jeeves.utils.Log;
 import jeeves.utils.SOAPUtil;
 import jeeves.utils.SerialFactory;
+import jeeves.utils.StreamedFile;
 import jeeves.utils.Util;
 import jeeves.utils.Xml;
 import org.jdom.Element;
@@ -554,7 +555,8 @@ public class ServiceManager
 				info("     -> writing xml for : " +req.getService());
 
 				//--- this logging is usefull for xml services that are called by javascript code
-				debug("Service xml is :\n"+Xml.getString(response));
+				if (Log.isDebugEnabled(Log.SERVICE))
+					debug("Service xml is :\n"+Xml.getString(response));
 
 				InputMethod  in  = req.getInputMethod();
 				OutputMethod out = req.getOutputMethod();
@@ -569,12 +571,44 @@ public class ServiceManager
 				else
 					req.beginStream("application/xml; charset=UTF-8", cache);
 
-				req.write(response);
+				//--- streamed elements can open resources while they are written
+
+				try
+				{
+					req.write(response);
+					context.getResourceManager().close();
+				}
+				catch(Exception e)
+				{
+					context.getResourceManager().abort();
+					throw e;
+				}
 			}
 		}
 
 		//--- FILE output
 
+		else if (outPage.isFile() && response instanceof StreamedFile)
+		{
+			StreamedFile file = (StreamedFile) response;
+
+			req.beginStream(file.getContentType(), -1, file.getContentDisposition(), cache);
+
+			//--- the producer can open resources while the file is written
+
+			try
+			{
+				file.write(req.getOutputStream());
+				req.endStream();
+				context.getResourceManager().close();
+			}
+			catch(Exception e)
+			{
+				context.getResourceManager().abort();
+				throw e;
+			}
+		}
+
 		else if (outPage.isFile())
 		{
 			// PDF Output
@@ -634,12 +668,27 @@ public class ServiceManager
 				contentType = "application/octet-stream";
 
 			String contentDisposition = BinaryFile.getContentDisposition(response);
-			String contentLength      = BinaryFile.getContentLength(response);
+			File   localFile          = BinaryFile.getLocalFile(response);
 
-			int cl = (contentLength == null) ? -1 : Integer.parseInt(contentLength);
+			//--- local files support ranges and conditional requests
+
+			if (localFile != null && req instanceof HttpServiceRequest)
+			{
+				boolean canSendfile = !BinaryFile.isRemoved(response);
+
+				((HttpServiceRequest) req).sendFile(localFile, contentType, contentDisposition,
+																cache, canSendfile);
+			}
+			else
+			{
+				String contentLength = BinaryFile.getContentLength(response);
+
+				int cl = (contentLength == null) ? -1 : Integer.parseInt(contentLength);
+
+				req.beginStream(contentType, cl, contentDisposition, cache);
+				BinaryFile.write(response, req.getOutputStream());
+			}
 
-			req.beginStream(contentType, cl, contentDisposition, cache);
-			BinaryFile.write(response, req.getOutputStream());
 			req.endStream();
 			BinaryFile.removeIfTheCase(response);
 		}
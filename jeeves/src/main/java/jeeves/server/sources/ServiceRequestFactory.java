@@ -24,11 +24,16 @@
 package jeeves.server.sources;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -40,10 +45,13 @@ import jeeves.server.sources.ServiceRequest.OutputMethod;
 import jeeves.server.sources.http.HttpServiceRequest;
 import jeeves.utils.Xml;
 import jeeves.utils.Log;
-import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadBase;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 
@@ -88,7 +96,7 @@ public class ServiceRequestFactory
 
 		//--- extract basic info
 
-		HttpServiceRequest srvReq = new HttpServiceRequest(res);
+		HttpServiceRequest srvReq = new HttpServiceRequest(req, res);
 
 		srvReq.setDebug       (extractDebug(url));
 		srvReq.setLanguage    (extractLanguage(url));
@@ -274,33 +282,54 @@ public class ServiceRequestFactory
 	{
 		Element params = new Element("params");
 
-		DiskFileItemFactory fif = new DiskFileItemFactory();
-		ServletFileUpload   sfu = new ServletFileUpload(fif);
+		//--- parts are read as they arrive : files are spooled to the upload dir
 
-    sfu.setSizeMax(maxUploadSize * 1024 * 1024);
+		ServletFileUpload sfu = new ServletFileUpload();
+
+		long maxSize = maxUploadSize * 1024L * 1024L;
+		long total   = 0;
+
+		sfu.setSizeMax(maxSize);
+
+		String     encoding = req.getCharacterEncoding();
+		List<File> uploaded = new ArrayList<File>();
+		boolean    success  = false;
 
 		try {
-			for (Object i : sfu.parseRequest(req)) {
-				FileItem item = (FileItem) i;
-				String   name = item.getFieldName();
+			for (FileItemIterator i = sfu.getItemIterator(req); i.hasNext(); ) {
+				FileItemStream item = i.next();
+				String         name = item.getFieldName();
+				InputStream    is   = item.openStream();
 
 				if (item.isFormField()) {
-				    String encoding = req.getCharacterEncoding();
-					params.addContent(new Element(name).setText(item.getString(encoding)));
+					String value = (encoding == null) ? Streams.asString(is) : Streams.asString(is, encoding);
+					params.addContent(new Element(name).setText(value));
 				} else {
 					String file = item.getName();
 					String type = item.getContentType();
-					long   size = item.getSize();
 
-
-					Log.debug(Log.REQUEST, "Uploading file "+file+" type: "+type+" size: "+size);
+					Log.debug(Log.REQUEST, "Uploading file "+file+" type: "+type);
 					//--- remove path information from file (some browsers put it, like IE)
 
 					file = simplifyName(file);
 					Log.debug(Log.REQUEST, "File is called "+file+" after simplification");
 
-					//--- we could get troubles if 2 users upload files with the same name
-					item.write(new File(uploadDir, file));
+					if (file.length() == 0) {
+						//--- no file has been chosen for this field
+						Streams.copy(is, new NullOutputStream(), true);
+						continue;
+					}
+
+					File target = new File(uploadDir, file);
+					long start  = System.currentTimeMillis();
+					long size   = spool(is, target, maxSize - total);
+					long time   = System.currentTimeMillis() - start;
+
+					total += size;
+					uploaded.add(target);
+
+					Log.info(Log.REQUEST, "Uploaded file "+file+" : "+size+" bytes in "+time+" ms ("
+								+ ((time == 0) ? 0 : size * 1000 / 1024 / time) +" KB/s)");
 
 					Element elem = new Element(name)
 											.setAttribute("type", "file")
@@ -314,13 +343,68 @@ public class ServiceRequestFactory
 					params.addContent(elem);
 				}
 			}
+
+			success = true;
 		} catch(FileUploadBase.SizeLimitExceededException e) {
 			throw new FileUploadTooBigEx();
+		} catch(FileUploadBase.FileUploadIOException e) {
+			if (e.getCause() instanceof FileUploadBase.SizeLimitExceededException)
+				throw new FileUploadTooBigEx();
+
+			throw e;
+		} finally {
+			//--- don't leave the files of a failed request in the upload dir
+
+			if (!success)
+				for (File file : uploaded)
+					file.delete();
 		}
 
 		return params;
 	}
 
+	//---------------------------------------------------------------------------
+	/** Writes an uploaded file as it is received, checking its size. The file
+	  * is written to a temporary name first so that a concurrent upload with
+	  * the same name never sees a partial file
+	  */
+
+	private static long spool(InputStream is, File target, long maxSize) throws Exception
+	{
+		File         temp = File.createTempFile("upload-", ".tmp", target.getParentFile());
+		OutputStream os   = new FileOutputStream(temp);
+		long         size = 0;
+
+		try {
+			byte buffer[] = new byte[BUFFER_SIZE];
+			int  nRead;
+
+			while ((nRead = is.read(buffer)) != -1) {
+				size += nRead;
+
+				if (size > maxSize)
+					throw new FileUploadTooBigEx();
+
+				os.write(buffer, 0, nRead);
+			}
+
+			os.close();
+		} catch(Exception e) {
+			IOUtils.closeQuietly(os);
+			temp.delete();
+			throw e;
+		}
+
+		target.delete();
+
+		if (!temp.renameTo(target)) {
+			temp.delete();
+			throw new IOException("Cannot move uploaded file to : "+target);
+		}
+
+		return size;
+	}
+
 	//---------------------------------------------------------------------------
 
 	private static String simplifyName(String file)
@@ -358,6 +442,14 @@ public class ServiceRequestFactory
 		file = file.replaceAll("[^\\w&&[^,_.-]]","");
 		return file;
 	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final int BUFFER_SIZE = 65536;
 }
 
 //=============================================================================
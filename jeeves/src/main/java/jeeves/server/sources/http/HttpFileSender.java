@@ -0,0 +1,404 @@
+//=============================================================================
+//===	Copyright (C) 2001-2005 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This library is free software; you can redistribute it and/or
+//===	modify it under the terms of the GNU Lesser General Public
+//===	License as published by the Free Software Foundation; either
+//===	version 2.1 of the License, or (at your option) any later version.
+//===
+//===	This library is distributed in the hope that it will be useful,
+//===	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+//===	Lesser General Public License for more details.
+//===
+//===	You should have received a copy of the GNU Lesser General Public
+//===	License along with this library; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: GeoNetwork@fao.org
+//==============================================================================
+
+package jeeves.server.sources.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jeeves.utils.BinaryFile;
+import jeeves.utils.DownloadMetrics;
+import jeeves.utils.Log;
+import org.apache.commons.io.IOUtils;
+
+//=============================================================================
+
+/** Sends a local file to the http client. Conditional requests (If-None-Match
+  * and If-Modified-Since) are answered with 304 and byte ranges are honoured:
+  * a single range is sent as a 206 response while several ranges are sent as
+  * multipart/byteranges. The data is copied with FileChannel.transferTo or,
+  * when the container supports it, handed to the container's sendfile.
+  */
+
+public class HttpFileSender
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//---------------------------------------------------------------------------
+
+	public HttpFileSender(HttpServletRequest req, HttpServletResponse res)
+	{
+		this.req = req;
+		this.res = res;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Sends the file. The container sends the file after the request has been
+	  * processed so canSendfile must be false if the file is going to be removed
+	  */
+
+	public void send(File file, String contentType, String contentDisposition,
+						  boolean cache, boolean canSendfile) throws IOException
+	{
+		long   length  = file.length();
+		long   lastMod = file.lastModified() / 1000 * 1000;
+		String etag    = "\""+ Long.toHexString(length) +"-"+ Long.toHexString(lastMod) +"\"";
+
+		res.setHeader    ("Accept-Ranges", "bytes");
+		res.setHeader    ("ETag",          etag);
+		res.setDateHeader("Last-Modified", lastMod);
+
+		if (isNotModified(etag, lastMod))
+		{
+			res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			DownloadMetrics.notModified();
+			Log.debug(Log.RESOURCES, "Not modified : "+ file);
+			return;
+		}
+
+		if (contentDisposition != null)
+			res.setHeader("Content-disposition", contentDisposition);
+
+		else if (!cache)
+		{
+			res.setHeader("Pragma",        "no-cache");
+			res.setHeader("Cache-Control", "no-cache");
+			res.setHeader("Expires",       "-1");
+		}
+
+		List<long[]> ranges = getRanges(length, etag, lastMod);
+
+		if (ranges != null && ranges.isEmpty())
+		{
+			res.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			res.setHeader("Content-Range", "bytes */"+ length);
+			DownloadMetrics.unsatisfiable();
+			Log.debug(Log.RESOURCES, "Range not satisfiable : "+ req.getHeader("Range") +" for "+ file);
+			return;
+		}
+
+		if (ranges == null)
+		{
+			res.setStatus(HttpServletResponse.SC_OK);
+			res.setContentType(contentType);
+			res.setHeader("Content-Length", Long.toString(length));
+
+			sendRange(file, 0, length -1, canSendfile, DownloadMetrics.FULL);
+		}
+		else if (ranges.size() == 1)
+		{
+			long range[] = ranges.get(0);
+
+			res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			res.setContentType(contentType);
+			res.setHeader("Content-Range",  "bytes "+ range[0] +"-"+ range[1] +"/"+ length);
+			res.setHeader("Content-Length", Long.toString(range[1] - range[0] +1));
+
+			sendRange(file, range[0], range[1], canSendfile, DownloadMetrics.RANGE);
+		}
+		else
+			sendRanges(file, contentType, length, ranges);
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private boolean isNotModified(String etag, long lastMod)
+	{
+		String ifNoneMatch = req.getHeader("If-None-Match");
+
+		//--- when present, If-None-Match takes precedence over If-Modified-Since
+
+		if (ifNoneMatch != null)
+		{
+			for (String tag : ifNoneMatch.split(","))
+			{
+				tag = tag.trim();
+
+				if (tag.startsWith("W/"))
+					tag = tag.substring(2);
+
+				if (tag.equals("*") || tag.equals(etag))
+					return true;
+			}
+
+			return false;
+		}
+
+		long since = getDateHeader("If-Modified-Since");
+
+		return since != -1 && lastMod <= since;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the requested ranges (as inclusive start/end pairs), null if the
+	  * whole file must be sent or an empty list if no range can be satisfied.
+	  * As the RFC allows, invalid Range headers are ignored
+	  */
+
+	private List<long[]> getRanges(long length, String etag, long lastMod)
+	{
+		String range = req.getHeader("Range");
+
+		if (range == null || !range.startsWith("bytes="))
+			return null;
+
+		//--- If-Range: send the whole file if it has changed in the meantime
+
+		String ifRange = req.getHeader("If-Range");
+
+		if (ifRange != null && !ifRange.equals(etag))
+		{
+			if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+				return null;
+
+			if (getDateHeader("If-Range") != lastMod)
+				return null;
+		}
+
+		List<long[]> ranges = new ArrayList<long[]>();
+
+		for (String spec : range.substring(6).split(","))
+		{
+			spec = spec.trim();
+
+			int dash = spec.indexOf('-');
+
+			if (dash == -1)
+				return null;
+
+			long start;
+			long end;
+
+			try
+			{
+				if (dash == 0)
+				{
+					//--- suffix range : the last N bytes
+
+					long suffix = Long.parseLong(spec.substring(1));
+
+					start = Math.max(0, length - suffix);
+					end   = length -1;
+				}
+				else
+				{
+					start = Long.parseLong(spec.substring(0, dash));
+					end   = (dash == spec.length() -1)
+									? length -1
+									: Long.parseLong(spec.substring(dash +1));
+
+					if (end < start)
+						return null;
+
+					end = Math.min(end, length -1);
+				}
+			}
+			catch(NumberFormatException e)
+			{
+				return null;
+			}
+
+			if (start < length && start <= end)
+				ranges.add(new long[] { start, end });
+		}
+
+		return (ranges.size() > MAX_RANGES) ? null : ranges;
+	}
+
+	//---------------------------------------------------------------------------
+
+	private long getDateHeader(String name)
+	{
+		try
+		{
+			return req.getDateHeader(name);
+		}
+		catch(IllegalArgumentException e)
+		{
+			return -1;
+		}
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void sendRange(File file, long start, long end, boolean canSendfile,
+								  String kind) throws IOException
+	{
+		long count = end - start +1;
+
+		if (canSendfile && count >= SENDFILE_MIN_SIZE
+							 && Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT)))
+		{
+			//--- the container sends the file when the request ends (end is exclusive)
+
+			req.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+			req.setAttribute(SENDFILE_START,    new Long(start));
+			req.setAttribute(SENDFILE_END,      new Long(end +1));
+
+			DownloadMetrics.record(file.getName(), DownloadMetrics.SENDFILE, count, 0, false);
+			Log.info(Log.RESOURCES, "Sending "+ file.getName() +" with sendfile : "+ count +" bytes");
+			return;
+		}
+
+		FileInputStream is = new FileInputStream(file);
+
+		long startTime = System.currentTimeMillis();
+		long sent      = 0;
+
+		try
+		{
+			WritableByteChannel out = Channels.newChannel(res.getOutputStream());
+
+			sent = BinaryFile.transfer(is.getChannel(), start, count, out);
+		}
+		catch(IOException e)
+		{
+			end(file, kind, sent, startTime, true);
+			throw e;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(is);
+		}
+
+		end(file, kind, sent, startTime, false);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void sendRanges(File file, String contentType, long length,
+									List<long[]> ranges) throws IOException
+	{
+		String boundary = "JEEVES_"+ Long.toHexString(System.currentTimeMillis())
+										   + Long.toHexString(System.identityHashCode(file));
+
+		//--- build part headers first to compute the content length
+
+		List<byte[]> headers = new ArrayList<byte[]>();
+		byte         tail[]  = ("\r\n--"+ boundary +"--\r\n").getBytes("ISO-8859-1");
+		long         total   = tail.length;
+
+		for (long range[] : ranges)
+		{
+			String header = "\r\n--"+ boundary +"\r\n"
+								+ "Content-Type: "+ contentType +"\r\n"
+								+ "Content-Range: bytes "+ range[0] +"-"+ range[1] +"/"+ length +"\r\n\r\n";
+
+			byte data[] = header.getBytes("ISO-8859-1");
+
+			headers.add(data);
+			total += data.length + range[1] - range[0] +1;
+		}
+
+		res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		res.setContentType("multipart/byteranges; boundary="+ boundary);
+		res.setHeader("Content-Length", Long.toString(total));
+
+		FileInputStream is = new FileInputStream(file);
+
+		long startTime = System.currentTimeMillis();
+		long sent      = 0;
+
+		try
+		{
+			OutputStream        os  = res.getOutputStream();
+			WritableByteChannel out = Channels.newChannel(os);
+			FileChannel         ch  = is.getChannel();
+
+			for (int i=0; i<ranges.size(); i++)
+			{
+				long range[] = ranges.get(i);
+
+				os.write(headers.get(i));
+				sent += BinaryFile.transfer(ch, range[0], range[1] - range[0] +1, out);
+			}
+
+			os.write(tail);
+		}
+		catch(IOException e)
+		{
+			end(file, DownloadMetrics.MULTIPART, sent, startTime, true);
+			throw e;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(is);
+		}
+
+		end(file, DownloadMetrics.MULTIPART, sent, startTime, false);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void end(File file, String kind, long bytes, long startTime, boolean aborted)
+	{
+		long time = System.currentTimeMillis() - startTime;
+
+		DownloadMetrics.record(file.getName(), kind, bytes, time, aborted);
+
+		Log.info(Log.RESOURCES, (aborted ? "Aborted " : "Sent ") + file.getName() +" ("+ kind +") : "
+					+ bytes +" bytes in "+ time +" ms ("+ DownloadMetrics.getThroughput(bytes, time) +" KB/s)");
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Beyond this number of ranges the whole file is sent */
+	private static final int MAX_RANGES = 32;
+
+	/** Small files are faster to send directly */
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+	private static final String SENDFILE_SUPPORT  = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START    = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END      = "org.apache.tomcat.sendfile.end";
+
+	private HttpServletRequest  req;
+	private HttpServletResponse res;
+}
+
+//=============================================================================
+
@@ -23,9 +23,15 @@
 
 package jeeves.server.sources.http;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import jeeves.server.sources.ServiceRequest;
+import jeeves.utils.BinaryFile;
+import org.apache.commons.io.IOUtils;
 import jeeves.utils.Xml;
 import org.jdom.Document;
 import org.jdom.Element;
@@ -37,6 +43,7 @@ import org.jdom.Element;
 
 public class HttpServiceRequest extends ServiceRequest
 {
+	private HttpServletRequest  httpReq;
 	private HttpServletResponse httpRes;
 
 	//---------------------------------------------------------------------------
@@ -47,13 +54,52 @@ public class HttpServiceRequest extends ServiceRequest
 
 	public HttpServiceRequest(HttpServletResponse res)
 	{
+		this(null, res);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public HttpServiceRequest(HttpServletRequest req, HttpServletResponse res)
+	{
+		httpReq = req;
 		httpRes = res;
 	}
 
+    public HttpServletRequest getHttpServletRequest() {
+        return httpReq;
+    }
+
     public HttpServletResponse getHttpServletResponse() {
         return httpRes;
     }
 
+	//---------------------------------------------------------------------------
+	/** Sends a local file honouring the conditional and range headers of the
+	  * request. The file is copied without going through the heap */
+
+	public void sendFile(File file, String contentType, String contentDisposition,
+								boolean cache, boolean canSendfile) throws IOException
+	{
+		if (httpReq == null)
+		{
+			beginStream(contentType, -1, contentDisposition, cache);
+
+			FileInputStream is = new FileInputStream(file);
+
+			try
+			{
+				BinaryFile.transfer(is.getChannel(), 0, file.length(), Channels.newChannel(getOutputStream()));
+			}
+			finally
+			{
+				IOUtils.closeQuietly(is);
+			}
+		}
+		else
+			new HttpFileSender(httpReq, httpRes).send(file, contentType, contentDisposition,
+																	cache, canSendfile);
+	}
+
 	//---------------------------------------------------------------------------
 
 	public void beginStream(String contentType, boolean cache)
@@ -25,6 +25,9 @@ package jeeves.utils;
 
 import jeeves.constants.ConfigFile;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import org.apache.commons.io.IOUtils;
 import sun.misc.*;
 import org.jdom.*;
@@ -177,6 +180,23 @@ public class BinaryFile
 		return length;
 	}
 
+	//---------------------------------------------------------------------------
+	/** Returns the file to send if it is on the local disk, null otherwise */
+
+	public static File getLocalFile(Element response)
+	{
+		String path = response.getAttributeValue("path");
+		if (path == null || response.getAttributeValue("remotepath") != null) return null;
+		return new File(path);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static boolean isRemoved(Element response)
+	{
+		return "y".equals(response.getAttributeValue("remove"));
+	}
+
 	//---------------------------------------------------------------------------
 
 	public static void removeIfTheCase(Element response)
@@ -273,9 +293,13 @@ public class BinaryFile
 		String path = response.getAttributeValue("path");
 		if (path == null) return;
 		if (!remoteFile) {
-			File f = new File(path);
-			InputStream input = new FileInputStream(f);
-			copy(input, output, true, false);
+			FileInputStream input = new FileInputStream(new File(path));
+			try {
+				FileChannel channel = input.getChannel();
+				transfer(channel, 0, channel.size(), Channels.newChannel(output));
+			} finally {
+				IOUtils.closeQuietly(input);
+			}
 		} else {
 			if (remoteProtocol.equals("scp")) {
 				try {
@@ -413,6 +437,28 @@ public class BinaryFile
 		}
 	}
 
+	//----------------------------------------------------------------------------
+	// copies a portion of a file to a channel. The copy is done by the channel
+	// (no buffer is needed) and can be zero-copy if the target allows it
+
+	public static long transfer(FileChannel in, long position, long count,
+										 WritableByteChannel out) throws IOException
+	{
+		long end = position + count;
+
+		while (position < end)
+		{
+			long n = in.transferTo(position, end - position, out);
+
+			if (n <= 0)
+				throw new IOException("File truncated while being sent at position : "+ position);
+
+			position += n;
+		}
+
+		return count;
+	}
+
 	//----------------------------------------------------------------------------
 	// copies an input stream (from a file) to an output stream
 
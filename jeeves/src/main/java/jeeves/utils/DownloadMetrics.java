@@ -0,0 +1,230 @@
+//=============================================================================
+//===	Copyright (C) 2001-2005 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This library is free software; you can redistribute it and/or
+//===	modify it under the terms of the GNU Lesser General Public
+//===	License as published by the Free Software Foundation; either
+//===	version 2.1 of the License, or (at your option) any later version.
+//===
+//===	This library is distributed in the hope that it will be useful,
+//===	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+//===	Lesser General Public License for more details.
+//===
+//===	You should have received a copy of the GNU Lesser General Public
+//===	License along with this library; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: GeoNetwork@fao.org
+//==============================================================================
+
+package jeeves.utils;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.jdom.Element;
+
+//=============================================================================
+
+/** Collects statistics of the files sent to the clients: totals for each kind
+  * of transfer (whole file, range, multipart ranges or sendfile), the number of
+  * conditional requests answered with 304 and the throughput of the most
+  * recent downloads.
+  */
+
+public class DownloadMetrics
+{
+	public static final String FULL      = "full";
+	public static final String RANGE     = "range";
+	public static final String MULTIPART = "multipart";
+	public static final String SENDFILE  = "sendfile";
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	public static synchronized void record(String name, String kind, long bytes, long millis,
+														boolean aborted)
+	{
+		Kind k = kinds.get(kind);
+
+		if (k == null)
+		{
+			k = new Kind();
+			kinds.put(kind, k);
+		}
+
+		k.update(bytes, millis, aborted);
+
+		recent.addFirst(new Download(name, kind, bytes, millis, aborted));
+
+		if (recent.size() > RECENT_SIZE)
+			recent.removeLast();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized void notModified()   { notModified++;   }
+	public static synchronized void unsatisfiable() { unsatisfiable++; }
+
+	//---------------------------------------------------------------------------
+	/** Returns the throughput in KB/s */
+
+	public static long getThroughput(long bytes, long millis)
+	{
+		return (millis == 0) ? 0 : bytes * 1000 / 1024 / millis;
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized void clear()
+	{
+		kinds.clear();
+		recent.clear();
+
+		notModified   = 0;
+		unsatisfiable = 0;
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized Element toXml()
+	{
+		Element root = new Element("downloadMetrics");
+
+		add(root, "notModified",   notModified);
+		add(root, "unsatisfiable", unsatisfiable);
+
+		for (Map.Entry<String, Kind> entry : kinds.entrySet())
+			root.addContent(entry.getValue().toXml(entry.getKey()));
+
+		Element elRecent = new Element("recent");
+
+		for (Download d : recent)
+			elRecent.addContent(d.toXml());
+
+		return root.addContent(elRecent);
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private static void add(Element el, String name, long value)
+	{
+		el.addContent(new Element(name).setText(Long.toString(value)));
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Kind
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class Kind
+	{
+		public void update(long bytes, long millis, boolean aborted)
+		{
+			downloads++;
+			totalTime += millis;
+			this.bytes+= bytes;
+
+			if (aborted)
+				this.aborted++;
+		}
+
+		//------------------------------------------------------------------------
+
+		public Element toXml(String name)
+		{
+			Element kind = new Element("kind");
+			kind.setAttribute("name", name);
+
+			add(kind, "downloads",  downloads);
+			add(kind, "aborted",    aborted);
+			add(kind, "bytes",      bytes);
+			add(kind, "totalTime",  totalTime);
+			add(kind, "throughput", getThroughput(bytes, totalTime));
+
+			return kind;
+		}
+
+		//------------------------------------------------------------------------
+
+		private long downloads;
+		private long aborted;
+		private long bytes;
+		private long totalTime;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Download
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class Download
+	{
+		public Download(String name, String kind, long bytes, long millis, boolean aborted)
+		{
+			this.name    = name;
+			this.kind    = kind;
+			this.bytes   = bytes;
+			this.millis  = millis;
+			this.aborted = aborted;
+			this.date    = System.currentTimeMillis();
+		}
+
+		//------------------------------------------------------------------------
+
+		public Element toXml()
+		{
+			Element download = new Element("download");
+			download.setAttribute("name",    name);
+			download.setAttribute("kind",    kind);
+			download.setAttribute("aborted", aborted ? "true" : "false");
+
+			add(download, "date",       date);
+			add(download, "bytes",      bytes);
+			add(download, "time",       millis);
+			add(download, "throughput", getThroughput(bytes, millis));
+
+			return download;
+		}
+
+		//------------------------------------------------------------------------
+
+		private String  name;
+		private String  kind;
+		private long    bytes;
+		private long    millis;
+		private long    date;
+		private boolean aborted;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final int RECENT_SIZE = 50;
+
+	private static long notModified;
+	private static long unsatisfiable;
+
+	private static Map<String, Kind>    kinds  = new HashMap<String, Kind>();
+	private static LinkedList<Download> recent = new LinkedList<Download>();
+}
+
+//=============================================================================
+
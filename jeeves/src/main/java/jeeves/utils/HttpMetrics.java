@@ -0,0 +1,231 @@
+//=============================================================================
+//===	Copyright (C) 2001-2005 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This library is free software; you can redistribute it and/or
+//===	modify it under the terms of the GNU Lesser General Public
+//===	License as published by the Free Software Foundation; either
+//===	version 2.1 of the License, or (at your option) any later version.
+//===
+//===	This library is distributed in the hope that it will be useful,
+//===	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+//===	Lesser General Public License for more details.
+//===
+//===	You should have received a copy of the GNU Lesser General Public
+//===	License along with this library; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: GeoNetwork@fao.org
+//==============================================================================
+
+package jeeves.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jdom.Element;
+
+//=============================================================================
+
+/** Collects per host statistics (number of requests, errors, bytes received,
+  * latency and requests served from a cache) of the outgoing HTTP requests.
+  */
+
+public class HttpMetrics
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	public static void record(String host, long millis, long bytes, boolean error)
+	{
+		getHost(host).add(millis, bytes, error);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Records a request served from a cache without contacting the host */
+
+	public static void recordCacheHit(String host)
+	{
+		getHost(host).addCacheHit();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static void clear()
+	{
+		hosts.clear();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static Element toXml()
+	{
+		Element root = new Element("httpMetrics");
+
+		Map<String, Host> sorted = new TreeMap<String, Host>(hosts);
+
+		for (Map.Entry<String, Host> entry : sorted.entrySet())
+			root.addContent(entry.getValue().toXml(entry.getKey()));
+
+		return root;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private static Host getHost(String host)
+	{
+		Host h = hosts.get(host);
+
+		if (h == null)
+		{
+			hosts.putIfAbsent(host, new Host());
+			h = hosts.get(host);
+		}
+
+		return h;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- CountingInputStream : counts the bytes read from the wrapped stream
+	//---
+	//---------------------------------------------------------------------------
+
+	public static class CountingInputStream extends FilterInputStream
+	{
+		public CountingInputStream(InputStream is)
+		{
+			super(is);
+		}
+
+		//------------------------------------------------------------------------
+
+		public long getCount() { return count; }
+
+		//------------------------------------------------------------------------
+
+		public int read() throws IOException
+		{
+			int b = super.read();
+
+			if (b != -1)
+				count++;
+
+			return b;
+		}
+
+		//------------------------------------------------------------------------
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int n = super.read(b, off, len);
+
+			if (n > 0)
+				count += n;
+
+			return n;
+		}
+
+		//------------------------------------------------------------------------
+
+		public long skip(long n) throws IOException
+		{
+			long skipped = super.skip(n);
+			count += skipped;
+
+			return skipped;
+		}
+
+		//------------------------------------------------------------------------
+
+		private long count;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Host
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class Host
+	{
+		public synchronized void add(long millis, long bytes, boolean error)
+		{
+			requests++;
+			totalTime += millis;
+			this.bytes+= bytes;
+
+			if (millis > maxTime)
+				maxTime = millis;
+
+			if (error)
+				errors++;
+		}
+
+		//------------------------------------------------------------------------
+
+		public synchronized void addCacheHit()
+		{
+			cacheHits++;
+		}
+
+		//------------------------------------------------------------------------
+
+		public synchronized Element toXml(String name)
+		{
+			Element host = new Element("host");
+			host.setAttribute("name", name);
+
+			add(host, "requests",  requests);
+			add(host, "errors",    errors);
+			add(host, "bytes",     bytes);
+			add(host, "totalTime", totalTime);
+			add(host, "maxTime",   maxTime);
+			add(host, "avgTime",   (requests == 0) ? 0 : totalTime / requests);
+			add(host, "cacheHits", cacheHits);
+
+			return host;
+		}
+
+		//------------------------------------------------------------------------
+
+		private void add(Element el, String name, long value)
+		{
+			el.addContent(new Element(name).setText(Long.toString(value)));
+		}
+
+		//------------------------------------------------------------------------
+
+		private long requests;
+		private long errors;
+		private long bytes;
+		private long totalTime;
+		private long maxTime;
+		private long cacheHits;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<String, Host>();
+}
+
+//=============================================================================
+
@@ -45,6 +45,7 @@ public class Log
 	public static final String DBMS      = JEEVES+ ".dbms";
 	public static final String DBMSPOOL	 = JEEVES+ ".dbmspool";
 	public static final String XLINK_PROCESSOR = JEEVES+ ".xlinkprocessor";
+	public static final String XML_REQUEST     = JEEVES+ ".xmlrequest";
 
 	public class Dbms
 	{
@@ -65,6 +66,13 @@ public class Log
 
 	//---------------------------------------------------------------------------
 
+	public static boolean isDebugEnabled(String module)
+	{
+		return Logger.getLogger(module).isDebugEnabled();
+	}
+
+	//---------------------------------------------------------------------------
+
 	public static void info(String module, Object message)
 	{
 		Logger.getLogger(module).info(message);
@@ -84,6 +92,14 @@ public class Log
 		Logger.getLogger(module).error(message);
 	}
 
+	//---------------------------------------------------------------------------
+	/** Logs the message with the stack trace of the exception */
+
+	public static void error(String module, Object message, Throwable t)
+	{
+		Logger.getLogger(module).error(message, t);
+	}
+
 	//---------------------------------------------------------------------------
 
 	public static void fatal(String module, Object message)
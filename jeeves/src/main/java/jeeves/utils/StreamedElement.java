@@ -0,0 +1,223 @@
+//=============================================================================
+//===	Copyright (C) 2001-2005 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This library is free software; you can redistribute it and/or
+//===	modify it under the terms of the GNU Lesser General Public
+//===	License as published by the Free Software Foundation; either
+//===	version 2.1 of the License, or (at your option) any later version.
+//===
+//===	This library is distributed in the hope that it will be useful,
+//===	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+//===	Lesser General Public License for more details.
+//===
+//===	You should have received a copy of the GNU Lesser General Public
+//===	License along with this library; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: GeoNetwork@fao.org
+//==============================================================================
+
+package jeeves.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.jdom.Element;
+import org.jdom.filter.ElementFilter;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+//=============================================================================
+
+/** Placeholder for a list of elements that are produced only when the response
+  * is written. Services that return many large elements (like search results)
+  * can put this element where the list should appear: when the response is
+  * written through Xml.writeResponse, the placeholder is replaced by the
+  * elements of the producer, which are written one at a time and then
+  * discarded. The producer can be consumed only once, so the response must not
+  * be written twice (other outputters only see an empty placeholder).
+  *
+  * Resources opened by the producer are closed by the ServiceManager once the
+  * response has been written. Producers should skip (and log) the elements they
+  * cannot build: no error can be reported once the response has been started,
+  * so if the producer fails anyway the list just ends with the elements written
+  * so far and the rest of the document is closed normally.
+  */
+
+public class StreamedElement extends Element
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Producer
+	//---
+	//---------------------------------------------------------------------------
+
+	public interface Producer
+	{
+		/** Returns the next element to write, or null when there are no more */
+		public Element next() throws Exception;
+
+		/** Called when the producer is no longer used, even if writing fails */
+		public void close();
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//---------------------------------------------------------------------------
+
+	public StreamedElement(Producer producer)
+	{
+		super("streamed");
+
+		this.producer = producer;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns true if the given element contains streamed elements */
+
+	public static boolean isStreamed(Element elem)
+	{
+		return getStreamed(elem) != null;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the first streamed element of the given element (or the element
+	  * itself), or null if there is none */
+
+	public static StreamedElement getStreamed(Element elem)
+	{
+		if (elem instanceof StreamedElement)
+			return (StreamedElement) elem;
+
+		Iterator i = elem.getDescendants(new ElementFilter());
+
+		while (i.hasNext())
+		{
+			Object o = i.next();
+
+			if (o instanceof StreamedElement)
+				return (StreamedElement) o;
+		}
+
+		return null;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the producer, or null if the element has already been written.
+	  * Used to wrap the producer (for instance to validate each element) */
+
+	public Producer getProducer() { return producer; }
+
+	public void setProducer(Producer producer) { this.producer = producer; }
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Outputter : an XMLOutputter that expands streamed elements
+	//---
+	//---------------------------------------------------------------------------
+
+	public static class Outputter extends XMLOutputter
+	{
+		public Outputter(Format format)
+		{
+			super(format);
+		}
+
+		//------------------------------------------------------------------------
+
+		protected void printElement(Writer out, Element element, int level,
+											 NamespaceStack namespaces) throws IOException
+		{
+			if (!(element instanceof StreamedElement))
+			{
+				super.printElement(out, element, level, namespaces);
+				return;
+			}
+
+			StreamedElement streamed = (StreamedElement) element;
+
+			if (streamed.producer == null)
+				throw new IOException("Streamed element has already been written");
+
+			Producer producer = streamed.producer;
+			streamed.producer = null;
+
+			try
+			{
+				boolean first = true;
+
+				while (true)
+				{
+					Element next;
+
+					//--- part of the response has already been sent: a failing
+					//--- producer ends the list
+
+					try
+					{
+						next = producer.next();
+					}
+					catch(Exception e)
+					{
+						Log.error(Log.SERVICE, "Error while writing streamed elements : "+ e.getMessage());
+						Log.error(Log.SERVICE, " (C) Stack trace is :\n"+ Util.getStackTrace(e));
+						break;
+					}
+
+					if (next == null)
+						break;
+
+					//--- the parent has already indented the first element
+
+					if (!first)
+						newLine(out, level);
+
+					super.printElement(out, next, level, namespaces);
+					first = false;
+				}
+			}
+			finally
+			{
+				producer.close();
+			}
+		}
+
+		//------------------------------------------------------------------------
+
+		private void newLine(Writer out, int level) throws IOException
+		{
+			Format format = getFormat();
+
+			if (format.getIndent() == null)
+				return;
+
+			out.write(format.getLineSeparator());
+
+			for (int i=0; i<level; i++)
+				out.write(format.getIndent());
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private transient Producer producer;
+}
+
+//=============================================================================
+
@@ -0,0 +1,127 @@
+//=============================================================================
+//===	Copyright (C) 2001-2005 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This library is free software; you can redistribute it and/or
+//===	modify it under the terms of the GNU Lesser General Public
+//===	License as published by the Free Software Foundation; either
+//===	version 2.1 of the License, or (at your option) any later version.
+//===
+//===	This library is distributed in the hope that it will be useful,
+//===	but WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+//===	Lesser General Public License for more details.
+//===
+//===	You should have received a copy of the GNU Lesser General Public
+//===	License along with this library; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: GeoNetwork@fao.org
+//==============================================================================
+
+package jeeves.utils;
+
+import java.io.OutputStream;
+
+import org.jdom.Element;
+
+//=============================================================================
+
+/** Binary response whose content is produced while it is written, so that
+  * services do not need to build a temporary file first. It is the binary
+  * counterpart of the StreamedElement: the ServiceManager begins the stream
+  * and then calls the producer with the servlet output stream. It can only be
+  * used by services that have a file output page.
+  *
+  * Resources opened by the producer are closed by the ServiceManager once the
+  * response has been written.
+  */
+
+public class StreamedFile extends Element
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Producer
+	//---
+	//---------------------------------------------------------------------------
+
+	public interface Producer
+	{
+		/** Writes the content of the file to the given stream */
+		public void write(OutputStream os) throws Exception;
+
+		/** Called when the producer is no longer used, even if writing fails */
+		public void close();
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//---------------------------------------------------------------------------
+
+	public StreamedFile(String name, String contentType, Producer producer)
+	{
+		super("response");
+
+		setAttribute("responseCode", "200");
+		setAttribute("name",         name);
+		setAttribute("contentType",  contentType);
+
+		this.producer = producer;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	public String getContentType()
+	{
+		return getAttributeValue("contentType");
+	}
+
+	//---------------------------------------------------------------------------
+
+	public String getContentDisposition()
+	{
+		return "attachment;filename="+ getAttributeValue("name");
+	}
+
+	//---------------------------------------------------------------------------
+	/** Writes the file. The producer is closed afterwards and cannot be used
+	  * again */
+
+	public void write(OutputStream os) throws Exception
+	{
+		if (producer == null)
+			throw new IllegalStateException("Streamed file has already been written");
+
+		Producer p = producer;
+		producer = null;
+
+		try
+		{
+			p.write(os);
+			os.flush();
+		}
+		finally
+		{
+			p.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private transient Producer producer;
+}
+
+//=============================================================================
+
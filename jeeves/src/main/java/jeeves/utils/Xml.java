@@ -47,6 +47,7 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.xml.XMLConstants;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
@@ -273,6 +274,48 @@ public class Xml
 	public static void transform(Element xml, Source xslt, Result result, Map<String,String> params, boolean nonCachingTransformerFactory) throws Exception {
 		Source srcXml   = new JDOMSource(new Document((Element)xml.detach()));
 
+		Transformer t = getTransformerFactory(nonCachingTransformerFactory).newTransformer(xslt);
+		if (params != null) {
+			for (String param : params.keySet()) {
+				t.setParameter(param,params.get(param));
+			}
+		}
+		t.transform(srcXml, result);
+	}
+
+    /**
+     * Compiles a stylesheet. The result can be applied many times, also by
+     * many threads at once, with {@link #transform(Element, Templates)}.
+     *
+     * @param xslt transformation
+     * @param nonCachingTransformerFactory whether non-caching transformerfactory is required
+     * @return compiled transformation
+     * @throws Exception hmm
+     */
+	public static Templates compileStylesheet(Source xslt, boolean nonCachingTransformerFactory) throws Exception {
+		return getTransformerFactory(nonCachingTransformerFactory).newTemplates(xslt);
+	}
+
+    /**
+     * Transforms an xml tree using a compiled stylesheet.
+     *
+     * @param xml document to transform
+     * @param templates compiled transformation
+     * @return result
+     * @throws Exception hmm
+     */
+	public static Element transform(Element xml, Templates templates) throws Exception {
+		Source     srcXml = new JDOMSource(new Document((Element)xml.detach()));
+		JDOMResult resXml = new JDOMResult();
+
+		templates.newTransformer().transform(srcXml, resXml);
+
+		return (Element)resXml.getDocument().getRootElement().detach();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static TransformerFactory getTransformerFactory(boolean nonCachingTransformerFactory) throws Exception {
 		// Dear old saxon likes to yell loudly about each and every XSLT 1.0
 		// stylesheet so switch it off but trap any exceptions because this
 		// code is run on transformers other than saxon
@@ -294,15 +337,8 @@ public class Xml
 		} catch (IllegalArgumentException e) {
 			System.out.println("WARNING: transformerfactory doesnt like saxon attributes!");
 			//e.printStackTrace();
-		} finally {
-			Transformer t = transFact.newTransformer(xslt);
-			if (params != null) {
-				for (String param : params.keySet()) {
-					t.setParameter(param,params.get(param));
-				}
-			}
-			t.transform(srcXml, result);
 		}
+		return transFact;
 	}
 
    // --------------------------------------------------------------------------
@@ -380,7 +416,9 @@ public class Xml
      */
 	public static void writeResponse(Document doc, OutputStream out) throws IOException
 	{
-		XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
+		//--- this outputter also writes the elements of streamed responses
+
+		XMLOutputter outputter = new StreamedElement.Outputter(Format.getPrettyFormat());
 		outputter.output(doc, out);
 	}
 
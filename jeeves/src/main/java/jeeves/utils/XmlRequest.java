@@ -24,6 +24,7 @@
 package jeeves.utils;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -33,12 +34,16 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 import jeeves.exceptions.BadSoapResponseEx;
 import jeeves.exceptions.BadXmlResponseEx;
 import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.apache.commons.httpclient.HttpState;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.cookie.CookiePolicy;
@@ -61,10 +66,47 @@ import org.apache.commons.httpclient.auth.AuthPolicy;
 
 //=============================================================================
 
+/** Sends requests to a remote server and parses the xml responses. All requests
+  * share a pool of keep-alive connections, with a limited number of connections
+  * per host, which are closed after IDLE_TIMEOUT ms without use (the pool must
+  * be released with shutdown when the application stops). Responses are parsed while they are received and can be gzip or
+  * deflate encoded. The text of requests and responses (see getSentData and
+  * getReceivedData) is only kept when debug is enabled for the 'jeeves.xmlrequest'
+  * module, while per host statistics are always collected by HttpMetrics.
+  */
+
 public class XmlRequest
 {
 	public enum Method { GET, POST }
 
+	public static final int MAX_CONNECTIONS_PER_HOST = 8;
+	public static final int MAX_CONNECTIONS          = 64;
+
+	public static final int CONNECTION_TIMEOUT = 30000;
+	public static final int SOCKET_TIMEOUT     = 60000;
+	public static final int IDLE_TIMEOUT       = 60000;
+
+	private static final MultiThreadedHttpConnectionManager connManager =
+													new MultiThreadedHttpConnectionManager();
+
+	private static final IdleConnectionTimeoutThread idleThread = new IdleConnectionTimeoutThread();
+
+	static
+	{
+		connManager.getParams().setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+		connManager.getParams().setMaxTotalConnections(MAX_CONNECTIONS);
+		connManager.getParams().setStaleCheckingEnabled(true);
+		connManager.getParams().setConnectionTimeout(CONNECTION_TIMEOUT);
+		connManager.getParams().setSoTimeout(SOCKET_TIMEOUT);
+
+		//--- the thread is a daemon: it does not prevent the JVM from exiting
+
+		idleThread.addConnectionManager(connManager);
+		idleThread.setConnectionTimeout(IDLE_TIMEOUT);
+		idleThread.setTimeoutInterval(IDLE_TIMEOUT / 2);
+		idleThread.start();
+	}
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- Constructor
@@ -106,6 +148,31 @@ public class XmlRequest
 		query   = url.getQuery();
 	}
 
+	//---------------------------------------------------------------------------
+	/** Creates a request to the same server that shares the HTTP state (cookies
+	  * and credentials) of this one. The copy can be used by another thread while
+	  * keeping the session (i.e. the login) of the original request.
+	  */
+
+	public XmlRequest copy()
+	{
+		XmlRequest req = new XmlRequest(host, port);
+
+		req.address      = address;
+		req.query        = query;
+		req.useSOAP      = useSOAP;
+		req.useProxy     = useProxy;
+		req.proxyHost    = proxyHost;
+		req.proxyPort    = proxyPort;
+		req.proxyAuthent = proxyAuthent;
+		req.serverAuthent= serverAuthent;
+
+		req.state = state;
+		req.client.setState(state);
+
+		return req;
+	}
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- API methods
@@ -119,6 +186,24 @@ public class XmlRequest
 	public String getSentData()     { return sentData;     }
 	public String getReceivedData() { return receivedData; }
 
+	//---------------------------------------------------------------------------
+	/** Closes the pooled connections that have not been used for the given time */
+
+	public static void closeIdleConnections(long idleTimeout)
+	{
+		connManager.closeIdleConnections(idleTimeout);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Stops the idle connection thread and closes all pooled connections. No
+	  * request can be executed afterwards */
+
+	public static void shutdown()
+	{
+		idleThread.shutdown();
+		connManager.shutdown();
+	}
+
 	//---------------------------------------------------------------------------
 
 	public void setHost(String host)
@@ -262,7 +347,19 @@ public class XmlRequest
 	{
 		HttpMethodBase httpMethod = setupHttpMethod();
 
-		doExecuteLarge(httpMethod, outFile);
+		doExecuteLarge(httpMethod, new FileOutputStream(outFile));
+	}
+
+	//---------------------------------------------------------------------------
+	/** Like executeLarge(File) but the content is copied to the given stream,
+	  * which is closed at the end.
+	  */
+
+	public void executeLarge(OutputStream os) throws IOException
+	{
+		HttpMethodBase httpMethod = setupHttpMethod();
+
+		doExecuteLarge(httpMethod, os);
 	}
 
 	//---------------------------------------------------------------------------
@@ -284,6 +381,7 @@ public class XmlRequest
 		PostMethod post = new PostMethod();
 		post.setRequestEntity(new MultipartRequestEntity(parts, post.getParams()));
 		post.addRequestHeader("Accept", !useSOAP ? "application/xml" : "application/soap+xml");
+		post.addRequestHeader("Accept-Encoding", ACCEPT_ENCODING);
 		post.setPath(address);
 		post.setDoAuthentication(useAuthent());
 
@@ -322,69 +420,138 @@ public class XmlRequest
 		if (useProxy)
 			config.setProxy(proxyHost, proxyPort);
 
-		byte[] data = null;
+		boolean debug = Log.isDebugEnabled(Log.XML_REQUEST);
+		boolean error = true;
+		long    start = System.currentTimeMillis();
+		byte[]  data  = null;
+
+		HttpMetrics.CountingInputStream is = null;
 
 		try
 		{
 			client.executeMethod(httpMethod);
-			data = httpMethod.getResponseBody();
 
-			return Xml.loadStream(new ByteArrayInputStream(data));
+			InputStream response = getResponseStream(httpMethod);
+
+			if (response == null)
+				throw new BadXmlResponseEx("Empty response : "+ httpMethod.getStatusLine());
+
+			is = new HttpMetrics.CountingInputStream(response);
+
+			//--- the response is kept only to be logged
+
+			if (debug)
+			{
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				BinaryFile.copy(is, os, false, true);
+				data = os.toByteArray();
+			}
+
+			Element result = Xml.loadStream(debug ? new ByteArrayInputStream(data) : is);
+			error = false;
+
+			return result;
 		}
 
 		catch(JDOMException e)
 		{
-			throw new BadXmlResponseEx(new String(data, "UTF8"));
+			if (data != null)
+				throw new BadXmlResponseEx(new String(data, "UTF8"));
+
+			throw new BadXmlResponseEx(httpMethod.getStatusLine() +" : "+ e.getMessage());
 		}
 
 		finally
 		{
 			httpMethod.releaseConnection();
 
-			sentData     = getSentData(httpMethod);
-			receivedData = getReceivedData(httpMethod, data);
+			HttpMetrics.record(host, System.currentTimeMillis() - start,
+									 (is == null) ? 0 : is.getCount(), error);
+
+			if (debug)
+			{
+				sentData     = getSentData(httpMethod);
+				receivedData = getReceivedData(httpMethod, data);
+
+				Log.debug(Log.XML_REQUEST, "Sent data :\n"+ sentData);
+				Log.debug(Log.XML_REQUEST, "Received data :\n"+ receivedData);
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the response body, decoding it if the server has compressed it */
+
+	private InputStream getResponseStream(HttpMethodBase httpMethod) throws IOException
+	{
+		InputStream is = httpMethod.getResponseBodyAsStream();
+
+		if (is == null)
+			return null;
+
+		Header encoding = httpMethod.getResponseHeader("Content-Encoding");
+
+		if (encoding != null)
+		{
+			String value = encoding.getValue().toLowerCase();
+
+			if (value.indexOf("gzip") != -1)
+				return new GZIPInputStream(is);
+
+			if (value.indexOf("deflate") != -1)
+				return new InflaterInputStream(is);
 		}
+
+		return is;
 	}
 
 	//---------------------------------------------------------------------------
 
-	private File doExecuteLarge(HttpMethodBase httpMethod, File outFile) throws IOException
+	private void doExecuteLarge(HttpMethodBase httpMethod, OutputStream os) throws IOException
 	{
 		config.setHost(host, port, "http");
 
 		if (useProxy)
 			config.setProxy(proxyHost, proxyPort);
 
-		InputStream  is = null;
-		OutputStream os = null;
+		HttpMetrics.CountingInputStream is = null;
+
+		boolean error = true;
+		long    start = System.currentTimeMillis();
 
 		try
 		{
 			client.executeMethod(httpMethod);
 
-			is = httpMethod.getResponseBodyAsStream();
-			os = new FileOutputStream(outFile);
-
-			BinaryFile.copy(is, os, true, true);
+			InputStream response = getResponseStream(httpMethod);
 
-			is.close();
-			os.close();
+			if (response != null)
+			{
+				is = new HttpMetrics.CountingInputStream(response);
+				BinaryFile.copy(is, os, true, true);
+			}
 
-			return outFile;
+			error = false;
 		}
 		finally
 		{
 			if (is != null)
 				is.close();
 
-			if (os != null)
-				os.close();
+			os.close();
 
 			httpMethod.releaseConnection();
 
-			sentData = getSentData(httpMethod);
+			HttpMetrics.record(host, System.currentTimeMillis() - start,
+									 (is == null) ? 0 : is.getCount(), error);
 
 			//--- we do not save received data because it can be very large
+
+			if (Log.isDebugEnabled(Log.XML_REQUEST))
+			{
+				sentData = getSentData(httpMethod);
+				Log.debug(Log.XML_REQUEST, "Sent data :\n"+ sentData);
+			}
 		}
 	}
 
@@ -427,6 +594,7 @@ public class XmlRequest
 
 		httpMethod.setPath(address);
 		httpMethod.setDoAuthentication(useAuthent());
+		httpMethod.addRequestHeader("Accept-Encoding", ACCEPT_ENCODING);
 
 		return httpMethod;
 	}
@@ -538,7 +706,9 @@ public class XmlRequest
 	private int     proxyPort;
 	private boolean proxyAuthent;
 
-	private HttpClient client = new HttpClient();
+	private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private HttpClient client = new HttpClient(connManager);
 	private HttpState  state  = new HttpState();
 	private Cookie     cookie = new Cookie();
 
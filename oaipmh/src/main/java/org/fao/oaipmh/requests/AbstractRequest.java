@@ -29,6 +29,7 @@ import java.util.Map;
 import org.fao.oaipmh.exceptions.OaiPmhException;
 import org.fao.oaipmh.responses.AbstractResponse;
 import org.fao.oaipmh.util.Lib;
+import org.fao.oaipmh.util.RecordSplitter;
 import org.fao.oaipmh.util.Xml;
 import org.jdom.Element;
 import org.jdom.JDOMException;
@@ -97,6 +98,50 @@ public abstract class AbstractRequest
 		return response;
 	}
 
+	//---------------------------------------------------------------------------
+	/** Like sendRequest but the response is streamed through the splitter, so
+	  * listed elements are not kept in memory. The response is validated while
+	  * it is parsed, so each listed element is validated before the splitter
+	  * hands it over. An invalid response stops the parsing with an exception
+	  * but the elements that came before have already been handed over */
+
+	protected Element sendRequest(Map<String, String> params, RecordSplitter splitter)
+										throws IOException, OaiPmhException, SAXException, Exception
+	{
+		transport.clearParameters();
+
+		for (String name : params.keySet())
+			transport.addParameter(name, params.get(name));
+
+		transport.addParameter("verb", getVerb());
+
+		splitter.setValidator(Xml.newValidatorHandler());
+
+		try
+		{
+			transport.execute(splitter);
+		}
+		catch(SAXException e)
+		{
+			//--- the listener exception is more meaningful than the SAX one
+
+			if (splitter.getListenerException() != null)
+				throw splitter.getListenerException();
+
+			throw e;
+		}
+
+		Element response = splitter.getSkeleton();
+
+		if (response == null || !Lib.isRootValid(response))
+			throw new Exception("Response is not in OAI-PMH format");
+
+		//--- raises an exception if the case
+		OaiPmhException.unmarshal(response);
+
+		return response;
+	}
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- Variables
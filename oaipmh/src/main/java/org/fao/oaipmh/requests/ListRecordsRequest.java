@@ -27,8 +27,13 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.fao.oaipmh.OaiPmh;
 import org.fao.oaipmh.exceptions.OaiPmhException;
 import org.fao.oaipmh.responses.ListRecordsResponse;
+import org.fao.oaipmh.responses.Record;
+import org.fao.oaipmh.responses.ResumptionToken;
+import org.fao.oaipmh.util.RecordSplitter;
+import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.xml.sax.SAXException;
 
@@ -38,9 +43,84 @@ public class ListRecordsRequest extends TokenListRequest
 {
 	public static final String VERB = "ListRecords";
 
-	
+	//---------------------------------------------------------------------------
+	//---
+	//--- Listener
+	//---
+	//---------------------------------------------------------------------------
+
+	public interface Listener
+	{
+		public void record(Record r) throws Exception;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
 	public ListRecordsResponse execute() throws IOException, OaiPmhException, JDOMException,
 															  SAXException, Exception
+	{
+		return new ListRecordsResponse(this, sendRequest(buildParams()));
+	}
+
+	//---------------------------------------------------------------------------
+	/** Streams all records through the listener, following resumption tokens.
+	  * Each page is parsed while it is received and records are passed one by
+	  * one, so memory does not depend on the page size or on the list size.
+	  * Returns the number of records (deleted ones included) */
+
+	public int stream(final Listener listener) throws IOException, OaiPmhException,
+																	  SAXException, Exception
+	{
+		RecordSplitter.Listener recListener = new RecordSplitter.Listener()
+		{
+			public void fragment(Element elem) throws Exception
+			{
+				listener.record(new Record(elem));
+			}
+		};
+
+		Map<String, String> params = buildParams();
+		int count = 0;
+
+		while (true)
+		{
+			RecordSplitter splitter = new RecordSplitter("record", recListener);
+			Element response = sendRequest(params, splitter);
+
+			count += splitter.getCount();
+
+			Element operElem = response.getChild(VERB, OaiPmh.Namespaces.OAI_PMH);
+			Element resToken = (operElem == null) ? null
+									 : operElem.getChild("resumptionToken", OaiPmh.Namespaces.OAI_PMH);
+
+			if (resToken == null)
+				return count;
+
+			ResumptionToken token = new ResumptionToken(resToken);
+
+			if (token.isTokenEmpty())
+				return count;
+
+			params.clear();
+			params.put("resumptionToken", token.getToken());
+		}
+	}
+
+	//---------------------------------------------------------------------------
+
+	public String getVerb() { return VERB; }
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private Map<String, String> buildParams()
 	{
 		Map<String, String> params = new HashMap<String, String>();
 
@@ -60,14 +140,8 @@ public class ListRecordsRequest extends TokenListRequest
 				params.put("set", set);
 		}
 
-		return new ListRecordsResponse(this, sendRequest(params));
+		return params;
 	}
-
-	//---------------------------------------------------------------------------
-
-	public String getVerb() { return VERB; }
-
-
 }
 
 //=============================================================================
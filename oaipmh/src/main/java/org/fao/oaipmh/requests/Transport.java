@@ -25,9 +25,13 @@ package org.fao.oaipmh.requests;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.util.ArrayList;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import org.apache.commons.httpclient.Cookie;
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.Header;
@@ -44,6 +48,8 @@ import org.apache.commons.httpclient.methods.PostMethod;
 import org.fao.oaipmh.util.Xml;
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 //=============================================================================
 
@@ -190,6 +196,39 @@ public class Transport
 		return doExecute(httpMethod);
 	}
 
+	//---------------------------------------------------------------------------
+	/** Parses the response straight from the connection stream, feeding the
+	  * given SAX handler. The response body is not kept as received data */
+
+	public void execute(DefaultHandler handler) throws IOException, SAXException
+	{
+		HttpMethodBase httpMethod = setupHttpMethod();
+
+		config.setHost(host, port, "http");
+
+		if (useProxy)
+			config.setProxy(proxyHost, proxyPort);
+
+		try
+		{
+			client.executeMethod(httpMethod);
+
+			InputStream is = httpMethod.getResponseBodyAsStream();
+
+			setupSentData(httpMethod);
+			setupReceivedData(httpMethod, null);
+
+			if (is == null)
+				throw new IOException("Empty response received");
+
+			getParser().parse(is, handler);
+		}
+		finally
+		{
+			httpMethod.releaseConnection();
+		}
+	}
+
 	//---------------------------------------------------------------------------
 
 	/* package */ void clearParameters()
@@ -298,6 +337,23 @@ public class Transport
 		catch (UnsupportedEncodingException e) {}
 	}
 	
+	//---------------------------------------------------------------------------
+
+	private SAXParser getParser() throws SAXException
+	{
+		try
+		{
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+
+			return factory.newSAXParser();
+		}
+		catch (ParserConfigurationException e)
+		{
+			throw new SAXException(e);
+		}
+	}
+
 	//---------------------------------------------------------------------------
 	
 	private boolean useAuthent() {
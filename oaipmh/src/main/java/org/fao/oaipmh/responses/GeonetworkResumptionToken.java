@@ -23,73 +23,55 @@
 
 package org.fao.oaipmh.responses;
 
-import java.util.Random;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 
-import org.fao.oaipmh.util.SearchResult;
-import org.fao.oaipmh.util.ISODate;
 import org.fao.oaipmh.OaiPmh;
 import org.fao.oaipmh.exceptions.BadResumptionTokenException;
 import org.fao.oaipmh.requests.TokenListRequest;
+import org.fao.oaipmh.util.ISODate;
 import org.jdom.Element;
 
 //=============================================================================
 
+/** Stateless resumption token. The token text carries the original request
+  * (prefix, set, from, until) and a cursor, that is the change date and id of
+  * the last record returned, so that the next page can be searched again
+  * without keeping anything on the server. Tokens survive restarts and never
+  * expire.
+  */
 
 public class GeonetworkResumptionToken extends ResumptionToken
 {
-	public static final String SEPARATOR = "-";
+	public static final String SEPARATOR = ",";
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- Constructor
 	//---
 	//---------------------------------------------------------------------------
 
-	//---------------------------------------------------------------------------
-
 	public GeonetworkResumptionToken(Element rt)
 	{
-        build(rt);
+		build(rt);
 	}
 
 	//---------------------------------------------------------------------------
 
-	public GeonetworkResumptionToken(TokenListRequest req) throws BadResumptionTokenException {
-
+	public GeonetworkResumptionToken(TokenListRequest req) throws BadResumptionTokenException
+	{
 		String strToken = req.getResumptionToken();
 
-		if (strToken==null) {
-
-			if (req.getFrom()!= null)
-				from   = req.getFrom().toString();
-			if (req.getUntil()!= null)
-				until  = req.getUntil().toString();
-			if (req.getSet()!= null)
-				set    = req.getSet();
+		if (strToken == null)
+		{
 			prefix = req.getMetadataPrefix();
-
-
-			randomid = generateRandomString();
-
+			set    = req.getSet();
+			from   = format(req.getFrom());
+			until  = format(req.getUntil());
 		}
-		else {
-
+		else
 			parseToken(strToken);
-		}
-	}
-
-	public GeonetworkResumptionToken(TokenListRequest req, SearchResult res) throws BadResumptionTokenException {
-		this(req);
-		this.res=res;
-	}
-
-	public static String buildKey(TokenListRequest req)  throws BadResumptionTokenException {
-		GeonetworkResumptionToken temp = new GeonetworkResumptionToken(req);
-		return temp.getKey();
-	}
-
-	public static int getPos(TokenListRequest req) throws BadResumptionTokenException {
-		GeonetworkResumptionToken temp = new GeonetworkResumptionToken(req);
-		return temp.getPos();
 	}
 
 	//---------------------------------------------------------------------------
@@ -98,62 +80,57 @@ public class GeonetworkResumptionToken extends ResumptionToken
 	//---
 	//---------------------------------------------------------------------------
 
-	public String  getToken()            { 
-		if (isReset) return ""; // we are at the last chunk
-		return getKey()+SEPARATOR+pos;
+	public String getToken()
+	{
+		if (isReset)
+			return ""; // we are at the last chunk
+
+		return encode(prefix) +SEPARATOR+ encode(set)        +SEPARATOR+
+				 encode(from)   +SEPARATOR+ encode(until)      +SEPARATOR+
+				 encode(changeDate) +SEPARATOR+ encode(id)     +SEPARATOR+ pos;
 	}
 
-	public boolean isTokenEmpty() { return isReset;  }
+	//---------------------------------------------------------------------------
 
-	public int getPos() 				 { return pos;         }
+	public boolean isTokenEmpty() { return isReset; }
 
-	public void setExpirDate(ISODate date) {
-		this.expirDate=date;
-	}
+	public String getPrefix()     { return prefix;     }
+	public String getSet()        { return set;        }
+	public String getFrom()       { return from;       }
+	public String getUntil()      { return until;      }
+	public String getChangeDate() { return changeDate; }
+	public String getId()         { return id;         }
+	public int    getPos()        { return pos;        }
 
-	public String getKey() {
-		return set+SEPARATOR+prefix+SEPARATOR+from+SEPARATOR+until+SEPARATOR+randomid;
-	}
+	//---------------------------------------------------------------------------
+	/** Moves the cursor after the given record. The number of records already
+	  * returned becomes the 'cursor' attribute of the next response */
 
-	public SearchResult getRes() {
-		return res;
+	public void moveTo(String changeDate, String id, int pos)
+	{
+		this.changeDate = changeDate;
+		this.id         = id;
+		this.cursor     = this.pos;
+		this.pos        = pos;
 	}
 
-	public void setRes(SearchResult res) {
-		this.res = res;
-	}
+	//---------------------------------------------------------------------------
+	/** Marks the token as the one of the last chunk */
 
-	public void setPos(int pos) {
-		this.pos = pos;
+	public void reset()
+	{
+		isReset = true;
+		cursor  = pos;
 	}
 
+	//---------------------------------------------------------------------------
 
-	public void reset() {
-		isReset=true;
-	}
-	
-	public void setupToken(int newpos) {
-
-		if (newpos < res.ids.size()) // update token so that it refers to the next chunk
-			setPos(newpos);
-		else 
-		{
-			reset(); 	// reset token to indicate last chunk
-		}
-	}
-	
 	public Element toXml()
 	{
 		Element root = new Element("resumptionToken", OaiPmh.Namespaces.OAI_PMH);
 
 		root.setText(getToken());
 
-		if (expirDate != null)
-			root.setAttribute("expirationDate", expirDate.toString());
-
-		if (listSize != null)
-			root.setAttribute("completeListSize", listSize.toString());
-
 		if (cursor != null)
 			root.setAttribute("cursor", cursor.toString());
 
@@ -164,12 +141,14 @@ public class GeonetworkResumptionToken extends ResumptionToken
 
 	public void setToken(String token)
 	{
-		try {
-	        parseToken(token);
-        } catch (BadResumptionTokenException e) {
-        	throw new RuntimeException(e);
-        }
-
+		try
+		{
+			parseToken(token);
+		}
+		catch (BadResumptionTokenException e)
+		{
+			throw new RuntimeException(e);
+		}
 	}
 
 	//---------------------------------------------------------------------------
@@ -180,66 +159,108 @@ public class GeonetworkResumptionToken extends ResumptionToken
 
 	private void build(Element rt)
 	{
-		try {
-	        parseToken(rt.getText());
-        } catch (BadResumptionTokenException e) {
-        	throw new RuntimeException(e);
-        }
-
-		String expDt = rt.getAttributeValue("expirationDate");
-		String listSz= rt.getAttributeValue("completeListSize");
-		String curs  = rt.getAttributeValue("cursor");
-
-		expirDate = (expDt  == null) ? null : new ISODate(expDt);
-		listSize  = (listSz == null) ? null : new Integer(listSz);
-		cursor    = (curs   == null) ? null : new Integer(curs);
+		setToken(rt.getText());
+
+		String curs = rt.getAttributeValue("cursor");
+
+		cursor = (curs == null) ? null : new Integer(curs);
 	}
 
-	private void parseToken(String strToken) throws BadResumptionTokenException {
+	//---------------------------------------------------------------------------
 
-		String[] temp = strToken.split(SEPARATOR);
+	private void parseToken(String strToken) throws BadResumptionTokenException
+	{
+		String[] temp = strToken.split(SEPARATOR, -1);
 
-		if (temp.length != 6)
+		if (temp.length != 7)
 			throw new BadResumptionTokenException("unknown resumptionToken format: "+strToken);
 
-		set = temp[0];
-		prefix = temp[1];
-		from =  temp[2] ;
-		until = temp[3] ;
-		randomid = temp[4];
+		prefix     = decode(temp[0]);
+		set        = decode(temp[1]);
+		from       = decode(temp[2]);
+		until      = decode(temp[3]);
+		changeDate = decode(temp[4]);
+		id         = decode(temp[5]);
 
-		pos = Integer.parseInt( temp[5] );
-	}
+		if (prefix == null || changeDate == null || id == null)
+			throw new BadResumptionTokenException("incomplete resumptionToken: "+strToken);
 
-	private static String generateRandomString() {
-		Random r = new Random();
-		return Long.toString(Math.abs(r.nextLong()), 36);
+		try
+		{
+			pos = Integer.parseInt(temp[6]);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new BadResumptionTokenException("bad position in resumptionToken: "+strToken);
+		}
 	}
 
 	//---------------------------------------------------------------------------
-	//---
-	//--- Variables
-	//---
+
+	private static String format(ISODate date)
+	{
+		if (date == null)
+			return null;
+
+		return date.isShort ? date.getDate() : date.toString();
+	}
+
 	//---------------------------------------------------------------------------
+	/** Null values are encoded as empty strings */
 
-	//private String  token;
-	private ISODate expirDate;
-	private Integer listSize;
-	private Integer cursor;
-	private Integer pos;
-	private String set ="";
-	private String from="";
-	private String until="";
-	private String prefix="";
-	private Boolean isReset = false;
-	private String randomid;
+	private static String encode(String value)
+	{
+		if (value == null)
+			return "";
 
-	private SearchResult res;
+		try
+		{
+			//--- the separator is encoded too, so it cannot appear in values
+			return URLEncoder.encode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
 
+	//---------------------------------------------------------------------------
 
+	private static String decode(String value) throws BadResumptionTokenException
+	{
+		if (value.length() == 0)
+			return null;
 
+		try
+		{
+			return URLDecoder.decode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new BadResumptionTokenException("bad value in resumptionToken: "+value);
+		}
+	}
 
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
 
+	private String  prefix;
+	private String  set;
+	private String  from;
+	private String  until;
+	private String  changeDate;
+	private String  id;
+	private int     pos;
+	private Integer cursor;
+	private boolean isReset;
 }
 
 //=============================================================================
+
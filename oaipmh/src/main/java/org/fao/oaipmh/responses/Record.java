@@ -107,12 +107,15 @@ public class Record
 
 		this.header = new Header(header);
 
-		//--- store metadata
+		//--- store metadata (deleted records don't have it)
 
-		List list = mdata.getChildren();
+		if (mdata != null)
+		{
+			List list = mdata.getChildren();
 
-		if (list.size() != 0)
-			metadata = (Element) list.get(0);
+			if (list.size() != 0)
+				metadata = (Element) list.get(0);
+		}
 
 		//--- add about information
 
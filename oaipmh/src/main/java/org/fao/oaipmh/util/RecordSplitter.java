@@ -0,0 +1,355 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.oaipmh.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fao.oaipmh.OaiPmh;
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+//=============================================================================
+
+/** SAX handler that splits a list response into one JDOM fragment per listed
+  * element (record or header). Only the fragment being parsed is held in
+  * memory: each one is handed to the listener as soon as its end tag is seen.
+  * The envelope is rebuilt as a skeleton that only keeps the error and the
+  * resumptionToken elements, so that it can be checked the usual way.
+  * If a validator is set, all SAX events are also forwarded to it so that the
+  * whole response is validated while it is parsed: a fragment is handed to
+  * the listener only once it has been validated.
+  */
+
+public class RecordSplitter extends DefaultHandler
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Listener
+	//---
+	//---------------------------------------------------------------------------
+
+	public interface Listener
+	{
+		public void fragment(Element elem) throws Exception;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//---------------------------------------------------------------------------
+
+	public RecordSplitter(String elemName, Listener listener)
+	{
+		this.elemName = elemName;
+		this.listener = listener;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns the root of the response, with the listed elements removed */
+
+	public Element getSkeleton() { return skeleton; }
+
+	public int getCount() { return count; }
+
+	//---------------------------------------------------------------------------
+	/** Sets the handler that receives all SAX events (usually a schema
+	  * ValidatorHandler). Must be called before parsing */
+
+	public void setValidator(ContentHandler validator)
+	{
+		this.validator = validator;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the exception raised by the listener, if any. SAX only allows
+	  * SAXExceptions to be thrown so the original one is kept here */
+
+	public Exception getListenerException() { return listenerEx; }
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- SAX callbacks
+	//---
+	//---------------------------------------------------------------------------
+
+	public void setDocumentLocator(Locator locator)
+	{
+		if (validator != null)
+			validator.setDocumentLocator(locator);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void startDocument() throws SAXException
+	{
+		if (validator != null)
+			validator.startDocument();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void endDocument() throws SAXException
+	{
+		if (validator != null)
+			validator.endDocument();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void startPrefixMapping(String prefix, String uri) throws SAXException
+	{
+		if (validator != null)
+			validator.startPrefixMapping(prefix, uri);
+
+		pendingNs.add(Namespace.getNamespace(prefix, uri));
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void endPrefixMapping(String prefix) throws SAXException
+	{
+		if (validator != null)
+			validator.endPrefixMapping(prefix);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void startElement(String uri, String localName, String qName, Attributes atts)
+										throws SAXException
+	{
+		if (validator != null)
+			validator.startElement(uri, localName, qName, atts);
+
+		Element elem = new Element(localName, Namespace.getNamespace(getPrefix(qName), uri));
+
+		//--- extra declarations are needed for prefixes used in content (xsi:type)
+
+		for (Namespace ns : pendingNs)
+			if (ns.getPrefix().length() != 0 && !ns.getPrefix().equals(elem.getNamespacePrefix()))
+				elem.addNamespaceDeclaration(ns);
+
+		pendingNs.clear();
+
+		for (int i=0; i<atts.getLength(); i++)
+		{
+			String attUri = atts.getURI(i);
+			String attQName = atts.getQName(i);
+
+			if (attQName.startsWith("xmlns"))
+				continue;
+
+			if (attUri.length() == 0)
+				elem.setAttribute(atts.getLocalName(i), atts.getValue(i));
+			else
+				elem.setAttribute(atts.getLocalName(i), atts.getValue(i),
+										Namespace.getNamespace(getPrefix(attQName), attUri));
+		}
+
+		Element parent = stack.isEmpty() ? null : stack.get(stack.size() -1);
+
+		if (parent == null)
+			skeleton = elem;
+		else if (inFragment || isListed(elem) || isKept(elem) || parent == skeleton)
+			parent.addContent(elem);
+
+		if (!inFragment && isListed(elem))
+		{
+			inFragment = true;
+			fragDepth  = stack.size();
+			addInScopeNamespaces(elem);
+		}
+
+		stack.add(elem);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void characters(char[] ch, int start, int length) throws SAXException
+	{
+		if (validator != null)
+			validator.characters(ch, start, length);
+
+		if (stack.isEmpty())
+			return;
+
+		Element current = stack.get(stack.size() -1);
+
+		if (inFragment || isKept(current))
+			current.addContent(new String(ch, start, length));
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+	{
+		if (validator != null)
+			validator.ignorableWhitespace(ch, start, length);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void endElement(String uri, String localName, String qName) throws SAXException
+	{
+		if (validator != null)
+			validator.endElement(uri, localName, qName);
+
+		Element elem = stack.remove(stack.size() -1);
+
+		if (!inFragment || stack.size() != fragDepth)
+			return;
+
+		inFragment = false;
+		elem.detach();
+		count++;
+
+		try
+		{
+			listener.fragment(elem);
+		}
+		catch(Exception e)
+		{
+			listenerEx = e;
+			throw new SAXException(e);
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private boolean isListed(Element elem)
+	{
+		return elem.getName().equals(elemName) && elem.getNamespace().equals(OaiPmh.Namespaces.OAI_PMH);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private boolean isKept(Element elem)
+	{
+		if (!elem.getNamespace().equals(OaiPmh.Namespaces.OAI_PMH))
+			return false;
+
+		String name = elem.getName();
+
+		return name.equals("error") || name.equals("resumptionToken");
+	}
+
+	//---------------------------------------------------------------------------
+	/** The fragment is detached from the envelope, so the prefixes declared by
+	  * its ancestors (usually on the OAI-PMH element) are copied onto it.
+	  * Element and attribute names already carry their namespace but prefixes
+	  * used in content (xsi:type, xpath values) would be lost otherwise */
+
+	private void addInScopeNamespaces(Element elem)
+	{
+		Map<String, Namespace> inScope = new LinkedHashMap<String, Namespace>();
+
+		for (Element anc : stack)
+		{
+			addNamespace(inScope, anc.getNamespace());
+
+			for (Object ns : anc.getAdditionalNamespaces())
+				addNamespace(inScope, (Namespace) ns);
+		}
+
+		for (Namespace ns : inScope.values())
+			if (!isDeclared(elem, ns.getPrefix()))
+				elem.addNamespaceDeclaration(ns);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private static void addNamespace(Map<String, Namespace> inScope, Namespace ns)
+	{
+		if (ns.getPrefix().length() != 0)
+			inScope.put(ns.getPrefix(), ns);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private static boolean isDeclared(Element elem, String prefix)
+	{
+		if (prefix.equals(elem.getNamespacePrefix()))
+			return true;
+
+		for (Object ns : elem.getAdditionalNamespaces())
+			if (prefix.equals(((Namespace) ns).getPrefix()))
+				return true;
+
+		for (Object att : elem.getAttributes())
+			if (prefix.equals(((Attribute) att).getNamespacePrefix()))
+				return true;
+
+		return false;
+	}
+
+	//---------------------------------------------------------------------------
+
+	private static String getPrefix(String qName)
+	{
+		int pos = qName.indexOf(':');
+
+		return (pos == -1) ? "" : qName.substring(0, pos);
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private String   elemName;
+	private Listener listener;
+
+	private Element skeleton;
+	private boolean inFragment;
+	private int     fragDepth;
+	private int     count;
+
+	private Exception      listenerEx;
+	private ContentHandler validator;
+
+	private List<Element>   stack     = new ArrayList<Element>();
+	private List<Namespace> pendingNs = new ArrayList<Namespace>();
+}
+
+//=============================================================================
+
@@ -102,6 +102,15 @@ public class Xml
 		so.output(xml);
 	}
 
+	//---------------------------------------------------------------------------
+	/** Returns a handler that validates the SAX events it receives, using the
+	  * schemas referenced by the document like validate does */
+
+	public static ValidatorHandler newValidatorHandler() throws SAXException
+	{
+		return factory.newSchema().newValidatorHandler();
+	}
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- Variables
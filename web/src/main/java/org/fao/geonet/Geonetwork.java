@@ -33,6 +33,7 @@ import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
 import jeeves.utils.BinaryFile;
 import jeeves.utils.Util;
+import jeeves.utils.XmlRequest;
 import jeeves.xlink.Processor;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.csw.common.Csw;
@@ -43,6 +44,7 @@ import org.fao.geonet.kernel.csw.CatalogConfiguration;
 import org.fao.geonet.kernel.csw.CatalogDispatcher;
 import org.fao.geonet.kernel.harvest.HarvestManager;
 import org.fao.geonet.kernel.oaipmh.OaiPmhDispatcher;
+import org.fao.geonet.kernel.schema.SchemaCache;
 import org.fao.geonet.kernel.search.SearchManager;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.lib.Lib;
@@ -51,6 +53,7 @@ import org.fao.geonet.notifier.MetadataNotifierControl;
 import org.fao.geonet.notifier.MetadataNotifierManager;
 import org.fao.geonet.services.util.z3950.Repositories;
 import org.fao.geonet.services.util.z3950.Server;
+import org.fao.geonet.util.StartupGraph;
 import org.geotools.data.DataStore;
 import org.geotools.data.postgis.PostgisDataStoreFactory;
 import org.geotools.data.shapefile.indexed.IndexType;
@@ -73,9 +76,16 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 //=============================================================================
 
@@ -88,6 +98,16 @@ public class Geonetwork implements ApplicationHandler
 	private String 				path;				
 	private SearchManager 		searchMan;
 	private ThesaurusManager 	thesaurusMan;
+
+	//--- subsystems created by the startup tasks
+	private Dbms                    dbms;
+	private SettingManager          settingMan;
+	private AccessManager           accessMan;
+	private DataManager             dataMan;
+	private HarvestManager          harvestMan;
+	private CatalogDispatcher       catalogDis;
+	private OaiPmhDispatcher        oaipmhDis;
+	private ApplicationContext      app_context;
 	private String						SPATIAL_INDEX_FILENAME    = "spatialindex";
 	static final String				IDS_ATTRIBUTE_NAME        = "id";
 
@@ -108,16 +128,15 @@ public class Geonetwork implements ApplicationHandler
 	/** Inits the engine, loading all needed data
 	  */
 
-	public Object start(Element config, ServiceContext context) throws Exception
+	public Object start(Element config, final ServiceContext context) throws Exception
 	{
 		logger = context.getLogger();
 
 		path    = context.getAppPath();
-		String baseURL = context.getBaseUrl();
 
 		ServerLib sl = new ServerLib(path);
-		String version = sl.getVersion();
-		String subVersion = sl.getSubVersion();
+		final String version = sl.getVersion();
+		final String subVersion = sl.getSubVersion();
 		
 		logger.info("Initializing GeoNetwork " + version +  "." + subVersion +  " ...");
 
@@ -125,44 +144,211 @@ public class Geonetwork implements ApplicationHandler
 		// force cache to be config'd so shutdown hook works correctly
 		JeevesJCS jcsDummy = JeevesJCS.getInstance(Processor.XLINK_JCS);
 
-		ServiceConfig handlerConfig = new ServiceConfig(config.getChildren());
-
-		// --- Check current database and create database if an emty one is found
-		Dbms dbms = initDatabase(context);
+		final ServiceConfig handlerConfig = new ServiceConfig(config.getChildren());
 
 		//------------------------------------------------------------------------
-		//--- initialize settings subsystem
+		//--- subsystems are started as a dependency graph. Those using the
+		//--- database connection form a chain (database, settings, search,
+		//--- access, data, harvest) because the connection cannot be shared
+		//--- between threads; the others run alongside the chain
 
-		logger.info("  - Setting manager...");
+		StartupGraph graph = new StartupGraph();
 
-		SettingManager settingMan = new SettingManager(dbms, context.getProviderManager());
+		graph.add("database", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				// --- Check current database and create database if an emty one is found
+				dbms = initDatabase(context);
+			}
+		});
 
-		
-		// --- Migrate database if an old one is found
-		migrateDatabase(dbms, settingMan, version, subVersion);
-		
-		//------------------------------------------------------------------------
-		//--- Initialize thesaurus
+		graph.add("settings", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				logger.info("  - Setting manager...");
 
-		logger.info("  - Thesaurus...");
+				settingMan = new SettingManager(dbms, context.getProviderManager());
+
+				// --- Migrate database if an old one is found
+				migrateDatabase(dbms, settingMan, version, subVersion);
+			}
+		}, "database");
+
+		graph.add("thesauri", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				initThesauri(handlerConfig);
+			}
+		});
+
+		graph.add("z3950", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				initZ3950(context, handlerConfig);
+			}
+		}, "settings");
+
+		graph.add("search", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				initSearch(context, handlerConfig);
+			}
+		}, "settings");
+
+		graph.addBackground("spatialIndex", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				searchMan.getSpatial().warmUp();
+			}
+		}, "search");
+
+		graph.add("access", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				//--- extract intranet ip/mask and initialize AccessManager
+
+				logger.info("  - Access manager...");
+
+				accessMan = new AccessManager(dbms, settingMan);
+			}
+		}, "search");
+
+		graph.add("data", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				initData(context, handlerConfig);
+			}
+		}, "access");
+
+		graph.add("schemas", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				addSchemas(dataMan, path + Geonet.Path.SCHEMAS);
+			}
+		}, "data");
+
+		//--- harvesters are created after the z39.50 server has changed the
+		//--- user session of the context
+
+		graph.add("harvest", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				logger.info("  - Harvest manager...");
+
+				harvestMan = new HarvestManager(context, settingMan, dataMan);
+				dataMan.setHarvestManager(harvestMan);
+			}
+		}, "data", "z3950");
+
+		graph.add("csw", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				logger.info("  - Catalogue services for the web...");
 
-		String thesauriDir = handlerConfig.getMandatoryValue(Geonet.Config.CODELIST_DIR);
+				String summaryConfigXmlFile = handlerConfig.getMandatoryValue(Geonet.Config.SUMMARY_CONFIG);
+				String luceneConfigXmlFile  = handlerConfig.getMandatoryValue(Geonet.Config.LUCENE_CONFIG);
 
-		thesaurusMan = new ThesaurusManager(path, thesauriDir);
+				CatalogConfiguration.loadCatalogConfig(path, Csw.CONFIG_FILE);
+				catalogDis = new CatalogDispatcher(new File(path,summaryConfigXmlFile), new File(path,luceneConfigXmlFile));
+			}
+		});
 
+		graph.add("oai", new StartupGraph.Task()
+		{
+			public void run() throws Exception
+			{
+				//--- resumption tokens are stateless, so the oai cachesize and tokentimeout
+				//--- settings are no longer used
+
+				int oaimode    = settingMan.getValueAsInt("system/oai/mdmode");
+				logger.info("  - Open Archive Initiative (OAI-PMH) server: mode"+oaimode);
+
+				oaipmhDis = new OaiPmhDispatcher(oaimode);
+			}
+		}, "settings");
+
+		long start = System.currentTimeMillis();
+
+		graph.run(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+		logger.info("  - Subsystems started in " +(System.currentTimeMillis() - start)+ " ms");
+
+        //------------------------------------------------------------------------
+		//--- initialize metadata notifier subsystem
+        MetadataNotifierManager metadataNotifierMan = new MetadataNotifierManager(dataMan);
+
+        logger.info("  - Metadata notifier ...");
 
 		//------------------------------------------------------------------------
-		//--- initialize Z39.50
+		//--- return application context
+
+		GeonetContext gnContext = new GeonetContext();
+
+		gnContext.accessMan   = accessMan;
+		gnContext.dataMan     = dataMan;
+		gnContext.searchMan   = searchMan;
+		gnContext.config      = handlerConfig;
+		gnContext.catalogDis  = catalogDis;
+		gnContext.settingMan  = settingMan;
+		gnContext.harvestMan  = harvestMan;
+		gnContext.thesaurusMan= thesaurusMan;
+		gnContext.oaipmhDis   = oaipmhDis;
+		gnContext.app_context = app_context;
+        gnContext.metadataNotifierMan = metadataNotifierMan;
+
+		logger.info("Site ID is : " + gnContext.getSiteId());
+
+        // Creates a default site logo, only if the logo image doesn't exists
+        // This can happen if the application has been updated with a new version preserving the database and
+        // images/logos folder is not copied from old application 
+        createSiteLogo(gnContext.getSiteId());
+
+        // Notify unregistered metadata at startup. Needed, for example, when the user enables the notifier config
+        // to notify the existing metadata in database
+        // TODO: Fix DataManager.getUnregisteredMetadata and uncomment next lines
+        MetadataNotifierControl metadataNotifierControl = new MetadataNotifierControl(context, gnContext);
+        metadataNotifierControl.runOnce();
+
+        searchMan.initAnalyzer(dbms);
+
+		return gnContext;
+	}
 
+
+	/** Initializes the thesaurus manager */
+
+	private void initThesauri(ServiceConfig handlerConfig) throws Exception
+	{
+		logger.info("  - Thesaurus...");
+
+		String  thesauriDir  = handlerConfig.getMandatoryValue(Geonet.Config.CODELIST_DIR);
+		boolean lazyThesauri = "true".equals(handlerConfig.getValue(Geonet.Config.LAZY_THESAURI, "false"));
+
+		thesaurusMan = new ThesaurusManager(path, thesauriDir, lazyThesauri);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Builds the Z39.50 repositories and starts the server if enabled */
+
+	private void initZ3950(ServiceContext context, ServiceConfig handlerConfig) throws Exception
+	{
 		logger.info("  - Z39.50...");
 
 		boolean z3950Enable    = settingMan.getValueAsBool("system/z3950/enable", false);
 		String  z3950port      = settingMan.getValue("system/z3950/port");
 		String  host           = settingMan.getValue("system/server/host");
 
-		// null means not initialized
-		ApplicationContext app_context = null;
-
 		// build Z3950 repositories file first from template
 		if (Repositories.build(path, context)) {
 			logger.info("     Repositories file built from template.");
@@ -188,127 +374,118 @@ public class Geonetwork implements ApplicationHandler
 		} else {
 			logger.error("     Repositories file builder FAILED - Z3950 server disabled and Z3950 client services (remote search, harvesting) may not work.");
 		}
+	}
 
-		//------------------------------------------------------------------------
-		//--- initialize search and editing
+	//---------------------------------------------------------------------------
+	/** Initializes the search manager. The in-memory spatial index is built
+	  * later, in the background */
 
+	private void initSearch(ServiceContext context, ServiceConfig handlerConfig) throws Exception
+	{
 		logger.info("  - Search...");
 
 		String htmlCacheDir = handlerConfig.getMandatoryValue(Geonet.Config.HTMLCACHE_DIR);
 		String luceneDir = path + handlerConfig.getMandatoryValue(Geonet.Config.LUCENE_DIR);
 		String summaryConfigXmlFile = handlerConfig.getMandatoryValue(Geonet.Config.SUMMARY_CONFIG);
-		String dataDir = path + handlerConfig.getMandatoryValue(Geonet.Config.DATA_DIR);
         String luceneConfigXmlFile = handlerConfig.getMandatoryValue(Geonet.Config.LUCENE_CONFIG);
         
 		DataStore dataStore = createDataStore(context.getResourceManager().getProps(Geonet.Res.MAIN_DB), luceneDir);
 	
 		searchMan = new SearchManager(path, luceneDir, htmlCacheDir, summaryConfigXmlFile, luceneConfigXmlFile, dataStore, settingMan, dbms);
+	}
 
-		//------------------------------------------------------------------------
-		//--- extract intranet ip/mask and initialize AccessManager
-
-		logger.info("  - Access manager...");
-
-		AccessManager accessMan = new AccessManager(dbms, settingMan);
-
-		//------------------------------------------------------------------------
-		//--- get edit params and initialize DataManager
+	//---------------------------------------------------------------------------
+	/** Initializes the data manager (which checks the index against the
+	  * database) and sets its schema cache */
 
+	private void initData(ServiceContext context, ServiceConfig handlerConfig) throws Exception
+	{
 		logger.info("  - Data manager...");
 
+		String htmlCacheDir = handlerConfig.getMandatoryValue(Geonet.Config.HTMLCACHE_DIR);
+		String dataDir = path + handlerConfig.getMandatoryValue(Geonet.Config.DATA_DIR);
+
 		File _htmlCacheDir = new File(htmlCacheDir);
 		if (!_htmlCacheDir.isAbsolute()) {
 			htmlCacheDir = path + htmlCacheDir;
 		}
-		DataManager dataMan = new DataManager(context, searchMan, accessMan, dbms, settingMan, baseURL, htmlCacheDir, dataDir, path);
+		dataMan = new DataManager(context, searchMan, accessMan, dbms, settingMan, context.getBaseUrl(), htmlCacheDir, dataDir, path);
 
-		String schemasDir = path + Geonet.Path.SCHEMAS;
-		String saSchemas[] = new File(schemasDir).list();
+		String schemaCacheDir = handlerConfig.getValue(Geonet.Config.SCHEMA_CACHE_DIR, "");
 
-		if (saSchemas == null)
-			throw new Exception("Cannot scan schemas directory : " +schemasDir);
-		else
+		if (schemaCacheDir.length() != 0)
 		{
-			for(int i=0; i<saSchemas.length; i++)
-				if (!saSchemas[i].equals("CVS") && !saSchemas[i].startsWith("."))
-				{
-					logger.info("    Adding xml schema : " +saSchemas[i]);
-					String schemaFile  = schemasDir + saSchemas[i] +"/"+ Geonet.File.SCHEMA;
-					String suggestFile = schemasDir + saSchemas[i] +"/"+ Geonet.File.SCHEMA_SUGGESTIONS;
-					String substitutesFile = schemasDir + saSchemas[i] +"/"+ Geonet.File.SCHEMA_SUBSTITUTES;
-
-					dataMan.addSchema(saSchemas[i], schemaFile, suggestFile, substitutesFile);
-				}
-		}
-
-		//------------------------------------------------------------------------
-		//--- initialize harvesting subsystem
-
-		logger.info("  - Harvest manager...");
+			File cacheDir = new File(schemaCacheDir);
 
-		HarvestManager harvestMan = new HarvestManager(context, settingMan, dataMan);
-		dataMan.setHarvestManager(harvestMan);
-
-		//------------------------------------------------------------------------
-		//--- initialize catalogue services for the web
-
-		logger.info("  - Catalogue services for the web...");
-
-		CatalogConfiguration.loadCatalogConfig(path, Csw.CONFIG_FILE);
-		CatalogDispatcher catalogDis = new CatalogDispatcher(new File(path,summaryConfigXmlFile), new File(path,luceneConfigXmlFile));
-
-		//------------------------------------------------------------------------
-		//--- initialize catalogue services for the web
-
-		int oaimode    = settingMan.getValueAsInt("system/oai/mdmode");
-		int  oaicachesize      = settingMan.getValueAsInt("system/oai/cachesize");
-		int  oaicachelifetime  = settingMan.getValueAsInt("system/oai/tokentimeout");
-		logger.info("  - Open Archive Initiative (OAI-PMH) server: mode"+oaimode+" cachesize: "+oaicachesize+" cachelifetime: "+oaicachelifetime);
-
-		OaiPmhDispatcher oaipmhDis = new OaiPmhDispatcher(oaimode,oaicachesize,oaicachelifetime);
+			if (!cacheDir.isAbsolute())
+				cacheDir = new File(path + schemaCacheDir);
 
+			dataMan.setSchemaCache(new SchemaCache(cacheDir));
+		}
+	}
 
-        //------------------------------------------------------------------------
-		//--- initialize metadata notifier subsystem
-        MetadataNotifierManager metadataNotifierMan = new MetadataNotifierManager(dataMan);
+	//---------------------------------------------------------------------------
+	/** Adds all the schemas of the schemas directory. Schemas are independent
+	  * of each other so they are loaded in parallel
+	  */
 
-        logger.info("  - Metadata notifier ...");
+	private void addSchemas(final DataManager dataMan, final String schemasDir) throws Exception
+	{
+		String saSchemas[] = new File(schemasDir).list();
 
-		//------------------------------------------------------------------------
-		//--- return application context
+		if (saSchemas == null)
+			throw new Exception("Cannot scan schemas directory : " +schemasDir);
 
-		GeonetContext gnContext = new GeonetContext();
+		int threads = Math.max(1, Math.min(saSchemas.length, Runtime.getRuntime().availableProcessors()));
 
-		gnContext.accessMan   = accessMan;
-		gnContext.dataMan     = dataMan;
-		gnContext.searchMan   = searchMan;
-		gnContext.config      = handlerConfig;
-		gnContext.catalogDis  = catalogDis;
-		gnContext.settingMan  = settingMan;
-		gnContext.harvestMan  = harvestMan;
-		gnContext.thesaurusMan= thesaurusMan;
-		gnContext.oaipmhDis   = oaipmhDis;
-		gnContext.app_context = app_context;
-        gnContext.metadataNotifierMan = metadataNotifierMan;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> tasks    = new ArrayList<Future<?>>();
 
-		logger.info("Site ID is : " + gnContext.getSiteId());
+		long start = System.currentTimeMillis();
 
-        // Creates a default site logo, only if the logo image doesn't exists
-        // This can happen if the application has been updated with a new version preserving the database and
-        // images/logos folder is not copied from old application 
-        createSiteLogo(gnContext.getSiteId());
+		try
+		{
+			for (final String schema : saSchemas)
+				if (!schema.equals("CVS") && !schema.startsWith("."))
+				{
+					tasks.add(executor.submit(new Callable<Object>()
+					{
+						public Object call() throws Exception
+						{
+							logger.info("    Adding xml schema : " +schema);
+							String schemaFile  = schemasDir + schema +"/"+ Geonet.File.SCHEMA;
+							String suggestFile = schemasDir + schema +"/"+ Geonet.File.SCHEMA_SUGGESTIONS;
+							String substitutesFile = schemasDir + schema +"/"+ Geonet.File.SCHEMA_SUBSTITUTES;
+
+							dataMan.addSchema(schema, schemaFile, suggestFile, substitutesFile);
+
+							return null;
+						}
+					}));
+				}
 
-        // Notify unregistered metadata at startup. Needed, for example, when the user enables the notifier config
-        // to notify the existing metadata in database
-        // TODO: Fix DataManager.getUnregisteredMetadata and uncomment next lines
-        MetadataNotifierControl metadataNotifierControl = new MetadataNotifierControl(context, gnContext);
-        metadataNotifierControl.runOnce();
+			for (Future<?> task : tasks)
+				try
+				{
+					task.get();
+				}
+				catch(ExecutionException e)
+				{
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
 
-        searchMan.initAnalyzer(dbms);
+					throw e;
+				}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
 
-		return gnContext;
+		logger.info("    Schemas loaded in " +(System.currentTimeMillis() - start)+ " ms");
 	}
 
+	//---------------------------------------------------------------------------
 
 	/**
 	 * Check if current database is running same version as the web application.
@@ -495,6 +672,12 @@ public class Geonetwork implements ApplicationHandler
 
 		logger.info("  - Z39.50...");
 		Server.end();
+
+		//------------------------------------------------------------------------
+		//--- end pooled HTTP connections
+
+		logger.info("  - HTTP connections...");
+		XmlRequest.shutdown();
 	}
 
 	
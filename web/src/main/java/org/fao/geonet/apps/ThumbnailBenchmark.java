@@ -0,0 +1,191 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.apps;
+
+import org.fao.geonet.util.ThumbnailMaker;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//=============================================================================
+
+/** Compares the time taken to create the thumbnails of PNG, JPEG and GIF
+  * images of several sizes with the old method (full decode and
+  * getScaledInstance) and with the ThumbnailMaker.
+  *
+  * usage: ThumbnailBenchmark [workDir] [size ...]
+  */
+
+public class ThumbnailBenchmark
+{
+	public static void main(String args[]) throws Exception
+	{
+		File dir = new File((args.length > 0) ? args[0] : System.getProperty("java.io.tmpdir"), "thumbnail-benchmark");
+
+		int sizes[] = { 800, 2000, 5000 };
+
+		if (args.length > 1)
+		{
+			sizes = new int[args.length -1];
+
+			for (int i=1; i<args.length; i++)
+				sizes[i-1] = Integer.parseInt(args[i]);
+		}
+
+		dir.mkdirs();
+
+		System.out.println("format    size     old (ms)   new (ms)");
+
+		for (String format : FORMATS)
+			for (int size : sizes)
+			{
+				File image = createImage(dir, format, size);
+
+				long oldTime = time(image, true);
+				long newTime = time(image, false);
+
+				System.out.println(pad(format, 10) + pad(size +"", 9) + pad(oldTime +"", 11) + newTime);
+
+				image.delete();
+			}
+
+		new File(dir, "small.png").delete();
+		new File(dir, "large.png").delete();
+		dir.delete();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static long time(File image, boolean old) throws Exception
+	{
+		File small = new File(image.getParentFile(), "small.png");
+		File large = new File(image.getParentFile(), "large.png");
+
+		long best = Long.MAX_VALUE;
+
+		for (int i=0; i<RUNS; i++)
+		{
+			long start = System.currentTimeMillis();
+
+			if (old)
+			{
+				createOld(ImageIO.read(image), SMALL_SIZE, small);
+				createOld(ImageIO.read(image), LARGE_SIZE, large);
+			}
+			else
+			{
+				List<ThumbnailMaker.Variant> variants = new ArrayList<ThumbnailMaker.Variant>();
+				variants.add(new ThumbnailMaker.Variant(SMALL_SIZE, "width", small));
+				variants.add(new ThumbnailMaker.Variant(LARGE_SIZE, "width", large));
+
+				ThumbnailMaker.createNow(image, variants);
+			}
+
+			best = Math.min(best, System.currentTimeMillis() - start);
+		}
+
+		return best;
+	}
+
+	//--------------------------------------------------------------------------
+	/** The thumbnail creation used before the ThumbnailMaker */
+
+	private static void createOld(BufferedImage origImg, int width, File outFile) throws Exception
+	{
+		int height = width * origImg.getHeight() / origImg.getWidth();
+
+		Image thumb = origImg.getScaledInstance(width, height, BufferedImage.SCALE_SMOOTH);
+
+		BufferedImage bimg = new BufferedImage(width, height, BufferedImage.TRANSLUCENT);
+
+		Graphics2D g = bimg.createGraphics();
+		g.drawImage(thumb, 0, 0, null);
+		g.dispose();
+
+		ImageIO.write(bimg, "png", outFile);
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static File createImage(File dir, String format, int size) throws Exception
+	{
+		int width  = size;
+		int height = size * 3 / 4;
+
+		int type = format.equals("png") ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+		BufferedImage img = new BufferedImage(width, height, type);
+		Graphics2D    g   = img.createGraphics();
+
+		g.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+		g.fillRect(0, 0, width, height);
+
+		Random random = new Random(size);
+
+		for (int i=0; i<200; i++)
+		{
+			g.setColor(new Color(random.nextInt(0xFFFFFF)));
+			g.fillOval(random.nextInt(width), random.nextInt(height), size / 10, size / 10);
+		}
+
+		g.dispose();
+
+		File file = new File(dir, "image-"+ size +"."+ format);
+
+		ImageIO.write(img, format, file);
+
+		return file;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static String pad(String s, int len)
+	{
+		StringBuffer sb = new StringBuffer(s);
+
+		while (sb.length() < len)
+			sb.append(' ');
+
+		return sb.toString();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static final String FORMATS[] = { "png", "jpeg", "gif" };
+
+	private static final int RUNS       = 3;
+	private static final int SMALL_SIZE = 180;
+	private static final int LARGE_SIZE = 400;
+}
+
+//=============================================================================
+
@@ -307,6 +307,14 @@ public class Geonet
 				 * {@value org.fao.geonet.constants.Geonet.Text#OFF} (default) */
 				public static final String SERVERHTML    = "serverhtml";
 
+        /** Parameter name: {@value #FEDERATED} - Boolean that indicates if
+         * the Z39.50 servers are queried concurrently, returning the results
+         * of the servers that have already answered while the others are
+         * still searched. Values are
+         * {@value org.fao.geonet.constants.Geonet.Text#ON} or
+         * {@value org.fao.geonet.constants.Geonet.Text#OFF} (default) */
+        public static final String FEDERATED     = "federated";
+
 	    /** Parameter name: {@value #HITS_PER_PAGE} - Number of results
 	     * returned by the search engine. Default is 10 results */
 		public static final String HITS_PER_PAGE = "hitsPerPage";
@@ -433,7 +441,9 @@ public class Geonet
 		public static final String SCHEMA_MAPPINGS  = "schemaMappings";
 		public static final String LICENSE_DIR      = "licenseDir";
 		public static final String DATA_DIR         = "dataDir";
+		public static final String SCHEMA_CACHE_DIR = "schemaCacheDir";
 		public static final String CODELIST_DIR  	  = "codeListDir";
+		public static final String LAZY_THESAURI    = "lazyThesauri";
 		public static final String DIR              = "dir";
 		public static final String SUMMARY_CONFIG   = "summaryConfig";
 		public static final String LUCENE_CONFIG    = "luceneConfig";
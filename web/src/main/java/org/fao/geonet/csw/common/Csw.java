@@ -122,6 +122,8 @@ public class Csw {
 				public static final String NUMBER_OF_KEYWORDS = "numberOfKeywords";
 				public static final String MAX_NUMBER_OF_RECORDS_FOR_KEYWORDS = "maxNumberOfRecordsForKeywords";
 				public static final String MAX_NUMBER_OF_RECORDS_FOR_PROPERTY_NAMES = "maxNumberOfRecordsForPropertyNames";
+				public static final String STREAM_RESPONSE = "streamResponse";
+				public static final String STREAM_THREADS = "streamThreads";
 			}
 		}
 
@@ -49,10 +49,13 @@ import org.fao.geonet.kernel.csw.domain.CswCapabilitiesInfo;
 import org.fao.geonet.kernel.csw.domain.CustomElementSet;
 import org.fao.geonet.kernel.harvest.HarvestManager;
 import org.fao.geonet.kernel.schema.MetadataSchema;
+import org.fao.geonet.kernel.schema.SchemaCache;
+import org.fao.geonet.kernel.search.IndexInfo;
 import org.fao.geonet.kernel.search.SearchManager;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.lib.Lib;
 import org.fao.geonet.util.ISODate;
+import org.fao.geonet.util.StartupStatus;
 import org.fao.geonet.util.spring.StringUtils;
 import org.jdom.Attribute;
 import org.jdom.Element;
@@ -106,7 +109,7 @@ public class DataManager
 		XmlSerializer.setSettingManager(ss);
 
         sm.initAnalyzer(dbms);
-		init(context, dbms, false);
+		init(context, dbms, false, true);
 	}
 
     private synchronized void finishRebuilding() { rebuilding = false; }
@@ -121,10 +124,24 @@ public class DataManager
 	 * @param force         Force reindexing all from scratch
 	 *
 	 **/
-	public synchronized void init(ServiceContext context, Dbms dbms, Boolean force) throws Exception {
+	public void init(ServiceContext context, Dbms dbms, Boolean force) throws Exception {
+		init(context, dbms, force, false);
+	}
+
+	/**
+	 * @param startup       True at startup: the index readiness status is only
+	 *                      set by the startup indexing
+	 */
+	private synchronized void init(ServiceContext context, Dbms dbms, Boolean force, boolean startup) throws Exception {
 
 		if (rebuilding) throw new OperationNotAllowedEx("Index rebuilding already in progress");
 
+		// records indexed with another analyzer (eg. other index languages) are all indexed again
+		if (!force && searchMan.isAnalyzerChanged()) {
+			Log.info(Geonet.DATA_MANAGER, "Index analyzer has changed: all records will be indexed again");
+			force = true;
+		}
+
 		// get all metadata from DB
 		Element result = dbms.select("SELECT id, changeDate FROM Metadata ORDER BY id ASC");
 		
@@ -172,10 +189,16 @@ public class DataManager
 		}
 
 		// if anything to index then schedule it to be done after servlet is
-		// up so that any links to local fragments are resolvable
+		// up so that any links to local fragments are resolvable. Until then
+		// the index is reported as not ready
 		if ( toIndex.size() > 0 ) {
+			if (startup) StartupStatus.starting(INDEX_STATUS);
 			Timer t = new Timer();
-			t.schedule(new IndexMetadataTask(context, toIndex), 10);
+			t.schedule(new IndexMetadataTask(context, toIndex, force, startup), 10);
+		}
+		else {
+			if (force) searchMan.setAnalyzerIndexed();
+			setIndexReady(force, startup);
 		}
 
 		if (docs.size() > 0) { // anything left?
@@ -207,7 +230,7 @@ public class DataManager
 
 			// execute indexing operation
 			Timer t = new Timer();
-			t.schedule(new IndexMetadataTask(context, toIndex), 10);
+			t.schedule(new IndexMetadataTask(context, toIndex, false, false), 10);
 		}
 	}
 
@@ -216,10 +239,18 @@ public class DataManager
 	class IndexMetadataTask extends TimerTask {
 		ServiceContext context;
 		ArrayList<Integer> toIndex;
-
-        IndexMetadataTask(ServiceContext context, ArrayList<Integer> toIndex) {
+		boolean all;
+		boolean startup;
+
+		/**
+		 * @param all	true if toIndex holds all records, which are then indexed with the current analyzer
+		 * @param startup	true for the startup indexing, which sets the index readiness status
+		 */
+        IndexMetadataTask(ServiceContext context, ArrayList<Integer> toIndex, boolean all, boolean startup) {
 			this.context = context;
 			this.toIndex = toIndex;
+			this.all = all;
+			this.startup = startup;
 		}
 
 		public void run() {
@@ -239,20 +270,36 @@ public class DataManager
 					for ( Integer id : toIndex ) {
 						indexMetadataGroup(dbms, id.toString());
 					}
+					if (all) searchMan.setAnalyzerIndexed();
 				} finally {
 					endIndexGroup();
 				}
+				Log.info(Geonet.DATA_MANAGER, IndexInfo.getReport());
 
 				//-- explicitly close Dbms resource to avoid exhausting Dbms pool
 				context.getResourceManager().close();
+
+				setIndexReady(all, startup);
 			} catch (Exception e) {
-				e.printStackTrace();
+				Log.error(Geonet.DATA_MANAGER, "Error while indexing metadata : " + e.getMessage(), e);
+				if (startup) StartupStatus.failed(INDEX_STATUS, e.getClass().getSimpleName());
 			} finally {
 				finishRebuilding();
 			}
 		}
 	}
 
+	//--------------------------------------------------------------------------
+	/**
+	 * The index readiness status is set by the startup indexing. A later
+	 * indexing of all records (eg. a rebuild requested by an administrator)
+	 * clears its failure.
+	 */
+	private static void setIndexReady(boolean all, boolean startup) {
+		if (startup || (all && StartupStatus.isFailed(INDEX_STATUS)))
+			StartupStatus.ready(INDEX_STATUS);
+	}
+
 	//--------------------------------------------------------------------------
 
 	public void indexMetadata(Dbms dbms, String id) throws Exception
@@ -449,6 +496,13 @@ public class DataManager
 
 	//--------------------------------------------------------------------------
 
+	public void setSchemaCache(SchemaCache cache)
+	{
+		editLib.setSchemaCache(cache);
+	}
+
+	//--------------------------------------------------------------------------
+
 	public MetadataSchema getSchema(String name)
 	{
 		return editLib.getSchema(name);
@@ -3115,6 +3169,10 @@ public class DataManager
     private String dataDir;
 	private String appPath;
 	private boolean rebuilding = false;
+
+	/** Name of the index in the StartupStatus: it is not ready while records
+	  * are being indexed */
+	private static final String INDEX_STATUS = "index";
 }
 
 //=============================================================================
@@ -34,6 +34,7 @@ import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.schema.MetadataAttribute;
 import org.fao.geonet.kernel.schema.MetadataSchema;
 import org.fao.geonet.kernel.schema.MetadataType;
+import org.fao.geonet.kernel.schema.SchemaCache;
 import org.fao.geonet.kernel.schema.SchemaLoader;
 import org.jdom.Attribute;
 import org.jdom.Content;
@@ -60,6 +61,8 @@ public class EditLib
 	private Hashtable<String, String> htSchemaDirs = new Hashtable<String, String>();
 	private Hashtable<String, SchemaSuggestions> htSchemaSugg = new Hashtable<String, SchemaSuggestions>();
 
+	private SchemaCache schemaCache;
+
 	//--------------------------------------------------------------------------
 	//---
 	//--- Constructor
@@ -82,14 +85,37 @@ public class EditLib
 	//---
 	//--------------------------------------------------------------------------
 
-	/** Loads the metadata schema from disk and adds it to the pool
+	/** Sets the cache used to avoid parsing unchanged schemas again (null
+	  * disables it)
+	  */
+
+	public void setSchemaCache(SchemaCache cache)
+	{
+		schemaCache = cache;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Loads the metadata schema from disk (or from the schema cache) and adds
+	  * it to the pool. Schemas can be added by several threads at once
 	  */
 
 	public void addSchema(String name, String xmlSchemaFile, String xmlSuggestFile, String xmlSubstitutionsFile) throws Exception
 	{
 		String path = new File(xmlSchemaFile).getParent() +"/";
 
-		MetadataSchema mds = new SchemaLoader().load(xmlSchemaFile, xmlSubstitutionsFile);
+		MetadataSchema mds = (schemaCache == null) ? null : schemaCache.get(name);
+
+		if (mds == null)
+		{
+			SchemaLoader loader = new SchemaLoader();
+			mds = loader.load(xmlSchemaFile, xmlSubstitutionsFile);
+
+			if (schemaCache != null && !loader.getLoadedFiles().isEmpty())
+				schemaCache.put(name, mds, loader.getLoadedFiles());
+		}
+		else
+			Log.debug(Geonet.DATA_MANAGER, "Schema loaded from cache : "+ name);
+
 		mds.setName(name);
 		mds.setSchemaDir(path);
 		mds.loadSchematronRules();
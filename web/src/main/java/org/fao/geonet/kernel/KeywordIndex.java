@@ -0,0 +1,463 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel;
+
+import org.openrdf.model.Graph;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.sesame.sail.StatementIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//=============================================================================
+
+/** In memory index of the preferred labels of a thesaurus, used to look up
+  * keywords without running a query on the repository. For each language the
+  * labels are kept in an array sorted on the lower case label: a prefix or
+  * exact match is a binary search, a contains match is a scan of the array.
+  * The arrays are replaced (never changed) when a concept is refreshed, so
+  * searches do not need to lock.
+  */
+
+public class KeywordIndex
+{
+	public static final int STARTS_WITH = 0;
+	public static final int CONTAINS    = 1;
+	public static final int EXACT       = 2;
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Builds the index from all concepts of the graph */
+
+	public KeywordIndex(Graph graph)
+	{
+		Predicates p = new Predicates(graph.getValueFactory());
+
+		StatementIterator it = graph.getStatements(null, p.prefLabel, null);
+
+		while (it.hasNext())
+		{
+			Resource subject = it.next().getSubject();
+
+			if (!concepts.containsKey(subject.toString()))
+				addConcept(graph, p, subject);
+		}
+
+		it.close();
+
+		Map<String, List<Entry>> lists = new HashMap<String, List<Entry>>();
+
+		for (Concept c : concepts.values())
+			for (Entry e : c.entries)
+			{
+				List<Entry> list = lists.get(e.lang);
+
+				if (list == null)
+				{
+					list = new ArrayList<Entry>();
+					lists.put(e.lang, list);
+				}
+
+				list.add(e);
+			}
+
+		Map<String, Entry[]> map = new HashMap<String, Entry[]>();
+
+		for (Map.Entry<String, List<Entry>> le : lists.entrySet())
+		{
+			Entry[] array = le.getValue().toArray(new Entry[le.getValue().size()]);
+			Arrays.sort(array, ORDER);
+			map.put(le.getKey(), array);
+		}
+
+		labels = map;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Returns at most maxHits labels of the given language that match the
+	  * keyword (ignoring case), ordered by label */
+
+	public List<Entry> search(String lang, String keyword, int type, int maxHits)
+	{
+		Entry[] array = labels.get(lang.toLowerCase());
+
+		if (array == null || maxHits <= 0)
+			return Collections.emptyList();
+
+		String key = keyword.toLowerCase();
+
+		List<Entry> hits = new ArrayList<Entry>();
+
+		switch (type)
+		{
+			case STARTS_WITH:
+				for (int i = lowerBound(array, key); i < array.length && hits.size() < maxHits; i++)
+				{
+					if (!array[i].key.startsWith(key))
+						break;
+
+					hits.add(array[i]);
+				}
+				break;
+
+			case CONTAINS:
+				for (int i = 0; i < array.length && hits.size() < maxHits; i++)
+					if (array[i].key.indexOf(key) != -1)
+						hits.add(array[i]);
+				break;
+
+			case EXACT:
+				for (int i = lowerBound(array, key); i < array.length && hits.size() < maxHits; i++)
+				{
+					if (!array[i].key.equals(key))
+						break;
+
+					hits.add(array[i]);
+				}
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown search type : "+ type);
+		}
+
+		return hits;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Reloads the labels of the given concepts from the graph. Concepts that
+	  * are no longer in the graph are removed */
+
+	public synchronized void refresh(Graph graph, URI ... subjects)
+	{
+		Predicates p = new Predicates(graph.getValueFactory());
+
+		List<Entry> removed = new ArrayList<Entry>();
+		List<Entry> added   = new ArrayList<Entry>();
+
+		for (URI subject : subjects)
+		{
+			Concept old = concepts.remove(subject.toString());
+
+			if (old != null)
+				removed.addAll(old.entries);
+
+			Concept c = addConcept(graph, p, subject);
+
+			if (c != null)
+				added.addAll(c.entries);
+		}
+
+		Map<String, Entry[]> map = new HashMap<String, Entry[]>(labels);
+
+		for (Entry e : removed)
+			map.put(e.lang, remove(map.get(e.lang), e));
+
+		for (Entry e : added)
+			map.put(e.lang, insert(map.get(e.lang), e));
+
+		labels = map;
+	}
+
+	//--------------------------------------------------------------------------
+
+	public int getSize() { return concepts.size(); }
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Reads the labels, notes and bounding box of a concept. Returns null if
+	  * the subject is not a concept with labels */
+
+	private Concept addConcept(Graph graph, Predicates p, Resource subject)
+	{
+		if (!has(graph, subject, p.type, p.concept))
+			return null;
+
+		Concept c = new Concept(subject.toString());
+
+		StatementIterator it = graph.getStatements(subject, p.scopeNote, null);
+
+		while (it.hasNext())
+		{
+			Value v = it.next().getObject();
+
+			if (v instanceof Literal && ((Literal) v).getLanguage() != null)
+				c.notes.put(((Literal) v).getLanguage().toLowerCase(), v.toString());
+		}
+
+		it.close();
+		it = graph.getStatements(subject, p.boundedBy, null);
+
+		while (it.hasNext())
+		{
+			Value v = it.next().getObject();
+
+			if (v instanceof Resource)
+			{
+				c.lowerCorner = getValue(graph, (Resource) v, p.lowerCorner, c.lowerCorner);
+				c.upperCorner = getValue(graph, (Resource) v, p.upperCorner, c.upperCorner);
+			}
+		}
+
+		it.close();
+		it = graph.getStatements(subject, p.prefLabel, null);
+
+		while (it.hasNext())
+		{
+			Value v = it.next().getObject();
+
+			if (v instanceof Literal && ((Literal) v).getLanguage() != null)
+				c.entries.add(new Entry(c, ((Literal) v).getLanguage().toLowerCase(), v.toString()));
+		}
+
+		it.close();
+
+		if (c.entries.isEmpty())
+			return null;
+
+		concepts.put(c.uri, c);
+
+		return c;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static boolean has(Graph graph, Resource subject, URI predicate, Value object)
+	{
+		StatementIterator it = graph.getStatements(subject, predicate, object);
+
+		try
+		{
+			return it.hasNext();
+		}
+		finally
+		{
+			it.close();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static String getValue(Graph graph, Resource subject, URI predicate, String def)
+	{
+		StatementIterator it = graph.getStatements(subject, predicate, null);
+
+		try
+		{
+			if (!it.hasNext())
+				return def;
+
+			Statement st = it.next();
+
+			return st.getObject().toString();
+		}
+		finally
+		{
+			it.close();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	/** Returns the position of the first entry whose key is not less than the
+	  * given one */
+
+	private static int lowerBound(Entry[] array, String key)
+	{
+		int low  = 0;
+		int high = array.length;
+
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+
+			if (array[mid].key.compareTo(key) < 0)	low  = mid + 1;
+				else											high = mid;
+		}
+
+		return low;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static Entry[] insert(Entry[] array, Entry e)
+	{
+		if (array == null)
+			return new Entry[] { e };
+
+		int pos = lowerBound(array, e.key);
+
+		Entry[] result = new Entry[array.length + 1];
+
+		System.arraycopy(array, 0,   result, 0,     pos);
+		System.arraycopy(array, pos, result, pos+1, array.length - pos);
+		result[pos] = e;
+
+		return result;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static Entry[] remove(Entry[] array, Entry e)
+	{
+		for (int i = lowerBound(array, e.key); i < array.length && array[i].key.equals(e.key); i++)
+			if (array[i] == e)
+			{
+				Entry[] result = new Entry[array.length - 1];
+
+				System.arraycopy(array, 0,   result, 0, i);
+				System.arraycopy(array, i+1, result, i, array.length - i - 1);
+
+				return result;
+			}
+
+		return array;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Entry : a label of a concept in one language
+	//---
+	//--------------------------------------------------------------------------
+
+	public static class Entry
+	{
+		Entry(Concept concept, String lang, String label)
+		{
+			this.concept = concept;
+			this.lang    = lang;
+			this.label   = label;
+			this.key     = label.toLowerCase();
+		}
+
+		//-----------------------------------------------------------------------
+
+		public String getLabel()       { return label;                   }
+		public String getUri()         { return concept.uri;             }
+		public String getLowerCorner() { return concept.lowerCorner;     }
+		public String getUpperCorner() { return concept.upperCorner;     }
+		public String getNote()        { return concept.notes.get(lang); }
+
+		//-----------------------------------------------------------------------
+
+		private final Concept concept;
+		private final String  lang;
+		private final String  label;
+		private final String  key;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Concept
+	//---
+	//--------------------------------------------------------------------------
+
+	private static class Concept
+	{
+		Concept(String uri)
+		{
+			this.uri = uri;
+		}
+
+		final String              uri;
+		final List<Entry>         entries = new ArrayList<Entry>();
+		final Map<String, String> notes   = new HashMap<String, String>();
+
+		String lowerCorner;
+		String upperCorner;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Predicates
+	//---
+	//--------------------------------------------------------------------------
+
+	private static class Predicates
+	{
+		Predicates(ValueFactory f)
+		{
+			type        = f.createURI(org.openrdf.vocabulary.RDF.TYPE);
+			concept     = f.createURI(SKOS, "Concept");
+			prefLabel   = f.createURI(SKOS, "prefLabel");
+			scopeNote   = f.createURI(SKOS, "scopeNote");
+			boundedBy   = f.createURI(GML,  "BoundedBy");
+			lowerCorner = f.createURI(GML,  "lowerCorner");
+			upperCorner = f.createURI(GML,  "upperCorner");
+		}
+
+		final URI type;
+		final URI concept;
+		final URI prefLabel;
+		final URI scopeNote;
+		final URI boundedBy;
+		final URI lowerCorner;
+		final URI upperCorner;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//--------------------------------------------------------------------------
+
+	private static final String SKOS = "http://www.w3.org/2004/02/skos/core#";
+	private static final String GML  = "http://www.opengis.net/gml#";
+
+	private static final Comparator<Entry> ORDER = new Comparator<Entry>()
+	{
+		public int compare(Entry e1, Entry e2)
+		{
+			return e1.key.compareTo(e2.key);
+		}
+	};
+
+	private volatile Map<String, Entry[]> labels;
+
+	private Map<String, Concept> concepts = new HashMap<String, Concept>();
+}
+
+//=============================================================================
+
@@ -22,6 +22,7 @@
 
 package org.fao.geonet.kernel;
 
+import jeeves.utils.BinaryFile;
 import jeeves.utils.Log;
 import jeeves.utils.Xml;
 import org.fao.geonet.constants.Geonet;
@@ -37,6 +38,7 @@ import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.sesame.config.AccessDeniedException;
 import org.openrdf.sesame.constants.QueryLanguage;
+import org.openrdf.sesame.constants.RDFFormat;
 import org.openrdf.sesame.query.MalformedQueryException;
 import org.openrdf.sesame.query.QueryEvaluationException;
 import org.openrdf.sesame.query.QueryResultsTable;
@@ -44,7 +46,11 @@ import org.openrdf.sesame.repository.local.LocalRepository;
 import org.openrdf.sesame.sail.StatementIterator;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
@@ -52,6 +58,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class Thesaurus {
@@ -63,12 +71,24 @@ public class Thesaurus {
 
 	private File thesaurusFile;
 
-	private LocalRepository repository;
+	private volatile LocalRepository repository;
+
+	private volatile FutureTask<LocalRepository> loader;
+
+	private KeywordIndex keywordIndex;
 
     private String title;
 
     private String date;
 
+    private boolean infoRetrieved;
+
+    private long loadTime = -1;
+
+    private long statements = -1;
+
+    private boolean fromSnapshot;
+
 	@SuppressWarnings("unused")
 	private String name;
 
@@ -97,8 +117,6 @@ public class Thesaurus {
 		this.type = type;
 		this.dname = dname;
 		this.thesaurusFile = thesaurusFile; 
-		
-        retrieveThesaurusInfo(thesaurusFile, type);
 	}
 
 	/**
@@ -125,14 +143,62 @@ public class Thesaurus {
 		return type;
 	}
 
-    public String getTitle() {
+    public synchronized String getTitle() {
+        if (!infoRetrieved)
+            retrieveThesaurusInfo(thesaurusFile, type);
 		return title;
 	}
 
-    public String getDate() {
+    public synchronized String getDate() {
+        if (!infoRetrieved)
+            retrieveThesaurusInfo(thesaurusFile, type);
 		return date;
 	}
 
+    /**
+     * Sets title and date from a snapshot, so that the rdf file does not
+     * need to be parsed.
+     */
+    synchronized void setInfo(String title, String date) {
+        this.title = (title == null) ? type : title;
+        this.date = date;
+        this.infoRetrieved = true;
+    }
+
+    /**
+     * @return true if the repository has been loaded
+     */
+    public boolean isLoaded() {
+        return repository != null;
+    }
+
+    /**
+     * @return load time in milliseconds or -1 if not loaded yet
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * @return number of statements or -1 if not known
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return true if the repository has been loaded from a snapshot
+     */
+    public boolean isFromSnapshot() {
+        return fromSnapshot;
+    }
+
+    void setLoadInfo(long loadTime, long statements, boolean fromSnapshot) {
+        this.loadTime = loadTime;
+        this.statements = statements;
+        this.fromSnapshot = fromSnapshot;
+    }
+
 	/**
 	 * 
 	 * @param fname
@@ -146,12 +212,116 @@ public class Thesaurus {
 				+ fname.substring(0, fname.indexOf(".rdf"));
 	}
 
+	/**
+	 * Returns the repository, loading it if needed. If the repository is
+	 * being loaded by another thread, waits for it.
+	 * 
+	 * @return
+	 */
 	public LocalRepository getRepository() {
+		FutureTask<LocalRepository> task = loader;
+
+		if (task != null) {
+			// does nothing if the task has already been started
+			task.run();
+
+			try {
+				repository = task.get();
+				loader = null;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while loading thesaurus : "+ getKey());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Cannot load thesaurus : "+ getKey(), e.getCause());
+			}
+		}
+
 		return repository;
 	}
 
 	public void setRepository(LocalRepository repository) {
 		this.repository = repository;
+		this.loader = null;
+	}
+
+	/**
+	 * Sets the task that loads the repository on first access.
+	 * 
+	 * @param loader
+	 */
+	void setLoader(FutureTask<LocalRepository> loader) {
+		this.repository = null;
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns the label index of the thesaurus, building it on first use.
+	 * 
+	 * @return
+	 * @throws AccessDeniedException
+	 */
+	public synchronized KeywordIndex getKeywordIndex() throws AccessDeniedException {
+		if (keywordIndex == null)
+			keywordIndex = new KeywordIndex(getRepository().getGraph());
+
+		return keywordIndex;
+	}
+
+	/**
+	 * Updates the label index for the changed concepts and writes the
+	 * repository back to the rdf file.
+	 * 
+	 * @param subjects
+	 * @throws IOException
+	 * @throws AccessDeniedException
+	 */
+	private synchronized void changed(URI ... subjects) throws IOException, AccessDeniedException {
+		if (keywordIndex != null)
+			keywordIndex.refresh(getRepository().getGraph(), subjects);
+
+		save();
+	}
+
+	/**
+	 * Writes the repository back to the rdf file. Called after each change.
+	 * 
+	 * @throws IOException
+	 * @throws AccessDeniedException
+	 */
+	public synchronized void save() throws IOException, AccessDeniedException {
+		File tmpFile = new File(thesaurusFile.getPath() + ".tmp");
+
+		InputStream is = getRepository().extractRDF(RDFFormat.RDFXML, true, true, true, true);
+		OutputStream os = new FileOutputStream(tmpFile);
+
+		try {
+			byte[] buffer = new byte[65536];
+			int n;
+
+			while ((n = is.read(buffer)) != -1)
+				os.write(buffer, 0, n);
+		} finally {
+			is.close();
+			os.close();
+		}
+
+		// the rename replaces the file atomically where the platform allows it
+		if (tmpFile.renameTo(thesaurusFile))
+			return;
+
+		// otherwise (eg. on Windows, where the target must not exist) the
+		// file is overwritten in place
+		InputStream in = new FileInputStream(tmpFile);
+
+		try {
+			BinaryFile.copy(in, new FileOutputStream(thesaurusFile), false, true);
+		} catch (IOException e) {
+			throw new IOException("Cannot write thesaurus file : " + thesaurusFile + " (" + e.getMessage() + ")");
+		} finally {
+			in.close();
+		}
+
+		tmpFile.delete();
 	}
 
 	public QueryResultsTable performRequest(String query) throws IOException,
@@ -159,7 +329,7 @@ public class Thesaurus {
 			AccessDeniedException {
 		System.out.println("Query : " + query);
         //printResultsTable(resultsTable);
-		return repository.performTableQuery(
+		return getRepository().performTableQuery(
 				QueryLanguage.SERQL, query);
 	}
 
@@ -211,7 +381,8 @@ public class Thesaurus {
 		Literal myObject2 = myFactory.createLiteral(note, lang);
 		myGraph.add(mySubject, myPredicate2, myObject2);
 
-		repository.addGraph(myGraph);
+		getRepository().addGraph(myGraph);
+		changed(mySubject);
 
 		return mySubject;
 	}
@@ -267,14 +438,14 @@ public class Thesaurus {
 		myGraph.add(gmlNode, predicateUpperCorner, upperCorner);
 		myGraph.add(gmlNode, predicateSrsName, srsNameURI);
 
-		repository.addGraph(myGraph);
-
+		getRepository().addGraph(myGraph);
+		changed(mySubject);
 	}
 
 	public void removeElement(KeywordBean keyword)
 			throws MalformedQueryException, QueryEvaluationException,
 			IOException, AccessDeniedException {		
-		Graph myGraph = repository.getGraph();
+		Graph myGraph = getRepository().getGraph();
 		ValueFactory myFactory = myGraph.getValueFactory();
 		
 		URI subject = myFactory.createURI(keyword.getNameSpaceCode(),keyword.getRelativeCode());
@@ -283,7 +454,7 @@ public class Thesaurus {
 			AtomicReference<Statement> st = new AtomicReference<Statement>(iter.next());
 			if (st.get().getObject() instanceof BNode) {
 				BNode node = (BNode) st.get().getObject();
-				repository.getGraph().remove(node, null, null);
+				myGraph.remove(node, null, null);
 			}
 			System.out.println(st.get().getSubject().toString() + " : "
 					+ st.get().getPredicate().getLocalName() + " : "
@@ -291,13 +462,26 @@ public class Thesaurus {
 		}
 
 		myGraph.remove(subject,null,null);
+		changed(subject);
 	}
 
 	public URI updateElement(String namespace, String id, String prefLab, String note, String lang)
 			throws IOException, MalformedQueryException,
 			QueryEvaluationException, AccessDeniedException, GraphException {
+		URI subject = updateLabels(namespace, id, prefLab, note, lang);
+		changed(subject);
+
+		return subject;
+	}
+
+	/**
+	 * Replaces the label and the definition of a concept for the given
+	 * language. The change is not saved.
+	 */
+	private URI updateLabels(String namespace, String id, String prefLab, String note, String lang)
+			throws AccessDeniedException, GraphException {
 		// Get thesaurus graph
-		Graph myGraph = repository.getGraph();		
+		Graph myGraph = getRepository().getGraph();		
 		
 		// Set namespace skos and predicates 
 		ValueFactory myFactory = myGraph.getValueFactory();
@@ -354,12 +538,12 @@ public class Thesaurus {
 			throws AccessDeniedException, IOException, MalformedQueryException,
 			QueryEvaluationException, GraphException {
 
-		// update label and definition
-		URI subject = updateElement(namespace, id, prefLab, note, lang);
+		// update label and definition, saved together with the bbox
+		URI subject = updateLabels(namespace, id, prefLab, note, lang);
 
 		// update bbox
 
-		Graph myGraph = repository.getGraph();
+		Graph myGraph = getRepository().getGraph();
 
 		ValueFactory myFactory = myGraph.getValueFactory();
 		String namespaceGml = "http://www.opengis.net/gml#";
@@ -407,11 +591,13 @@ public class Thesaurus {
 			myGraph.add(subjectGml, predicateLowerCorner, lowerCorner);
 			myGraph.add(subjectGml, predicateUpperCorner, upperCorner);
 		}
+
+		changed(subject);
 	}
 
 	public boolean isFreeCode(String namespace, String code) throws AccessDeniedException {
 		boolean res = true;				
-		Graph myGraph = repository.getGraph();
+		Graph myGraph = getRepository().getGraph();
 		ValueFactory myFactory = myGraph.getValueFactory();		
 		URI obj = myFactory.createURI(namespace,code);
 		Collection statementsCollection = myGraph.getStatementCollection(obj,null,null);
@@ -426,7 +612,7 @@ public class Thesaurus {
 	}
 
 	public void updateCode(String namespace, String oldcode, String newcode) throws AccessDeniedException, IOException {
-		Graph myGraph = repository.getGraph();
+		Graph myGraph = getRepository().getGraph();
 		//Graph myTmpGraph = new org.openrdf.model.impl.GraphImpl();
 		
 		ValueFactory myFactory = myGraph.getValueFactory();
@@ -448,6 +634,7 @@ public class Thesaurus {
 		myGraph.remove(oldobj,null,null);
 		myGraph.remove(null,null,oldobj);		
 		//repository.addGraph(myTmpGraph);
+		changed(oldobj, newobj);
 	}
 
     /**
@@ -458,6 +645,9 @@ public class Thesaurus {
      * @return
      */
     private void retrieveThesaurusInfo(File thesaurusFile, String defaultTitle) {
+        infoRetrieved = true;
+        this.title = defaultTitle;
+
         try {
             Element thesaurusEl = Xml.loadFile(thesaurusFile);
 
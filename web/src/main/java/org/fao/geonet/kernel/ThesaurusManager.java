@@ -25,6 +25,7 @@ package org.fao.geonet.kernel;
 import jeeves.utils.Log;
 import org.fao.geonet.constants.Geonet;
 import org.openrdf.sesame.Sesame;
+import org.openrdf.sesame.admin.DummyAdminListener;
 import org.openrdf.sesame.config.ConfigurationException;
 import org.openrdf.sesame.config.RepositoryConfig;
 import org.openrdf.sesame.config.SailConfig;
@@ -34,7 +35,16 @@ import org.openrdf.sesame.repository.local.LocalService;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 //=============================================================================
 
@@ -46,6 +56,13 @@ public class ThesaurusManager {
 
 	private String thesauriDirectory = null;
 
+	private File snapshotDirectory = null;
+
+	private boolean lazy;
+
+	/** Thesauri found at startup, loaded in parallel unless lazy */
+	private List<Thesaurus> pending = new ArrayList<Thesaurus>();
+
 	/**
 	 *
 	 * @param appPath
@@ -54,6 +71,20 @@ public class ThesaurusManager {
 	 */
 	public ThesaurusManager(String appPath, String thesauriRepository)
 			throws Exception {
+		this(appPath, thesauriRepository, false);
+	}
+
+	/**
+	 * Thesauri are loaded in parallel at startup. When lazy is true, each
+	 * thesaurus is loaded by the first request that uses it instead.
+	 * 
+	 * @param appPath
+	 * @param thesauriRepository
+	 * @param lazy
+	 * @throws Exception
+	 */
+	public ThesaurusManager(String appPath, String thesauriRepository, boolean lazy)
+			throws Exception {
 		// Get Sesame interface
 		service = Sesame.getService();
 
@@ -63,8 +94,16 @@ public class ThesaurusManager {
 			thesauriDir = new File(appPath + thesauriDir);
 
 		thesauriDirectory = thesauriDir.getAbsolutePath();
+		snapshotDirectory = new File(thesauriDir, SNAPSHOT_DIR);
+
+		this.lazy = lazy;
 
 		initThesauriTable(thesauriDir);
+
+		if (!lazy)
+			loadPending();
+
+		pending.clear();
 	}
 
 	/**
@@ -132,7 +171,8 @@ public class ThesaurusManager {
 
             Thesaurus gst = new Thesaurus(aRdfDataFile, root, thesauriDirectory.getName(), new File(thesauriDirectory, aRdfDataFile));
             try {
-                addThesaurus(gst);
+                register(gst);
+                pending.add(gst);
             }
             catch (Exception e) {
                 e.printStackTrace();
@@ -141,12 +181,74 @@ public class ThesaurusManager {
         }
 	}
 
+	/**
+	 * Loads the thesauri found at startup using one thread per processor and
+	 * waits for them. Thesauri that cannot be loaded are removed.
+	 */
+	private void loadPending() {
+		int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), pending.size()));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Thesaurus loader");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		long start = System.currentTimeMillis();
+
+		List<FutureTask<LocalRepository>> tasks = new ArrayList<FutureTask<LocalRepository>>();
+
+		for (Thesaurus gst : pending) {
+			FutureTask<LocalRepository> task = createLoader(gst);
+			gst.setLoader(task);
+			tasks.add(task);
+			executor.execute(task);
+		}
+
+		executor.shutdown();
+
+		for (int i = 0; i < tasks.size(); i++) {
+			Thesaurus gst = pending.get(i);
+
+			try {
+				gst.setRepository(tasks.get(i).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				// the loader has logged the error and removed the thesaurus
+			}
+		}
+
+		Log.info(Geonet.THESAURUS_MAN, "Loaded "+ pending.size() +" thesauri in "
+					+ (System.currentTimeMillis() - start) +" ms using "+ threads +" threads");
+	}
+
 	/**
 	 *
 	 * @param gst
 	 */
 	public void addThesaurus(Thesaurus gst) throws Exception {
 
+		register(gst);
+
+		try {
+			gst.setRepository(load(gst));
+		} catch (Exception e) {
+			thesauriTable.remove(gst.getKey());
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds the thesaurus to the table, without loading it.
+	 * 
+	 * @param gst
+	 */
+	private void register(Thesaurus gst) throws Exception {
+
 		String thesaurusName = gst.getKey();
 
 		Log.debug(Geonet.THESAURUS_MAN, "Adding thesaurus : "+ thesaurusName);
@@ -155,28 +257,128 @@ public class ThesaurusManager {
 			throw new Exception ("A thesaurus exists with code " + thesaurusName);
 		}
 
+		if (lazy) {
+			gst.setLoader(createLoader(gst));
+			readSnapshotInfo(gst);
+		}
+
+		thesauriTable.put(thesaurusName, gst);
+	}
+
+	/**
+	 * Sets the title and date of a thesaurus that is not loaded yet from its
+	 * snapshot, so that listing the thesauri does not parse their rdf files.
+	 * Without a valid snapshot they are read from the rdf file when needed.
+	 * 
+	 * @param gst
+	 */
+	private void readSnapshotInfo(Thesaurus gst) {
+		ThesaurusSnapshot snapshot = new ThesaurusSnapshot(snapshotDirectory, gst.getKey());
+
+		try {
+			if (snapshot.isValid(gst.getFile()))
+				gst.setInfo(snapshot.getTitle(), snapshot.getDate());
+		} catch (IOException e) {
+			Log.warning(Geonet.THESAURUS_MAN, "Cannot read snapshot of : "+ gst.getKey() +" ("+ e.getMessage() +")");
+		}
+	}
+
+	/**
+	 * A thesaurus that cannot be loaded is removed from the table, so that it
+	 * is not listed any more.
+	 * 
+	 * @param gst
+	 * @return a task that loads the repository of the thesaurus
+	 */
+	private FutureTask<LocalRepository> createLoader(final Thesaurus gst) {
+		return new FutureTask<LocalRepository>(new Callable<LocalRepository>() {
+			public LocalRepository call() throws Exception {
+				try {
+					return load(gst);
+				} catch (Exception e) {
+					Log.error(Geonet.THESAURUS_MAN, "Cannot load thesaurus : "+ gst.getKey() +" ("+ e +")");
+
+					synchronized (thesauriTable) {
+						if (thesauriTable.get(gst.getKey()) == gst)
+							thesauriTable.remove(gst.getKey());
+					}
+
+					throw e;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Creates the repository of the thesaurus and fills it from its snapshot,
+	 * if the snapshot is still valid, or from the rdf file, writing a new
+	 * snapshot. The repository is kept in memory only: changes are written back
+	 * to the rdf file by the thesaurus itself.
+	 * 
+	 * @param gst
+	 * @return
+	 */
+	private LocalRepository load(Thesaurus gst) throws Exception {
+
+		long start = System.currentTimeMillis();
+
 		LocalRepository thesaurusRepository;
 		try {
 			RepositoryConfig repConfig = new RepositoryConfig(gst.getKey());
 
 			SailConfig syncSail = new SailConfig("org.openrdf.sesame.sailimpl.sync.SyncRdfSchemaRepository");
-			SailConfig memSail = new org.openrdf.sesame.sailimpl.memory.RdfSchemaRepositoryConfig(
-			                                                   gst.getFile().getAbsolutePath(), RDFFormat.RDFXML);
+			SailConfig memSail = new SailConfig("org.openrdf.sesame.sailimpl.memory.RdfSchemaRepository");
 			repConfig.addSail(syncSail);
 			repConfig.addSail(memSail);
 			repConfig.setWorldReadable(true);
 			repConfig.setWorldWriteable(true);
 
-			thesaurusRepository = service.createRepository(repConfig);
-
-			gst.setRepository(thesaurusRepository);
-
-			thesauriTable.put(thesaurusName, gst);
+			// the repository is empty, so this is quick
+			synchronized (service) {
+				thesaurusRepository = service.createRepository(repConfig);
+			}
 
 		} catch (ConfigurationException e) {
 			e.printStackTrace();
 			throw e;
 		}
+
+		File rdfFile = gst.getFile();
+		String baseURI = rdfFile.toURI().toString();
+		ThesaurusSnapshot snapshot = new ThesaurusSnapshot(snapshotDirectory, gst.getKey());
+
+		boolean valid = false;
+		try {
+			valid = snapshot.isValid(rdfFile);
+		} catch (IOException e) {
+			Log.warning(Geonet.THESAURUS_MAN, "Cannot read snapshot of : "+ gst.getKey() +" ("+ e.getMessage() +")");
+		}
+
+		long statements = -1;
+
+		if (valid) {
+			thesaurusRepository.addData(snapshot.getDataFile(), baseURI, RDFFormat.NTRIPLES, false, new DummyAdminListener());
+			gst.setInfo(snapshot.getTitle(), snapshot.getDate());
+			statements = snapshot.getStatements();
+		} else {
+			thesaurusRepository.addData(rdfFile, baseURI, RDFFormat.RDFXML, false, new DummyAdminListener());
+
+			try {
+				snapshot.write(thesaurusRepository, gst);
+				statements = snapshot.getStatements();
+			} catch (Exception e) {
+				Log.warning(Geonet.THESAURUS_MAN, "Cannot write snapshot of : "+ gst.getKey() +" ("+ e.getMessage() +")");
+				snapshot.delete();
+			}
+		}
+
+		long time = System.currentTimeMillis() - start;
+		gst.setLoadInfo(time, statements, valid);
+
+		Log.debug(Geonet.THESAURUS_MAN, "Thesaurus "+ gst.getKey() +" loaded in "+ time +" ms"
+					+ (valid ? " from snapshot" : ""));
+
+		return thesaurusRepository;
 	}
 
 	/**
@@ -184,8 +386,12 @@ public class ThesaurusManager {
 	 * @param name
 	 */
 	public void remove(String name){
-		service.removeRepository(name);
-		thesauriTable.remove(name);
+		Thesaurus gst = thesauriTable.remove(name);
+
+		if (gst != null && gst.isLoaded())
+			service.removeRepository(name);
+
+		new ThesaurusSnapshot(snapshotDirectory, name).delete();
 	}
 
 	// =============================================================================
@@ -212,6 +418,8 @@ public class ThesaurusManager {
 	}
 	// =============================================================================
 
+	private static final String SNAPSHOT_DIR = ".snapshots";
+
 	public static void main(String[] args) throws Exception {
 	/*	ThesaurusManager tm = new ThesaurusManager("",
 				"E:\\workspace3.2\\TestSesame\\res\\codelist\\");*/
@@ -0,0 +1,268 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel;
+
+import org.openrdf.sesame.config.AccessDeniedException;
+import org.openrdf.sesame.constants.RDFFormat;
+import org.openrdf.sesame.repository.local.LocalRepository;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+//=============================================================================
+
+/** Snapshot of a thesaurus in N-Triples format, which is a lot faster to load
+  * than the RDF/XML file. The snapshot is kept together with the checksum of
+  * the RDF file it has been made from and it is only used while the RDF file
+  * has the same checksum. The title and date of the thesaurus are saved too,
+  * so that the RDF file does not need to be parsed at all.
+  */
+
+class ThesaurusSnapshot
+{
+	//--------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//--------------------------------------------------------------------------
+
+	public ThesaurusSnapshot(File dir, String key)
+	{
+		dataFile = new File(dir, key +".nt");
+		infoFile = new File(dir, key +".properties");
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//--------------------------------------------------------------------------
+
+	public File getDataFile() { return dataFile; }
+
+	public String getTitle()      { return info.getProperty(TITLE); }
+	public String getDate()       { return info.getProperty(DATE);  }
+	public long   getStatements() { return getLong(STATEMENTS);     }
+
+	//--------------------------------------------------------------------------
+	/** Returns true if the snapshot has been made from the given RDF file. The
+	  * checksum is computed only if the size or the date of the file differ
+	  * from the saved ones */
+
+	public boolean isValid(File rdfFile) throws IOException
+	{
+		if (!dataFile.exists() || !infoFile.exists())
+			return false;
+
+		InputStream is = new FileInputStream(infoFile);
+
+		try
+		{
+			info.load(is);
+		}
+		finally
+		{
+			is.close();
+		}
+
+		if (rdfFile.length() == getLong(LENGTH) && rdfFile.lastModified() == getLong(MODIFIED))
+			return true;
+
+		return checksum(rdfFile).equals(info.getProperty(CHECKSUM));
+	}
+
+	//--------------------------------------------------------------------------
+	/** Writes the content of the repository and the info of the thesaurus. Both
+	  * files are written to temporary files first, so that a failure does not
+	  * leave a partial snapshot behind */
+
+	public void write(LocalRepository repository, Thesaurus thesaurus) throws IOException,
+																									  AccessDeniedException
+	{
+		File rdfFile = thesaurus.getFile();
+		File dataTmp = new File(dataFile.getPath() +".tmp");
+		File infoTmp = new File(infoFile.getPath() +".tmp");
+
+		dataFile.getParentFile().mkdirs();
+
+		long statements = copy(repository.extractRDF(RDFFormat.NTRIPLES, true, true, true, false), dataTmp);
+
+		info.clear();
+		info.setProperty(CHECKSUM,   checksum(rdfFile));
+		info.setProperty(LENGTH,     Long.toString(rdfFile.length()));
+		info.setProperty(MODIFIED,   Long.toString(rdfFile.lastModified()));
+		info.setProperty(STATEMENTS, Long.toString(statements));
+
+		if (thesaurus.getTitle() != null)
+			info.setProperty(TITLE, thesaurus.getTitle());
+
+		if (thesaurus.getDate() != null)
+			info.setProperty(DATE, thesaurus.getDate());
+
+		OutputStream os = new FileOutputStream(infoTmp);
+
+		try
+		{
+			info.store(os, "Snapshot of "+ rdfFile.getName());
+		}
+		finally
+		{
+			os.close();
+		}
+
+		dataFile.delete();
+		infoFile.delete();
+
+		if (!dataTmp.renameTo(dataFile) || !infoTmp.renameTo(infoFile))
+			throw new IOException("Cannot rename snapshot of : "+ rdfFile);
+	}
+
+	//--------------------------------------------------------------------------
+
+	public void delete()
+	{
+		dataFile.delete();
+		infoFile.delete();
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Copies the stream to the file and returns the number of lines, which
+	  * is the number of statements in N-Triples */
+
+	private static long copy(InputStream is, File file) throws IOException
+	{
+		OutputStream os = new FileOutputStream(file);
+
+		long   lines  = 0;
+		byte[] buffer = new byte[BUFFER_SIZE];
+
+		try
+		{
+			int n;
+
+			while ((n = is.read(buffer)) != -1)
+			{
+				for (int i=0; i<n; i++)
+					if (buffer[i] == '\n')
+						lines++;
+
+				os.write(buffer, 0, n);
+			}
+		}
+		finally
+		{
+			is.close();
+			os.close();
+		}
+
+		return lines;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static String checksum(File file) throws IOException
+	{
+		MessageDigest md;
+
+		try
+		{
+			md = MessageDigest.getInstance("MD5");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IOException("MD5 not available : "+ e.getMessage());
+		}
+
+		InputStream is     = new FileInputStream(file);
+		byte[]      buffer = new byte[BUFFER_SIZE];
+
+		try
+		{
+			int n;
+
+			while ((n = is.read(buffer)) != -1)
+				md.update(buffer, 0, n);
+		}
+		finally
+		{
+			is.close();
+		}
+
+		StringBuffer sb = new StringBuffer();
+
+		for (byte b : md.digest())
+			sb.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+
+		return sb.toString();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private long getLong(String name)
+	{
+		try
+		{
+			return Long.parseLong(info.getProperty(name, "-1"));
+		}
+		catch(NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//--------------------------------------------------------------------------
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private static final String CHECKSUM   = "checksum";
+	private static final String LENGTH     = "length";
+	private static final String MODIFIED   = "lastModified";
+	private static final String STATEMENTS = "statements";
+	private static final String TITLE      = "title";
+	private static final String DATE       = "date";
+
+	private File dataFile;
+	private File infoFile;
+
+	private Properties info = new Properties();
+}
+
+//=============================================================================
+
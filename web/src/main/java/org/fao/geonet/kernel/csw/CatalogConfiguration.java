@@ -56,6 +56,8 @@ public class CatalogConfiguration {
 	private static final Set<String> _getRecordsOutputSchema = new HashSet<String>();
 	private static final Set<String> _getRecordsTypenames = new HashSet<String>();
 	private static final Set<String> _getRecordsRangeFields = new HashSet<String>();
+	private static boolean _getRecordsStreamResponse = false;
+	private static int _getRecordsStreamThreads = 0;
 	
 	// DescribeRecord variables
 	private static final HashMap<String, String> _describeRecordTypenames = new HashMap<String, String>();
@@ -215,6 +217,15 @@ public class CatalogConfiguration {
             _fieldMappingXPath.put(name.toLowerCase(), xpathMap);
 		}
 		
+		// Response streaming
+		Element stream = operation.getChild(Csw.ConfigFile.Operation.Child.STREAM_RESPONSE);
+		if (stream != null)
+			_getRecordsStreamResponse = stream.getTextTrim().equals("true");
+
+		stream = operation.getChild(Csw.ConfigFile.Operation.Child.STREAM_THREADS);
+		if (stream != null && stream.getText() != null)
+			_getRecordsStreamThreads = Integer.parseInt(stream.getTextTrim());
+
 		// OutputFormat parameter
 		_getRecordsOutputFormat.addAll(getOutputFormat(operation));
 		
@@ -303,6 +314,20 @@ public class CatalogConfiguration {
 		return _maxNumberOfRecordsForPropertyNames;
 	}
 
+	/**
+	 * @return true if GetRecords results are written while they are retrieved
+	 */
+	public static boolean isGetRecordsStreamResponse() {
+		return _getRecordsStreamResponse;
+	}
+
+	/**
+	 * @return the number of threads transforming streamed GetRecords results
+	 */
+	public static int getGetRecordsStreamThreads() {
+		return _getRecordsStreamThreads;
+	}
+
 	/**
 	 * @return the _describeRecordTypenames
 	 */
@@ -27,11 +27,19 @@ import jeeves.server.context.ServiceContext;
 import jeeves.utils.Log;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.Sort;
-import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.OpenBitSet;
 import org.apache.lucene.util.ReaderUtil;
 import org.fao.geonet.GeonetContext;
 import org.fao.geonet.constants.Geonet;
@@ -43,7 +51,7 @@ import org.fao.geonet.kernel.csw.CatalogConfiguration;
 import org.fao.geonet.kernel.csw.CatalogDispatcher;
 import org.fao.geonet.kernel.csw.CatalogService;
 import org.fao.geonet.kernel.csw.services.getrecords.CatalogSearcher;
-import org.fao.geonet.kernel.search.LuceneSearcher;
+import org.fao.geonet.kernel.search.IndexInfo;
 import org.fao.geonet.kernel.search.SearchManager;
 import org.fao.geonet.kernel.search.SummaryComparator;
 import org.fao.geonet.kernel.search.SummaryComparator.SortOption;
@@ -51,11 +59,13 @@ import org.fao.geonet.kernel.search.SummaryComparator.Type;
 import org.fao.geonet.kernel.search.spatial.Pair;
 import org.jdom.Element;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -181,16 +191,12 @@ public class GetDomain extends AbstractOperation implements CatalogService
 			GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
 			SearchManager sm = gc.getSearchmanager();
 			
-			IndexSearcher searcher = sm.getNewIndexSearcher().two();
+			Pair<Long,IndexSearcher> searcherPair = sm.getNewIndexSearcher();
+			IndexSearcher searcher = searcherPair.two();
+			long generation = searcherPair.one();
 
 			try {
 				Query query = CatalogSearcher.getGroupsQuery(context);
-				Sort   sort = LuceneSearcher.makeSort(Collections.singletonList(Pair.read(Geonet.SearchResult.SortBy.RELEVANCE, true)));
-				CachingWrapperFilter filter = null;
-
-				Pair<TopDocs,Element> searchResults = LuceneSearcher.doSearchAndMakeSummary( maxRecords, 0, maxRecords, Integer.MAX_VALUE, context.getLanguage(), "results", new Element("summary"), searcher, query, filter, sort, false);
-				TopDocs hits = searchResults.one();
-		
 				
 				try {
 					// Get mapped lucene field in CSW configuration
@@ -200,7 +206,7 @@ public class GetDomain extends AbstractOperation implements CatalogService
 						property = indexField;
 	
 					// check if property name asked for is actually one of those we index
-					Collection<String> indexedFieldNames = ReaderUtil.getIndexedFields(searcher.getIndexReader());
+					Collection<String> indexedFieldNames = _cache.getIndexedFields(generation, searcher.getIndexReader());
 					if (!indexedFieldNames.contains(property)) continue;
 					
 					boolean isRange = false;
@@ -213,31 +219,9 @@ public class GetDomain extends AbstractOperation implements CatalogService
 					else	
 						listOfValues = new Element("ListOfValues", Csw.NAMESPACE_CSW);
 
-					//List<String> fields = new ArrayList<String>();
-					//fields.add(property);
-					//fields.add("_isTemplate");
-					String fields[] = new String[] { property, "_isTemplate" };
-					MapFieldSelector selector = new MapFieldSelector(fields);
-	
-					// parse each document in the index
-					String[] fieldValues;
-					SortedSet<String> sortedValues = new TreeSet<String>();
-					HashMap<String, Integer> duplicateValues = new HashMap<String, Integer>();
-					for (int j = 0; j < hits.scoreDocs.length; j++) {
-						Document doc = searcher.getIndexReader().document(hits.scoreDocs[j].doc, selector);
-						
-						// Skip templates and subTemplates
-						String[] isTemplate = doc.getValues("_isTemplate");
-						if (isTemplate[0] != null && !isTemplate[0].equals("n"))
-							continue;
-						
-						// Get doc values for specified property
-						fieldValues = doc.getValues(property);
-						if (fieldValues == null)
-							continue;
-						
-						addtoSortedSet(sortedValues, fieldValues, duplicateValues);
-					}
+					Map<String, Integer> duplicateValues = getDomain(generation, searcher, query, property,
+							maxRecords, sm.isSingleTermField(property));
+					SortedSet<String> sortedValues = new TreeSet<String>(duplicateValues.keySet());
 					
 					SummaryComparator valuesComparator = new SummaryComparator(SortOption.FREQUENCY, Type.STRING, context.getLanguage(), null);
 					TreeSet<Map.Entry<String, Integer>> sortedValuesFrequency = new TreeSet<Map.Entry<String, Integer>>(valuesComparator);
@@ -339,22 +323,132 @@ public class GetDomain extends AbstractOperation implements CatalogService
 	}
 
 	//---------------------------------------------------------------------------
-	
+
 	/**
-	 * @param sortedValues
-	 * @param fieldValues
-	 * @param duplicateValues 
+	 * Gets the values of a property, with their frequency, in the first
+	 * maxRecords records (templates excluded) visible with the given query.
+	 * Results are cached until the index changes.
+	 * 
+	 * @param singleTerm
+	 *            true if each value of the property is indexed as one term. The
+	 *            values are then read from the terms of the field, otherwise
+	 *            they are read from the stored fields of each record.
+	 */
+	private static Map<String, Integer> getDomain(long generation, IndexSearcher searcher, Query query,
+			String property, int maxRecords, boolean singleTerm) throws IOException {
+
+		String key = property + "|" + maxRecords + "|" + query;
+		Map<String, Integer> values = _cache.getDomain(generation, key);
+
+		if (values != null)
+			return values;
+
+		OpenBitSet hits = collectHits(searcher, query, maxRecords);
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+
+		if (singleTerm)
+			countTerms(searcher.getIndexReader(), property, hits, counts);
+		else
+			countStoredValues(searcher.getIndexReader(), property, hits, counts);
+
+		values = Collections.unmodifiableMap(counts);
+		_cache.putDomain(generation, key, values);
+
+		return values;
+	}
+
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Marks the first maxRecords records (in index order) that match the query
+	 * and are not templates.
+	 */
+	private static OpenBitSet collectHits(IndexSearcher searcher, Query query, final int maxRecords)
+			throws IOException {
+		final OpenBitSet hits = new OpenBitSet(searcher.maxDoc());
+
+		searcher.search(query, NO_TEMPLATES, new Collector() {
+			public void setScorer(Scorer scorer) {}
+
+			public void setNextReader(IndexReader reader, int docBase) {
+				this.docBase = docBase;
+			}
+
+			public void collect(int doc) {
+				if (count < maxRecords) {
+					hits.set(docBase + doc);
+					count++;
+				}
+			}
+
+			public boolean acceptsDocsOutOfOrder() {
+				return false;
+			}
+
+			private int docBase;
+			private int count;
+		});
+
+		return hits;
+	}
+
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Counts the hits of each term of the field.
+	 */
+	private static void countTerms(IndexReader reader, String field, OpenBitSet hits,
+			HashMap<String, Integer> counts) throws IOException {
+		TermEnum terms = reader.terms(new Term(field, ""));
+		TermDocs termDocs = reader.termDocs();
+
+		try {
+			do {
+				Term term = terms.term();
+
+				if (term == null || !term.field().equals(field))
+					break;
+
+				int count = 0;
+				termDocs.seek(terms);
+
+				while (termDocs.next()) {
+					if (hits.get(termDocs.doc()))
+						count++;
+				}
+
+				if (count > 0)
+					counts.put(term.text(), count);
+			} while (terms.next());
+		} finally {
+			terms.close();
+			termDocs.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------
+
+	/**
+	 * Counts the stored values of the field in the hits. The values of system
+	 * fields are read from the packed info record when they are stored there.
 	 */
-	private static void addtoSortedSet(SortedSet<String> sortedValues,
-			String[] fieldValues, HashMap<String, Integer> duplicateValues) {
-		for (String value : fieldValues) {
-			sortedValues.add(value);
-			if (duplicateValues.containsKey(value)) {
-				int nb = duplicateValues.get(value);
-				duplicateValues.remove(value);
-				duplicateValues.put(value, nb+1);
-			} else 
-				duplicateValues.put(value, 1);
+	private static void countStoredValues(IndexReader reader, String field, OpenBitSet hits,
+			HashMap<String, Integer> counts) throws IOException {
+		boolean packed = IndexInfo.isPacked(field);
+		MapFieldSelector selector = packed
+				? new MapFieldSelector(new String[] { field, IndexInfo.FIELD })
+				: new MapFieldSelector(new String[] { field });
+
+		for (int doc = hits.nextSetBit(0); doc != -1; doc = hits.nextSetBit(doc + 1)) {
+			Document document = reader.document(doc, selector);
+
+			if (packed)
+				IndexInfo.expand(document);
+
+			for (String value : document.getValues(field)) {
+				Integer nb = counts.get(value);
+				counts.put(value, (nb == null) ? 1 : nb + 1);
+			}
 		}
 	}
 	
@@ -401,7 +495,67 @@ public class GetDomain extends AbstractOperation implements CatalogService
         }
 		return values;
 	}
-	
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- DomainCache : domains and indexed fields of the current index searcher
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class DomainCache {
+		private static final int MAX_DOMAINS = 100;
+
+		private long generation = -1;
+		private Collection<String> indexedFields;
+		private final Map<String, Map<String, Integer>> domains = new LinkedHashMap<String, Map<String, Integer>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, Integer>> eldest) {
+				return size() > MAX_DOMAINS;
+			}
+		};
+
+		public synchronized Collection<String> getIndexedFields(long generation, IndexReader reader) {
+			check(generation);
+
+			if (indexedFields == null)
+				indexedFields = ReaderUtil.getIndexedFields(reader);
+
+			return indexedFields;
+		}
+
+		public synchronized Map<String, Integer> getDomain(long generation, String key) {
+			check(generation);
+
+			return domains.get(key);
+		}
+
+		public synchronized void putDomain(long generation, String key, Map<String, Integer> domain) {
+			if (generation == this.generation)
+				domains.put(key, domain);
+		}
+
+		//--- drop everything when the searcher has changed
+
+		private void check(long generation) {
+			if (generation != this.generation) {
+				this.generation = generation;
+				indexedFields = null;
+				domains.clear();
+			}
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final Filter NO_TEMPLATES = new CachingWrapperFilter(
+			new QueryWrapperFilter(new TermQuery(new Term("_isTemplate", "n"))));
+
+	private static final DomainCache _cache = new DomainCache();
 }
 
 //=============================================================================
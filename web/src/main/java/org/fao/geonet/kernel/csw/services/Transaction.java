@@ -54,6 +54,13 @@ import org.jdom.Namespace;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 //=============================================================================
 
@@ -115,16 +122,9 @@ public class Transaction extends AbstractOperation implements CatalogService
 
                     // insert to database, and get the number of inserted successful
                     if (transactionType.equals("insert")) {
-                        Iterator<Element> inIt = mdList.iterator();
                         dataMan.startIndexGroup();
                         try {
-                            while (inIt.hasNext()) {
-                                Element metadata = (Element) inIt.next().clone();
-                                boolean insertSuccess = insertTransaction(metadata, strFileIds, context);
-                                if (insertSuccess) {
-                                    totalInserted++;
-                                }
-                            }
+                            totalInserted += insertTransaction(mdList, strFileIds, context);
                         }
                         finally {
                             dataMan.endIndexGroup();
@@ -196,33 +196,26 @@ public class Transaction extends AbstractOperation implements CatalogService
 	//---------------------------------------------------------------------------
 	
 	/**
-	 * @param xml
+	 * Inserts the records of an Insert element as a batch: schema and uuid of
+	 * all records are detected in parallel, then the records are stored and
+	 * committed together and finally indexed (in the index group opened by the
+	 * caller).
+	 * 
+	 * @param mdList
 	 * @param fileIds
 	 * @param context
-	 * @return
+	 * @return the number of records inserted
 	 * @throws Exception
 	 */
-	private boolean insertTransaction( Element xml, List<String> fileIds, ServiceContext context ) throws Exception
+	private int insertTransaction( List<Element> mdList, List<String> fileIds, ServiceContext context ) throws Exception
 	{
 		GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
-		DataManager dataMan = gc.getDataManager();
+		final DataManager dataMan = gc.getDataManager();
 		
-		String 	schema = dataMan.autodetectSchema(xml);
-		
-//		String category   = Util.getParam(request, Params.CATEGORY);
-		String 	category  = "_none_";
-        String source = null;
+		String source = null;
 		String createDate = null;
 		String changeDate = null;
 		
-		String uuid;
-		uuid = dataMan.extractUUID(schema, xml);
-		if (uuid.length() == 0)
-			uuid = UUID.randomUUID().toString();
-		
-		// -----------------------------------------------------------------------
-		// --- insert metadata into the system
-
 		UserSession us = context.getUserSession();
 		
 		if (us.getUserId() == null)
@@ -245,31 +238,100 @@ public class Transaction extends AbstractOperation implements CatalogService
         Set<String> userGroups = am.getVisibleGroups(dbms, userId);
         String group = (String) userGroups.toArray()[0];
 
-        String id = dataMan.insertMetadataExt(dbms, schema, xml, context.getSerialFactory(),
-				source, createDate, changeDate, uuid, userId, group);
-
-		if( id == null )
-			return false;
-		
-		// --- Insert category if requested
-		if (!"_none_".equals(category))
-			dataMan.setCategory(dbms, id, category);
-
         // Set metadata as public if setting enabled
         SettingManager sm = gc.getSettingManager();
         boolean metadataPublic = sm.getValueAsBool("system/csw/metadataPublic", false);
 
-        if (metadataPublic) {
-            dataMan.setOperation(dbms, id, "1", AccessManager.OPER_VIEW);
-        }
+		// -----------------------------------------------------------------------
+		// --- detect schema and uuid of the records (in parallel if more than one)
+
+		List<Future<InsertRecord>> records = new ArrayList<Future<InsertRecord>>();
+
+		// --- the pool only lives for this batch: it is shut down once the
+		// --- tasks are submitted and its threads end with the last task
+		ExecutorService executor = (mdList.size() <= 1) ? null : newExecutor(mdList.size());
+
+		for (Element md : mdList) {
+			final Element xml = (Element) md.clone();
+
+			Callable<InsertRecord> task = new Callable<InsertRecord>() {
+				public InsertRecord call() throws Exception {
+					String schema = dataMan.autodetectSchema(xml);
+					String uuid = dataMan.extractUUID(schema, xml);
+					if (uuid.length() == 0)
+						uuid = UUID.randomUUID().toString();
+
+					return new InsertRecord(xml, schema, uuid);
+				}
+			};
+
+			FutureTask<InsertRecord> future = new FutureTask<InsertRecord>(task);
+
+			if (executor == null) future.run();
+			else                  executor.execute(future);
+
+			records.add(future);
+		}
+
+		if (executor != null)
+			executor.shutdown();
+
+		// -----------------------------------------------------------------------
+		// --- insert metadata into the system
+
+		List<String> ids = new ArrayList<String>();
+		List<Object[]> operations = new ArrayList<Object[]>();
+
+		for (int i = 0; i < records.size(); i++) {
+			InsertRecord record;
+
+			try {
+				record = records.get(i).get();
+			} catch (ExecutionException e) {
+				for (Future<InsertRecord> f : records)
+					f.cancel(false);
+
+				throw new NoApplicableCodeEx("Cannot insert record " + (i + 1) + ": " + e.getCause().getMessage());
+			}
+
+			String id = dataMan.insertMetadataExt(dbms, record.schema, record.xml, context.getSerialFactory(),
+					source, createDate, changeDate, record.uuid, userId, group);
+
+			if( id == null )
+				continue;
+
+			if (metadataPublic) {
+				operations.add(new Object[] { Integer.valueOf(id), 1, Integer.valueOf(AccessManager.OPER_VIEW) });
+			}
+
+			ids.add(id);
+			fileIds.add( record.uuid );
+		}
+
+		// --- the records are new, so they have no privileges yet
+		dbms.executeBatch("INSERT INTO OperationAllowed(metadataId, groupId, operationId) VALUES(?,?,?)", operations);
 
-		dataMan.indexMetadataGroup(dbms, id);
-		
-		fileIds.add( uuid );
-		
 		dbms.commit();
-				
-		return true;
+
+		for (String id : ids) {
+			dataMan.indexMetadataGroup(dbms, id);
+		}
+
+		return ids.size();
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static ExecutorService newExecutor(int tasks) {
+		int threads = Math.min(tasks, Runtime.getRuntime().availableProcessors());
+
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "CSW transaction");
+				t.setDaemon(true);
+				return t;
+			}
+		});
 	}
 	
 	
@@ -585,6 +647,23 @@ public class Transaction extends AbstractOperation implements CatalogService
         return mapNs;
     }
 
+	//---------------------------------------------------------------------------
+	//---
+	//--- InsertRecord : a record of an Insert, ready to be stored
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class InsertRecord {
+		private final Element xml;
+		private final String schema;
+		private final String uuid;
+
+		public InsertRecord(Element xml, String schema, String uuid) {
+			this.xml = xml;
+			this.schema = schema;
+			this.uuid = uuid;
+		}
+	}
 }
 
 //=============================================================================
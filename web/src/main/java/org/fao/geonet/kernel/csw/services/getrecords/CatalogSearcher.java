@@ -29,6 +29,7 @@ import jeeves.server.context.ServiceContext;
 import jeeves.utils.Log;
 import jeeves.utils.Util;
 import jeeves.utils.Xml;
+import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.document.FieldSelectorResult;
@@ -56,7 +57,10 @@ import org.fao.geonet.exceptions.SearchExpiredEx;
 import org.fao.geonet.kernel.AccessManager;
 import org.fao.geonet.kernel.search.LuceneSearcher;
 import org.fao.geonet.kernel.search.LuceneUtils;
+import org.fao.geonet.kernel.search.SearchCursors;
 import org.fao.geonet.kernel.search.SearchManager;
+import org.fao.geonet.kernel.search.UuidCollector;
+import org.fao.geonet.kernel.search.spatial.OgcGenericFilters;
 import org.fao.geonet.kernel.search.spatial.Pair;
 import org.jdom.Element;
 
@@ -81,15 +85,15 @@ public class CatalogSearcher {
     private final Set<String> _floatFieldSet;
     private final Set<String> _doubleFieldSet;
 	private final FieldSelector _selector;
-	private final FieldSelector _uuidselector;
 	private Query         _query;
 	private CachingWrapperFilter _filter;
 	private Sort          _sort;
 	private String        _lang;
 	private long					_searchToken;
+	private SearchCursors _cursors = new SearchCursors();
 	
 	public CatalogSearcher(Element summaryConfig, FieldSelector selector,
-			FieldSelector uuidselector, HashSet<String> tokenizedFieldSet,
+			HashSet<String> tokenizedFieldSet,
 			Set<String> longFieldSet, Set<String> integerFieldSet,
 			Set<String> floatFieldSet, Set<String> doubleFieldSet) {
 		_tokenizedFieldSet = tokenizedFieldSet;
@@ -98,7 +102,6 @@ public class CatalogSearcher {
 		_floatFieldSet = floatFieldSet;
 		_doubleFieldSet = doubleFieldSet;
 		_selector = selector;
-		_uuidselector = uuidselector;
 		_summaryConfig = summaryConfig;
 		_searchToken = -1L;  // means we will get a new IndexSearcher when we 
 		                     // ask for it first time
@@ -120,21 +123,12 @@ public class CatalogSearcher {
                                                   Sort sort, ResultType resultType, int startPosition, int maxRecords,
                                                   int maxHitsInSummary)
 			throws CatalogException {
-		Element luceneExpr = filterToLucene(context, filterExpr);
-
-		if (luceneExpr != null) {
-			checkForErrors(luceneExpr);
-			remapFields(luceneExpr);
-		}
+		FilterPlanCache.Plan plan = getFilterPlan(context, filterExpr, filterVersion);
 	
 		GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
 		SearchManager sm = gc.getSearchmanager();
 		IndexSearcher searcher = null;
 		try {
-			if (luceneExpr != null) {
-				convertPhrases(luceneExpr);
-			}
-
 			Pair<Long,IndexSearcher> searcherPair = sm.getIndexSearcher(_searchToken);
 			Log.debug(Geonet.CSW_SEARCH,"Found searcher with "+searcherPair.one()+" comparing with "+_searchToken);
 			if (_searchToken != -1L && searcherPair.one() != _searchToken) {
@@ -143,7 +137,7 @@ public class CatalogSearcher {
 			_searchToken = searcherPair.one();
 			searcher = searcherPair.two();
       return performSearch(context,
-                    luceneExpr, filterExpr, filterVersion, sort, resultType,
+                    plan.getQuery(), plan.getSpatialFilter(), sort, resultType,
                     startPosition, maxRecords, maxHitsInSummary, searcher);
 		} catch (Exception e) {
 			Log.error(Geonet.CSW_SEARCH, "Error while searching metadata ");
@@ -171,7 +165,7 @@ public class CatalogSearcher {
 	 * </p>
 	 * @param context 
 	 * 
-	 * @return current searcher result in "fast" mode
+	 * @return the uuids of the hits, in index order
 	 * 
 	 * @throws IOException
 	 * @throws CorruptIndexException
@@ -183,25 +177,12 @@ public class CatalogSearcher {
 
 		IndexSearcher searcher = sm.getIndexSearcher(_searchToken).two();
 		try {
-        Pair<TopDocs, Element> searchResults =
-			LuceneSearcher.doSearchAndMakeSummary( 
-					maxHits, 0, maxHits, Integer.MAX_VALUE, _lang, ResultType.RESULTS.toString(), _summaryConfig, searcher, _query, _filter, _sort, false);
-		TopDocs tdocs = searchResults.one();
-		Element summary = searchResults.two();
+			UuidCollector collector = new UuidCollector(maxHits);
+			searcher.search(_query, _filter, collector);
 
-		int numHits = Integer.parseInt(summary.getAttributeValue("count"));
+			Log.debug(Geonet.CSW_SEARCH, "Records matched : " + collector.getUuids().size());
 
-		Log.debug(Geonet.CSW_SEARCH, "Records matched : " + numHits);
-
-		// --- retrieve results
-		List<String> response = new ArrayList<String>();
-		
-		for ( ScoreDoc sdoc : tdocs.scoreDocs ) {
-			Document doc = searcher.getIndexReader().document(sdoc.doc, _uuidselector);
-			String uuid = doc.get("_uuid");
-			if (uuid != null) response.add(uuid);
-		}
-		return response;
+			return collector.getUuids();
 		} finally {
 			sm.releaseIndexSearcher(searcher);
 		}
@@ -214,8 +195,69 @@ public class CatalogSearcher {
 	// ---------------------------------------------------------------------------
 
 	/**
-	 * Use filter-to-lucene stylesheet to create a Lucene search query to be
-	 * used by LuceneSearcher.
+	 * Gets the compiled form of a filter from the plan cache, compiling it if
+	 * it is not there. The filter is converted to a Lucene query (using the
+	 * filter-to-lucene stylesheet) and its spatial operators are parsed.
+	 * 
+	 * @return the plan of the filter (its query is null if there is no filter)
+	 */
+	private FilterPlanCache.Plan getFilterPlan(ServiceContext context, Element filterExpr, String filterVersion)
+			throws CatalogException {
+		PerFieldAnalyzerWrapper analyzer = SearchManager.getAnalyzer();
+
+		if (filterExpr == null)
+			return new FilterPlanCache.Plan(null, null, analyzer);
+
+		String key = FilterPlanCache.getKey(filterExpr, filterVersion);
+		FilterPlanCache.Plan plan = FilterPlanCache.get(key, analyzer);
+
+		if (plan != null) {
+			Log.debug(Geonet.CSW_SEARCH, "Using cached filter plan");
+			return plan;
+		}
+
+		Element luceneExpr = filterToLucene(context, filterExpr);
+
+		if (luceneExpr != null) {
+			checkForErrors(luceneExpr);
+			remapFields(luceneExpr);
+		}
+
+		try {
+			Query data = null;
+
+			if (luceneExpr != null) {
+				convertPhrases(luceneExpr);
+
+				Log.debug(Geonet.CSW_SEARCH, "Search criteria:\n" + Xml.getString(luceneExpr));
+				data = LuceneSearcher.makeQuery(luceneExpr, analyzer,
+						_tokenizedFieldSet, _integerFieldSet, _longFieldSet, _floatFieldSet, _doubleFieldSet);
+			}
+
+			GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
+			OgcGenericFilters.ParsedFilter spatial = gc.getSearchmanager().getSpatial().parseFilter(filterExpr, filterVersion);
+
+			plan = new FilterPlanCache.Plan(data, spatial, analyzer);
+		} catch (Exception e) {
+			Log.error(Geonet.CSW_SEARCH, "Error while compiling filter ");
+			Log.error(Geonet.CSW_SEARCH, "  (C) StackTrace:\n"
+					+ Util.getStackTrace(e));
+
+			throw new NoApplicableCodeEx(
+					"Raised exception while searching metadata : " + e);
+		}
+
+		FilterPlanCache.put(key, plan);
+
+		return plan;
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Create a Lucene search query to be used by LuceneSearcher. Common filters
+	 * are converted by {@link FilterToLucene}, the other ones by the
+	 * filter-to-lucene stylesheet.
 	 * 
 	 * @return XML representation of Lucene query
 	 */
@@ -224,6 +266,13 @@ public class CatalogSearcher {
 		if (filterExpr == null)
 			return null;
 
+		Element compiled = FilterToLucene.compile(filterExpr);
+
+		if (compiled != null) {
+			Log.debug(Geonet.CSW_SEARCH, "filterToLucene compiled:\n" + Xml.getString(compiled));
+			return compiled;
+		}
+
 		String styleSheet = context.getAppPath() + Geonet.Path.CSW
 				+ Geonet.File.FILTER_TO_LUCENE;
 
@@ -325,19 +374,14 @@ public class CatalogSearcher {
 	// ---------------------------------------------------------------------------
 
 	private Pair<Element, List<ResultItem>> performSearch(
-			ServiceContext context, Element luceneExpr, Element filterExpr,
-			String filterVersion, Sort sort, ResultType resultType, 
+			ServiceContext context, Query data, 
+			OgcGenericFilters.ParsedFilter spatialFilterExpr, Sort sort, ResultType resultType, 
 			int startPosition, int maxRecords, int maxHitsInSummary, 
 			IndexSearcher searcher) throws Exception {
 
 		GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
 		SearchManager sm = gc.getSearchmanager();
 
-		if (luceneExpr != null) {
-			Log.debug(Geonet.CSW_SEARCH, "Search criteria:\n" + Xml.getString(luceneExpr));
-        }
-		Query data = (luceneExpr == null) ? null : LuceneSearcher.makeQuery(luceneExpr, SearchManager.getAnalyzer(),
-                _tokenizedFieldSet, _integerFieldSet, _longFieldSet, _floatFieldSet, _doubleFieldSet);
         Log.info(Geonet.CSW_SEARCH,"LuceneSearcher made query:\n" + data.toString());
 
 
@@ -372,7 +416,7 @@ public class CatalogSearcher {
 
 		// TODO Handle NPE creating spatial filter (due to constraint
 		// language version).
-		Filter spatialfilter = sm.getSpatial().filter(query, Integer.MAX_VALUE, filterExpr, filterVersion);
+		Filter spatialfilter = sm.getSpatial().filter(spatialFilterExpr);
 		CachingWrapperFilter cFilter = null;
 		if (spatialfilter != null) cFilter = new CachingWrapperFilter(spatialfilter);
 		boolean buildSummary = resultType == ResultType.RESULTS_WITH_SUMMARY;
@@ -382,7 +426,8 @@ public class CatalogSearcher {
 			numHits = Math.max(maxHitsInSummary, numHits);
 		}
 
-		// record globals for reuse
+		// record globals for reuse (cursors are only valid for the same query)
+		if (!query.equals(_query)) _cursors.clear();
 		_query = query;
 		_filter = cFilter;
 		_sort = sort;
@@ -390,7 +435,7 @@ public class CatalogSearcher {
 	
 		Pair<TopDocs,Element> searchResults = LuceneSearcher.doSearchAndMakeSummary(numHits, startPosition - 1,
                 maxRecords, Integer.MAX_VALUE, context.getLanguage(), resultType.toString(), _summaryConfig, searcher, query, cFilter,
-                sort, buildSummary
+                sort, buildSummary, _cursors
 		);
 		TopDocs hits = searchResults.one();
 		Element summary = searchResults.two();
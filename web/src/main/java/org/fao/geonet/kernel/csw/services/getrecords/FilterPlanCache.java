@@ -0,0 +1,132 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.csw.services.getrecords;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.Query;
+import org.fao.geonet.kernel.search.spatial.OgcGenericFilters;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//=============================================================================
+
+/**
+ * Keeps the most recently used OGC filters in their compiled form (Lucene
+ * query and parsed spatial filter), so that clients paging through the results
+ * of the same filter do not convert and parse it again on each request. The
+ * cache is shared by all sessions and is keyed by the canonical XML of the
+ * filter.
+ */
+class FilterPlanCache {
+	private static final int CACHE_SIZE = 256;
+
+	private static final Map<String, Plan> _plans = new LinkedHashMap<String, Plan>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	// ---------------------------------------------------------------------------
+	// ---
+	// --- API methods
+	// ---
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Builds the key of a filter : whitespace between elements is not
+	 * significant.
+	 */
+	public static String getKey(Element filterExpr, String filterVersion) {
+		String xml = new XMLOutputter(Format.getCompactFormat()).outputString(filterExpr);
+
+		return filterVersion + "|" + xml;
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * @return the plan of the filter or null if it is not cached or it was built
+	 *         with another analyzer
+	 */
+	public static Plan get(String key, Analyzer analyzer) {
+		synchronized (_plans) {
+			Plan plan = _plans.get(key);
+
+			return (plan == null || plan.analyzer != analyzer) ? null : plan;
+		}
+	}
+
+	// ---------------------------------------------------------------------------
+
+	public static void put(String key, Plan plan) {
+		synchronized (_plans) {
+			_plans.put(key, plan);
+		}
+	}
+
+	// ---------------------------------------------------------------------------
+
+	// ---
+	// --- Plan
+	// ---
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * A compiled filter. Both parts are only read by the searches, so they can
+	 * be used by many threads at the same time.
+	 */
+	static class Plan {
+		private final Query query;
+		private final OgcGenericFilters.ParsedFilter spatialFilter;
+		private final Analyzer analyzer;
+
+		public Plan(Query query, OgcGenericFilters.ParsedFilter spatialFilter, Analyzer analyzer) {
+			this.query = query;
+			this.spatialFilter = spatialFilter;
+			this.analyzer = analyzer;
+		}
+
+		/**
+		 * @return the Lucene query (without the privileges of the user)
+		 */
+		public Query getQuery() {
+			return query;
+		}
+
+		/**
+		 * @return the spatial part of the filter or null if there is none
+		 */
+		public OgcGenericFilters.ParsedFilter getSpatialFilter() {
+			return spatialFilter;
+		}
+	}
+}
+
+// =============================================================================
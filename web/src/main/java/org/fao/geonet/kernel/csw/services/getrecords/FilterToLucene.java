@@ -0,0 +1,387 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.csw.services.getrecords;
+
+import org.fao.geonet.csw.common.Csw;
+import org.jdom.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//=============================================================================
+
+/**
+ * Converts the common OGC filters (PropertyIsEqualTo, PropertyIsLike,
+ * PropertyIsBetween, spatial operators and And, Or, Not) to the XML Lucene
+ * query built by the filter-to-lucene stylesheet, without running it. The
+ * result is the same as the stylesheet one. Filters using other operators or
+ * constructs (fuzzy search, invalid operators...) are not compiled: the
+ * stylesheet must then be used.
+ */
+class FilterToLucene {
+	private static final Set<String> SPATIAL_OPERATORS = new HashSet<String>(Arrays.asList(
+			"BBOX", "Equals", "Disjoint", "Touches", "Within", "Overlaps", "Crosses",
+			"Intersects", "Contains", "DWithin", "Beyond"));
+
+	/** Fields searched as is, never with a fuzzy query */
+	private static final Set<String> SYSTEM_FIELDS = new HashSet<String>(Arrays.asList(
+			"_groupOwner", "_owner", "_validsch", "_validxsd", "_isTemplate",
+			"_isHarvested", "_valid", "_visibleForOwnerOnly"));
+
+	private static final String GROUP = "group";
+	private static final String SIMILARITY = "similarity";
+	private static final String IS_TEMPLATE = "_isTemplate";
+	private static final String OP_VIEW = "_op0";
+
+	// ---------------------------------------------------------------------------
+	// ---
+	// --- API methods
+	// ---
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * @return the XML Lucene query of the filter, or null if the filter must
+	 *         be converted by the stylesheet
+	 */
+	public static Element compile(Element filter) {
+		if (!isOgc(filter, "Filter"))
+			return null;
+
+		List<Element> children = getChildren(filter);
+
+		// --- an empty filter means return all
+		if (children.isEmpty())
+			return termQuery(IS_TEMPLATE, "n");
+
+		// --- the similarity changes the following PropertyIsEqualTo into fuzzy
+		// --- queries
+		if (hasPropertyName(filter, SIMILARITY))
+			return null;
+
+		try {
+			// --- templates are excluded unless the filter searches on them
+			if (hasPropertyName(filter, IS_TEMPLATE)) {
+				if (children.size() != 1)
+					return null;
+
+				return compileOperator(children.get(0));
+			}
+
+			Element filterClause = clause(true, false);
+
+			for (Element child : children)
+				add(filterClause, compileOperator(child));
+
+			return new Element("BooleanQuery")
+				.addContent(filterClause)
+				.addContent(clause(true, false).addContent(termQuery(IS_TEMPLATE, "n")));
+		} catch (UnsupportedFilterException e) {
+			return null;
+		}
+	}
+
+	// ---------------------------------------------------------------------------
+	// ---
+	// --- Operators
+	// ---
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * @return the query of the operator, null if it matches everything
+	 */
+	private static Element compileOperator(Element op) throws UnsupportedFilterException {
+		if (!Csw.NAMESPACE_OGC.equals(op.getNamespace()))
+			throw new UnsupportedFilterException();
+
+		String name = op.getName();
+
+		if (name.equals("PropertyIsEqualTo"))
+			return compileEqualTo(op);
+
+		if (name.equals("PropertyIsLike"))
+			return compileLike(op);
+
+		if (name.equals("PropertyIsBetween"))
+			return compileBetween(op);
+
+		if (SPATIAL_OPERATORS.contains(name))
+			// --- the spatial filter is applied after the Lucene query
+			return new Element("MatchAllDocsQuery");
+
+		if (name.equals("And") || name.equals("Or"))
+			return compileLogical(op, name.equals("And"));
+
+		if (name.equals("Not"))
+			return compileNot(op);
+
+		throw new UnsupportedFilterException();
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element compileEqualTo(Element op) throws UnsupportedFilterException {
+		Element property = getSingleChild(op, "PropertyName");
+		Element literal = getSingleChild(op, "Literal");
+
+		String field = getValue(property);
+
+		if (field.equals(GROUP))
+			return termQuery(OP_VIEW, getValue(literal));
+
+		if (literal == null && !SYSTEM_FIELDS.contains(field))
+			throw new UnsupportedFilterException();
+
+		return termQuery(field, getValue(literal));
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Each word of the literal must match. A literal made of the wildcard only
+	 * matches everything.
+	 */
+	private static Element compileLike(Element op) throws UnsupportedFilterException {
+		Element property = getSingleChild(op, "PropertyName");
+		Element literal = getSingleChild(op, "Literal");
+
+		if (property == null || literal == null)
+			throw new UnsupportedFilterException();
+
+		String wildCard = op.getAttributeValue("wildCard");
+		String singleChar = op.getAttributeValue("singleChar");
+		String text = literal.getValue();
+
+		if (text.equals(wildCard))
+			return null;
+
+		Element query = new Element("BooleanQuery");
+
+		if (text.length() == 0)
+			return query;
+
+		for (String token : text.split(" |/|,", -1)) {
+			token = translate(token, wildCard, '*');
+			token = translate(token, singleChar, '?');
+
+			Element wildcardQuery = new Element("WildcardQuery")
+				.setAttribute("fld", property.getValue())
+				.setAttribute("txt", token);
+
+			query.addContent(clause(true, false).addContent(wildcardQuery));
+		}
+
+		return query;
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element compileBetween(Element op) throws UnsupportedFilterException {
+		Element property = getSingleChild(op, "PropertyName");
+		Element lower = getSingleChild(getSingleChild(op, "LowerBoundary"), "Literal");
+		Element upper = getSingleChild(getSingleChild(op, "UpperBoundary"), "Literal");
+
+		if (property == null || lower == null || upper == null)
+			throw new UnsupportedFilterException();
+
+		return new Element("RangeQuery")
+			.setAttribute("fld", property.getValue())
+			.setAttribute("lowerTxt", lower.getValue())
+			.setAttribute("upperTxt", upper.getValue())
+			.setAttribute("inclusive", "true");
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element compileLogical(Element op, boolean and) throws UnsupportedFilterException {
+		Element query = new Element("BooleanQuery");
+
+		for (Element child : getOperands(op))
+			query.addContent(add(clause(and, false), compileOperator(child)));
+
+		return query;
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element compileNot(Element op) throws UnsupportedFilterException {
+		List<Element> operands = getOperands(op);
+
+		// --- negated spatial operators are not handled by the stylesheet
+		for (Element child : getChildren(op))
+			if (Csw.NAMESPACE_OGC.equals(child.getNamespace()) && SPATIAL_OPERATORS.contains(child.getName()))
+				throw new UnsupportedFilterException();
+
+		Element all = new Element("MatchAllDocsQuery")
+			.setAttribute("required", "true")
+			.setAttribute("prohibited", "false");
+
+		Element query = new Element("BooleanQuery").addContent(clause(true, false).addContent(all));
+
+		for (Element child : operands)
+			query.addContent(add(clause(false, true), compileOperator(child)));
+
+		return query;
+	}
+
+	// ---------------------------------------------------------------------------
+	// ---
+	// --- Private methods
+	// ---
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Operands of a logical operator: the similarity and group criteria are
+	 * ignored.
+	 */
+	private static List<Element> getOperands(Element op) throws UnsupportedFilterException {
+		List<Element> operands = getChildren(op);
+
+		for (int i = operands.size() - 1; i >= 0; i--) {
+			Element property = getSingleChild(operands.get(i), "PropertyName");
+
+			if (property != null) {
+				String field = property.getValue();
+
+				if (field.equals(SIMILARITY) || field.equals(GROUP))
+					operands.remove(i);
+			}
+		}
+
+		return operands;
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Tells if an element of the filter has the given property name.
+	 */
+	private static boolean hasPropertyName(Element elem, String name) {
+		for (Element child : getChildren(elem)) {
+			if (isOgc(child, "PropertyName") && child.getValue().equals(name))
+				return true;
+
+			if (hasPropertyName(child, name))
+				return true;
+		}
+
+		return false;
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * @return the child or null if it is missing
+	 * @throws UnsupportedFilterException
+	 *             if there are several children with this name
+	 */
+	private static Element getSingleChild(Element elem, String name) throws UnsupportedFilterException {
+		if (elem == null)
+			return null;
+
+		List list = elem.getChildren(name, Csw.NAMESPACE_OGC);
+
+		if (list.size() > 1)
+			throw new UnsupportedFilterException();
+
+		return list.isEmpty() ? null : (Element) list.get(0);
+	}
+
+	// ---------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private static List<Element> getChildren(Element elem) {
+		return new ArrayList<Element>(elem.getChildren());
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static boolean isOgc(Element elem, String name) {
+		return elem.getName().equals(name) && Csw.NAMESPACE_OGC.equals(elem.getNamespace());
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static String getValue(Element elem) {
+		return (elem == null) ? "" : elem.getValue();
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Same as the XPath translate function with a single replacement character:
+	 * the first character of chars is replaced, the other ones are removed.
+	 */
+	private static String translate(String text, String chars, char replacement) {
+		if (chars == null || chars.length() == 0)
+			return text;
+
+		StringBuilder sb = new StringBuilder(text.length());
+
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			int pos = chars.indexOf(c);
+
+			if (pos == -1)
+				sb.append(c);
+			else if (pos == 0)
+				sb.append(replacement);
+		}
+
+		return sb.toString();
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element clause(boolean required, boolean prohibited) {
+		return new Element("BooleanClause")
+			.setAttribute("required", Boolean.toString(required))
+			.setAttribute("prohibited", Boolean.toString(prohibited));
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element add(Element parent, Element child) {
+		return (child == null) ? parent : parent.addContent(child);
+	}
+
+	// ---------------------------------------------------------------------------
+
+	private static Element termQuery(String field, String text) {
+		return new Element("TermQuery").setAttribute("fld", field).setAttribute("txt", text);
+	}
+
+	// ---------------------------------------------------------------------------
+
+	/**
+	 * Thrown when a part of the filter is not handled by this class.
+	 */
+	private static class UnsupportedFilterException extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+}
+
+//=============================================================================
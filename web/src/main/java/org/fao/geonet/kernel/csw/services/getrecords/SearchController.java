@@ -26,6 +26,7 @@ package org.fao.geonet.kernel.csw.services.getrecords;
 import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
 import jeeves.utils.Log;
+import jeeves.utils.StreamedElement;
 import jeeves.utils.Util;
 import jeeves.utils.Xml;
 import org.apache.commons.lang.StringUtils;
@@ -43,11 +44,12 @@ import org.fao.geonet.csw.common.exceptions.CatalogException;
 import org.fao.geonet.csw.common.exceptions.InvalidParameterValueEx;
 import org.fao.geonet.csw.common.exceptions.NoApplicableCodeEx;
 import org.fao.geonet.kernel.SelectionManager;
+import org.fao.geonet.kernel.csw.CatalogConfiguration;
 import org.fao.geonet.kernel.search.spatial.Pair;
 //import org.fao.geonet.util.spring.StringUtils;
 import org.jdom.Element;
 
-import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -57,8 +59,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 //=============================================================================
 
@@ -67,7 +79,6 @@ public class SearchController
     
     private final Element _summaryConfig;
 	private final FieldSelector _selector;
-	private final FieldSelector _uuidselector;
 	private HashSet<String> _tokenizedFieldSet;
 	private HashSet<String> _integerFieldSet;
 	private HashSet<String> _longFieldSet;
@@ -146,17 +157,6 @@ public class SearchController
 				else return FieldSelectorResult.NO_LOAD;
 			}
 		};
-		
-
-		_uuidselector = new FieldSelector() {
-			private static final long serialVersionUID = 1L;
-
-			public final FieldSelectorResult accept(String name) {
-				if (name.equals("_uuid")) return FieldSelectorResult.LOAD;
-				else return FieldSelectorResult.NO_LOAD;
-			}
-		};
-		
     }
 	
 	//---------------------------------------------------------------------------
@@ -230,7 +230,7 @@ public class SearchController
 	if (searcher == null || !sessionRequestId.equals(requestId)) {
 		Log.debug(Geonet.CSW_SEARCH,"Creating new catalog searcher");
 		
-		searcher = new CatalogSearcher(_summaryConfig, _selector, _uuidselector, _tokenizedFieldSet, _longFieldSet, _integerFieldSet, _floatFieldSet, _doubleFieldSet);
+		searcher = new CatalogSearcher(_summaryConfig, _selector, _tokenizedFieldSet, _longFieldSet, _integerFieldSet, _floatFieldSet, _doubleFieldSet);
 		session.setProperty(Geonet.Session.SEARCH_RESULT, searcher);
 	}	else {
 		Log.debug(Geonet.CSW_SEARCH,"Using existing catalog searcher");
@@ -243,12 +243,22 @@ public class SearchController
 	List<ResultItem> resultsList = summaryAndSearchResults.two();
 	int counter = Math.min(maxRecords,resultsList.size());
 	if ((resultType == ResultType.RESULTS || resultType == ResultType.RESULTS_WITH_SUMMARY) && resultsList.size() > 0) {
-		for (int i=0; (i<maxRecords) && (i<resultsList.size()); i++) {
-		    String  id = resultsList.get(i).getID();
-		    Element md = retrieveMetadata(context, id, setName, outSchema, elemNames, resultType);
+		if (CatalogConfiguration.isGetRecordsStreamResponse()) {
+			// records are retrieved and transformed while the response is written
+			List<String> ids = new ArrayList<String>();
+			for (int i=0; i<counter; i++) {
+				ids.add(resultsList.get(i).getID());
+			}
+			results.addContent(new StreamedElement(new RecordProducer(context, ids, setName, outSchema, elemNames, resultType)));
+		}
+		else {
+			for (int i=0; (i<maxRecords) && (i<resultsList.size()); i++) {
+			    String  id = resultsList.get(i).getID();
+			    Element md = retrieveMetadata(context, id, setName, outSchema, elemNames, resultType);
 
-		    if (md == null) context.warning("SearchController : Metadata not found or invalid schema : "+ id);
-		    else results.addContent(md);
+			    if (md == null) context.warning("SearchController : Metadata not found or invalid schema : "+ id);
+			    else results.addContent(md);
+			}
 		}
 	}
 
@@ -289,14 +299,55 @@ public class SearchController
      */
     public static Element retrieveMetadata(ServiceContext context, String id,  ElementSetName setName,
                                            OutputSchema outSchema, Set<String> elemNames, ResultType resultType) throws CatalogException {
+	Element res = loadMetadata(context, id);
+
+	if (res == null)
+	    return null;
+
+	return transformMetadata(context, id, res, setName, outSchema, elemNames, resultType);
+    }
+
+    //---------------------------------------------------------------------------
+
+    /**
+     * Gets the metadata record from the database.
+     *
+     * @param context
+     * @param id
+     * @return the metadata or null if it does not exist
+     * @throws CatalogException
+     */
+    private static Element loadMetadata(ServiceContext context, String id) throws CatalogException {
 	try {
-		//--- get metadata from DB
 		GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
-		Element  res = gc.getDataManager().getMetadata(context, id, false); 
-		
-		if (res==null)
-		    return null;
+		return gc.getDataManager().getMetadata(context, id, false);
+	}
+    catch (Exception e) {
+		throw retrieveError(context, id, e);
+    }
+    }
+
+    //---------------------------------------------------------------------------
 
+    /**
+     * Converts a metadata record loaded from the database to the output schema.
+     * It does not access the database, so it can run outside the request thread.
+     *
+     * @return	The converted record or null if no conversion is available.
+     *
+     * @param context
+     * @param id
+     * @param res
+     * @param setName
+     * @param outSchema
+     * @param elemNames
+     * @param resultType
+     * @return
+     * @throws CatalogException
+     */
+    private static Element transformMetadata(ServiceContext context, String id, Element res, ElementSetName setName,
+                                             OutputSchema outSchema, Set<String> elemNames, ResultType resultType) throws CatalogException {
+	try {
 		String schema = res.getChild(Edit.RootChild.INFO, Edit.NAMESPACE).getChildText(Edit.Info.Elem.SCHEMA);
 
 		String FS = File.separator;
@@ -364,11 +415,7 @@ public class SearchController
 						}
 						res = frags;
 				*/
-                String transformation = createElementNameTransformation(elemNames);
-                InputStream is = new ByteArrayInputStream(transformation.getBytes("UTF-8"));
-                Source ss = new StreamSource(is);
-                boolean requireNonCachingTransformerFactory = true;
-                res = Xml.transform(res, ss, requireNonCachingTransformerFactory);
+                res = Xml.transform(res, getElementNameTransformation(elemNames));
 			}
             else {
                 removeElements(res, elemNames);
@@ -377,11 +424,17 @@ public class SearchController
 		return res;
 	}
     catch (Exception e) {
+		throw retrieveError(context, id, e);
+    }
+	}
+
+    //---------------------------------------------------------------------------
+
+    private static NoApplicableCodeEx retrieveError(ServiceContext context, String id, Exception e) {
 		context.error("Error while getting metadata with id : "+ id);
 		context.error("  (C) StackTrace:\n"+ Util.getStackTrace(e));
-		throw new NoApplicableCodeEx("Raised exception while getting metadata :"+ e);
+		return new NoApplicableCodeEx("Raised exception while getting metadata :"+ e);
     }
-	}
 
     /**
      * Creates a transformation containing
@@ -428,12 +481,47 @@ public class SearchController
                 "\n" +
                 "</xsl:stylesheet>";
 
-        System.out.println("generated transformation:\n" + result);
+        Log.debug(Geonet.CSW_SEARCH, "generated transformation:\n" + result);
         return result;
     }
 
     //---------------------------------------------------------------------------
 
+    /**
+     * Returns the compiled ElementName transformation for the given element
+     * names. Transformations are compiled once and kept in a bounded cache,
+     * because clients usually ask the same element names for all the records
+     * of a page (and for all the pages).
+     *
+     * @param elemNames
+     * @return
+     * @throws Exception
+     */
+    private static Templates getElementNameTransformation(Set<String> elemNames) throws Exception {
+        // element names are sorted so that the same set gives the same key
+        // whatever the order of the request
+        String key = StringUtils.join(new TreeSet<String>(elemNames).iterator(), " ");
+        Templates templates;
+
+        synchronized (_elementNameTransformations) {
+            templates = _elementNameTransformations.get(key);
+        }
+
+        if (templates == null) {
+            String transformation = createElementNameTransformation(elemNames);
+            InputStream is = new ByteArrayInputStream(transformation.getBytes("UTF-8"));
+            boolean requireNonCachingTransformerFactory = true;
+            templates = Xml.compileStylesheet(new StreamSource(is), requireNonCachingTransformerFactory);
+
+            synchronized (_elementNameTransformations) {
+                _elementNameTransformations.put(key, templates);
+            }
+        }
+        return templates;
+    }
+
+    //---------------------------------------------------------------------------
+
     private static void removeElements(Element md, Set<String> elemNames)
     {
 	Iterator i=md.getChildren().iterator();
@@ -448,7 +536,142 @@ public class SearchController
     }
 
     //---------------------------------------------------------------------------
+    //---
+    //--- RecordProducer : retrieves the records of a streamed response
+    //---
+    //---------------------------------------------------------------------------
+
+    /**
+     * Produces the records of a GetRecords response one at a time, in the order
+     * of the search results. Records are loaded from the database by the writing
+     * thread (which owns the database connection) while the stylesheets are
+     * applied ahead of it by a small pool of threads, if configured.
+     */
+    private static class RecordProducer implements StreamedElement.Producer {
+
+	public RecordProducer(ServiceContext context, List<String> ids, ElementSetName setName,
+	                      OutputSchema outSchema, Set<String> elemNames, ResultType resultType) {
+		this.context    = context;
+		this.ids        = ids.iterator();
+		this.setName    = setName;
+		this.outSchema  = outSchema;
+		this.elemNames  = elemNames;
+		this.resultType = resultType;
+
+		executor = getExecutor();
+		window   = (executor == null) ? 1 : 2 * CatalogConfiguration.getGetRecordsStreamThreads();
+	}
+
+	public Element next() throws Exception {
+		while (true) {
+			fill();
+
+			if (pending.isEmpty())
+				return null;
+
+			try {
+				Element md = pending.removeFirst().get();
+
+				if (md != null)
+					return md;
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+
+				throw e;
+			}
+		}
+	}
+
+	public void close() {
+		for (FutureTask<Element> task : pending)
+			task.cancel(false);
+
+		pending.clear();
+	}
+
+	// records that cannot be retrieved are logged (see retrieveError) and
+	// skipped, since the results have already been started
+	private void fill() {
+		while (pending.size() < window && ids.hasNext()) {
+			final String  id = ids.next();
+			final Element md;
+
+			try {
+				md = loadMetadata(context, id);
+			}
+			catch (CatalogException e) {
+				continue;
+			}
+
+			FutureTask<Element> task = new FutureTask<Element>(new Callable<Element>() {
+				public Element call() throws Exception {
+					Element res = null;
+
+					try {
+						if (md != null) res = transformMetadata(context, id, md, setName, outSchema, elemNames, resultType);
+					}
+					catch (CatalogException e) {
+						return null;
+					}
+
+					if (res == null) context.warning("SearchController : Metadata not found or invalid schema : "+ id);
+					return res;
+				}
+			});
+
+			if (executor == null) task.run();
+			else                  executor.execute(task);
+
+			pending.addLast(task);
+		}
+	}
+
+	private final ServiceContext   context;
+	private final Iterator<String> ids;
+	private final ElementSetName   setName;
+	private final OutputSchema     outSchema;
+	private final Set<String>      elemNames;
+	private final ResultType       resultType;
+	private final ExecutorService  executor;
+	private final int              window;
+
+	private final LinkedList<FutureTask<Element>> pending = new LinkedList<FutureTask<Element>>();
+    }
+
+    //---------------------------------------------------------------------------
+
+    private static synchronized ExecutorService getExecutor() {
+	int threads = CatalogConfiguration.getGetRecordsStreamThreads();
+
+	if (threads <= 0)
+		return null;
+
+	if (_executor == null) {
+		_executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "CSW record transformer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	return _executor;
+    }
+
+    private static ExecutorService _executor;
 
+    private static final int MAX_ELEMENT_NAME_TRANSFORMATIONS = 50;
+
+    private static final Map<String, Templates> _elementNameTransformations =
+            new LinkedHashMap<String, Templates>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<String, Templates> eldest) {
+            return size() > MAX_ELEMENT_NAME_TRANSFORMATIONS;
+        }
+    };
 }
 
 //=============================================================================
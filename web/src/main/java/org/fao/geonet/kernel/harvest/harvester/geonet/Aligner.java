@@ -36,7 +36,6 @@ import org.fao.geonet.kernel.harvest.harvester.GroupMapper;
 import org.fao.geonet.kernel.harvest.harvester.RecordInfo;
 import org.fao.geonet.kernel.harvest.harvester.UUIDMapper;
 import org.fao.geonet.kernel.mef.IMEFVisitor;
-import org.fao.geonet.kernel.mef.MEFLib;
 import org.fao.geonet.kernel.mef.MEFVisitor;
 import org.fao.geonet.kernel.setting.SettingManager;
 import org.fao.geonet.lib.Lib;
@@ -47,6 +46,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -125,8 +125,13 @@ public class Aligner
 		//-----------------------------------------------------------------------
 		//--- remove old metadata
 
+		Set<String> remoteUuids = new HashSet<String>();
+
+		for (RecordInfo ri : records)
+			remoteUuids.add(ri.uuid);
+
 		for (String uuid : localUuids.getUUIDs())
-			if (!exists(records, uuid))
+			if (!remoteUuids.contains(uuid))
 			{
 				String id = localUuids.getID(uuid);
 
@@ -137,7 +142,10 @@ public class Aligner
 			}
 
 		//-----------------------------------------------------------------------
-		//--- insert/update new metadata
+		//--- collect metadata to insert/update
+
+		List<RecordInfo>    toRetrieve = new ArrayList<RecordInfo>();
+		Map<String, String> localIds   = new HashMap<String, String>();
 
 		for(RecordInfo ri : records)
 		{
@@ -153,20 +161,49 @@ public class Aligner
 			{
 				String id = dataMan.getMetadataId(dbms, ri.uuid);
 
-				// look up value of localrating/enabled
-				GeonetContext  gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
-				SettingManager settingManager = gc.getSettingManager();
-				boolean localRating = settingManager.getValueAsBool("system/localrating/enabled", false);
-				
-				if (id == null)	{
-					addMetadata(ri, localRating);
-				}
-				else {
-					updateMetadata(ri, id, localRating);
+				if (id != null && localUuids.getID(ri.uuid) == null)
+					log.debug("  - Skipped metadata managed by another harvesting node. uuid:"+ ri.uuid +", name:"+ params.name);
+				else
+				{
+					toRetrieve.add(ri);
+					localIds.put(ri.uuid, id);
 				}
 			}
 		}
 
+		//-----------------------------------------------------------------------
+		//--- insert/update new metadata. MEF files are downloaded in parallel
+		//--- while the previous ones are imported
+
+		// look up value of localrating/enabled
+		GeonetContext  gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
+		SettingManager settingManager = gc.getSettingManager();
+		boolean localRating = settingManager.getValueAsBool("system/localrating/enabled", false);
+
+		List<String> uuids = new ArrayList<String>();
+
+		for (RecordInfo ri : toRetrieve)
+			uuids.add(ri.uuid);
+
+		MEFFetcher fetcher = new MEFFetcher(request, params.servlet, uuids);
+
+		try
+		{
+			for(RecordInfo ri : toRetrieve)
+			{
+				String id = localIds.get(ri.uuid);
+
+				MEFFetcher.MEF mef = fetcher.next();
+
+				if (id == null)	addMetadata(ri, mef, localRating);
+				else				updateMetadata(ri, id, mef, localRating);
+			}
+		}
+		finally
+		{
+			fetcher.shutdown();
+		}
+
 		log.info("End of alignment for : "+ params.name);
 
 		return result;
@@ -178,18 +215,16 @@ public class Aligner
 	//---
 	//--------------------------------------------------------------------------
 
-	private void addMetadata(final RecordInfo ri, final boolean localRating) throws Exception
+	private void addMetadata(final RecordInfo ri, MEFFetcher.MEF mef, final boolean localRating) throws Exception
 	{
 		final String  id[] = { null };
 		final Element md[] = { null };
 
 		//--- import metadata from MEF file
 
-		File mefFile = retrieveMEF(ri.uuid);
-
 		try
 		{
-			MEFLib.visit(mefFile, new MEFVisitor(), new IMEFVisitor()
+			new MEFVisitor().visit(mef.open(), new IMEFVisitor()
 			{
 				public void handleMetadata(Element mdata, int index) throws Exception
 				{
@@ -198,7 +233,7 @@ public class Aligner
 
 				//--------------------------------------------------------------------
 				
-				public void handleMetadataFiles(File[] files, int index) throws Exception {}
+				public void handleMetadataFiles(Map<String, Element> files, int index) throws Exception {}
 				
 				//--------------------------------------------------------------------
 
@@ -244,7 +279,7 @@ public class Aligner
 		}
 		finally
 		{
-			mefFile.delete();
+			mef.dispose();
 		}
 	}
 
@@ -454,70 +489,64 @@ public class Aligner
 	//---
 	//--------------------------------------------------------------------------
 
-	private void updateMetadata(final RecordInfo ri, final String id, final boolean localRating) throws Exception
+	private void updateMetadata(final RecordInfo ri, final String id, MEFFetcher.MEF mef,
+										 final boolean localRating) throws Exception
 	{
 		final Element md[]     = { null };
 		final Element publicFiles[] = { null };
 
-		if (localUuids.getID(ri.uuid) == null)
-			log.debug("  - Skipped metadata managed by another harvesting node. uuid:"+ ri.uuid +", name:"+ params.name);
-		else
+		try
 		{
-			File mefFile = retrieveMEF(ri.uuid);
-
-			try
+			new MEFVisitor().visit(mef.open(), new IMEFVisitor()
 			{
-				MEFLib.visit(mefFile, new MEFVisitor(), new IMEFVisitor()
+				public void handleMetadata(Element mdata, int index) throws Exception
 				{
-					public void handleMetadata(Element mdata, int index) throws Exception
-					{
-						md[index] = mdata;
-					}
+					md[index] = mdata;
+				}
 
-					//-----------------------------------------------------------------
-					
-					public void handleMetadataFiles(File[] files, int index) throws Exception
-					{
-						//md[index] = mdata;
-					}
-					
-					public void handleInfo(Element info, int index) throws Exception
-					{
-						updateMetadata(ri, id, md[index], info, localRating);
-						publicFiles[index] = info.getChild("public");
-					}
+				//-----------------------------------------------------------------
+				
+				public void handleMetadataFiles(Map<String, Element> files, int index) throws Exception
+				{
+					//md[index] = mdata;
+				}
+				
+				public void handleInfo(Element info, int index) throws Exception
+				{
+					updateMetadata(ri, id, md[index], info, localRating);
+					publicFiles[index] = info.getChild("public");
+				}
 
-					//-----------------------------------------------------------------
+				//-----------------------------------------------------------------
 
-					public void handlePublicFile(String file, String changeDate, InputStream is, int index) throws IOException
-					{
-						updateFile(id, file, changeDate, is, publicFiles[index]);
-					}
+				public void handlePublicFile(String file, String changeDate, InputStream is, int index) throws IOException
+				{
+					updateFile(id, file, changeDate, is, publicFiles[index]);
+				}
 
-					//-----------------------------------------------------------------
+				//-----------------------------------------------------------------
 
-					public void handlePrivateFile() {}
-								
-					public void handleFeatureCat(Element md, int index)
-							throws Exception {
-						// Feature Catalog not managed for harvesting
-					}
+				public void handlePrivateFile() {}
+							
+				public void handleFeatureCat(Element md, int index)
+						throws Exception {
+					// Feature Catalog not managed for harvesting
+				}
 
-					public void handlePrivateFile(String file,
-							String changeDate, InputStream is, int index)
-							throws IOException {}
-					
-				});
-			}
-			catch(Exception e)
-			{
-				//--- we ignore the exception here. Maybe the metadata has been removed just now
-				result.unretrievable++;
-			}
-			finally
-			{
-				mefFile.delete();
-			}
+				public void handlePrivateFile(String file,
+						String changeDate, InputStream is, int index)
+						throws IOException {}
+				
+			});
+		}
+		catch(Exception e)
+		{
+			//--- we ignore the exception here. Maybe the metadata has been removed just now
+			result.unretrievable++;
+		}
+		finally
+		{
+			mef.dispose();
 		}
 	}
 
@@ -655,34 +684,6 @@ public class Aligner
 	//---
 	//--------------------------------------------------------------------------
 
-	/** Return true if the uuid is present in the remote node */
-
-	private boolean exists(Set<RecordInfo> records, String uuid)
-	{
-		for(RecordInfo ri : records)
-			if (uuid.equals(ri.uuid))
-				return true;
-
-		return false;
-	}
-
-	//--------------------------------------------------------------------------
-
-	private File retrieveMEF(String uuid) throws IOException
-	{
-		request.clearParams();
-		request.addParam("uuid",   uuid);
-		request.addParam("format", "partial");
-
-		request.setAddress("/"+ params.servlet +"/srv/en/"+ Geonet.Service.MEF_EXPORT);
-
-		File tempFile = File.createTempFile("temp-", ".dat");
-		request.executeLarge(tempFile);
-
-		return tempFile;
-	}
-
-	//--------------------------------------------------------------------------
 	//---
 	//--- Variables
 	//---
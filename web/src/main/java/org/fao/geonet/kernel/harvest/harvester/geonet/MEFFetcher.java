@@ -0,0 +1,333 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.harvest.harvester.geonet;
+
+import jeeves.utils.Log;
+import jeeves.utils.XmlRequest;
+import org.fao.geonet.constants.Geonet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+//=============================================================================
+
+/** Downloads MEF files from the remote node using a small pool of threads, so
+  * that the files are retrieved ahead of the aligner. MEF files are returned
+  * in the same order of the given uuids. Each thread uses its own copy of the
+  * harvester's request, which shares the session cookies and keeps its
+  * connection alive between downloads.
+  */
+
+class MEFFetcher
+{
+	//--------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//--------------------------------------------------------------------------
+
+	public MEFFetcher(XmlRequest request, String servlet, List<String> uuids)
+	{
+		this.servlet = servlet;
+		this.uuids   = uuids.iterator();
+
+		for (int i=0; i<THREADS; i++)
+			requests.add(request.copy());
+
+		executor = Executors.newFixedThreadPool(THREADS);
+
+		for (int i=0; i<PREFETCH; i++)
+			submitNext();
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Returns the MEF of the next uuid, waiting for its download if needed.
+	  * A download that takes more than DOWNLOAD_TIMEOUT seconds is cancelled.
+	  */
+
+	public MEF next() throws Exception
+	{
+		Future<MEF> future = pending.removeFirst();
+
+		submitNext();
+
+		try
+		{
+			return future.get(DOWNLOAD_TIMEOUT, TimeUnit.SECONDS);
+		}
+		catch(ExecutionException e)
+		{
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+
+			throw e;
+		}
+		catch(TimeoutException e)
+		{
+			future.cancel(true);
+
+			throw new IOException("MEF download timed out after "+ DOWNLOAD_TIMEOUT +" seconds");
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	/** Stops the pool and discards the files that have not been used */
+
+	public void shutdown()
+	{
+		//--- downloads are not interrupted, otherwise their temp files are lost:
+		//--- the ones not started are cancelled and the running ones are waited for
+
+		for (Future<MEF> future : pending)
+			if (!future.cancel(false))
+				try
+				{
+					future.get(DOWNLOAD_TIMEOUT, TimeUnit.SECONDS).dispose();
+				}
+				catch(TimeoutException e)
+				{
+					//--- the download removes its own file when it is cancelled
+					future.cancel(true);
+				}
+				catch(Exception e)
+				{
+					//--- the download has failed: retrieveMEF has removed its file
+				}
+
+		pending.clear();
+		executor.shutdown();
+
+		try
+		{
+			executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//--------------------------------------------------------------------------
+
+	private void submitNext()
+	{
+		if (!uuids.hasNext())
+			return;
+
+		final String uuid = uuids.next();
+
+		pending.addLast(executor.submit(new Callable<MEF>()
+		{
+			public MEF call() throws Exception
+			{
+				XmlRequest req = requests.take();
+
+				try
+				{
+					MEF mef = retrieveMEF(req, uuid);
+
+					//--- the future has been cancelled while downloading: nobody
+					//--- will get this file
+
+					if (Thread.interrupted())
+					{
+						mef.dispose();
+						throw new InterruptedException();
+					}
+
+					return mef;
+				}
+				finally
+				{
+					//--- offer does not fail if the thread has been interrupted
+					requests.offer(req);
+				}
+			}
+		}));
+	}
+
+	//--------------------------------------------------------------------------
+
+	private MEF retrieveMEF(XmlRequest req, String uuid) throws IOException
+	{
+		req.clearParams();
+		req.addParam("uuid",   uuid);
+		req.addParam("format", "partial");
+
+		req.setAddress("/"+ servlet +"/srv/en/"+ Geonet.Service.MEF_EXPORT);
+
+		MEF mef = new MEF();
+
+		try
+		{
+			req.executeLarge(mef);
+		}
+		catch(IOException e)
+		{
+			discard(mef);
+			throw e;
+		}
+		catch(RuntimeException e)
+		{
+			discard(mef);
+			throw e;
+		}
+
+		return mef;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Removes a partial download, which may have been spooled to a temp file */
+
+	private void discard(MEF mef)
+	{
+		try
+		{
+			mef.close();
+		}
+		catch(IOException e)
+		{
+			Log.warning(Geonet.HARVESTER, "Cannot close partial MEF file : "+ e.getMessage());
+		}
+
+		mef.dispose();
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- MEF : a downloaded MEF file. It is kept in memory unless it is larger
+	//---       than MAX_MEMORY bytes, in which case it is spooled to a temp file
+	//---
+	//--------------------------------------------------------------------------
+
+	static class MEF extends OutputStream
+	{
+		public InputStream open() throws IOException
+		{
+			if (file == null)
+				return new ByteArrayInputStream(buffer.toByteArray());
+
+			return new FileInputStream(file);
+		}
+
+		//-----------------------------------------------------------------------
+
+		public void dispose()
+		{
+			buffer = null;
+
+			if (file != null)
+				file.delete();
+		}
+
+		//-----------------------------------------------------------------------
+
+		public void write(int b) throws IOException
+		{
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		//-----------------------------------------------------------------------
+
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			if (file == null && buffer.size() + len > MAX_MEMORY)
+			{
+				file = File.createTempFile("mef-", ".mef");
+				os   = new FileOutputStream(file);
+
+				buffer.writeTo(os);
+				buffer = new ByteArrayOutputStream(0);
+			}
+
+			if (file == null)	buffer.write(b, off, len);
+			else					os.write(b, off, len);
+		}
+
+		//-----------------------------------------------------------------------
+
+		public void close() throws IOException
+		{
+			if (os != null)
+				os.close();
+		}
+
+		//-----------------------------------------------------------------------
+
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		private File         file;
+		private OutputStream os;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//--------------------------------------------------------------------------
+
+	private static final int THREADS    = 4;
+	private static final int PREFETCH   = 16;
+	private static final int MAX_MEMORY = 1024 * 1024;
+
+	private static final long SHUTDOWN_TIMEOUT = 60;
+	private static final long DOWNLOAD_TIMEOUT = 600;
+
+	private String           servlet;
+	private Iterator<String> uuids;
+	private ExecutorService  executor;
+
+	private LinkedList<Future<MEF>> pending  = new LinkedList<Future<MEF>>();
+	private BlockingQueue<XmlRequest> requests = new LinkedBlockingQueue<XmlRequest>();
+}
+
+//=============================================================================
+
@@ -40,17 +40,21 @@ import org.fao.oaipmh.OaiPmh;
 import org.fao.oaipmh.exceptions.NoRecordsMatchException;
 import org.fao.oaipmh.requests.GetRecordRequest;
 import org.fao.oaipmh.requests.ListIdentifiersRequest;
+import org.fao.oaipmh.requests.ListRecordsRequest;
 import org.fao.oaipmh.requests.Transport;
 import org.fao.oaipmh.responses.GetRecordResponse;
 import org.fao.oaipmh.responses.Header;
 import org.fao.oaipmh.responses.ListIdentifiersResponse;
+import org.fao.oaipmh.responses.Record;
 import org.fao.oaipmh.util.ISODate;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 //=============================================================================
@@ -83,6 +87,27 @@ class Harvester
 	//---------------------------------------------------------------------------
 
 	public OaiPmhResult harvest() throws Exception
+	{
+		long start = System.currentTimeMillis();
+
+		if (!params.streaming || !streamHarvest())
+			listHarvest();
+
+		long time = System.currentTimeMillis() - start;
+
+		log.info("Harvested "+ result.total +" records in "+ time +" ms ("
+					+ (result.total * 1000L / Math.max(time, 1)) +" records/sec)");
+
+		return result;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private void listHarvest() throws Exception
 	{
 		ListIdentifiersRequest req = new ListIdentifiersRequest();
 		req.setValidationSchema(new File(context.getAppPath() + Geonet.SchemaPath.OAI_PMH));
@@ -112,14 +137,8 @@ class Harvester
 
 		if (records.size() != 0)
 			align(t, records);
-
-		return result;
 	}
 
-	//---------------------------------------------------------------------------
-	//---
-	//--- Private methods
-	//---
 	//---------------------------------------------------------------------------
 
 	private Set<RecordInfo> search(ListIdentifiersRequest req, Search s) throws OperationAbortedEx
@@ -210,8 +229,8 @@ class Harvester
 
 			String id = localUuids.getID(ri.id);
 
-			if (id == null)	addMetadata(t, ri);
-			else				updateMetadata(t, ri, id);
+			if (id == null)				addMetadata(ri, retrieveMetadata(t, ri));
+			else if (isChanged(ri, id))	updateMetadata(ri, id, retrieveMetadata(t, ri));
 		}
 
 		log.info("End of alignment for : "+ params.name);
@@ -231,14 +250,130 @@ class Harvester
 
 	//--------------------------------------------------------------------------
 	//---
-	//--- Private methods : addMetadata
+	//--- Private methods : streaming harvest
 	//---
 	//--------------------------------------------------------------------------
 
-	private void addMetadata(Transport t, RecordInfo ri) throws Exception
+	/** Harvests using ListRecords instead of ListIdentifiers + GetRecord. A
+	  * fetcher thread parses the pages while they are received and queues the
+	  * records, so the next page is downloaded while the current one is stored
+	  * and indexed. Returns false if the server does not support ListRecords
+	  * for the given searches: in that case nothing has been done locally.
+	  */
+
+	private boolean streamHarvest() throws Exception
+	{
+		List<ListRecordsRequest> requests = new ArrayList<ListRecordsRequest>();
+
+		for(Search s : params.getSearches())
+			requests.add(createRequest(s));
+
+		if (params.isSearchEmpty())
+			requests.add(createRequest(Search.createEmptySearch()));
+
+		log.info("Streaming records from : "+ params.name);
+
+		RecordFetcher fetcher = new RecordFetcher(log, requests);
+		fetcher.start();
+
+		try
+		{
+			RecordFetcher.Entry entry = fetcher.take();
+
+			if (entry == null && fetcher.getError() != null && fetcher.getCount() == 0)
+			{
+				log.warning("ListRecords failed, falling back to ListIdentifiers : "+ fetcher.getError());
+				return false;
+			}
+
+			log.info("Start of alignment for : "+ params.name);
+
+			localCateg = new CategoryMapper(dbms);
+			localGroups= new GroupMapper(dbms);
+			localUuids = new UUIDMapper(dbms, params.uuid);
+			dbms.commit();
+
+			Set<String> remoteIds = new HashSet<String>();
+
+			for (; entry != null; entry = fetcher.take())
+			{
+				Record     rec = entry.record;
+				RecordInfo ri  = entry.info;
+
+				//--- skip deleted records and records returned by more searches
+
+				if (rec.getHeader().isDeleted() || !remoteIds.add(ri.id))
+					continue;
+
+				result.total++;
+
+				String id = localUuids.getID(ri.id);
+
+				if (id == null)				addMetadata(ri, processMetadata(ri, rec.getMetadata()));
+				else if (isChanged(ri, id))	updateMetadata(ri, id, processMetadata(ri, rec.getMetadata()));
+			}
+
+			if (fetcher.getError() != null)
+			{
+				log.warning("Raised exception when searching : "+ fetcher.getError());
+				throw new OperationAbortedEx("Raised exception when searching", fetcher.getError());
+			}
+
+			//--- remove old metadata only when the remote list is complete
+
+			for (String uuid : localUuids.getUUIDs())
+				if (!remoteIds.contains(uuid))
+				{
+					String id = localUuids.getID(uuid);
+
+					log.debug("  - Removing old metadata with local id:"+ id);
+					dataMan.deleteMetadata(dbms, id);
+					dbms.commit();
+					result.locallyRemoved++;
+				}
+
+			log.info("End of alignment for : "+ params.name);
+
+			return true;
+		}
+		finally
+		{
+			fetcher.abort();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private ListRecordsRequest createRequest(Search s) throws Exception
 	{
-		Element md = retrieveMetadata(t, ri);
+		ListRecordsRequest req = new ListRecordsRequest();
+
+		Transport t = req.getTransport();
+		t.setUrl(new URL(params.url));
 
+		if (params.useAccount)
+			t.setCredentials(params.username, params.password);
+
+		//--- set the proxy info if necessary
+		Lib.net.setupProxy(context, t);
+
+		if (s.from.length() != 0)	req.setFrom(new ISODate(s.from));
+		if (s.until.length() != 0)	req.setUntil(new ISODate(s.until));
+		if (s.set.length() != 0) 	req.setSet(s.set);
+
+		req.setMetadataPrefix(s.prefix);
+
+		return req;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Private methods : addMetadata
+	//---
+	//--------------------------------------------------------------------------
+
+	private void addMetadata(RecordInfo ri, Element md) throws Exception
+	{
 		if (md == null)
 			return;
 
@@ -280,8 +415,40 @@ class Harvester
 
 			GetRecordResponse res = req.execute();
 
-			Element md = res.getRecord().getMetadata();
+			return processMetadata(ri, res.getRecord().getMetadata());
+		}
+
+		catch(JDOMException e)
+		{
+			log.warning("Skipping metadata with bad XML format. Remote id : "+ ri.id);
+			result.badFormat++;
+		}
+
+		catch(Exception e)
+		{
+			log.warning("Raised exception while getting metadata file : "+ e);
+			result.unretrievable++;
+		}
+
+		//--- we don't raise any exception here. Just try to go on
+		return null;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Converts and validates a remote metadata. Returns null if it cannot be
+	  * imported */
 
+	private Element processMetadata(RecordInfo ri, Element md)
+	{
+		if (md == null)
+		{
+			log.warning("Skipping record without metadata. Remote id : "+ ri.id);
+			result.unretrievable++;
+			return null;
+		}
+
+		try
+		{
 			log.debug("    - Record got:\n"+ Xml.getString(md));
 
 			if (isOaiDc(md))
@@ -310,15 +477,9 @@ class Harvester
 			}
 		}
 
-		catch(JDOMException e)
-		{
-			log.warning("Skipping metadata with bad XML format. Remote id : "+ ri.id);
-			result.badFormat++;
-		}
-
 		catch(Exception e)
 		{
-			log.warning("Raised exception while getting metadata file : "+ e);
+			log.warning("Raised exception while processing metadata : "+ e);
 			result.unretrievable++;
 		}
 
@@ -424,39 +585,42 @@ class Harvester
 	//---
 	//--------------------------------------------------------------------------
 
-	private void updateMetadata(Transport t, RecordInfo ri, String id) throws Exception
+	private boolean isChanged(RecordInfo ri, String id) throws Exception
 	{
 		String date = localUuids.getChangeDate(ri.id);
 
-		if (!ri.isMoreRecentThan(date))
-		{
-			log.debug("  - Metadata XML not changed for remote id : "+ ri.id);
-			result.unchanged++;
-		}
-		else
-		{
-			log.debug("  - Updating local metadata for remote id : "+ ri.id);
+		if (ri.isMoreRecentThan(date))
+			return true;
 
-			Element md = retrieveMetadata(t, ri);
+		log.debug("  - Metadata XML not changed for remote id : "+ ri.id);
+		result.unchanged++;
 
-			if (md == null)
-				return;
+		return false;
+	}
 
-			dataMan.updateMetadataExt(dbms, id, md, ri.changeDate.toString());
+	//--------------------------------------------------------------------------
 
-			//--- the administrator could change privileges and categories using the
-			//--- web interface so we have to re-set both
+	private void updateMetadata(RecordInfo ri, String id, Element md) throws Exception
+	{
+		if (md == null)
+			return;
 
-			dbms.execute("DELETE FROM OperationAllowed WHERE metadataId=?", Integer.parseInt(id));
-			addPrivileges(id);
+		log.debug("  - Updating local metadata for remote id : "+ ri.id);
 
-			dbms.execute("DELETE FROM MetadataCateg WHERE metadataId=?", Integer.parseInt(id));
-			addCategories(id);
+		dataMan.updateMetadataExt(dbms, id, md, ri.changeDate.toString());
 
-			dbms.commit();
-			dataMan.indexMetadataGroup(dbms, id);
-			result.updated++;
-		}
+		//--- the administrator could change privileges and categories using the
+		//--- web interface so we have to re-set both
+
+		dbms.execute("DELETE FROM OperationAllowed WHERE metadataId=?", Integer.parseInt(id));
+		addPrivileges(id);
+
+		dbms.execute("DELETE FROM MetadataCateg WHERE metadataId=?", Integer.parseInt(id));
+		addCategories(id);
+
+		dbms.commit();
+		dataMan.indexMetadataGroup(dbms, id);
+		result.updated++;
 	}
 
 	//---------------------------------------------------------------------------
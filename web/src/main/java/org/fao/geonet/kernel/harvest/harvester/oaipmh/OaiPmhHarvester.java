@@ -149,7 +149,8 @@ public class OaiPmhHarvester extends AbstractHarvester
 		settingMan.add(dbms, "id:"+siteId, "url",  params.url);
 		settingMan.add(dbms, "id:"+siteId, "icon", params.icon);
 
-		settingMan.add(dbms, "id:"+optionsId, "validate", params.validate);
+		settingMan.add(dbms, "id:"+optionsId, "validate",  params.validate);
+		settingMan.add(dbms, "id:"+optionsId, "streaming", params.streaming);
 
 		//--- store search nodes
 
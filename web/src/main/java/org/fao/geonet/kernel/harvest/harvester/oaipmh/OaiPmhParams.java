@@ -65,6 +65,7 @@ public class OaiPmhParams extends AbstractParams
 		icon     = Util.getParam(site, "icon", "");
 
 		validate = Util.getParam(options, "validate", false);
+		streaming= Util.getParam(options, "streaming", false);
 
 		addSearches(searches);
 	}
@@ -87,6 +88,7 @@ public class OaiPmhParams extends AbstractParams
 		icon     = Util.getParam(site,  "icon", icon);
 
 		validate = Util.getParam(options, "validate", validate);
+		streaming= Util.getParam(options, "streaming", streaming);
 
 		//--- if some search queries are given, we drop the previous ones and
 		//--- set these new ones
@@ -117,7 +119,8 @@ public class OaiPmhParams extends AbstractParams
 		copy.url  = url;
 		copy.icon = icon;
 
-		copy.validate = validate;
+		copy.validate  = validate;
+		copy.streaming = streaming;
 
 		for (Search s : alSearches)
 			copy.alSearches.add(s.copy());
@@ -157,6 +160,9 @@ public class OaiPmhParams extends AbstractParams
 
 	public boolean validate;
 
+	/** Use ListRecords and process records while they are received */
+	public boolean streaming;
+
 	private ArrayList<Search> alSearches = new ArrayList<Search>();
 }
 
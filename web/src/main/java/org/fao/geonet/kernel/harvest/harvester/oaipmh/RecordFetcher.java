@@ -0,0 +1,194 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.harvest.harvester.oaipmh;
+
+import jeeves.interfaces.Logger;
+import org.fao.oaipmh.exceptions.NoRecordsMatchException;
+import org.fao.oaipmh.requests.ListRecordsRequest;
+import org.fao.oaipmh.responses.Record;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//=============================================================================
+
+/** Runs the ListRecords requests in a separate thread and queues the records
+  * as soon as they are parsed. The queue is bounded so the fetcher stays at
+  * most QUEUE_SIZE records ahead of the harvester.
+  */
+
+class RecordFetcher extends Thread
+{
+	//--------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//--------------------------------------------------------------------------
+
+	public RecordFetcher(Logger log, List<ListRecordsRequest> requests)
+	{
+		super("OAI-PMH record fetcher");
+		setDaemon(true);
+
+		this.log      = log;
+		this.requests = requests;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns the next record or null when all requests have been completed
+	  * (or an error occurred: see getError) */
+
+	public Entry take() throws InterruptedException
+	{
+		Entry entry = queue.take();
+
+		return (entry == END) ? null : entry;
+	}
+
+	//---------------------------------------------------------------------------
+
+	public Exception getError() { return error; }
+	public int       getCount() { return count; }
+
+	//---------------------------------------------------------------------------
+	/** Stops the fetcher if it is still running (used when the harvester fails) */
+
+	public void abort()
+	{
+		aborted = true;
+		interrupt();
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Thread
+	//---
+	//---------------------------------------------------------------------------
+
+	public void run()
+	{
+		try
+		{
+			for (final ListRecordsRequest req : requests)
+			{
+				ListRecordsRequest.Listener listener = new ListRecordsRequest.Listener()
+				{
+					public void record(Record r) throws Exception
+					{
+						put(new Entry(new RecordInfo(r.getHeader(), req.getMetadataPrefix()), r));
+					}
+				};
+
+				try
+				{
+					int num = req.stream(listener);
+					log.info("Records streamed for prefix "+ req.getMetadataPrefix() +" : "+ num);
+				}
+				catch(NoRecordsMatchException e)
+				{
+					//--- go on with the next search
+				}
+			}
+		}
+		catch(Exception e)
+		{
+			if (!aborted)
+				error = e;
+		}
+		finally
+		{
+			try
+			{
+				put(END);
+			}
+			catch(InterruptedException e) {}
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private void put(Entry entry) throws InterruptedException
+	{
+		while (!aborted)
+			if (queue.offer(entry, 1, TimeUnit.SECONDS))
+			{
+				if (entry != END)
+					count++;
+
+				return;
+			}
+
+		throw new InterruptedException("Fetcher aborted");
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Entry
+	//---
+	//---------------------------------------------------------------------------
+
+	public static class Entry
+	{
+		public Entry(RecordInfo info, Record record)
+		{
+			this.info   = info;
+			this.record = record;
+		}
+
+		public final RecordInfo info;
+		public final Record     record;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final int   QUEUE_SIZE = 200;
+	private static final Entry END        = new Entry(null, null);
+
+	private Logger                   log;
+	private List<ListRecordsRequest> requests;
+
+	private volatile Exception error;
+	private volatile int       count;
+	private volatile boolean   aborted;
+
+	private BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(QUEUE_SIZE);
+}
+
+//=============================================================================
+
@@ -25,9 +25,9 @@ package org.fao.geonet.kernel.mef;
 
 import org.jdom.Element;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 
 /**
  * Register XML or binary file to process for a MEF file.
@@ -35,7 +35,11 @@ import java.io.InputStream;
 public interface IMEFVisitor {
 	public void handleMetadata(Element md, int index) throws Exception;
 
-	public void handleMetadataFiles(File[] File, int index) throws Exception;
+	/**
+	 * Handles the metadata documents of a MEF2 record (the documents of the
+	 * metadata folder, by file name).
+	 */
+	public void handleMetadataFiles(Map<String, Element> files, int index) throws Exception;
 
 	public void handleInfo(Element md, int index) throws Exception;
 
@@ -46,9 +46,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class Importer {
+	/** Number of imported records indexed in the same index group */
+	private static final int BATCH_SIZE = 50;
+
     /**
      *
      * @param params
@@ -86,8 +90,13 @@ public class Importer {
 		final Dbms dbms = (Dbms) context.getResourceManager().open(Geonet.Res.MAIN_DB);
 
 		final List<String> id = new ArrayList<String>();
-		final List<Element> md = new ArrayList<Element>();
-		final List<Element> fc = new ArrayList<Element>();
+		final List<String> toIndex = new ArrayList<String>();
+
+		// Only the record being imported is kept: records are inserted as soon
+		// as they are read from the file and indexed in groups of BATCH_SIZE
+		final Element[] md = new Element[1];
+		final Element[] fc = new Element[1];
+		final String[] mdId = new String[1];
 
 		// Try to define MEF version from mef file not from parameter
 		String fileType = Util.getParam(params, "file_type", "mef");
@@ -123,23 +132,23 @@ public class Importer {
              */
 			public void handleMetadata(Element metadata, int index) throws Exception {
 				Log.debug(Geonet.MEF, "Collecting metadata:\n" + Xml.getString(metadata));
-				md.add(index, metadata);
+				md[0] = metadata;
 			}
 
             /**
              *
-             * @param Files
+             * @param files
              * @param index
              * @throws Exception
              */
-			public void handleMetadataFiles(File[] Files, int index) throws Exception {
+			public void handleMetadataFiles(Map<String, Element> files, int index) throws Exception {
 				Log.debug(Geonet.MEF, "Multiple metadata files");
 
 				Element metadataValidForImport = null;
 
-                for (File file : Files) {
-                    if (file != null && !file.isDirectory()) {
-                        Element metadata = Xml.loadFile(file);
+                for (Map.Entry<String, Element> file : files.entrySet()) {
+                    if (file.getValue() != null) {
+                        Element metadata = file.getValue();
                         String metadataSchema = dm.autodetectSchema(metadata);
 
                         // If local node doesn't know metadata schema try to load next xml file.
@@ -149,12 +158,12 @@ public class Importer {
 
                         // If schema is preferred local node schema load that file.
                         if (metadataSchema.equals(preferredSchema)) {
-                            Log.debug(Geonet.MEF, "Found metadata file " + file.getName() + " with preferred schema (" + preferredSchema + ").");
+                            Log.debug(Geonet.MEF, "Found metadata file " + file.getKey() + " with preferred schema (" + preferredSchema + ").");
                             handleMetadata(metadata, index);
                             return;
                         }
                         else {
-                            Log.debug(Geonet.MEF, "Found metadata file " + file.getName() + " with known schema (" + metadataSchema + ").");
+                            Log.debug(Geonet.MEF, "Found metadata file " + file.getKey() + " with known schema (" + metadataSchema + ").");
                             metadataValidForImport = metadata;
                         }
                     }
@@ -180,7 +189,7 @@ public class Importer {
 				if (featureCat != null) {
 					Log.debug(Geonet.MEF, "Collecting feature catalog:\n" + Xml.getString(featureCat));
 				}
-				fc.add(index, featureCat);
+				fc[0] = featureCat;
 			}
 
 			/**
@@ -213,10 +222,10 @@ public class Importer {
 				String style = Util.getParam(params, Params.STYLESHEET, "_none_");
 
 				if (!style.equals("_none_")) {
-					md.add(index, Xml.transform(md.get(index), stylePath + FS + style));
+					md[0] = Xml.transform(md[0], stylePath + FS + style);
                 }
 				
-				Element metadata = md.get(index);
+				Element metadata = md[0];
 				String schema = dm.autodetectSchema(metadata);
 
 				if (schema == null) {
@@ -244,7 +253,7 @@ public class Importer {
 
 					// Get the Metadata uuid if it's not a template.
 					if (isTemplate.equals("n")) {
-						uuid = dm.extractUUID(schema, md.get(index));
+						uuid = dm.extractUUID(schema, metadata);
                     }
 					validate = Util.getParam(params, Params.VALIDATE, "off").equals("on");
 
@@ -274,30 +283,38 @@ public class Importer {
 
 				String uuidAction = Util.getParam(params, Params.UUID_ACTION, Params.NOTHING);
 
-				importRecord(uuid, localId, uuidAction, md, schema, index, source, sourceName, context, id,
+				List<Element> record = new ArrayList<Element>();
+				List<String> recordId = new ArrayList<String>();
+				record.add(metadata);
+
+				importRecord(uuid, localId, uuidAction, record, schema, 0, source, sourceName, context, recordId,
                         createDate, changeDate, groupId, isTemplate);
 
-				if (fc.size() != 0 && fc.get(index) != null) {
+				mdId[0] = recordId.get(0);
+				md[0] = null;
+				id.add(mdId[0]);
+
+				if (fc[0] != null) {
 					// UUID is set as @uuid in root element
 					uuid = UUID.randomUUID().toString();
 
-					fc.add(index, dm.setUUID("iso19110", uuid, fc.get(index)));
+					Element featureCat = dm.setUUID("iso19110", uuid, fc[0]);
+					fc[0] = null;
 
-					String fcId = dm.insertMetadataExt(dbms, "iso19110", fc.get(index), context.getSerialFactory(), source,
+					String fcId = dm.insertMetadataExt(dbms, "iso19110", featureCat, context.getSerialFactory(), source,
 							createDate, changeDate, uuid, context.getUserSession().getUserIdAsInt(), null);
 
 					Log.debug(Geonet.MEF, "Adding Feature catalog with uuid: " + uuid);
 
 					// Create database relation between metadata and feature catalog
-					String mdId = id.get(index);
 					String query = "INSERT INTO Relations (id, relatedId) VALUES (?, ?)";
-					dbms.execute(query, Integer.parseInt(mdId), Integer.parseInt(fcId));
+					dbms.execute(query, Integer.parseInt(mdId[0]), Integer.parseInt(fcId));
 
 					id.add(fcId);
 					// TODO : privileges not handled for feature catalog ...
 				}
 
-				int iId = Integer.parseInt(id.get(index));
+				int iId = Integer.parseInt(mdId[0]);
 
 				if (rating != null) {
 					dbms.execute("UPDATE Metadata SET rating=? WHERE id=?",
@@ -310,28 +327,33 @@ public class Importer {
 				dm.setTemplateExt(dbms, iId, isTemplate, null);
 				dm.setHarvestedExt(dbms, iId, null);
 
-				String pubDir = Lib.resource.getDir(context, "public", id.get(index));
-				String priDir = Lib.resource.getDir(context, "private", id.get(index));
+				String pubDir = Lib.resource.getDir(context, "public", mdId[0]);
+				String priDir = Lib.resource.getDir(context, "private", mdId[0]);
 
 				new File(pubDir).mkdirs();
 				new File(priDir).mkdirs();
 
 				if (categs != null) {
-					addCategories(dm, dbms, id.get(index), categs);
+					addCategories(dm, dbms, mdId[0], categs);
                 }
 
 				if (groupId == null) {
-					addPrivileges(dm, dbms, id.get(index), privileges);
+					addPrivileges(dm, dbms, mdId[0], privileges);
                 }
 				else {
-					addOperations(dm, dbms, privileges, id.get(index), groupId);
+					addOperations(dm, dbms, privileges, mdId[0], groupId);
                 }
 
+				// the caller has opened an index group: index in it
 				if (indexGroup) {
-					dm.indexMetadataGroup(dbms, id.get(index));
+					dm.indexMetadataGroup(dbms, mdId[0]);
 				}
                 else {
-					dm.indexMetadata(dbms, id.get(index));
+					toIndex.add(mdId[0]);
+
+					if (toIndex.size() >= BATCH_SIZE) {
+						indexBatch(dm, dbms, toIndex);
+                    }
 				}
 			}
 
@@ -346,7 +368,7 @@ public class Importer {
 			public void handlePublicFile(String file, String changeDate,
 					InputStream is, int index) throws IOException {
 				Log.debug(Geonet.MEF, "Adding public file with name=" + file);
-				saveFile(context, id.get(index), "public", file, changeDate, is);
+				saveFile(context, mdId[0], "public", file, changeDate, is);
 			}
 
             /**
@@ -360,15 +382,44 @@ public class Importer {
 			public void handlePrivateFile(String file, String changeDate,
 					InputStream is, int index) throws IOException {
 				Log.debug(Geonet.MEF, "Adding private file with name=" + file);
-				saveFile(context, id.get(index), "private", file, changeDate,
+				saveFile(context, mdId[0], "private", file, changeDate,
 						is);
 			}
 
 		});
 
+		indexBatch(dm, dbms, toIndex);
+
 		return id;
 	}
 
+    /**
+     * Indexes the given records in a single index group, so that the index
+     * writer is opened and committed once for the whole batch.
+     *
+     * @param dm
+     * @param dbms
+     * @param ids
+     * @throws Exception
+     */
+	private static void indexBatch(DataManager dm, Dbms dbms, List<String> ids) throws Exception {
+		if (ids.size() == 0) {
+			return;
+        }
+
+		dm.startIndexGroup();
+		try {
+			for (String id : ids) {
+				dm.indexMetadataGroup(dbms, id);
+            }
+		}
+        finally {
+			dm.endIndexGroup();
+		}
+
+		ids.clear();
+	}
+
     /**
      *
      * @param uuid
@@ -36,12 +36,25 @@ import org.fao.geonet.kernel.mef.MEFLib.Version;
 import org.fao.geonet.lib.Lib;
 import org.fao.geonet.services.relations.Get;
 import org.jdom.Element;
+import org.jdom.output.XMLOutputter;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipOutputStream;
 
 import static org.fao.geonet.kernel.mef.MEFConstants.DIR_PRIVATE;
@@ -70,47 +83,141 @@ class MEF2Exporter {
 	public static String doExport(ServiceContext context, Set<String> uuids,
 			Format format, boolean skipUUID, String stylePath) throws Exception {
 
-		Dbms dbms = (Dbms) context.getResourceManager()
-				.open(Geonet.Res.MAIN_DB);
 		File file = File.createTempFile("mef-", ".mef");
 		FileOutputStream fos = new FileOutputStream(file);
-		ZipOutputStream zos = new ZipOutputStream(fos);
 
-        for (Object uuid1 : uuids) {
-            String uuid = (String) uuid1;
-            createMetadataFolder(context, dbms, uuid, zos, skipUUID, stylePath,
-                    format);
-        }
+		try {
+			doExport(context, uuids, format, skipUUID, stylePath, fos);
+		} catch (Exception e) {
+			fos.close();
+			file.delete();
+			throw e;
+		}
 
-		// --- cleanup and exit
-		zos.close();
+		fos.close();
 
 		return file.getAbsolutePath();
 	}
 
 	/**
-	 * Create a metadata folder according to MEF {@link Version} 2
+	 * Write a MEF2 file in ZIP format to the given stream, which is not
+	 * closed. Records are prepared (database access, conversion to ISO,
+	 * info file) by a pool of threads, at most IN_FLIGHT records ahead of
+	 * the one being written, and written in the order of the uuids.
+	 * 
+	 * @param context
+	 * @param uuids
+	 *            List of records to export.
+	 * @param format
+	 *            {@link Format} to export.
+	 * @param skipUUID
+	 * @param stylePath
+	 * @param os
+	 * @throws Exception
+	 */
+	public static void doExport(final ServiceContext context, Collection<String> uuids,
+			final Format format, final boolean skipUUID, final String stylePath,
+			OutputStream os) throws Exception {
+
+		ZipOutputStream zos = new ZipOutputStream(os);
+
+		Iterator<String> iter = uuids.iterator();
+		LinkedList<Future<Record>> pending = new LinkedList<Future<Record>>();
+
+		try {
+			while (pending.size() < IN_FLIGHT && iter.hasNext())
+				pending.add(submit(context, iter.next(), format, skipUUID, stylePath));
+
+			while (!pending.isEmpty()) {
+				Record record = get(pending.removeFirst());
+
+				if (iter.hasNext())
+					pending.add(submit(context, iter.next(), format, skipUUID, stylePath));
+
+				record.write(zos);
+			}
+		} finally {
+			for (Future<Record> f : pending)
+				f.cancel(true);
+		}
+
+		// --- cleanup and exit
+		zos.finish();
+	}
+
+	/**
+	 * Submit the preparation of a record to the pool.
+	 */
+	private static Future<Record> submit(final ServiceContext context,
+			final String uuid, final Format format, final boolean skipUUID,
+			final String stylePath) {
+		return getExecutor().submit(new Callable<Record>() {
+			public Record call() throws Exception {
+				// --- each thread needs its own database connection
+				ServiceContext ctx = context.copy();
+
+				try {
+					Record record = prepare(ctx, uuid, format, skipUUID, stylePath);
+					ctx.getResourceManager().close();
+					return record;
+				} catch (Exception e) {
+					ctx.getResourceManager().abort();
+					throw e;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wait for a record, throwing the exception raised by its preparation.
+	 */
+	private static Record get(Future<Record> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+
+			throw e;
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "MEF export");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return executor;
+	}
+
+	/**
+	 * Prepare a metadata folder according to MEF {@link Version} 2
 	 * specification. If current record is based on an ISO profil, the
 	 * stylesheet /convert/to19139.xsl is used to map to ISO. Both files are
 	 * included in MEF file. Export relevant information according to format
-	 * parameter.
+	 * parameter. Documents of the public and private folders are only read
+	 * when the record is written.
 	 * 
 	 * @param context
-	 * @param dbms
 	 * @param uuid
 	 *            Metadata record to export
-	 * @param zos
-	 *            Zip file to add new record
+	 * @param format
 	 * @param skipUUID
 	 * @param stylePath
-	 * @param format
+	 * @return the record to write
 	 * @throws Exception
 	 */
-	private static void createMetadataFolder(ServiceContext context, Dbms dbms,
-			String uuid, ZipOutputStream zos, boolean skipUUID,
-			String stylePath, Format format) throws Exception {
+	private static Record prepare(ServiceContext context, String uuid,
+			Format format, boolean skipUUID, String stylePath) throws Exception {
 
-		MEFLib.createDir(zos, uuid + FS);
+		Dbms dbms = (Dbms) context.getResourceManager()
+				.open(Geonet.Res.MAIN_DB);
 
 		Element record = MEFLib.retrieveMetadata(dbms, uuid);
 
@@ -121,12 +228,10 @@ class MEF2Exporter {
 		if (!"y".equals(isTemp) && !"n".equals(isTemp))
 			throw new Exception("Cannot export sub template");
 
-		String pubDir = Lib.resource.getDir(context, "public", id);
-		String priDir = Lib.resource.getDir(context, "private", id);
+		Record rec = new Record(uuid);
 
-		// --- create folders
-		MEFLib.createDir(zos, uuid + FS + DIR_PUBLIC);
-		MEFLib.createDir(zos, uuid + FS + DIR_PRIVATE);
+		rec.pubDir = Lib.resource.getDir(context, "public", id);
+		rec.priDir = Lib.resource.getDir(context, "private", id);
 
 		// Always save metadata in iso 19139
 		if (schema.contains("iso19139") && !schema.equals("iso19139")) {
@@ -138,44 +243,38 @@ class MEF2Exporter {
 			// performing a detach() method this element.
 			Element profilMetadata = (Element) record.clone();
 
-			ByteArrayInputStream data19139 = formatData(profilMetadata, true,
-					path);
-			MEFLib.addFile(zos, uuid + FS + MD_DIR + FILE_METADATA_19139,
-					data19139);
+			rec.add(uuid + FS + MD_DIR + FILE_METADATA_19139,
+					formatData(profilMetadata, true, path));
 		}
 
 		// --- save native metadata
-		ByteArrayInputStream data = formatData(record);
-		MEFLib.addFile(zos, uuid + FS + MD_DIR + FILE_METADATA, data);
+		rec.add(uuid + FS + MD_DIR + FILE_METADATA, formatData(record));
 
 		// --- save Feature Catalog
 		String ftUUID = getFeatureCatalogID(context, dbms, uuid);
 		if (!ftUUID.equals("")) {
 			Element ft = MEFLib.retrieveMetadata(dbms, ftUUID);
-			ByteArrayInputStream ftData = formatData(ft);
-			MEFLib.addFile(zos, uuid + FS + SCHEMA + FILE_METADATA, ftData);
+			rec.add(uuid + FS + SCHEMA + FILE_METADATA, formatData(ft));
 		}
 
 		// --- save info file
-		byte[] binData = MEFLib.buildInfoFile(context, record, format, pubDir,
-				priDir, skipUUID).getBytes("UTF-8");
-
-		MEFLib.addFile(zos, uuid + FS + FILE_INFO, new ByteArrayInputStream(
-				binData));
+		rec.add(uuid + FS + FILE_INFO, MEFLib.buildInfoFile(context, record,
+				format, rec.pubDir, rec.priDir, skipUUID).getBytes("UTF-8"));
 
 		// --- save thumbnails and maps
 
-		if (format == Format.PARTIAL || format == Format.FULL)
-			MEFLib.savePublic(zos, pubDir, uuid);
+		rec.savePublic = (format == Format.PARTIAL || format == Format.FULL);
 
 		if (format == Format.FULL) {
 			try {
 				Lib.resource.checkPrivilege(context, id, AccessManager.OPER_DOWNLOAD);
-				MEFLib.savePrivate(zos, priDir, uuid);
+				rec.savePrivate = true;
 			} catch (Exception e) {
 				// Current user could not download private data
 			}
 		}
+
+		return rec;
 	}
 
 	/**
@@ -185,20 +284,20 @@ class MEF2Exporter {
 	 * @return
 	 * @throws Exception
 	 */
-	private static ByteArrayInputStream formatData(Element elt)
+	private static byte[] formatData(Element elt)
 			throws Exception {
 		return formatData(elt, false, "");
 	}
 
 	/**
-	 * Format xml data
+	 * Format xml data, serializing it straight to UTF-8 bytes.
 	 * 
 	 * @param elt
 	 * @param transform
-	 * @return ByteArrayInputStream
+	 * @return the xml file
 	 * @throws Exception
 	 */
-	private static ByteArrayInputStream formatData(Element elt,
+	private static byte[] formatData(Element elt,
 			boolean transform, String stylePath) throws Exception {
 		String xmlData = elt.getChildText("data");
 
@@ -212,14 +311,12 @@ class MEF2Exporter {
 			md = Xml.transform(md, stylePath);
 		}
 
-		String data = Xml.getString(md);
-
-		if (!data.startsWith("<?xml"))
-			data = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n" + data;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(xmlData.length() + 1024);
+		baos.write(XML_HEADER.getBytes("UTF-8"));
 
-		byte[] binData = data.getBytes("UTF-8");
+		new XMLOutputter(org.jdom.output.Format.getPrettyFormat()).output(md, baos);
 
-		return new ByteArrayInputStream(binData);
+		return baos.toByteArray();
 	}
 
 	/**
@@ -254,4 +351,51 @@ class MEF2Exporter {
 
 		return ftUuid != null ? ftUuid : "";
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Files of a record prepared for export, in the order they are written.
+	 */
+	private static class Record {
+		Record(String uuid) {
+			this.uuid = uuid;
+		}
+
+		void add(String name, byte[] data) {
+			names.add(name);
+			files.add(data);
+		}
+
+		void write(ZipOutputStream zos) throws IOException {
+			MEFLib.createDir(zos, uuid + FS);
+
+			// --- create folders
+			MEFLib.createDir(zos, uuid + FS + DIR_PUBLIC);
+			MEFLib.createDir(zos, uuid + FS + DIR_PRIVATE);
+
+			for (int i = 0; i < names.size(); i++)
+				MEFLib.addFile(zos, names.get(i), files.get(i));
+
+			if (savePublic)
+				MEFLib.savePublic(zos, pubDir, uuid);
+
+			if (savePrivate)
+				MEFLib.savePrivate(zos, priDir, uuid);
+		}
+
+		final String uuid;
+		final List<String> names = new ArrayList<String>();
+		final List<byte[]> files = new ArrayList<byte[]>();
+
+		String pubDir;
+		String priDir;
+		boolean savePublic;
+		boolean savePrivate;
+	}
+
+	private static final int THREADS = 4;
+	private static final int IN_FLIGHT = 2 * THREADS;
+
+	private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n";
+
+	private static ExecutorService executor;
+}
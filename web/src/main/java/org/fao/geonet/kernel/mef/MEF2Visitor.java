@@ -24,22 +24,41 @@
 package org.fao.geonet.kernel.mef;
 
 import jeeves.exceptions.BadFormatEx;
-import jeeves.interfaces.Logger;
+import jeeves.utils.BinaryFile;
 import jeeves.utils.Log;
 import jeeves.utils.Xml;
 import org.fao.geonet.constants.Geonet;
-import org.fao.geonet.util.ZipUtil;
 import org.jdom.Element;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.zip.ZipFile;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.fao.geonet.kernel.mef.MEFConstants.DIR_PRIVATE;
+import static org.fao.geonet.kernel.mef.MEFConstants.DIR_PUBLIC;
 import static org.fao.geonet.kernel.mef.MEFConstants.FILE_INFO;
+import static org.fao.geonet.kernel.mef.MEFConstants.FILE_METADATA;
+import static org.fao.geonet.kernel.mef.MEFConstants.MD_DIR;
+import static org.fao.geonet.kernel.mef.MEFConstants.SCHEMA;
 
 /**
- * MEF version 2 visitor
+ * MEF version 2 visitor. The MEF file is read in a single pass: XML documents
+ * are parsed while they are unzipped and each record is handed to the visitor
+ * when its first public or private file is found, so that these files can be
+ * copied straight from the zip stream. This requires the XML documents of the
+ * record to come before its files, as in MEF files created by GeoNetwork, and
+ * an XML document found after them is rejected. Files found before the info
+ * file of their record are spooled to temporary files until the end of the
+ * record.
  */
 public class MEF2Visitor implements IVisitor {
 
@@ -52,157 +71,287 @@ public class MEF2Visitor implements IVisitor {
 	 * metadata.xml, info.xml and optional feature catalogue files.
 	 */
 	public Element handleXml(File mefFile, IMEFVisitor v) throws Exception {
+		InputStream is = new FileInputStream(mefFile);
 
-		Logger log = Log.createLogger(Geonet.MEF);
+		try {
+			return visit(is, mefFile.getName(), v);
+		} finally {
+			is.close();
+		}
+	}
 
-		int nbMetadata = 0;
-		Element fc;
+	/**
+	 * Process a MEF read from a stream.
+	 * 
+	 * @param mef
+	 * @param name
+	 *            MEF name, used in error messages
+	 * @param v
+	 * @return the info file of the last record
+	 * @throws Exception
+	 */
+	public Element visit(InputStream mef, String name, IMEFVisitor v)
+			throws Exception {
+		ZipInputStream zis = new ZipInputStream(new BufferedInputStream(mef));
+		InputStreamBridge isb = new InputStreamBridge(zis);
 
 		Element info = new Element("info");
+		Record record = null;
+		int nbMetadata = 0;
 
-		File unzipDir = new File(mefFile.getParentFile(), "unzipping");
-
-		if (unzipDir.exists())
-			ZipUtil.deleteAllFiles(unzipDir);
-
-		ZipUtil.extract(new ZipFile(mefFile), unzipDir);
-
-		// Get the metadata depth
-		File metadata = getMetadataDirectory(unzipDir);
-
-		if (metadata.getParentFile().equals(unzipDir)) {
-			log
-					.debug("Metadata folder is directly under the unzip temporary folder.");
-		} else {
-			File[] lstmdDir = metadata.getParentFile().getParentFile()
-					.listFiles();
-            for (File file : lstmdDir) {
-                if (file != null && file.isDirectory()) {
-                    // Handle metadata file
-                    File metadataDir = new File(file, "metadata");
-
-                    File[] xmlFiles = metadataDir.listFiles();
-
-                    if (xmlFiles == null || xmlFiles.length < 1) {
-                        throw new BadFormatEx(
-                                "Missing XML document in metadata folder in MEF file "
-                                        + mefFile.getName() + ".");
-                    }
-
-                    // Handle feature catalog
-                    File fcFile = getFeatureCalalogFile(file);
-                    if (fcFile != null) {
-                        fc = Xml.loadFile(fcFile);
-                    }
-                    else {
-                        fc = null;
-                    }
-
-                    // Handle info file
-                    File fileInfo = new File(file, FILE_INFO);
-                    if (fileInfo.exists()) {
-                        info = Xml.loadFile(fileInfo);
-                    }
-
-                    v.handleMetadataFiles(xmlFiles, nbMetadata);
-                    v.handleFeatureCat(fc, nbMetadata);
-                    v.handleInfo(info, nbMetadata);
-
-                    // Handle binaries
-                    handleBin(file, v, info, nbMetadata);
-
-                    nbMetadata++;
-                }
-            }
-		}
+		ZipEntry entry;
+
+		try {
+			while ((entry = zis.getNextEntry()) != null) {
+				String fullName = entry.getName();
+
+				if (entry.isDirectory())
+					continue;
+
+				// --- records are folders holding the info file and the
+				// --- metadata, applschema, public and private folders
+
+				String path[] = fullName.split("/");
+				int len = path.length;
+
+				String recordDir;
+				String folder;
+
+				if (len >= 2 && path[len - 1].equals(FILE_INFO)) {
+					recordDir = fullName.substring(0, fullName.length() - FILE_INFO.length());
+					folder = null;
+				} else if (len >= 3 && isFolder(path[len - 2])) {
+					folder = path[len - 2] + "/";
+					recordDir = fullName.substring(0, fullName.length()
+							- path[len - 1].length() - folder.length());
+				} else
+					continue;
+
+				if (record == null || !record.dir.equals(recordDir)) {
+					if (record != null) {
+						info = record.end();
+						record = null;
+					}
+
+					record = new Record(recordDir, nbMetadata++, name, v);
+				}
+
+				String simpleName = path[len - 1];
 
-		ZipUtil.deleteAllFiles(unzipDir);
+				if (folder == null)
+					record.setInfo(Xml.loadStream(isb));
+
+				else if (folder.equals(MD_DIR))
+					record.addMetadata(simpleName, Xml.loadStream(isb));
+
+				else if (folder.equals(SCHEMA))
+					record.addFeatureCat(simpleName, isb);
+
+				else
+					record.addFile(folder, simpleName, isb);
+
+				zis.closeEntry();
+			}
+
+			if (record != null) {
+				info = record.end();
+				record = null;
+			}
+		} finally {
+			if (record != null)
+				record.dispose();
+
+			try {
+				zis.close();
+			} catch (IOException e) {
+				Log.warning(Geonet.MEF, "Cannot close MEF file " + name + " : "
+						+ e.getMessage());
+			}
+		}
 
 		return info;
 	}
 
 	/**
-	 * Check binary files to import.
+	 * Binary files are handled while the MEF file is read by
+	 * {@link #handleXml(File, IMEFVisitor)}: they cannot be processed on their
+	 * own.
 	 */
 	public void handleBin(File file, IMEFVisitor v, Element info, int index)
 			throws Exception {
+		throw new UnsupportedOperationException(
+				"Binary files of MEF2 files are handled by handleXml");
+	}
+
+	// --------------------------------------------------------------------------
+
+	private static boolean isFolder(String name) {
+		name = name + "/";
 
-		List<Element> pubFiles = null;
-		List<Element> prvFiles = null;
+		return name.equals(MD_DIR) || name.equals(SCHEMA)
+				|| name.equals(DIR_PUBLIC) || name.equals(DIR_PRIVATE);
+	}
+
+	// --------------------------------------------------------------------------
+	// ---
+	// --- Record : the documents of a record, until they are handed to the
+	// --- visitor
+	// ---
+	// --------------------------------------------------------------------------
 
-		if (info.getChildren().size() != 0) {
-			pubFiles = info.getChild("public").getChildren();
-			prvFiles = info.getChild("private").getChildren();
+	private static class Record {
+		Record(String dir, int index, String mefName, IMEFVisitor v) {
+			this.dir = dir;
+			this.index = index;
+			this.mefName = mefName;
+			this.v = v;
 		}
 
-		File publicFile = new File(file, MEFConstants.DIR_PUBLIC);
-		File privateFile = new File(file, MEFConstants.DIR_PRIVATE);
+		void addMetadata(String name, Element md) throws BadFormatEx {
+			checkNotStarted(MD_DIR + name);
 
-		String fname;
+			metadata.put(name, md);
+		}
 
-		// Handle public binaries files
-		if (publicFile.exists() && pubFiles != null && pubFiles.size() != 0) {
-			File[] files = publicFile.listFiles();
-			for (File f : files) {
-				fname = f.getName();
-				v.handlePublicFile(fname,
-						MEFLib.getChangeDate(pubFiles, fname),
-						new FileInputStream(f), index);
-			}
+		/**
+		 * The feature catalogue is applschema/metadata.xml or, if missing, the
+		 * first file of the applschema folder.
+		 */
+		void addFeatureCat(String name, InputStream is) throws Exception {
+			checkNotStarted(SCHEMA + name);
+
+			if (name.equals(FILE_METADATA))
+				fc = Xml.loadStream(is);
+			else if (fc == null)
+				fc = Xml.loadStream(is);
+		}
+
+		void setInfo(Element info) throws BadFormatEx {
+			checkNotStarted(FILE_INFO);
+
+			this.info = info;
 		}
 
-		// Handle private binaries files
-		if (privateFile.exists() && prvFiles != null && prvFiles.size() != 0) {
-			File[] files = privateFile.listFiles();
-			for (File f : files) {
-				fname = f.getName();
-				v.handlePrivateFile(fname, MEFLib
-						.getChangeDate(prvFiles, fname),
-						new FileInputStream(f), index);
+		/**
+		 * The record is handed to the visitor on its first file, unless its
+		 * info file has not been read yet.
+		 */
+		void addFile(String folder, String name, InputStream is)
+				throws Exception {
+			if (!started && info != null)
+				start();
+
+			if (started) {
+				handleFile(folder, name, is);
+				return;
 			}
+
+			File temp = File.createTempFile("mef-", ".tmp");
+			temp.deleteOnExit();
+
+			pendingNames.add(folder + name);
+			pendingFiles.add(temp);
+
+			BinaryFile.copy(is, new FileOutputStream(temp), false, true);
 		}
-	}
 
-	// --------------------------------------------------------------------------
+		/**
+		 * Ends the record, handing it to the visitor if this has not been done
+		 * yet.
+		 * 
+		 * @return the info file of the record
+		 */
+		Element end() throws Exception {
+			if (!started)
+				start();
+
+			return info;
+		}
 
-	/**
-	 * getFeatureCalalogFile method return feature catalog xml file if exists
-	 * 
-	 * @param file
-	 * @return File
-	 */
-	private File getFeatureCalalogFile(File file) {
-		File tmp = null;
-		File fcRepo = new File(file, MEFConstants.SCHEMA);
-
-		if (fcRepo.exists()) {
-			File fc = new File(fcRepo, MEFConstants.FILE_METADATA);
-			if (fc.exists())
-				tmp = fc;
-			else {
-				File[] files = fcRepo.listFiles();
-				// Retrieve first files into applschema directory, without any
-				// tests.
-				if (files.length != 0)
-					tmp = files[0];
+		void dispose() {
+			for (File file : pendingFiles)
+				file.delete();
+
+			pendingFiles.clear();
+		}
+
+		private void checkNotStarted(String name) throws BadFormatEx {
+			if (started)
+				throw new BadFormatEx("File " + dir + name
+						+ " found after the public and private files of its record in MEF file "
+						+ mefName + ".");
+		}
+
+		private void start() throws Exception {
+			if (metadata.isEmpty()) {
+				dispose();
+				throw new BadFormatEx(
+						"Missing XML document in metadata folder in MEF file "
+								+ mefName + ".");
+			}
+
+			if (info == null)
+				info = new Element("info");
+
+			started = true;
+
+			v.handleMetadataFiles(metadata, index);
+			v.handleFeatureCat(fc, index);
+			v.handleInfo(info, index);
+
+			metadata = null;
+			fc = null;
+
+			try {
+				for (int i = 0; i < pendingFiles.size(); i++) {
+					String fullName = pendingNames.get(i);
+					int pos = fullName.indexOf('/') + 1;
+
+					InputStream is = new FileInputStream(pendingFiles.get(i));
+
+					try {
+						handleFile(fullName.substring(0, pos), fullName.substring(pos), is);
+					} finally {
+						is.close();
+					}
+				}
+			} finally {
+				dispose();
+				pendingNames.clear();
 			}
 		}
-		return tmp;
-	}
 
-	// --------------------------------------------------------------------------
+		/**
+		 * Binary files are only imported if the info file registers files in
+		 * their folder.
+		 */
+		private void handleFile(String folder, String name, InputStream is)
+				throws Exception {
+			Element files = info.getChild(folder.substring(0, folder.length() - 1));
+
+			if (files == null || files.getChildren().size() == 0)
+				return;
 
-	public File getMetadataDirectory(File dir) {
-		File metadata = new File(dir, "metadata");
+			List<Element> list = files.getChildren();
 
-		if (!(metadata.exists() && metadata.isDirectory())) {
-			File[] list = dir.listFiles();
-            for (File file : list) {
-                if (file.isDirectory()) {
-                    metadata = getMetadataDirectory(file);
-                }
-            }
+			if (folder.equals(DIR_PUBLIC))
+				v.handlePublicFile(name, MEFLib.getChangeDate(list, name), is, index);
+			else
+				v.handlePrivateFile(name, MEFLib.getChangeDate(list, name), is, index);
 		}
-		return metadata;
+
+		final String dir;
+
+		private final int index;
+		private final String mefName;
+		private final IMEFVisitor v;
+
+		private Map<String, Element> metadata = new LinkedHashMap<String, Element>();
+		private Element fc;
+		private Element info;
+		private boolean started;
+
+		private final List<String> pendingNames = new ArrayList<String>();
+		private final List<File> pendingFiles = new ArrayList<File>();
 	}
-}
\ No newline at end of file
+}
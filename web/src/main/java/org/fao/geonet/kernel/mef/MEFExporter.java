@@ -32,9 +32,9 @@ import org.fao.geonet.kernel.mef.MEFLib.Version;
 import org.fao.geonet.lib.Lib;
 import org.jdom.Element;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.util.zip.ZipOutputStream;
 
 import static org.fao.geonet.kernel.mef.MEFConstants.DIR_PRIVATE;
@@ -65,6 +65,37 @@ class MEFExporter {
 	 */
 	public static String doExport(ServiceContext context, String uuid,
 			Format format, boolean skipUUID) throws Exception {
+		File file = File.createTempFile("mef-", ".mef");
+		FileOutputStream fos = new FileOutputStream(file);
+
+		try {
+			doExport(context, uuid, format, skipUUID, fos);
+		} catch (Exception e) {
+			fos.close();
+			file.delete();
+			throw e;
+		}
+
+		fos.close();
+
+		return file.getAbsolutePath();
+	}
+
+	/**
+	 * Write a metadata folder according to MEF {@link Version} 1
+	 * specification to the given stream, which is not closed.
+	 * 
+	 * @param context
+	 * @param uuid
+	 *            UUID of the metadata record to export.
+	 * @param format
+	 *            {@link Format}
+	 * @param skipUUID
+	 * @param os
+	 * @throws Exception
+	 */
+	public static void doExport(ServiceContext context, String uuid,
+			Format format, boolean skipUUID, OutputStream os) throws Exception {
 		Dbms dbms = (Dbms) context.getResourceManager()
 				.open(Geonet.Res.MAIN_DB);
 
@@ -77,12 +108,10 @@ class MEFExporter {
 		if (!"y".equals(isTemp) && !"n".equals(isTemp))
 			throw new Exception("Cannot export sub template");
 
-		File file = File.createTempFile("mef-", ".mef");
 		String pubDir = Lib.resource.getDir(context, "public", id);
 		String priDir = Lib.resource.getDir(context, "private", id);
 
-		FileOutputStream fos = new FileOutputStream(file);
-		ZipOutputStream zos = new ZipOutputStream(fos);
+		ZipOutputStream zos = new ZipOutputStream(os);
 
 		// --- create folders
 
@@ -94,16 +123,12 @@ class MEFExporter {
 		if (!data.startsWith("<?xml"))
 			data = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n" + data;
 
-		byte[] binData = data.getBytes("UTF-8");
-
-		MEFLib.addFile(zos, FILE_METADATA, new ByteArrayInputStream(binData));
+		MEFLib.addFile(zos, FILE_METADATA, data.getBytes("UTF-8"));
 
 		// --- save info file
 
-		binData = MEFLib.buildInfoFile(context, record, format, pubDir, priDir,
-				skipUUID).getBytes("UTF-8");
-
-		MEFLib.addFile(zos, FILE_INFO, new ByteArrayInputStream(binData));
+		MEFLib.addFile(zos, FILE_INFO, MEFLib.buildInfoFile(context, record,
+				format, pubDir, priDir, skipUUID).getBytes("UTF-8"));
 
 		// --- save thumbnails and maps
 
@@ -120,9 +145,7 @@ class MEFExporter {
 		}
 		// --- cleanup and exit
 
-		zos.close();
-
-		return file.getAbsolutePath();
+		zos.finish();
 	}
 }
 
@@ -42,13 +42,15 @@ import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import static org.fao.geonet.kernel.mef.MEFConstants.DIR_PRIVATE;
@@ -168,6 +170,14 @@ public class MEFLib {
 
 	// --------------------------------------------------------------------------
 
+	public static void doExport(ServiceContext context, String uuid,
+			String format, boolean skipUUID, OutputStream os) throws Exception {
+		MEFExporter.doExport(context, uuid, Format.parse(format),
+				skipUUID, os);
+	}
+
+	// --------------------------------------------------------------------------
+
 	public static String doMEF2Export(ServiceContext context,
 			Set<String> uuids, String format, boolean skipUUID, String stylePath)
 			throws Exception {
@@ -177,6 +187,15 @@ public class MEFLib {
 
 	// --------------------------------------------------------------------------
 
+	public static void doMEF2Export(ServiceContext context,
+			Collection<String> uuids, String format, boolean skipUUID,
+			String stylePath, OutputStream os) throws Exception {
+		MEF2Exporter.doExport(context, uuids, Format.parse(format),
+				skipUUID, stylePath, os);
+	}
+
+	// --------------------------------------------------------------------------
+
 	public static void visit(File mefFile, IVisitor visitor, IMEFVisitor v)
 			throws Exception {
 		visitor.visit(mefFile, v);
@@ -192,19 +211,14 @@ public class MEFLib {
 	public static Version getMEFVersion(File mefFile) {
 
 		try {
-			ZipInputStream zis = new ZipInputStream(
-					new FileInputStream(mefFile));
-			ZipEntry entry;
+			// --- the central directory is enough: no need to scan the entries
+			ZipFile zip = new ZipFile(mefFile);
 
 			try {
-				while ((entry = zis.getNextEntry()) != null) {
-					String fullName = entry.getName();
-					if (fullName.equals("metadata.xml") || fullName.equals("info.xml"))
-						return Version.V1;
-					zis.closeEntry();
-				}
+				if (zip.getEntry("metadata.xml") != null || zip.getEntry("info.xml") != null)
+					return Version.V1;
 			} finally {
-				zis.close();
+				zip.close();
 			}
 			return Version.V2;
 		} catch (IOException e) {
@@ -262,6 +276,22 @@ public class MEFLib {
 		zos.closeEntry();
 	}
 
+	/**
+	 * Add file to ZIP file
+	 * 
+	 * @param zos
+	 * @param name
+	 * @param data
+	 * @throws IOException
+	 */
+	static void addFile(ZipOutputStream zos, String name, byte[] data)
+			throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		zos.putNextEntry(entry);
+		zos.write(data);
+		zos.closeEntry();
+	}
+
 	/**
 	 * Save public directory (thumbnails or other uploaded documents).
 	 * 
@@ -24,14 +24,20 @@
 package org.fao.geonet.kernel.mef;
 
 import jeeves.exceptions.BadFormatEx;
+import jeeves.utils.BinaryFile;
 import jeeves.utils.Xml;
 import org.jdom.Element;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -45,8 +51,76 @@ import static org.fao.geonet.kernel.mef.MEFConstants.FILE_METADATA;
  */
 public class MEFVisitor implements IVisitor {
 	public void visit(File mefFile, IMEFVisitor v) throws Exception {
-		Element info = handleXml(mefFile, v);
-		handleBin(mefFile, v, info, 0);
+		visit(new FileInputStream(mefFile), v);
+	}
+
+	// --------------------------------------------------------------------------
+	/**
+	 * Process a MEF read from a stream in a single pass, so it does not need to
+	 * be saved to a file first. metadata.xml and info.xml can come in any order:
+	 * they are handed to the visitor once both have been read. Binary files are
+	 * handed to the visitor while they are unzipped: this is the case of MEF
+	 * files created by GeoNetwork, which have both XML files before the public
+	 * and private files. Binary files found before them are spooled to
+	 * temporary files until then.
+	 */
+	public void visit(InputStream mef, IMEFVisitor v) throws Exception {
+		ZipInputStream zis = new ZipInputStream(mef);
+		InputStreamBridge isb = new InputStreamBridge(zis);
+
+		Map<String, File> pending = new LinkedHashMap<String, File>();
+
+		ZipEntry entry;
+
+		Element md = null;
+		Element info = null;
+		boolean handled = false;
+
+		try {
+			while ((entry = zis.getNextEntry()) != null) {
+				String fullName = entry.getName();
+
+				if (fullName.equals(FILE_METADATA))
+					md = Xml.loadStream(isb);
+
+				else if (fullName.equals(FILE_INFO))
+					info = Xml.loadStream(isb);
+
+				else if (fullName.equals(DIR_PUBLIC) || fullName.equals(DIR_PRIVATE)) {
+					// --- nothing to do with folders
+				}
+
+				else if (handled)
+					handleBinEntry(v, info, fullName, isb);
+
+				else
+					pending.put(fullName, spool(isb));
+
+				zis.closeEntry();
+
+				if (!handled && md != null && info != null) {
+					v.handleMetadata(md, 0);
+					v.handleInfo(info, 0);
+					handled = true;
+
+					for (Map.Entry<String, File> file : pending.entrySet())
+						handleBinEntry(v, info, file.getKey(), file.getValue());
+
+					pending.clear();
+				}
+			}
+		} finally {
+			safeClose(zis);
+
+			for (File file : pending.values())
+				file.delete();
+		}
+
+		if (md == null)
+			throw new BadFormatEx("Missing metadata file : " + FILE_METADATA);
+
+		if (info == null)
+			throw new BadFormatEx("Missing info file : " + FILE_INFO);
 	}
 
 	// --------------------------------------------------------------------------
@@ -140,6 +214,61 @@ public class MEFVisitor implements IVisitor {
 		}
 	}
 
+	private void handleBinEntry(IMEFVisitor v, Element info, String fullName,
+			InputStream is) throws Exception {
+		String simpleName = new File(fullName).getName();
+
+		if (fullName.startsWith(DIR_PUBLIC))
+			v.handlePublicFile(simpleName, MEFLib.getChangeDate(
+					getFiles(info, "public"), simpleName), is, 0);
+
+		else if (fullName.startsWith(DIR_PRIVATE))
+			v.handlePrivateFile(simpleName, MEFLib.getChangeDate(
+					getFiles(info, "private"), simpleName), is, 0);
+	}
+
+	/**
+	 * Hands a spooled binary file to the visitor and removes it.
+	 */
+	private void handleBinEntry(IMEFVisitor v, Element info, String fullName,
+			File file) throws Exception {
+		InputStream is = new FileInputStream(file);
+
+		try {
+			handleBinEntry(v, info, fullName, is);
+		} finally {
+			is.close();
+			file.delete();
+		}
+	}
+
+	/**
+	 * Copies a binary file found before the XML files to a temporary file.
+	 */
+	private static File spool(InputStream is) throws IOException {
+		File file = File.createTempFile("mef-", ".bin");
+		OutputStream os = null;
+
+		try {
+			os = new FileOutputStream(file);
+			BinaryFile.copy(is, os, false, true);
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+
+		return file;
+	}
+
+	private List<Element> getFiles(Element info, String dir) {
+		Element files = info.getChild(dir);
+
+		if (files == null)
+			return new ArrayList<Element>();
+
+		return files.getChildren();
+	}
+
 	private static void safeClose(ZipInputStream zis) {
 		try {
 			zis.close();
@@ -29,17 +29,16 @@ import jeeves.server.ServiceConfig;
 import jeeves.server.context.ServiceContext;
 import jeeves.utils.Xml;
 import org.fao.geonet.GeonetContext;
-import org.fao.geonet.constants.Edit;
 import org.fao.geonet.constants.Geonet;
-import org.fao.geonet.kernel.search.MetaSearcher;
+import org.fao.geonet.kernel.search.LuceneSearcher;
 import org.fao.geonet.kernel.search.SearchManager;
+import org.fao.geonet.kernel.search.spatial.Pair;
 import org.fao.geonet.kernel.setting.SettingInfo;
 import org.fao.oaipmh.exceptions.IdDoesNotExistException;
 import org.fao.oaipmh.exceptions.OaiPmhException;
 import org.jdom.Element;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 
 //=============================================================================
@@ -48,8 +47,6 @@ public class Lib
 {
 	public static final int MAX_RECORDS = 10;
 
-	public static final String SESSION_OBJECT = "oai-list-records-result";
-
 	//---------------------------------------------------------------------------
 	//---
 	//--- API methods
@@ -114,38 +111,28 @@ public class Lib
 
 	//---------------------------------------------------------------------------
 
-	public static List<Integer> search(ServiceContext context, Element params) throws Exception
+	/** Returns the (change date, id) of at most maxHits records, sorted by change
+	  * date and id, that follow the given ones (from the first record if changeDate
+	  * is null). Each page is a new bounded search, so nothing is kept between
+	  * requests.
+	  */
+
+	public static List<Pair<String, String>> search(ServiceContext context, Element params,
+																	 String changeDate, String id, int maxHits) throws Exception
 	{
 		GeonetContext gc = (GeonetContext) context.getHandlerContext(Geonet.CONTEXT_NAME);
 		SearchManager sm = gc.getSearchmanager();
 
-		MetaSearcher searcher = sm.newSearcher(SearchManager.LUCENE, Geonet.File.SEARCH_LUCENE);
+		LuceneSearcher searcher = (LuceneSearcher) sm.newSearcher(SearchManager.LUCENE, Geonet.File.SEARCH_LUCENE);
 
 		context.debug("Searching with params:\n"+ Xml.getString(params));
 
-		searcher.search(context, params, dummyConfig);
-
-		params.addContent(new Element("fast").setText("true"));
-		params.addContent(new Element("from").setText("1"));
-		params.addContent(new Element("to").setText(searcher.getSize() +""));
-
-		context.info("Records found : "+ searcher.getSize());
-
-		Element records = searcher.present(context, params, dummyConfig);
+		List<Pair<String, String>> hits = searcher.searchAfterChangeDate(context, params, dummyConfig,
+																							  changeDate, id, maxHits);
 
-		records.getChild("summary").detach();
-
-		List<Integer> result = new ArrayList<Integer>();
-
-		for (Object o : records.getChildren())
-		{
-			Element rec  = (Element) o;
-			Element info = rec.getChild("info", Edit.NAMESPACE);
-
-			result.add(Integer.parseInt(info.getChildText("id")));
-		}
+		context.debug("Records found : "+ hits.size());
 
-		return result;
+		return hits;
 	}
 
 	//---------------------------------------------------------------------------
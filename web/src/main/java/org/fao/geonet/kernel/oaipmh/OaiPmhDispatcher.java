@@ -25,6 +25,7 @@ package org.fao.geonet.kernel.oaipmh;
 
 import jeeves.constants.Jeeves;
 import jeeves.server.context.ServiceContext;
+import jeeves.utils.StreamedElement;
 import jeeves.utils.Util;
 import jeeves.utils.Xml;
 import org.fao.geonet.constants.Geonet;
@@ -41,7 +42,9 @@ import org.fao.oaipmh.requests.AbstractRequest;
 import org.fao.oaipmh.responses.AbstractResponse;
 import org.fao.oaipmh.server.OaiPmhFactory;
 import org.fao.oaipmh.util.Lib;
+import org.jdom.Attribute;
 import org.jdom.Element;
+import org.jdom.Namespace;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -60,15 +63,13 @@ public class OaiPmhDispatcher
 	//---
 	//---------------------------------------------------------------------------
 
-	public OaiPmhDispatcher(int searchmode,  int cachesize, int oaicachelifetime)
+	public OaiPmhDispatcher(int searchmode)
 	{
-		ResumptionTokenCache cache = new ResumptionTokenCache(oaicachelifetime,cachesize);
-		
 		register(new GetRecord());
 		register(new Identify());
-		register(new ListIdentifiers(cache,searchmode));
+		register(new ListIdentifiers(searchmode));
 		register(new ListMetadataFormats());
-		register(new ListRecords(cache,searchmode));
+		register(new ListRecords(searchmode));
 		register(new ListSets());
 	}
 
@@ -88,7 +89,13 @@ public class OaiPmhDispatcher
 	public Element dispatch(Element request, ServiceContext context)
 	{
 		Element response = dispatchI(request, context);
-		validateResponse(context, response);
+
+		StreamedElement streamed = StreamedElement.getStreamed(response);
+
+		if (streamed == null)
+			validateResponse(context, response);
+		else
+			validateStreamed(context, streamed);
 
 		return response;
 	}
@@ -157,6 +164,68 @@ public class OaiPmhDispatcher
 		}
 	}
 
+	//---------------------------------------------------------------------------
+	/** Streamed records are only available when the response is written, so
+	  * each one is validated on its own, as the only record of a skeleton of
+	  * the response. The skeleton is built once and holds the ancestors of the
+	  * streamed element with the (small) elements that precede them, like
+	  * responseDate and request */
+
+	private void validateStreamed(final ServiceContext context, StreamedElement streamed)
+	{
+		Element list = null;
+		Element root = null;
+
+		for (Element elem = streamed; elem.getParentElement() != null; elem = elem.getParentElement())
+		{
+			Element parent = elem.getParentElement();
+			Element copy   = new Element(parent.getName(), parent.getNamespace());
+
+			for (Object o : parent.getAttributes())
+				copy.setAttribute((Attribute) ((Attribute) o).clone());
+
+			for (Object o : parent.getAdditionalNamespaces())
+				copy.addNamespaceDeclaration((Namespace) o);
+
+			for (Object o : parent.getChildren())
+			{
+				if (o == elem)
+					break;
+
+				copy.addContent((Element) ((Element) o).clone());
+			}
+
+			if (root == null)	list = copy;
+			else					copy.addContent(root);
+
+			root = copy;
+		}
+
+		final Element skeleton = root;
+		final Element holder   = list;
+
+		final StreamedElement.Producer producer = streamed.getProducer();
+
+		streamed.setProducer(new StreamedElement.Producer()
+		{
+			public Element next() throws Exception
+			{
+				Element record = producer.next();
+
+				if (record != null)
+				{
+					holder.addContent(record);
+					validateResponse(context, skeleton);
+					holder.removeContent(record);
+				}
+
+				return record;
+			}
+
+			public void close() { producer.close(); }
+		});
+	}
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- Variables
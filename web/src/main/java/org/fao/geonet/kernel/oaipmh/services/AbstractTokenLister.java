@@ -6,9 +6,8 @@ import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.oaipmh.Lib;
 import org.fao.geonet.kernel.oaipmh.OaiPmhDispatcher;
 import org.fao.geonet.kernel.oaipmh.OaiPmhService;
-import org.fao.geonet.kernel.oaipmh.ResumptionTokenCache;
+import org.fao.geonet.kernel.search.spatial.Pair;
 import org.fao.oaipmh.exceptions.BadArgumentException;
-import org.fao.oaipmh.exceptions.BadResumptionTokenException;
 import org.fao.oaipmh.exceptions.NoRecordsMatchException;
 import org.fao.oaipmh.requests.AbstractRequest;
 import org.fao.oaipmh.requests.TokenListRequest;
@@ -16,17 +15,22 @@ import org.fao.oaipmh.responses.AbstractResponse;
 import org.fao.oaipmh.responses.ListResponse;
 import org.fao.oaipmh.responses.GeonetworkResumptionToken;
 import org.fao.oaipmh.util.ISODate;
-import org.fao.oaipmh.util.SearchResult;
 import org.jdom.Element;
 
+import java.util.List;
+
+/**
+ * Base class of the list verbs. Records are listed in (change date, id) order
+ * and the resumption token carries the change date and id of the last record
+ * returned, so each page is a new bounded search and no result set is kept on
+ * the server between requests.
+ */
 public abstract class AbstractTokenLister implements OaiPmhService {
 
-	protected ResumptionTokenCache cache;
 	protected String dateFrom ;
 	protected String dateUntil ;
 	
-	public AbstractTokenLister(ResumptionTokenCache cache, int mode) {
-		this.cache=cache;
+	public AbstractTokenLister(int mode) {
 
 		// these are taken from the hard coding in
 		// web/src/main/java/org/fao/geonet/kernel/search/LuceneQueryBuilder.java
@@ -48,92 +52,94 @@ public abstract class AbstractTokenLister implements OaiPmhService {
 		
 		TokenListRequest  req = (TokenListRequest)  request;
 
-		//UserSession  session = context.getUserSession();
-		SearchResult result;
-
-		//String token = req.getResumptionToken();
-		String strToken = req.getResumptionToken();
-		GeonetworkResumptionToken token = null;
-		
-
-		
-		int pos = 0;
+		boolean newRequest = (req.getResumptionToken() == null);
 
-		if ( strToken == null )
+		if (newRequest)
 		{
 			Log.debug(Geonet.OAI_HARVESTER,"OAI " +this.getClass().getSimpleName()+ " : new request (no resumptionToken)");
-			Element params = new Element("request");
 
 			ISODate from   = req.getFrom();
 			ISODate until  = req.getUntil();
-			String  set    = req.getSet();
-			String  prefix = req.getMetadataPrefix();
-
-			if (from != null)
-			{
-				String sFrom = from.isShort ? from.getDate() : from.toString();
-				params.addContent(new Element(dateFrom).setText(sFrom));
-			}
-
-			if (until != null)
-			{
-				String sTo = until.isShort ? until.getDate() : until.toString();
-				params.addContent(new Element(dateUntil).setText(sTo));
-			}
 
 			if (from != null && until != null && from.sub(until) > 0)
 				throw new BadArgumentException("From is greater than until");
+		}
 
-			if (set != null)
-				params.addContent(new Element("category").setText(set));
+		GeonetworkResumptionToken token = new GeonetworkResumptionToken(req);
 
-			result     = new SearchResult(prefix);
-			result.ids = Lib.search(context, params);
+		if (!newRequest)
+			Log.debug(Geonet.OAI_HARVESTER,"OAI " +this.getClass().getSimpleName()+ " : using ResumptionToken :"+req.getResumptionToken());
 
-			if (result.ids.size() == 0)
-				throw new NoRecordsMatchException("No results");
+		//--- fill the page, searching again if some records cannot be disseminated
 
-			// we only need a new token if the result set is big enough
-			if (result.ids.size() > Lib.MAX_RECORDS ) {
-				token = new GeonetworkResumptionToken(req,result);
-				cache.storeResumptionToken(token);
-			}
-			
-		}
-		else
+		ListResponse res = newResponse();
+
+		String  changeDate = token.getChangeDate();
+		String  id         = token.getId();
+		boolean more       = true;
+
+		while (more && res.getSize() < Lib.MAX_RECORDS)
 		{
-			//result = (SearchResult) session.getProperty(Lib.SESSION_OBJECT);
-			token = cache.getResumptionToken( GeonetworkResumptionToken.buildKey(req)  );
-			Log.debug(Geonet.OAI_HARVESTER,"OAI ListRecords : using ResumptionToken :"+GeonetworkResumptionToken.buildKey(req));
-			
-			if (token  == null)
-				throw new BadResumptionTokenException("No session for token : "+ GeonetworkResumptionToken.buildKey(req));
-
-			result = token.getRes();
-			
-			//pos = result.parseToken(token);
-			pos = GeonetworkResumptionToken.getPos(req);
+			int needed = Lib.MAX_RECORDS - res.getSize();
+
+			// one more hit tells if there is a next page
+			List<Pair<String, String>> hits = Lib.search(context, buildParams(token), changeDate, id, needed +1);
+
+			more = hits.size() > needed;
+
+			for (int i=0; i<hits.size() && i<needed; i++)
+			{
+				Pair<String, String> hit = hits.get(i);
+
+				processRecord(res, Integer.parseInt(hit.two()), token.getPrefix(), context);
+
+				changeDate = hit.one();
+				id         = hit.two();
+			}
 		}
 
-		ListResponse res = processRequest(req,pos,result,context);
-		pos = pos + res.getSize();
-		
-		if (token == null && res.getSize() == 0)
+		if (newRequest && res.getSize() == 0)
 			throw new NoRecordsMatchException("No results");
-		
 
-		//result.setupToken(res, pos);
-		if (token != null) // is null if no token needed
-			token.setupToken(pos);
-		res.setResumptionToken(token);
-		
+		if (more)
+		{
+			token.moveTo(changeDate, id, token.getPos() + res.getSize());
+			res.setResumptionToken(token);
+		}
+		else if (!newRequest)
+		{
+			token.reset(); // empty token to indicate the last chunk
+			res.setResumptionToken(token);
+		}
 
 		return res;
-		
-		
 	}
 
+	//---------------------------------------------------------------------------
+
+	private Element buildParams(GeonetworkResumptionToken token)
+	{
+		Element params = new Element("request");
+
+		if (token.getFrom() != null)
+			params.addContent(new Element(dateFrom).setText(token.getFrom()));
+
+		if (token.getUntil() != null)
+			params.addContent(new Element(dateUntil).setText(token.getUntil()));
+
+		if (token.getSet() != null)
+			params.addContent(new Element("category").setText(token.getSet()));
+
+		return params;
+	}
+
+	//---------------------------------------------------------------------------
+
 	public abstract String getVerb(); 
-	public abstract ListResponse processRequest(TokenListRequest req, int pos, SearchResult result, ServiceContext context) throws Exception ;
+	public abstract ListResponse newResponse();
+
+	/** Adds the record with the given id to the response. Records that cannot
+	  * be disseminated in the given format (or that have been removed) are skipped */
+	public abstract void processRecord(ListResponse res, int id, String prefix, ServiceContext context) throws Exception ;
 
 }
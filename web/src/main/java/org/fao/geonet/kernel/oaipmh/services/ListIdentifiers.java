@@ -27,14 +27,11 @@ import jeeves.resources.dbms.Dbms;
 import jeeves.server.context.ServiceContext;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.oaipmh.Lib;
-import org.fao.geonet.kernel.oaipmh.ResumptionTokenCache;
 import org.fao.oaipmh.requests.ListIdentifiersRequest;
-import org.fao.oaipmh.requests.TokenListRequest;
 import org.fao.oaipmh.responses.Header;
 import org.fao.oaipmh.responses.ListIdentifiersResponse;
 import org.fao.oaipmh.responses.ListResponse;
 import org.fao.oaipmh.util.ISODate;
-import org.fao.oaipmh.util.SearchResult;
 import org.jdom.Element;
 
 import java.util.List;
@@ -43,8 +40,8 @@ import java.util.List;
 
 public class ListIdentifiers extends AbstractTokenLister
 {
-	public ListIdentifiers(ResumptionTokenCache cache,int mode) {
-		super(cache,mode);
+	public ListIdentifiers(int mode) {
+		super(mode);
 	}
 
 	public String getVerb() { return ListIdentifiersRequest.VERB; }
@@ -55,30 +52,16 @@ public class ListIdentifiers extends AbstractTokenLister
 	//---
 	//---------------------------------------------------------------------------
 
-	public ListResponse processRequest(TokenListRequest req, int pos, SearchResult result, ServiceContext context) throws Exception  {
+	public ListResponse newResponse() { return new ListIdentifiersResponse(); }
 
-		//--- loop to retrieve metadata		
-		ListIdentifiersResponse res = new ListIdentifiersResponse();
-
-		int num = 0;
-
-		while (num<Lib.MAX_RECORDS && pos < result.ids.size())
-		{
-			int id = result.ids.get(pos);
-
-			Header h = buildHeader(context, id, result.prefix);
-
-			if (h != null)
-			{
-				res.addHeader(h);
-				num++;
-			}
+	//---------------------------------------------------------------------------
 
-			pos++;
-		}
+	public void processRecord(ListResponse res, int id, String prefix, ServiceContext context) throws Exception  {
 
-		return res;
+		Header h = buildHeader(context, id, prefix);
 
+		if (h != null)
+			((ListIdentifiersResponse) res).addHeader(h);
 	}
 
 
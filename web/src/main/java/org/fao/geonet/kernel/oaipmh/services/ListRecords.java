@@ -25,30 +25,38 @@ package org.fao.geonet.kernel.oaipmh.services;
 
 import jeeves.resources.dbms.Dbms;
 import jeeves.server.context.ServiceContext;
+import jeeves.utils.StreamedElement;
+import jeeves.utils.Util;
 import jeeves.utils.Xml;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.kernel.oaipmh.Lib;
-import org.fao.geonet.kernel.oaipmh.ResumptionTokenCache;
 import org.fao.oaipmh.OaiPmh;
 import org.fao.oaipmh.requests.ListRecordsRequest;
-import org.fao.oaipmh.requests.TokenListRequest;
 import org.fao.oaipmh.responses.Header;
 import org.fao.oaipmh.responses.ListRecordsResponse;
+import org.fao.oaipmh.responses.ListResponse;
 import org.fao.oaipmh.responses.Record;
+import org.fao.oaipmh.responses.ResumptionToken;
 import org.fao.oaipmh.util.ISODate;
-import org.fao.oaipmh.util.SearchResult;
 import org.jdom.Element;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 //=============================================================================
 
+/** Records are not built when the page is searched: only their ids are
+  * collected, and each record is loaded, converted and written when the
+  * response is sent, so that only one record at a time is kept in memory.
+  */
+
 public class ListRecords extends AbstractTokenLister
 {
 
 
-	public ListRecords(ResumptionTokenCache cache,int mode) {
-	    super(cache,mode);
+	public ListRecords(int mode) {
+	    super(mode);
 	}
 
 	public String getVerb() { return ListRecordsRequest.VERB; }
@@ -62,30 +70,14 @@ public class ListRecords extends AbstractTokenLister
 
 
 
-	public ListRecordsResponse processRequest(TokenListRequest req, int pos, SearchResult result, ServiceContext context) throws Exception  {
-	 
-		int num = 0;
-		ListRecordsResponse res = new ListRecordsResponse();
-
-		//--- loop to retrieve metadata
-
-		while (num<Lib.MAX_RECORDS && pos < result.ids.size())
-		{
-			int id = result.ids.get(pos);
-
-			Record r = buildRecord(context, id, result.prefix);
-
-			if (r != null)
-			{
-				res.addRecord(r);
-				num++;
-			}
+	public ListResponse newResponse() { return new StreamedResponse(); }
 
-			pos++;
-		}
+	//---------------------------------------------------------------------------
 
-		return res;
+	public void processRecord(ListResponse res, int id, String prefix, ServiceContext context) throws Exception  {
 
+		if (isDisseminable(context, id, prefix))
+			((StreamedResponse) res).addRecord(context, id, prefix);
 	}
 
 	//---------------------------------------------------------------------------
@@ -94,6 +86,26 @@ public class ListRecords extends AbstractTokenLister
 	//---
 	//---------------------------------------------------------------------------
 
+	private boolean isDisseminable(ServiceContext context, int id, String prefix) throws Exception
+	{
+		Dbms dbms = (Dbms) context.getResourceManager().open(Geonet.Res.MAIN_DB);
+
+		String query = "SELECT schemaId FROM Metadata WHERE id=?";
+
+		List list = dbms.select(query, id).getChildren();
+
+		//--- maybe the metadata has been removed
+
+		if (list.size() == 0)
+			return false;
+
+		String schema = ((Element) list.get(0)).getChildText("schemaid");
+
+		return prefix.equals(schema) || Lib.existsConverter(schema, context.getAppPath(), prefix);
+	}
+
+	//---------------------------------------------------------------------------
+
 	private Record buildRecord(ServiceContext context, int id, String prefix) throws Exception
 	{
 		Dbms dbms = (Dbms) context.getResourceManager().open(Geonet.Res.MAIN_DB);
@@ -159,6 +171,81 @@ public class ListRecords extends AbstractTokenLister
 
 		return r;
 	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- StreamedResponse : builds its records while it is written
+	//---
+	//---------------------------------------------------------------------------
+
+	private class StreamedResponse extends ListRecordsResponse
+	{
+		public void addRecord(ServiceContext context, int id, String prefix)
+		{
+			this.context = context;
+			this.prefix  = prefix;
+
+			ids.add(id);
+		}
+
+		//------------------------------------------------------------------------
+
+		public int getSize() { return ids.size(); }
+
+		//------------------------------------------------------------------------
+
+		public Element toXml()
+		{
+			Element root = new Element(ListRecordsRequest.VERB, OaiPmh.Namespaces.OAI_PMH);
+
+			if (!ids.isEmpty())
+				root.addContent(new StreamedElement(new StreamedElement.Producer()
+				{
+					public Element next() throws Exception
+					{
+						while (iter.hasNext())
+						{
+							int id = iter.next();
+
+							//--- the record may have been removed in the meantime. A record
+							//--- that cannot be built is skipped: the page has already started
+
+							try
+							{
+								Record r = buildRecord(context, id, prefix);
+
+								if (r != null)
+									return r.toXml();
+							}
+							catch(Exception e)
+							{
+								context.error("Skipping record that cannot be built, id : "+ id +" ("+ e +")");
+								context.error(" (C) Stack trace is :\n"+ Util.getStackTrace(e));
+							}
+						}
+
+						return null;
+					}
+
+					public void close() {}
+
+					private Iterator<Integer> iter = ids.iterator();
+				}));
+
+			ResumptionToken token = getResumptionToken();
+
+			if (token != null)
+				root.addContent(token.toXml());
+
+			return root;
+		}
+
+		//------------------------------------------------------------------------
+
+		private ServiceContext context;
+		private String         prefix;
+		private List<Integer>  ids = new ArrayList<Integer>();
+	}
 }
 
 //=============================================================================
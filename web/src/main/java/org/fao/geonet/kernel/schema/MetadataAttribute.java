@@ -27,11 +27,12 @@
 
 package org.fao.geonet.kernel.schema;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 //==============================================================================
 
-public class MetadataAttribute
+public class MetadataAttribute implements Serializable
 {
 	public String  name;
 	public String  defValue;
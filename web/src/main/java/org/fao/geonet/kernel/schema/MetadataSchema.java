@@ -31,6 +31,10 @@ import org.jdom.Namespace;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -38,15 +42,20 @@ import java.util.Map;
 
 //==============================================================================
 
-public class MetadataSchema
+/** The model of an xml schema used by the editor. It is serializable so that
+  * it can be stored in the SchemaCache: namespaces are not serializable and
+  * are written as prefix/uri pairs.
+  */
+
+public class MetadataSchema implements Serializable
 {
 	private Map<String,List<String>> hmElements = new HashMap<String,List<String>>();
 	private Map<String,List<List>> hmRestric  = new HashMap<String,List<List>>();
 	private Map<String, MetadataType> hmTypes    = new HashMap<String, MetadataType>();
 	private Map<String, List> hmSubs		 = new HashMap<String, List>();
 	private Map<String, String> hmSubsLink = new HashMap<String, String>();
-	private Map<String,Namespace> hmNameSpaces = new HashMap<String,Namespace>();
-	private Map<String,Namespace> hmPrefixes = new HashMap<String,Namespace>();
+	private transient Map<String,Namespace> hmNameSpaces = new HashMap<String,Namespace>();
+	private transient Map<String,Namespace> hmPrefixes = new HashMap<String,Namespace>();
 	private String	schemaName;
 	private String	schemaDir;
 	private String	primeNS;
@@ -331,6 +340,65 @@ public class MetadataSchema
 	private void setSchematronRules(String[] schematronRules) {
 		this.schematronRules = schematronRules;
 	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Serialization
+	//---
+	//---------------------------------------------------------------------------
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+
+		writeNamespaces(out, hmNameSpaces);
+		writeNamespaces(out, hmPrefixes);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		hmNameSpaces = readNamespaces(in);
+		hmPrefixes   = readNamespaces(in);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Keys are written as they are because they can be null */
+
+	private static void writeNamespaces(ObjectOutputStream out, Map<String,Namespace> map) throws IOException
+	{
+		out.writeInt(map.size());
+
+		for (Map.Entry<String,Namespace> entry : map.entrySet())
+		{
+			out.writeObject(entry.getKey());
+			out.writeObject(entry.getValue().getPrefix());
+			out.writeObject(entry.getValue().getURI());
+		}
+	}
+
+	//---------------------------------------------------------------------------
+
+	private static Map<String,Namespace> readNamespaces(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		Map<String,Namespace> map = new HashMap<String,Namespace>();
+
+		int count = in.readInt();
+
+		for (int i=0; i<count; i++)
+		{
+			String key    = (String) in.readObject();
+			String prefix = (String) in.readObject();
+			String uri    = (String) in.readObject();
+
+			map.put(key, Namespace.getNamespace(prefix, uri));
+		}
+
+		return map;
+	}
 }
 
 //==============================================================================
@@ -29,12 +29,13 @@ package org.fao.geonet.kernel.schema;
 
 import org.fao.geonet.constants.Edit;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 //==============================================================================
 
-public class MetadataType
+public class MetadataType implements Serializable
 {
 	private String  name;
 	private boolean isOrType;
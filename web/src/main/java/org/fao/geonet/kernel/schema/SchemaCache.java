@@ -0,0 +1,242 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.schema;
+
+import jeeves.utils.Log;
+import org.fao.geonet.constants.Geonet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+//==============================================================================
+
+/** Keeps the MetadataSchema models built by the SchemaLoader in a directory,
+  * one serialized file per schema. Each file stores the list of the files the
+  * model has been built from and a digest of their content: the model is
+  * reused only if none of them has changed. Any problem reading a file (a
+  * missing or changed file, a different version of the classes) just means
+  * that the schema has to be loaded again.
+  */
+
+public class SchemaCache
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//---------------------------------------------------------------------------
+
+	public SchemaCache(File dir)
+	{
+		this.dir = dir;
+
+		dir.mkdirs();
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns the cached model of the schema or null if there is none or it
+	  * is out of date */
+
+	public MetadataSchema get(String name)
+	{
+		File file = getFile(name);
+
+		if (!file.exists())
+			return null;
+
+		ObjectInputStream in = null;
+
+		try
+		{
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+
+			if (in.readInt() != VERSION)
+				return null;
+
+			List<String> files  = readFiles(in);
+			String       digest = in.readUTF();
+
+			if (!digest.equals(getDigest(files)))
+			{
+				Log.info(Geonet.DATA_MANAGER, "Schema files have changed, reloading : "+ name);
+				return null;
+			}
+
+			return (MetadataSchema) in.readObject();
+		}
+		catch(Exception e)
+		{
+			Log.warning(Geonet.DATA_MANAGER, "Cannot read cached schema : "+ name +" ("+ e +")");
+			return null;
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	/** Stores the model of the schema along with the digest of the given files.
+	  * Failures are only logged: the schema will be loaded again next time */
+
+	public void put(String name, MetadataSchema mds, Collection<String> files)
+	{
+		File file = getFile(name);
+		File temp = new File(dir, name + ".tmp");
+
+		ObjectOutputStream out = null;
+
+		try
+		{
+			List<String> list = new ArrayList<String>(files);
+
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+			out.writeInt(VERSION);
+			out.writeObject(list);
+			out.writeUTF(getDigest(list));
+			out.writeObject(mds);
+			out.close();
+			out = null;
+
+			//--- replace the old file only when the new one is complete
+
+			file.delete();
+
+			if (!temp.renameTo(file))
+				throw new IOException("Cannot rename "+ temp +" to "+ file);
+		}
+		catch(Exception e)
+		{
+			Log.warning(Geonet.DATA_MANAGER, "Cannot cache schema : "+ name +" ("+ e +")");
+			close(out);
+			temp.delete();
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private File getFile(String name)
+	{
+		return new File(dir, name + ".ser");
+	}
+
+	//---------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private static List<String> readFiles(ObjectInputStream in) throws Exception
+	{
+		return (List<String>) in.readObject();
+	}
+
+	//---------------------------------------------------------------------------
+	/** Digest of the names and contents of the files. A missing file gives a
+	  * digest which cannot match the stored one */
+
+	private static String getDigest(List<String> files) throws Exception
+	{
+		MessageDigest md = MessageDigest.getInstance("MD5");
+
+		byte buffer[] = new byte[BUFFER_SIZE];
+
+		for (String name : files)
+		{
+			md.update(name.getBytes("UTF-8"));
+
+			File file = new File(name);
+
+			if (!file.exists())
+				return "missing:"+ name;
+
+			InputStream is = new FileInputStream(file);
+
+			try
+			{
+				int n;
+
+				while ((n = is.read(buffer)) != -1)
+					md.update(buffer, 0, n);
+			}
+			finally
+			{
+				is.close();
+			}
+		}
+
+		StringBuffer sb = new StringBuffer();
+
+		for (byte b : md.digest())
+			sb.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+
+		return sb.toString();
+	}
+
+	//---------------------------------------------------------------------------
+
+	private static void close(Closeable c)
+	{
+		if (c != null)
+			try
+			{
+				c.close();
+			}
+			catch(IOException e) {}
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Changes when the layout of the cache files changes */
+	private static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private File dir;
+}
+
+//==============================================================================
+
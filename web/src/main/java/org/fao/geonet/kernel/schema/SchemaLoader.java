@@ -37,9 +37,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 
 //==============================================================================
 
@@ -69,6 +71,9 @@ public class SchemaLoader
 	/** Restrictions for simple types (type restriction) */
 	private Map<String, List> hmTypeRestr = new HashMap<String, List>();
 
+	/** Files the schema has been built from (canonical paths) */
+	private Set<String> loadedFiles = new LinkedHashSet<String>();
+
 	//---------------------------------------------------------------------------
 	//---
 	//--- Constructor
@@ -89,6 +94,8 @@ public class SchemaLoader
 
 		if (xmlSchemaFile.startsWith("_")) return new MetadataSchema();
 
+		loadedFiles.add(new File(xmlSubstitutionsFile).getCanonicalPath());
+
 		//--- PHASE 1 : pre-processing
 		//---
 		//--- the xml file is parsed and simplified. Xml schema subtrees are
@@ -329,6 +336,16 @@ public class SchemaLoader
 
 		return mds;
 	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the files read by the last load: the substitutions file, the
+	  * xml-schema file and all the files it imports or includes
+	  */
+
+	public Set<String> getLoadedFiles()
+	{
+		return loadedFiles;
+	}
 	
 	//---------------------------------------------------------------------------
 	//---
@@ -614,6 +631,7 @@ public class SchemaLoader
 	private List<ElementInfo> loadFile(String xmlSchemaFile, HashSet<String> loadedFiles) throws Exception
 	{
 		loadedFiles.add(new File(xmlSchemaFile).getCanonicalPath());
+		this.loadedFiles.add(new File(xmlSchemaFile).getCanonicalPath());
 
 		String path = new File(xmlSchemaFile).getParent() + "/";
 
@@ -0,0 +1,150 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//=============================================================================
+
+/** Records how each field has been indexed: as one term per value (neither
+  * tokenized nor numeric) or as several terms. The record is saved in the
+  * commit user data of the Lucene index, so that it survives restarts.
+  */
+
+class FieldTermTypes
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** A field indexed at least once as several terms is never single term again */
+
+	public void add(String name, boolean single)
+	{
+		if (single)
+			types.putIfAbsent(name, Boolean.TRUE);
+		else
+			types.put(name, Boolean.FALSE);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Unknown fields are reported as not single term, as well as all fields
+	  * of an index built before the types were saved: its documents may have
+	  * indexed them differently */
+
+	public boolean isSingleTerm(String name)
+	{
+		return complete && Boolean.TRUE.equals(types.get(name));
+	}
+
+	//---------------------------------------------------------------------------
+	/** Called when the index is created empty */
+
+	public void clear()
+	{
+		types.clear();
+		complete = true;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Loads the types saved by toUserData, if any */
+
+	public void load(Map<String, String> userData)
+	{
+		types.clear();
+		complete = userData != null && userData.containsKey(SINGLE_TERM);
+
+		if (!complete)
+			return;
+
+		load(userData.get(SINGLE_TERM), Boolean.TRUE);
+		load(userData.get(MULTI_TERM),  Boolean.FALSE);
+	}
+
+	//---------------------------------------------------------------------------
+
+	/** Nothing is saved for an index built before the types were saved */
+
+	public Map<String, String> toUserData()
+	{
+		if (!complete)
+			return new HashMap<String, String>();
+
+		StringBuilder single = new StringBuilder();
+		StringBuilder multi  = new StringBuilder();
+
+		for (Map.Entry<String, Boolean> entry : types.entrySet())
+		{
+			StringBuilder sb = entry.getValue() ? single : multi;
+
+			if (sb.length() > 0)
+				sb.append(SEPARATOR);
+
+			sb.append(entry.getKey());
+		}
+
+		Map<String, String> userData = new HashMap<String, String>();
+		userData.put(SINGLE_TERM, single.toString());
+		userData.put(MULTI_TERM,  multi .toString());
+
+		return userData;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private void load(String names, Boolean single)
+	{
+		if (names == null || names.length() == 0)
+			return;
+
+		for (String name : names.split(SEPARATOR))
+			types.put(name, single);
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final String SINGLE_TERM = "singleTermFields";
+	private static final String MULTI_TERM  = "multiTermFields";
+
+	//--- index field names never contain spaces
+	private static final String SEPARATOR   = " ";
+
+	private final ConcurrentHashMap<String, Boolean> types = new ConcurrentHashMap<String, Boolean>();
+
+	private volatile boolean complete;
+}
+
+//=============================================================================
@@ -26,7 +26,9 @@ import jeeves.utils.Log;
 import org.apache.lucene.analysis.ASCIIFoldingFilter;
 import org.apache.lucene.analysis.LowerCaseFilter;
 import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.snowball.SnowballFilter;
 import org.apache.lucene.analysis.standard.StandardFilter;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.util.Version;
@@ -36,7 +38,7 @@ import java.util.Set;
 
 /**
  * Default Lucene analyzer for GeoNetwork, based on a modified version of WhitespaceTokenizer and with added LowercaseFilter and
- * ASCIIFoldingFilter, and optionally StopFilter.
+ * ASCIIFoldingFilter, and optionally StopFilter and SnowballFilter.
  * <p/>
  * Reason is that with StandardAnalyzer, which GeoNetwork was using before, it tokenizes such that the character * is
  * seen as delimiting. That caused queries with wildcards analyzed using StandardAnalyzer to fail.
@@ -46,6 +48,7 @@ import java.util.Set;
 public final class GeoNetworkAnalyzer extends GeoNetworkReusableAnalyzerBase {
 
     private Set<String> stopwords = null;
+    private String stemmer = null;
     private boolean enablePositionIncrements = true;
     private boolean ignoreCase = true;
 
@@ -71,6 +74,18 @@ public final class GeoNetworkAnalyzer extends GeoNetworkReusableAnalyzerBase {
         }
     }
 
+    /**
+     * Creates this analyzer for a single language, using its stopwords and its Snowball stemmer. Both may be null.
+     * Stemming is done before ASCII folding, as the stemmers expect the accented forms.
+     *
+     * @param stopwords
+     * @param stemmer name of the Snowball stemmer, e.g. French
+     */
+    public GeoNetworkAnalyzer(Set<String> stopwords, String stemmer) {
+        this(stopwords);
+        this.stemmer = stemmer;
+    }
+
     /**
      * Creates a new {@link TokenStreamComponents} instance for this analyzer.
      *
@@ -84,6 +99,14 @@ public final class GeoNetworkAnalyzer extends GeoNetworkReusableAnalyzerBase {
 
         final Tokenizer source = new StandardTokenizer(Version.LUCENE_29, reader);
 
+        if(stemmer != null) {
+            TokenStream result = new LowerCaseFilter(new StandardFilter(source));
+            if(stopwords != null) {
+                result = new StopFilter(enablePositionIncrements, result, stopwords, ignoreCase);
+            }
+            return new TokenStreamComponents(source, new ASCIIFoldingFilter(new SnowballFilter(result, stemmer)));
+        }
+
         if(stopwords != null) {
             return new TokenStreamComponents(source, new StopFilter(enablePositionIncrements, new ASCIIFoldingFilter(new LowerCaseFilter(new StandardFilter(source))), stopwords, ignoreCase));
         }
@@ -0,0 +1,100 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+
+import java.io.IOException;
+
+//=============================================================================
+
+/** Column like access, by docid, to the values of the system fields that are
+  * read for every document of the index (eg. at startup or when filtering).
+  * Values come from the FieldCache (ie. from the indexed terms) so no stored
+  * field has to be decoded. The caches are built per segment and shared with
+  * the sorts on the same fields.
+  */
+
+public class IndexColumns
+{
+	public static final String ID          = "_id";
+	public static final String UUID        = "_uuid";
+	public static final String CHANGE_DATE = "_changeDate";
+	public static final String HAS_XLINKS  = "_hasxlinks";
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns the value of the field for each document of the reader, indexed
+	  * by docid. The field must have at most one untokenized term per document.
+	  * Deleted documents are not excluded */
+
+	public static String[] get(IndexReader reader, String field) throws IOException
+	{
+		IndexReader[] subReaders = reader.getSequentialSubReaders();
+
+		if (subReaders == null)
+			return FieldCache.DEFAULT.getStrings(reader, field);
+
+		String[] values = new String[reader.maxDoc()];
+		int docBase = 0;
+
+		for (IndexReader subReader : subReaders)
+		{
+			String[] subValues = get(subReader, field);
+			System.arraycopy(subValues, 0, values, docBase, subReader.maxDoc());
+			docBase += subReader.maxDoc();
+		}
+
+		return values;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the value of the field for the given document */
+
+	public static String get(IndexReader reader, String field, int doc) throws IOException
+	{
+		IndexReader[] subReaders = reader.getSequentialSubReaders();
+
+		if (subReaders == null)
+			return FieldCache.DEFAULT.getStrings(reader, field)[doc];
+
+		for (IndexReader subReader : subReaders)
+		{
+			if (doc < subReader.maxDoc())
+				return get(subReader, field, doc);
+
+			doc -= subReader.maxDoc();
+		}
+
+		return null;
+	}
+}
+
+//=============================================================================
+
@@ -0,0 +1,186 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+//=============================================================================
+
+/** Compact record of the system fields of a document (the ones added by
+  * DataManager.indexMetadata). Instead of storing each of them as a separate
+  * field, they are only indexed and their values are packed in a single
+  * binary stored field. Code that needs the stored values calls expand on the
+  * loaded document, which adds them back as regular fields. Documents indexed
+  * before this record existed have no _info field and are left unchanged.
+  */
+
+public class IndexInfo
+{
+	public static final String FIELD = "_info";
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	public static boolean isPacked(String name)
+	{
+		return NAME_SET.contains(name) || name.startsWith("_op");
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns false if the value is too long to be packed */
+
+	public boolean add(String name, String value)
+	{
+		if (value.length() > MAX_VALUE)
+			return false;
+
+		try
+		{
+			int code = NAME_LIST.indexOf(name);
+
+			out.writeByte(code);
+
+			if (code == -1)
+				out.writeUTF(name);
+
+			out.writeUTF(value);
+		}
+		catch(IOException e)
+		{
+			//--- cannot happen with a byte array
+			throw new RuntimeException(e);
+		}
+
+		//--- bytes the field would have taken: value, field number, flags, length
+
+		fieldBytes += value.length() + 3;
+		return true;
+	}
+
+	//---------------------------------------------------------------------------
+
+	public boolean isEmpty() { return buffer.size() == 0; }
+
+	//---------------------------------------------------------------------------
+
+	public Field toField()
+	{
+		byte[] data = buffer.toByteArray();
+
+		docs      .incrementAndGet();
+		totalField.addAndGet(fieldBytes);
+		totalInfo .addAndGet(data.length + 3);
+
+		return new Field(FIELD, data);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Adds the packed values to the document as stored fields, so that they
+	  * can be read with doc.get. The _info field must have been loaded */
+
+	public static void expand(Document doc)
+	{
+		byte[] data = doc.getBinaryValue(FIELD);
+
+		if (data == null)
+			return;
+
+		doc.removeField(FIELD);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+		try
+		{
+			while (in.available() > 0)
+			{
+				int    code  = in.readByte();
+				String name  = (code == -1) ? in.readUTF() : NAME_LIST.get(code);
+				String value = in.readUTF();
+
+				doc.add(new Field(name, value, Field.Store.YES, Field.Index.NO));
+			}
+		}
+		catch(IOException e)
+		{
+			//--- cannot happen with a byte array
+			throw new RuntimeException(e);
+		}
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the stored bytes saved by the records built so far */
+
+	public static String getReport()
+	{
+		long field = totalField.get();
+		long info  = totalInfo.get();
+
+		return "System fields of "+ docs.get() +" documents stored in "+ info
+				+" bytes instead of about "+ field +" bytes (saved "+ (field - info) +" bytes)";
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final int MAX_VALUE = 8192;
+
+	/** The order must not change: the position is stored as the field code */
+
+	private static final List<String> NAME_LIST = Arrays.asList(
+		"_root", "_schema", "_createDate", "_changeDate", "_source", "_isTemplate",
+		"_uuid", "_isHarvested", "harvestUuid", "_owner", "_groupOwner",
+		"_popularity", "_rating", "_cat", "_hasxlinks",
+		"_op0", "_op1", "_op2", "_op3", "_op4", "_op5", "_op6");
+
+	private static final Set<String> NAME_SET = new HashSet<String>(NAME_LIST);
+
+	private static AtomicLong docs       = new AtomicLong();
+	private static AtomicLong totalField = new AtomicLong();
+	private static AtomicLong totalInfo  = new AtomicLong();
+
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private DataOutputStream      out    = new DataOutputStream(buffer);
+	private long                  fieldBytes;
+}
+
+//=============================================================================
+
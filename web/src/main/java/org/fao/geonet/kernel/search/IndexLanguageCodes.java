@@ -0,0 +1,74 @@
+package org.fao.geonet.kernel.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the language codes found in metadata (ISO 639-2 as in gmd:language and PT_Locale, ISO 639-1 as used by the
+ * user interface) to the index language names (the IndexLanguages table and the stopwords files) and to the Snowball
+ * stemmers provided by Lucene.
+ */
+public class IndexLanguageCodes {
+
+    private static final Map<String, String> languages = new HashMap<String, String>();
+
+    private static final String[][] CODES = {
+        { "catalan",    "ca", "cat" },
+        { "danish",     "da", "dan" },
+        { "dutch",      "nl", "dut", "nld" },
+        { "english",    "en", "eng" },
+        { "finnish",    "fi", "fin" },
+        { "french",     "fr", "fre", "fra" },
+        { "german",     "de", "ger", "deu" },
+        { "hungarian",  "hu", "hun" },
+        { "italian",    "it", "ita" },
+        { "norwegian",  "no", "nor", "nb", "nob", "nn", "nno" },
+        { "portuguese", "pt", "por" },
+        { "russian",    "ru", "rus" },
+        { "spanish",    "es", "spa" },
+        { "swedish",    "sv", "swe" },
+        { "turkish",    "tr", "tur" }
+    };
+
+    static {
+        for (String[] codes : CODES) {
+            languages.put(codes[0], codes[0]);
+            for (int i = 1; i < codes.length; i++) {
+                languages.put(codes[i], codes[0]);
+            }
+        }
+    }
+
+    /**
+     * Returns the index language name of a language code (or name), e.g. 'fre', 'fra' and 'fr' give 'french'.
+     *
+     * @param code language code
+     * @return index language name, or null if unknown
+     */
+    public static String getIndexLanguage(String code) {
+        if (code == null) {
+            return null;
+        }
+        return languages.get(code.trim().toLowerCase());
+    }
+
+    /**
+     * Returns the name of the Snowball stemmer for an index language, e.g. 'French' for 'french'.
+     *
+     * @param indexLanguage index language name
+     * @return stemmer name, or null if Lucene has no stemmer for this language
+     */
+    public static String getStemmer(String indexLanguage) {
+        if (indexLanguage == null || indexLanguage.length() == 0) {
+            return null;
+        }
+        String stemmer = Character.toUpperCase(indexLanguage.charAt(0)) + indexLanguage.substring(1);
+        try {
+            Class.forName("org.tartarus.snowball.ext." + stemmer + "Stemmer");
+            return stemmer;
+        }
+        catch (ClassNotFoundException x) {
+            return null;
+        }
+    }
+}
@@ -26,23 +26,23 @@ package org.fao.geonet.kernel.search;
 import jeeves.server.context.ServiceContext;
 import jeeves.utils.Util;
 import org.fao.geonet.kernel.KeywordBean;
+import org.fao.geonet.kernel.KeywordIndex;
 import org.fao.geonet.kernel.Thesaurus;
 import org.fao.geonet.kernel.ThesaurusManager;
 import org.jdom.Element;
 import org.openrdf.model.Value;
 import org.openrdf.sesame.config.AccessDeniedException;
-import org.openrdf.sesame.query.MalformedQueryException;
-import org.openrdf.sesame.query.QueryEvaluationException;
 import org.openrdf.sesame.query.QueryResultsTable;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  *
@@ -194,37 +194,27 @@ public class KeywordsSearcher {
 		    	    }
 		        }
 		    }
-            // Keyword to look for
-            if (!sKeyword.equals("")) {
-                String lang = srvContext.getLanguage();
-                createQuery(lang, sKeyword, pTypeSearch);
-            }
-            search(listThesauri);
+            // Search the label index of each thesaurus
+            String lang = srvContext.getLanguage();
+            search(listThesauri, lang, sKeyword, pTypeSearch);
             List<KeywordBean> resultsWithLanguage = _results;
 
             // repeat search for language = "#default"
-            // #default doesn't work in sesame search -- replaced it by 00
-            if (!sKeyword.equals("")) {
-                String lang = "00";
-                createQuery(lang, sKeyword, pTypeSearch);
-            }
-            search(listThesauri);
+            // #default is stored as 00 in the thesauri
+            search(listThesauri, "00", sKeyword, pTypeSearch);
             List<KeywordBean> resultsWithoutLanguage = _results;
 
             // end results are results without language except for those that also do have a language
             List<KeywordBean> endResults  = resultsWithLanguage;
 
+            Set<String> valuesWithLanguage = new HashSet<String>();
+            for(KeywordBean keywordBeanWithLanguage: resultsWithLanguage) {
+                valuesWithLanguage.add(keywordBeanWithLanguage.getValue());
+            }
+
             for(KeywordBean keywordBeanWithoutLanguage : resultsWithoutLanguage) {
-                boolean keywordWithLanguagefound = false;
-                for(KeywordBean keywordBeanWithLanguage: resultsWithLanguage) {
-                    // keyword found with language : no need to add default
-                    if(keywordBeanWithoutLanguage.getValue().equals(keywordBeanWithLanguage.getValue())) {
-                        keywordWithLanguagefound = true;
-                        break;
-                    }
-                }
                 // keyword with language not found : use default
-                if(!keywordWithLanguagefound){
+                if(!valuesWithLanguage.contains(keywordBeanWithoutLanguage.getValue())) {
                     endResults.add(keywordBeanWithoutLanguage);
                 }
             }
@@ -234,15 +224,16 @@ public class KeywordsSearcher {
 	}
 
     /**
-     * Searches. Global _query must have been created before calling this.
+     * Searches the label index of each thesaurus. Beans are only created for
+     * the hits that are returned (at most maxResults per thesaurus).
      *
      * @param listThesauri list of thesauri
-     * @throws MalformedQueryException hmm
-     * @throws IOException hmm
-     * @throws QueryEvaluationException hmm
+     * @param lang language of the labels
+     * @param sKeyword keyword
+     * @param pTypeSearch type of search (see {@link KeywordIndex})
      * @throws AccessDeniedException hmm
      */
-    private void search(List<Element> listThesauri) throws MalformedQueryException, IOException, QueryEvaluationException, AccessDeniedException {
+    private void search(List<Element> listThesauri, String lang, String sKeyword, int pTypeSearch) throws AccessDeniedException {
         // For each thesaurus, search for keywords in _results
         _results = new ArrayList<KeywordBean>();
         int idKeyword = 0;
@@ -251,103 +242,39 @@ public class KeywordsSearcher {
         for (Element thesaurusName : listThesauri) {
             Thesaurus thesaurus = _thesaurusManager.getThesaurusByName(thesaurusName.getTextTrim());
 
-            // Perform request
-            QueryResultsTable resultsTable = thesaurus.performRequest(_query);
-
-            int rowCount = resultsTable.getRowCount();
+            List<KeywordIndex.Entry> hits = thesaurus.getKeywordIndex().search(lang, sKeyword, pTypeSearch, _maxResults);
 
-            for (int row = 0; row < rowCount; row++) {
-                // preflab
-                Value value = resultsTable.getValue(row, 0);
-                String sValue = "";
-                if (value != null) {
-                    sValue = value.toString();
-                }
-                // definition
-                Value definition = resultsTable.getValue(row, 1);
-                String sDefinition = "";
-                if (definition != null) {
-                    sDefinition = definition.toString();
-                }
-                // uri (= id in RDF file != id in list)
-                Value uri = resultsTable.getValue(row, 2);
-                String sUri = "";
-                if (uri != null) {
-                    sUri = uri.toString();
+            for (KeywordIndex.Entry hit : hits) {
+                String sDefinition = hit.getNote();
+                if (sDefinition == null) {
+                    sDefinition = "";
                 }
 
-                Value lowCorner = resultsTable.getValue(row, 3);
-                Value upperCorner = resultsTable.getValue(row, 4);
-
-                String sUpperCorner;
-                String sLowCorner;
-
                 String sEast = "";
                 String sSouth = "";
                 String sWest = "";
                 String sNorth = "";
 
                 // lowcorner
-                if (lowCorner != null) {
-                    sLowCorner = lowCorner.toString();
+                String sLowCorner = hit.getLowerCorner();
+                if (sLowCorner != null) {
                     sWest = sLowCorner.substring(0, sLowCorner.indexOf(' ')).trim();
                     sSouth = sLowCorner.substring(sLowCorner.indexOf(' ')).trim();
                 }
 
                 // uppercorner
-                if (upperCorner != null) {
-                    sUpperCorner = upperCorner.toString();
+                String sUpperCorner = hit.getUpperCorner();
+                if (sUpperCorner != null) {
                     sEast = sUpperCorner.substring(0, sUpperCorner.indexOf(' ')).trim();
                     sNorth = sUpperCorner.substring(sUpperCorner.indexOf(' ')).trim();
                 }
 
-                KeywordBean kb = new KeywordBean(idKeyword, sValue, sDefinition, sUri, sEast, sWest, sSouth, sNorth, thesaurusName.getTextTrim(),
+                KeywordBean kb = new KeywordBean(idKeyword, hit.getLabel(), sDefinition, hit.getUri(), sEast, sWest, sSouth, sNorth, thesaurusName.getTextTrim(),
                         false, _lang, thesaurus.getTitle(), thesaurus.getDate());
                 _results.add(kb);
                 idKeyword++;
             }
         }
-        //System.out.println("KeywordsSearcher search found # " + _results.size() + " results");
-    }
-    /**
-     * Creates query for keyword in a language.
-     *
-     * @param _lang language
-     * @param sKeyword keyword
-     * @param pTypeSearch type of search
-     */
-    private void createQuery(String _lang, String sKeyword, int pTypeSearch){
-        // FIXME : Where to search ? only on term having GUI language or in all ?
-        // Should be
-        // - look for a term in all language
-        // - get prefLab in GUI lang
-        // This will cause multilingual metadata search quite complex !!
-        // Quid Lucene and thesaurus ?
-        _query = "SELECT prefLab, note, id, lowc, uppc "
-            + " FROM {id} rdf:type {skos:Concept}; "
-            + " skos:prefLabel {prefLab};"
-            + " [skos:scopeNote {note} WHERE lang(note) LIKE \""+_lang+"\"]; "
-            + " [gml:BoundedBy {} gml:lowerCorner {lowc}]; "
-            + " [gml:BoundedBy {} gml:upperCorner {uppc}] "
-            + " WHERE lang(prefLab) LIKE \""+_lang+"\""
-            + " AND prefLab LIKE ";
-
-        switch (pTypeSearch) {
-        case 0: // Start with
-            _query += "\""+ sKeyword+ "*\" ";
-            break;
-        case 1: // contains
-            _query += "\"*"+ sKeyword+ "*\" ";
-            break;
-        case 2: // exact match
-            _query += "\""+ sKeyword+ "\" ";
-            break;
-        default:
-            break;
-        }
-        _query 	+= " IGNORE CASE "
-                + " LIMIT "+ _maxResults
-                + " USING NAMESPACE skos=<http://www.w3.org/2004/02/skos/core#>, gml=<http://www.opengis.net/gml#> ";
     }
 
     /**
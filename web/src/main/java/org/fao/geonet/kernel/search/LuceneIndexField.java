@@ -47,6 +47,7 @@ public class LuceneIndexField {
 	public static final String IS_TEMPLATE = "_isTemplate";
     public static final String INSPIRE_CAT = "inspirecat";
 	public static final String KEYWORD = "keyword";
+	public static final String LANGUAGE = "language";
 	public static final String METADATA_STANDARD_NAME = "metadataStandardName";
 	public static final String NORTH = "northBL";
 	public static final String OWNER = "_owner";
@@ -9,6 +9,7 @@ import org.apache.lucene.store.FSDirectory;
 import org.fao.geonet.constants.Geonet;
 
 import java.io.File;
+import java.util.Map;
 
 /* Lucene only allows one IndexWriter to be open at a time.  
    However, multiple threads can use this single IndexWriter.  
@@ -16,20 +17,26 @@ import java.io.File;
    determine when it can be closed.  */
 
 public class LuceneIndexWriterFactory {
+
+	// commit user data key of the analyzer version of the documents
+	public static final String ANALYZER_VERSION = "analyzerVersion";
 	
 	protected IndexWriter _writer;
 	protected int _count;
 	private File _luceneDir;
 	private PerFieldAnalyzerWrapper _analyzer;
+	private FieldTermTypes _fieldTermTypes;
+	private volatile String _analyzerVersion;
 		
 	// true iff optimization is in progress
 	private boolean _optimizing = false; 
 	private Object  _mutex = new Object(); 
 
 	
-	public LuceneIndexWriterFactory(File luceneDir, PerFieldAnalyzerWrapper analyzer) {
+	public LuceneIndexWriterFactory(File luceneDir, PerFieldAnalyzerWrapper analyzer, FieldTermTypes fieldTermTypes) {
 		_luceneDir = luceneDir;
 		_analyzer = analyzer;
+		_fieldTermTypes = fieldTermTypes;
 	}
 
 	public synchronized void openWriter() throws Exception {
@@ -55,15 +62,31 @@ public class LuceneIndexWriterFactory {
 		if (_count > 0) {
 			_count--;
 			Log.info(Geonet.INDEX_ENGINE, "Closing Index_writer, ref _count "+_count+" ram in use "+_writer.ramSizeInBytes()+" docs buffered "+_writer.numRamDocs());
+			// the field term types are saved with each commit
+			_writer.commit(getUserData());
 			if (_count==0) _writer.close(); 
-			else _writer.commit();
 		}
 	}
 
 	public synchronized void commit() throws Exception {
-		if (isOpen()) _writer.commit();
+		if (isOpen()) _writer.commit(getUserData());
 	}
 		
+	public String getAnalyzerVersion() {
+		return _analyzerVersion;
+	}
+
+	// saved with the next commit
+	public void setAnalyzerVersion(String analyzerVersion) {
+		_analyzerVersion = analyzerVersion;
+	}
+
+	private Map<String, String> getUserData() {
+		Map<String, String> userData = _fieldTermTypes.toUserData();
+		if (_analyzerVersion != null) userData.put(ANALYZER_VERSION, _analyzerVersion);
+		return userData;
+	}
+
 	public void addDocument(Document doc) throws Exception {
 		_writer.addDocument(doc);
 	}
@@ -55,6 +55,7 @@ public class LuceneQueryBuilder {
 
 	private Set<String> _tokenizedFieldSet;
 	private PerFieldAnalyzerWrapper _analyzer;
+	private String _localeAnyField;
 
     private static final String STRING_TOKENIZER_DELIMITER = " \n\r\t/,";
 
@@ -65,8 +66,25 @@ public class LuceneQueryBuilder {
 	private static final String maxBoundingLongitudeValue = "540";  //  180 + 360
 
 	public LuceneQueryBuilder(HashSet<String> tokenizedFieldSet, PerFieldAnalyzerWrapper analyzer) {
+		this(tokenizedFieldSet, analyzer, null);
+	}
+
+    /**
+     * Creates a builder for a request language. If it is one of the index languages, the free text search also
+     * matches the per language free text field of that language.
+     *
+     * @param tokenizedFieldSet tokenized fields
+     * @param analyzer analyzer
+     * @param language request language, may be null
+     */
+	public LuceneQueryBuilder(HashSet<String> tokenizedFieldSet, PerFieldAnalyzerWrapper analyzer, String language) {
 		_tokenizedFieldSet = tokenizedFieldSet;
 		_analyzer = analyzer;
+		_localeAnyField = SearchManager.getLocaleField(LuceneIndexField.ANY, language);
+		if (_localeAnyField != null) {
+			_tokenizedFieldSet = new HashSet<String>(tokenizedFieldSet);
+			_tokenizedFieldSet.add(_localeAnyField);
+		}
 	}
 
     /**
@@ -147,6 +165,29 @@ public class LuceneQueryBuilder {
         return query;
 	}
 
+    /**
+     * Creates a query for a token of the free text search. When there is a per language free text field for the
+     * request language, the token may match either field.
+     *
+     * @param token token
+     * @param similarity fuzziness
+     * @return query
+     */
+	private Query anyFieldToken(String token, String similarity) {
+        Query query = textFieldToken(token, LuceneIndexField.ANY, similarity);
+        if (query == null || _localeAnyField == null) {
+            return query;
+        }
+        Query localeQuery = textFieldToken(token, _localeAnyField, similarity);
+        if (localeQuery == null) {
+            return query;
+        }
+        BooleanQuery booleanQuery = new BooleanQuery();
+        booleanQuery.add(query, BooleanClause.Occur.SHOULD);
+        booleanQuery.add(localeQuery, BooleanClause.Occur.SHOULD);
+        return booleanQuery;
+	}
+
 	/**
 	 * Creates a query for all tokens in the search param. The query must select only results
 	 * where none of the tokens in the search param is present.
@@ -319,7 +360,7 @@ public class LuceneQueryBuilder {
 			    StringTokenizer st = new StringTokenizer(any, STRING_TOKENIZER_DELIMITER);
 			    if(st.countTokens() == 1) {
 			        String token = st.nextToken();
-			        Query subQuery = textFieldToken(token, LuceneIndexField.ANY, similarity);
+			        Query subQuery = anyFieldToken(token, similarity);
 			        if(subQuery != null) {
 			        	anyClause = new BooleanClause(subQuery, occur);
 			        }
@@ -328,7 +369,7 @@ public class LuceneQueryBuilder {
 					BooleanQuery booleanQuery = new BooleanQuery();
 				    while (st.hasMoreTokens()) {
 				        String token = st.nextToken();
-				        Query subQuery = textFieldToken(token, LuceneIndexField.ANY, similarity);
+				        Query subQuery = anyFieldToken(token, similarity);
 						if(subQuery != null) {
 						BooleanClause subClause = new BooleanClause(subQuery, occur);
 						if(subClause != null){
@@ -26,6 +26,7 @@ package org.fao.geonet.kernel.search;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.WKTReader;
 import jeeves.resources.dbms.Dbms;
+import jeeves.constants.Jeeves;
 import jeeves.server.ServiceConfig;
 import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
@@ -46,6 +47,7 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.IndexSearcher;
@@ -70,6 +72,7 @@ import org.fao.geonet.constants.Edit;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.exceptions.UnAuthorizedException;
 import org.fao.geonet.exceptions.SearchExpiredEx;
+import org.fao.geonet.kernel.AccessManager;
 import org.fao.geonet.kernel.search.SummaryComparator.SortOption;
 import org.fao.geonet.kernel.search.SummaryComparator.Type;
 import org.fao.geonet.kernel.search.lucenequeries.DateRangeQuery;
@@ -84,6 +87,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -107,7 +111,8 @@ public class LuceneSearcher extends MetaSearcher
 	private Filter        _filter;
 	private Sort          _sort;
 	private Element       _elSummary;
-	private FieldSelector _selector;
+	private Set<String>   _userGroups;
+	private SearchCursors _cursors = new SearchCursors();
 	private long					_searchToken;
 
 	private int           _maxSummaryKeys;
@@ -129,12 +134,6 @@ public class LuceneSearcher extends MetaSearcher
 		_sm             = sm;
 		_styleSheetName = styleSheetName;
 		_summaryConfig  = summaryConfig;
-		_selector = new FieldSelector() {
-			public final FieldSelectorResult accept(String name) {
-				if (name.equals("_id")) return FieldSelectorResult.LOAD;
-				else return FieldSelectorResult.NO_LOAD;
-			}
-		};
 
 		// build _tokenizedFieldSet
 		_tokenizedFieldSet = new HashSet<String>();
@@ -197,7 +196,9 @@ public class LuceneSearcher extends MetaSearcher
 
 	/**
 	 * @return		An empty response if no result or a list of results. Return
-	 * only geonet:info element in fast mode. 
+	 * only geonet:info element in fast mode. When fast is "index" (from the
+	 * request or the service config) a brief record is built from the stored
+	 * fields instead of loading the metadata from the database.
 	 */
 	public Element present(ServiceContext srvContext, Element request, ServiceConfig config)
 		throws Exception
@@ -209,7 +210,11 @@ public class LuceneSearcher extends MetaSearcher
 			gc = (GeonetContext) srvContext.getHandlerContext(Geonet.CONTEXT_NAME);
 
 		String sFast = request.getChildText("fast");
-		boolean fast = sFast != null && sFast.equals("true");
+		if (sFast == null && config != null)
+			sFast = config.getValue("fast");
+
+		boolean fast  = sFast != null && sFast.equals("true");
+		boolean brief = sFast != null && sFast.equals("index") && srvContext != null && _userGroups != null;
 
 		// build response
 		Element response =  new Element("response");
@@ -227,18 +232,22 @@ public class LuceneSearcher extends MetaSearcher
 				int nrHits = getTo() - (getFrom()-1);
 				if (tdocs.scoreDocs.length >= nrHits) {
 					for (int i = 0; i < nrHits; i++) {
-						Document doc;
-						if (fast) {
+						Document doc = null;
+						String id;
+						if (fast || brief) {
 							doc = searcher.getIndexReader().document(tdocs.scoreDocs[i].doc); // no selector
+							id = doc.get("_id");
 						} else {
-							doc = searcher.getIndexReader().document(tdocs.scoreDocs[i].doc, _selector);
+							id = IndexColumns.get(searcher.getIndexReader(), IndexColumns.ID, tdocs.scoreDocs[i].doc);
 						}
-						String id = doc.get("_id");
 						Element md = null;
 	
 						if (fast) {
 							md = getMetadataFromIndex(doc, id);
 						}
+						else if (brief) {
+							md = getBriefFromIndex(srvContext, gc, doc, id);
+						}
                     	else if (srvContext != null) {
 							md = gc.getDataManager().getMetadata(srvContext, id, false);
 						}
@@ -304,6 +313,7 @@ public class LuceneSearcher extends MetaSearcher
 	private IndexSearcher getNewSearcher() throws Exception {
 		Pair<Long,IndexSearcher> searcherPair = _sm.getNewIndexSearcher();
 		_searchToken = searcherPair.one();
+		_cursors.clear();
 		return searcherPair.two();
 	}
 
@@ -341,6 +351,7 @@ public class LuceneSearcher extends MetaSearcher
             @SuppressWarnings("unchecked")
             List<Element> requestedGroups = request.getChildren(SearchParameter.GROUP);
             Set<String> userGroups = gc.getAccessManager().getUserGroups(dbms, srvContext.getUserSession(), srvContext.getIpAddress());
+            _userGroups = userGroups;
             UserSession userSession = srvContext.getUserSession();
             // unless you are logged in as Administrator, check if you are allowed to query the groups in the query
             if (userSession == null || userSession.getProfile() == null ||
@@ -405,7 +416,8 @@ public class LuceneSearcher extends MetaSearcher
             else {
                 // Construct Lucene query (Java)
                 LuceneQueryInput luceneQueryInput = new LuceneQueryInput(request);
-                _query = new LuceneQueryBuilder(_tokenizedFieldSet, SearchManager.getAnalyzer()).build(luceneQueryInput);
+                String language = (srvContext != null) ? srvContext.getLanguage() : null;
+                _query = new LuceneQueryBuilder(_tokenizedFieldSet, SearchManager.getAnalyzer(), language).build(luceneQueryInput);
                 Log.debug(Geonet.SEARCH_ENGINE,"Lucene query: " + _query);
                  //System.out.println("** query:\n"+ _query);
                 try {
@@ -435,7 +447,7 @@ public class LuceneSearcher extends MetaSearcher
 		
 		Geometry geometry = getGeometry(request);
         if (geometry != null) {
-            _filter = new CachingWrapperFilter(_sm.getSpatial().filter(_query, Integer.MAX_VALUE, geometry, request));
+            _filter = _sm.getSpatial().filter(geometry, request);
         }
         
         String sortBy = Util.getParam(request, Geonet.SearchResult.SORT_BY,
@@ -501,7 +513,7 @@ public class LuceneSearcher extends MetaSearcher
 			numHits = endHit;
 		}
 
-		Pair<TopDocs,Element> results = doSearchAndMakeSummary( numHits, startHit, endHit, _maxSummaryKeys, _language, _resultType, _summaryConfig, searcher, _query, cFilter, _sort, buildSummary);
+		Pair<TopDocs,Element> results = doSearchAndMakeSummary( numHits, startHit, endHit, _maxSummaryKeys, _language, _resultType, _summaryConfig, searcher, _query, cFilter, _sort, buildSummary, _cursors);
 		_elSummary = results.two();
 		_numHits = Integer.parseInt(_elSummary.getAttributeValue("count"));
 	
@@ -890,9 +902,16 @@ public class LuceneSearcher extends MetaSearcher
 	private static HashMap<String,HashMap<String,Integer>> buildSummaryMaps(Element elSummary, IndexReader reader, ScoreDoc[] sdocs, final HashMap<String,HashMap<String,Integer>> summaryMaps) {
 		elSummary.setAttribute("hitsusedforsummary", sdocs.length+"");
 
+		boolean packed = false;
+		for (String key : summaryMaps.keySet()) {
+			packed |= IndexInfo.isPacked(key);
+		}
+		final boolean loadInfo = packed;
+
 		FieldSelector keySelector = new FieldSelector() {
 			public final FieldSelectorResult accept(String name) {
 				if (summaryMaps.get(name) != null) return FieldSelectorResult.LOAD;
+				else if (loadInfo && name.equals(IndexInfo.FIELD)) return FieldSelectorResult.LOAD;
 				else return FieldSelectorResult.NO_LOAD;
 			}
 		};
@@ -901,6 +920,7 @@ public class LuceneSearcher extends MetaSearcher
             Document doc = null;
             try {
                 doc = reader.document(sdoc.doc, keySelector);
+                IndexInfo.expand(doc);
             }
             catch (Exception e) {
                 Log.error(Geonet.SEARCH_ENGINE, e.getMessage() + " Caused Failure to get document " + sdoc.doc);
@@ -994,15 +1014,51 @@ public class LuceneSearcher extends MetaSearcher
 			String langCode, String resultType, Element summaryConfig, 
 			IndexSearcher searcher, Query query, CachingWrapperFilter cFilter, Sort sort, boolean buildSummary) throws Exception
 	{
+		return doSearchAndMakeSummary(numHits, startHit, endHit, maxSummaryKeys, langCode, resultType, summaryConfig,
+				searcher, query, cFilter, sort, buildSummary, null);
+	}
 
-		Log.debug(Geonet.SEARCH_ENGINE, "Setting up the TFC with numHits "+numHits);
-		TopFieldCollector tfc = TopFieldCollector.create(sort, numHits, true, false, false, false);
+	//--------------------------------------------------------------------------------
+	/**
+	 * Same as above but, when not building the summary, the hits are collected
+	 * after the nearest cursor found before startHit, if any. The last hit
+	 * returned is kept as a new cursor, so that getting the next page only needs
+	 * to collect the hits of that page.
+	 *
+	 * @param cursors	the cursors of the search (can be null). They must be
+	 * cleared when the searcher or the query change.
+	 */
+	public static Pair<TopDocs, Element> doSearchAndMakeSummary(int numHits, int startHit, int endHit, int maxSummaryKeys, 
+			String langCode, String resultType, Element summaryConfig, 
+			IndexSearcher searcher, Query query, CachingWrapperFilter cFilter, Sort sort, boolean buildSummary,
+			SearchCursors cursors) throws Exception
+	{
+		if (!SearchAfterCollector.supports(sort))
+			cursors = null;
+
+		Pair<Integer, FieldDoc> cursor = null;
+		if (cursors != null && !buildSummary)
+			cursor = cursors.before(sort, startHit);
+
+		// -- number of hits before the cursor, which are not collected
+		int skipped = (cursor == null) ? 0 : cursor.one() + 1;
+
+		Log.debug(Geonet.SEARCH_ENGINE, "Setting up the TFC with numHits "+(numHits - skipped)+" after "+skipped);
+		TopFieldCollector tfc = TopFieldCollector.create(sort, Math.max(numHits - skipped, 1), true, false, false, false);
 
-		searcher.search(query, cFilter, tfc); 
+		int totalHits;
+		if (cursor == null) {
+			searcher.search(query, cFilter, tfc);
+			totalHits = tfc.getTotalHits();
+		} else {
+			SearchAfterCollector sac = new SearchAfterCollector(sort, cursor.two(), tfc);
+			searcher.search(query, cFilter, sac);
+			totalHits = sac.getTotalHits();
+		}
 		IndexReader reader = searcher.getIndexReader();
 
 		Element elSummary= new Element("summary");
-		elSummary.setAttribute("count", tfc.getTotalHits()+"");
+		elSummary.setAttribute("count", totalHits+"");
 		elSummary.setAttribute("type", "local");
 
 		// topDocs could only be called once.
@@ -1023,7 +1079,14 @@ public class LuceneSearcher extends MetaSearcher
 			summaryMaps = buildSummaryMaps(elSummary, reader, tdocs.scoreDocs, summaryMaps);
 			elSummary = addSortedSummaryKeys(elSummary, langCode, summaryMaps, summaryConfigValues);
 		} else {
-			tdocs = tfc.topDocs(startHit, endHit);
+			tdocs = tfc.topDocs(startHit - skipped, endHit);
+		}
+
+		// -- the last hit collected is the cursor of the next page
+		if (cursors != null && tdocs.scoreDocs.length > 0) {
+			int first = buildSummary ? 0 : startHit;
+			int last  = tdocs.scoreDocs.length - 1;
+			cursors.put(sort, first + last, (FieldDoc) tdocs.scoreDocs[last]);
 		}
 
 		return Pair.read(tdocs,elSummary);
@@ -1033,6 +1096,8 @@ public class LuceneSearcher extends MetaSearcher
 
 	public static Element getMetadataFromIndex(Document doc, String id)
 	{
+		IndexInfo.expand(doc);
+
 		String root       = doc.get("_root");
 		String schema     = doc.get("_schema");
 
@@ -1070,6 +1135,171 @@ public class LuceneSearcher extends MetaSearcher
 		return md;
 	}
 
+	//--------------------------------------------------------------------------------
+	/**
+	 * Builds the brief presentation of a metadata (as the schema's brief
+	 * templates do) using only the stored fields of its document. Privileges are
+	 * computed from the _opXXX fields and the groups of the user collected when
+	 * the search was performed, so no database access is needed.
+	 */
+	private Element getBriefFromIndex(ServiceContext srvContext, GeonetContext gc, Document doc, String id)
+	{
+		Element info = getMetadataFromIndex(doc, id).getChild(Edit.RootChild.INFO, Edit.NAMESPACE);
+		info.detach();
+
+		Element md = new Element("metadata");
+
+		String uuid        = doc.get("_uuid");
+		String isHarvested = doc.get("_isHarvested");
+
+		addElement(info, Edit.Info.Elem.IS_TEMPLATE,  doc.get("_isTemplate"));
+		addElement(info, Edit.Info.Elem.TITLE,        doc.get("_title"));
+		addElement(info, Edit.Info.Elem.IS_HARVESTED, isHarvested);
+		addElement(info, Edit.Info.Elem.POPULARITY,   doc.get("_popularity"));
+		addElement(info, Edit.Info.Elem.RATING,       doc.get("_rating"));
+
+		Element harvestInfo = null;
+
+		if ("y".equals(isHarvested)) {
+			harvestInfo = gc.getHarvestManager().getHarvestInfo(doc.get("harvestUuid"), id, uuid);
+			info.addContent(harvestInfo);
+		}
+
+		addBriefPrivileges(srvContext.getUserSession(), doc, info);
+
+		info.addContent(new Element(Edit.Info.Elem.CATEGORY).setAttribute("internal", "true")
+				.setText("service".equals(doc.get("type")) ? "service" : "dataset"));
+
+		addElement(info, "fromIndex", "true");
+
+		//--- brief elements
+
+		addElement(md, "title", doc.get("title"));
+		addElement(md, "abstract", doc.get("abstract"));
+
+		for (String keyword : doc.getValues("keyword"))
+			addElement(md, "keyword", keyword);
+
+		String[] west  = doc.getValues("westBL");
+		String[] east  = doc.getValues("eastBL");
+		String[] south = doc.getValues("southBL");
+		String[] north = doc.getValues("northBL");
+
+		for (int i = 0; i < west.length && i < east.length && i < south.length && i < north.length; i++) {
+			Element geoBox = new Element("geoBox");
+			addElement(geoBox, "westBL",  unshift(west[i]));
+			addElement(geoBox, "eastBL",  unshift(east[i]));
+			addElement(geoBox, "southBL", unshift(south[i]));
+			addElement(geoBox, "northBL", unshift(north[i]));
+			md.addContent(geoBox);
+		}
+
+		for (String link : doc.getValues("downloadLink"))
+			md.addContent(new Element("link").setAttribute("type", "download").setText(link));
+
+		String locService = srvContext.getBaseUrl() +"/"+ Jeeves.Prefix.SERVICE +"/"+ srvContext.getLanguage();
+
+		for (String image : doc.getValues("image")) {
+			int    pos      = image.indexOf('|');
+			String descr    = image.substring(0, pos);
+			String fileName = image.substring(pos + 1);
+
+			if (fileName.contains("://")) {
+				md.addContent(new Element("image").setAttribute("type", "unknown").setText(fileName));
+			}
+			else if (descr.equals("thumbnail") || descr.equals("large_thumbnail")) {
+				boolean small = descr.equals("thumbnail");
+				String  url;
+
+				if (harvestInfo != null) {
+					String prefix = harvestInfo.getChildText(small ? "smallThumbnail" : "largeThumbnail");
+					url = (prefix == null) ? null : prefix + fileName;
+				} else {
+					url = locService + (small ? "/resources.get" : "/graphover.show")
+							+"?id="+ id +"&fname="+ fileName +"&access=public";
+				}
+
+				if (url != null)
+					md.addContent(new Element("image").setAttribute("type", small ? "thumbnail" : "overview").setText(url));
+			}
+		}
+
+		md.addContent(info);
+		return md;
+	}
+
+	//--------------------------------------------------------------------------------
+	/**
+	 * Adds the privileges of the current user on the metadata to its info
+	 * element. Follows the rules of AccessManager.getOperations, isOwner and
+	 * canEdit.
+	 */
+	private void addBriefPrivileges(UserSession us, Document doc, Element info)
+	{
+		boolean authenticated = us != null && us.isAuthenticated();
+		String  profile       = authenticated ? us.getProfile() : null;
+
+		boolean owner = false;
+
+		if (authenticated) {
+			String groupOwner = doc.get("_groupOwner");
+
+			owner = profile.equals(Geonet.Profile.ADMINISTRATOR)
+					|| us.getUserId().equals(doc.get("_owner"))
+					|| ((profile.equals(Geonet.Profile.REVIEWER) || profile.equals(Geonet.Profile.USER_ADMIN))
+							&& groupOwner != null && _userGroups.contains(groupOwner));
+		}
+
+		boolean view     = owner || isAllowed(doc, AccessManager.OPER_VIEW);
+		boolean download = owner || isAllowed(doc, AccessManager.OPER_DOWNLOAD);
+		boolean editing  = owner || isAllowed(doc, AccessManager.OPER_EDITING);
+
+		if (authenticated && profile.equals(Geonet.Profile.EDITOR) && editing)
+			view = true;
+
+		addElement(info, Edit.Info.Elem.VIEW,     String.valueOf(view));
+		addElement(info, Edit.Info.Elem.NOTIFY,   String.valueOf(owner || isAllowed(doc, AccessManager.OPER_NOTIFY)));
+		addElement(info, Edit.Info.Elem.DOWNLOAD, String.valueOf(download));
+		addElement(info, Edit.Info.Elem.DYNAMIC,  String.valueOf(owner || isAllowed(doc, AccessManager.OPER_DYNAMIC)));
+		addElement(info, Edit.Info.Elem.FEATURED, String.valueOf(owner || isAllowed(doc, AccessManager.OPER_FEATURED)));
+
+		if (!download)
+			addElement(info, Edit.Info.Elem.GUEST_DOWNLOAD,
+					String.valueOf(Arrays.asList(doc.getValues("_op"+ AccessManager.OPER_DOWNLOAD)).contains("-1")));
+
+		if (owner || (authenticated && profile.equals(Geonet.Profile.EDITOR) && editing))
+			addElement(info, Edit.Info.Elem.EDIT, "true");
+
+		if (owner)
+			addElement(info, Edit.Info.Elem.OWNER, "true");
+
+		boolean publishedToAll = Arrays.asList(doc.getValues("_op"+ AccessManager.OPER_VIEW)).contains("1");
+		addElement(info, Edit.Info.Elem.IS_PUBLISHED_TO_ALL, String.valueOf(publishedToAll));
+	}
+
+	//--------------------------------------------------------------------------------
+
+	private boolean isAllowed(Document doc, String operation)
+	{
+		for (String group : doc.getValues("_op"+ operation))
+			if (_userGroups.contains(group))
+				return true;
+
+		return false;
+	}
+
+	//--------------------------------------------------------------------------------
+	/** Bounding box values are indexed shifted by 360 degrees */
+
+	private static String unshift(String value)
+	{
+		try {
+			return String.valueOf(Double.parseDouble(value) - 360);
+		} catch (NumberFormatException e) {
+			return value;
+		}
+	}
+
     //--------------------------------------------------------------------------------
 	/**
 	 * <p>
@@ -1077,30 +1307,84 @@ public class LuceneSearcher extends MetaSearcher
 	 * </p>
 	 * 
 	 * @param maxHits max hits
-     * @return current searcher result in "fast" mode
+     * @return the uuids of the hits, in index order
 	 * 
 	 * @throws Exception hmm
 	 */
     public List<String>  getAllUuids(int maxHits) throws Exception {
 
-				FieldSelector uuidselector = new FieldSelector() {
-					public final FieldSelectorResult accept(String name) {
-						if (name.equals("_uuid")) return FieldSelectorResult.LOAD;
-						else return FieldSelectorResult.NO_LOAD;
-					}
-				};
+		IndexSearcher searcher = getCurrentSearcher();
+		try {
+			UuidCollector collector = new UuidCollector(maxHits);
+			searcher.search(_query, _filter, collector);
+			return collector.getUuids();
+		} finally {
+			releaseSearcher();
+		}
+    }
 
-				IndexSearcher searcher = getCurrentSearcher();
-        List<String> response = new ArrayList<String>();
-				TopDocs tdocs = performQuery(0, maxHits, searcher);
+	//--------------------------------------------------------------------------------
+	/**
+	 * Runs the query and returns the next hits in (change date, id) order that
+	 * come after the given change date and id (from the first hit if changeDate
+	 * is null). No summary is built and nothing is kept between calls: the last
+	 * hit returned is the cursor to get the following ones.
+	 *
+	 * @param srvContext context
+	 * @param request search parameters
+	 * @param config config
+	 * @param changeDate change date of the last hit of the previous page
+	 * @param id id of the last hit of the previous page
+	 * @param maxHits max hits
+	 * @return (change date, id) pairs of the hits
+	 * @throws Exception hmm
+	 */
+	public List<Pair<String, String>> searchAfterChangeDate(ServiceContext srvContext, Element request,
+				ServiceConfig config, String changeDate, String id, int maxHits) throws Exception
+	{
+		IndexSearcher searcher = getNewSearcher();
+		try {
+			computeQuery(srvContext, request, config, searcher);
 
-        for ( ScoreDoc sdoc : tdocs.scoreDocs ) {
-          Document doc = searcher.getIndexReader().document(sdoc.doc, uuidselector);
-          String uuid = doc.get("_uuid");
-					if (uuid != null) response.add(uuid);
-        }
-        return response;
-    }
+			Query query = _query;
+
+			if (changeDate != null) {
+				// changeDate > cursor date OR (changeDate = cursor date AND id > cursor id)
+				BooleanQuery sameDate = new BooleanQuery();
+				sameDate.add(new TermQuery(new Term("_changeDate", changeDate)), BooleanClause.Occur.MUST);
+				sameDate.add(new TermRangeQuery("_id", id, null, false, false), BooleanClause.Occur.MUST);
+
+				BooleanQuery after = new BooleanQuery();
+				after.add(new TermRangeQuery("_changeDate", changeDate, null, false, false), BooleanClause.Occur.SHOULD);
+				after.add(sameDate, BooleanClause.Occur.SHOULD);
+
+				BooleanQuery cursorQuery = new BooleanQuery();
+				cursorQuery.add(_query, BooleanClause.Occur.MUST);
+				cursorQuery.add(after,  BooleanClause.Occur.MUST);
+				query = cursorQuery;
+			}
+
+			Sort sort = new Sort(new SortField[] {
+				new SortField("_changeDate", SortField.STRING),
+				new SortField("_id",         SortField.STRING)
+			});
+
+			Filter filter = (_filter == null) ? null : new CachingWrapperFilter(_filter);
+			TopDocs tdocs = searcher.search(query, filter, maxHits, sort);
+
+			List<Pair<String, String>> hits = new ArrayList<Pair<String, String>>();
+
+			IndexReader reader = searcher.getIndexReader();
+
+			for (ScoreDoc sdoc : tdocs.scoreDocs) {
+				hits.add(Pair.read(IndexColumns.get(reader, IndexColumns.CHANGE_DATE, sdoc.doc),
+										 IndexColumns.get(reader, IndexColumns.ID, sdoc.doc)));
+			}
+			return hits;
+		} finally {
+			releaseSearcher();
+		}
+	}
 
 	//--------------------------------------------------------------------------------
 	/**
@@ -1124,7 +1408,9 @@ public class LuceneSearcher extends MetaSearcher
     public static Map<String,String> getMetadataFromIndex(String appPath, String id, List<String> fieldnames) throws Exception
     {
 
-			MapFieldSelector selector = new MapFieldSelector(fieldnames); 
+			List<String> loaded = new ArrayList<String>(fieldnames);
+			loaded.add(IndexInfo.FIELD);
+			MapFieldSelector selector = new MapFieldSelector(loaded); 
 
 			File luceneDir = new File(appPath + "WEB-INF/lucene/nonspatial");
 			IndexReader reader = IndexReader.open(FSDirectory.open(luceneDir));
@@ -1138,6 +1424,7 @@ public class LuceneSearcher extends MetaSearcher
 	        
 	       for ( ScoreDoc sdoc : tdocs.scoreDocs ) {
         		Document doc = reader.document(sdoc.doc, selector);
+        		IndexInfo.expand(doc);
 
                for ( String fieldname :  fieldnames ) {
 							values.put(fieldname, doc.get(fieldname));
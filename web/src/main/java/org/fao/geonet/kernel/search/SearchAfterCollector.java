@@ -0,0 +1,250 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreCachingWrappingScorer;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+import java.io.IOException;
+
+//=============================================================================
+
+/** Collector that only passes to the wrapped collector the hits that come
+  * after a given hit (the cursor) in the order defined by the sort. Used to
+  * get a page of results without collecting and sorting all the hits of the
+  * previous pages. The cursor is the last FieldDoc of a previous page that was
+  * collected with fillFields=true by the same searcher: docids are only valid
+  * for the searcher that produced them.
+  *
+  * Sort values are read from the FieldCache, so only the standard sort types
+  * without custom parsers are supported (see supports).
+  */
+
+public class SearchAfterCollector extends Collector
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//---------------------------------------------------------------------------
+
+	public SearchAfterCollector(Sort sort, FieldDoc after, Collector collector)
+	{
+		if (!supports(sort))
+			throw new IllegalArgumentException("Sort not supported : "+ sort);
+
+		this.fields    = sort.getSort();
+		this.after     = after;
+		this.collector = collector;
+		this.caches    = new Object[fields.length];
+
+		for (SortField field : fields)
+			if (field.getType() == SortField.SCORE)
+				needsScores = true;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns true if the sort fields can be read by this collector */
+
+	public static boolean supports(Sort sort)
+	{
+		for (SortField field : sort.getSort())
+		{
+			if (field.getParser() != null || field.getComparatorSource() != null || field.getLocale() != null)
+				return false;
+
+			switch (field.getType())
+			{
+				case SortField.STRING:
+				case SortField.INT:
+				case SortField.LONG:
+				case SortField.FLOAT:
+				case SortField.DOUBLE:
+				case SortField.SCORE:
+				case SortField.DOC:
+					break;
+
+				default:
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the number of hits, including the ones before the cursor */
+
+	public int getTotalHits() { return totalHits; }
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Collector
+	//---
+	//---------------------------------------------------------------------------
+
+	public void setScorer(Scorer scorer) throws IOException
+	{
+		if (needsScores)
+			scorer = new ScoreCachingWrappingScorer(scorer);
+
+		this.scorer = scorer;
+		collector.setScorer(scorer);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void setNextReader(IndexReader reader, int docBase) throws IOException
+	{
+		this.docBase = docBase;
+
+		for (int i=0; i<fields.length; i++)
+		{
+			String name = fields[i].getField();
+
+			switch (fields[i].getType())
+			{
+				case SortField.STRING: caches[i] = FieldCache.DEFAULT.getStringIndex(reader, name); break;
+				case SortField.INT:    caches[i] = FieldCache.DEFAULT.getInts   (reader, name); break;
+				case SortField.LONG:   caches[i] = FieldCache.DEFAULT.getLongs  (reader, name); break;
+				case SortField.FLOAT:  caches[i] = FieldCache.DEFAULT.getFloats (reader, name); break;
+				case SortField.DOUBLE: caches[i] = FieldCache.DEFAULT.getDoubles(reader, name); break;
+				default:               caches[i] = null;
+			}
+		}
+
+		collector.setNextReader(reader, docBase);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public void collect(int doc) throws IOException
+	{
+		totalHits++;
+
+		if (isAfter(doc))
+			collector.collect(doc);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public boolean acceptsDocsOutOfOrder()
+	{
+		return collector.acceptsDocsOutOfOrder();
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Compares the sort values of the hit with the ones of the cursor, using
+	  * the same rules of the lucene comparators. Ties are broken by docid */
+
+	private boolean isAfter(int doc) throws IOException
+	{
+		for (int i=0; i<fields.length; i++)
+		{
+			int cmp = compare(fields[i].getType(), value(i, doc), after.fields[i]);
+
+			if (fields[i].getReverse())
+				cmp = -cmp;
+
+			if (cmp != 0)
+				return cmp > 0;
+		}
+
+		return docBase + doc > after.doc;
+	}
+
+	//---------------------------------------------------------------------------
+
+	private Object value(int field, int doc) throws IOException
+	{
+		Object cache = caches[field];
+
+		switch (fields[field].getType())
+		{
+			case SortField.STRING:
+				FieldCache.StringIndex index = (FieldCache.StringIndex) cache;
+				return index.lookup[index.order[doc]];
+
+			case SortField.INT:    return ((int[])    cache)[doc];
+			case SortField.LONG:   return ((long[])   cache)[doc];
+			case SortField.FLOAT:  return ((float[])  cache)[doc];
+			case SortField.DOUBLE: return ((double[]) cache)[doc];
+			case SortField.SCORE:  return scorer.score();
+			default:               return docBase + doc;
+		}
+	}
+
+	//---------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private static int compare(int type, Object value, Object cursor)
+	{
+		if (value == null)
+			return (cursor == null) ? 0 : -1;
+
+		if (cursor == null)
+			return 1;
+
+		//--- higher scores come first
+
+		if (type == SortField.SCORE)
+			return ((Comparable<Object>) cursor).compareTo(value);
+
+		return ((Comparable<Object>) value).compareTo(cursor);
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private SortField[] fields;
+	private FieldDoc    after;
+	private Collector   collector;
+	private Object[]    caches;
+	private Scorer      scorer;
+	private boolean     needsScores;
+	private int         docBase;
+	private int         totalHits;
+}
+
+//=============================================================================
+
@@ -0,0 +1,109 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Sort;
+import org.fao.geonet.kernel.search.spatial.Pair;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+//=============================================================================
+
+/** Keeps the last hit of the pages of a search that have been retrieved, by
+  * position in the result set, so that the following pages can be collected
+  * starting from the nearest previous one (see SearchAfterCollector). The
+  * cursors are only valid for the index searcher and the query that produced
+  * them: the owner of this object must clear it when they change. They are
+  * also dropped when the sort changes.
+  */
+
+public class SearchCursors
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns the nearest cursor before the given position (0 based) as a
+	  * (position, hit) pair, or null if there is none for this sort */
+
+	public synchronized Pair<Integer, FieldDoc> before(Sort sort, int position)
+	{
+		if (!sort.equals(this.sort))
+			return null;
+
+		SortedMap<Integer, FieldDoc> head = cursors.headMap(position);
+
+		if (head.isEmpty())
+			return null;
+
+		Integer pos = head.lastKey();
+
+		return Pair.read(pos, head.get(pos));
+	}
+
+	//---------------------------------------------------------------------------
+
+	public synchronized void put(Sort sort, int position, FieldDoc hit)
+	{
+		if (!sort.equals(this.sort))
+		{
+			cursors.clear();
+			this.sort = sort;
+		}
+
+		cursors.put(position, hit);
+
+		//--- the first pages are the cheapest ones to collect again
+
+		if (cursors.size() > MAX_CURSORS)
+			cursors.remove(cursors.firstKey());
+	}
+
+	//---------------------------------------------------------------------------
+
+	public synchronized void clear()
+	{
+		cursors.clear();
+		sort = null;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final int MAX_CURSORS = 100;
+
+	private Sort sort;
+
+	private TreeMap<Integer, FieldDoc> cursors = new TreeMap<Integer, FieldDoc>();
+}
+
+//=============================================================================
+
@@ -35,8 +35,6 @@ import org.apache.lucene.analysis.KeywordAnalyzer;
 import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldSelector;
-import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -59,6 +57,7 @@ import org.fao.geonet.kernel.search.spatial.OgcGenericFilters;
 import org.fao.geonet.kernel.search.spatial.OverlapsFilter;
 import org.fao.geonet.kernel.search.spatial.Pair;
 import org.fao.geonet.kernel.search.spatial.SpatialFilter;
+import org.fao.geonet.kernel.search.spatial.SpatialFilterCache;
 import org.fao.geonet.kernel.search.spatial.SpatialIndexWriter;
 import org.fao.geonet.kernel.search.spatial.TouchesFilter;
 import org.fao.geonet.kernel.search.spatial.WithinFilter;
@@ -87,11 +86,13 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.TreeSet;
 import java.util.Vector;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -108,6 +109,8 @@ public class SearchManager
 	private static final String SEARCH_STYLESHEETS_DIR_PATH = "xml/search";
 	private static final String SCHEMA_STYLESHEETS_DIR_PATH = "xml/schemas";
     private static final String STOPWORDS_DIR_PATH = "resources/stopwords";
+    // Version of the analysis of the documents: to be increased when it changes, so that existing indexes are rebuilt
+    private static final int ANALYZER_VERSION = 2;
 
 	private static final Configuration FILTER_1_0_0 = new org.geotools.filter.v1_0.OGCConfiguration();
     private static final Configuration FILTER_1_1_0 = new org.geotools.filter.v1_1.OGCConfiguration();
@@ -118,8 +121,12 @@ public class SearchManager
 	private final Element  _summaryConfig;
 	private final Element  _tokenizedFields;
 	private final Element  _numericFields;    
+	private final FieldTermTypes _fieldTermTypes = new FieldTermTypes();
 	private File           _luceneDir;
 	private static PerFieldAnalyzerWrapper _analyzer;
+	private static volatile Set<String> _indexLanguages = Collections.emptySet();
+	// analyzer version and index languages, saved in the index by the documents indexed with them
+	private static volatile String _analyzerVersion;
 	private String         _htmlCacheDir;
     private Spatial        _spatial;
 	private LuceneIndexReaderFactory    _indexReader;
@@ -147,14 +154,21 @@ public class SearchManager
 	public void initAnalyzer(Dbms dbms) {
     // Define the default Analyzer
 
-        Set<String> stopwords = null;
+        Map<String, Set<String>> stopwords = null;
         try {
            stopwords = findStopwords(dbms);
         }
         catch(Exception x) {
            Log.warning("SearchManager", "Exception getting stopwords: " + x.getMessage() + ", now creating GeoNetworkAnalyzer without stopwords");
+           stopwords = new LinkedHashMap<String, Set<String>>();
         }
-		_analyzer = new PerFieldAnalyzerWrapper(new GeoNetworkAnalyzer(stopwords));
+        // The stopwords of a language are only applied to all fields when it is the only index language. Otherwise
+        // they would remove meaningful terms of the other languages: they are used by the per language fields.
+        Set<String> defaultStopwords = null;
+        if (stopwords.size() == 1) {
+            defaultStopwords = stopwords.values().iterator().next();
+        }
+		PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new GeoNetworkAnalyzer(defaultStopwords));
 		// Here you could define specific analyzer for each fields stored in the index.
 		//
 		// For example adding a different analyzer for any (ie. full text search) 
@@ -171,22 +185,33 @@ public class SearchManager
 		// Whitespace will not.
 		
 		// heikki doeleman: UUID must be case insensitive, as its parts are hexadecimal numbers which are not case sensitive.
-		_analyzer.addAnalyzer("_uuid", new GeoNetworkAnalyzer());
-		_analyzer.addAnalyzer("parentUuid", new GeoNetworkAnalyzer());
-		_analyzer.addAnalyzer("operatesOn", new GeoNetworkAnalyzer());
-		_analyzer.addAnalyzer("subject", new KeywordAnalyzer());
-        _analyzer.addAnalyzer("inspiretheme", new KeywordAnalyzer());
+		analyzer.addAnalyzer("_uuid", new GeoNetworkAnalyzer());
+		analyzer.addAnalyzer("parentUuid", new GeoNetworkAnalyzer());
+		analyzer.addAnalyzer("operatesOn", new GeoNetworkAnalyzer());
+		analyzer.addAnalyzer("subject", new KeywordAnalyzer());
+        analyzer.addAnalyzer("inspiretheme", new KeywordAnalyzer());
+
+        // Per language copies of the free text field, analyzed with the stopwords and the stemmer of the language.
+        for (Map.Entry<String, Set<String>> entry : stopwords.entrySet()) {
+            String language = entry.getKey();
+            String stemmer = IndexLanguageCodes.getStemmer(language);
+            Log.debug(Geonet.SEARCH_ENGINE, "Analyzer for " + language + " uses stemmer " + stemmer);
+            analyzer.addAnalyzer(LuceneIndexField.ANY + "_" + language, new GeoNetworkAnalyzer(entry.getValue(), stemmer));
+        }
 
+        _indexLanguages = Collections.unmodifiableSet(new HashSet<String>(stopwords.keySet()));
+        _analyzerVersion = ANALYZER_VERSION + ":" + new TreeSet<String>(stopwords.keySet());
+        _analyzer = analyzer;
 	}
 
     /**
      * Retrieves stopwords for selected languages.
      * 
-     * @return stopwords
+     * @return stopwords of each selected language (null if the language has no stopwords file)
      * @throws Exception hmm
      */
-    private static Set<String> findStopwords(Dbms dbms) throws Exception {
-        Set<String> allStopwords = null;
+    private static Map<String, Set<String>> findStopwords(Dbms dbms) throws Exception {
+        Map<String, Set<String>> allStopwords = new LinkedHashMap<String, Set<String>>();
         // retrieve index languages defined by administrator
         IndexLanguagesDAO idxLanguagesDAO = new IndexLanguagesDAO();
         Set<IndexLanguage> languages = idxLanguagesDAO.retrieveSelectedIndexLanguages(dbms);
@@ -195,17 +220,27 @@ public class SearchManager
                 Log.debug(Geonet.SEARCH_ENGINE,"Loading stopwords for " + language.getName());
                 // look up stopwords for that language
                 Set<String> stopwords = StopwordFileParser.parse(_stopwordsDir + File.separator + language.getName());
-                if(stopwords != null) {
-                    if (allStopwords == null) {
-                        allStopwords = new HashSet<String>();
-                    }
-                    allStopwords.addAll(stopwords);                    
-                }
+                allStopwords.put(language.getName(), stopwords);
             }
         }
         return allStopwords;
     }
 
+    /**
+     * Returns the per language copy of an index field, e.g. any_french for any and 'fre'.
+     *
+     * @param field index field
+     * @param language language code, as in metadata or as the request language
+     * @return per language field, or null if the language is not one of the selected index languages
+     */
+    public static String getLocaleField(String field, String language) {
+        String indexLanguage = IndexLanguageCodes.getIndexLanguage(language);
+        if (indexLanguage == null || !_indexLanguages.contains(indexLanguage)) {
+            return null;
+        }
+        return field + "_" + indexLanguage;
+    }
+
 
 	//-----------------------------------------------------------------------------
 
@@ -671,25 +706,19 @@ public class SearchManager
 		IndexReader reader = searcher.getIndexReader();
 
 		try {
-			FieldSelector idXLinkSelector = new FieldSelector() {
-				public final FieldSelectorResult accept(String name) {
-					if (name.equals("_id") || name.equals("_hasxlinks")) return FieldSelectorResult.LOAD;
-					else return FieldSelectorResult.NO_LOAD;
-				}
-			};
-	
+			String[] ids       = IndexColumns.get(reader, IndexColumns.ID);
+			String[] hasXLinks = IndexColumns.get(reader, IndexColumns.HAS_XLINKS);
+
 			ArrayList<Integer> docs = new ArrayList<Integer>();
 			for (int i = 0; i < reader.maxDoc(); i++) {
-				if (reader.isDeleted(i)) continue; // FIXME: strange lucene hack: sometimes it tries to load a deleted document
-				Document doc = reader.document(i, idXLinkSelector);
-				String id = doc.get("_id");
-				String hasxlinks = doc.get("_hasxlinks");
-				Log.debug(Geonet.INDEX_ENGINE, "Got id "+id+" : '"+hasxlinks+"'");
+				if (reader.isDeleted(i)) continue;
+				String id = ids[i];
+				Log.debug(Geonet.INDEX_ENGINE, "Got id "+id+" : '"+hasXLinks[i]+"'");
 				if (id == null) {
-					Log.error(Geonet.INDEX_ENGINE, "Document with no _id field skipped! Document is "+doc);
+					Log.error(Geonet.INDEX_ENGINE, "Document "+i+" with no _id field skipped!");
 					continue;
 				}
-				if (hasxlinks.trim().equals("1")) {
+				if ("1".equals(hasXLinks[i])) {
 					docs.add(new Integer(id));
 				}
 			}
@@ -713,24 +742,19 @@ public class SearchManager
 		IndexReader reader = searcher.getIndexReader();
 
 		try {
-			FieldSelector idChangeDateSelector = new FieldSelector() {
-				public final FieldSelectorResult accept(String name) {
-					if (name.equals("_id") || name.equals("_changeDate")) return FieldSelectorResult.LOAD;
-					else return FieldSelectorResult.NO_LOAD;
-				}
-			};
-	
+			String[] ids         = IndexColumns.get(reader, IndexColumns.ID);
+			String[] changeDates = IndexColumns.get(reader, IndexColumns.CHANGE_DATE);
+
 			int capacity = (int)(reader.maxDoc() / 0.75)+1;
 			HashMap<String,String> docs = new HashMap<String,String>(capacity);
 			for (int i = 0; i < reader.maxDoc(); i++) {
-				if (reader.isDeleted(i)) continue; // FIXME: strange lucene hack: sometimes it tries to load a deleted document
-                Document doc = reader.document(i, idChangeDateSelector);
-				String id = doc.get("_id");
+				if (reader.isDeleted(i)) continue;
+				String id = ids[i];
 				if (id == null) {
-					Log.error(Geonet.INDEX_ENGINE, "Document with no _id field skipped! Document is "+doc);
+					Log.error(Geonet.INDEX_ENGINE, "Document "+i+" with no _id field skipped!");
 					continue;
 				}
-				docs.put(id, doc.get("_changeDate"));
+				docs.put(id, changeDates[i]);
 			}
 			return docs;
 		} finally {
@@ -899,6 +923,23 @@ public class SearchManager
 		}
 	}
 
+	//----------------------------------------------------------------------------
+	/**
+	 * Tells if a field is indexed as one term per value, ie. every document
+	 * indexed by this instance added it neither tokenized nor numeric (the
+	 * token and numeric attributes set by the index-fields stylesheets). The
+	 * terms of such a field are the same as its stored values. The field types
+	 * are saved in the index, so they are known after a restart. Fields never
+	 * indexed (or only indexed before the types were saved) are reported as
+	 * not single term, so that callers fall back on the stored values.
+	 *
+	 * @param field
+	 * @return
+	 */
+	public boolean isSingleTermField(String field) {
+		return _fieldTermTypes.isSingleTerm(field);
+	}
+
 	//----------------------------------------------------------------------------
 	/**
 	 * Return a (refreshed) IndexSearcher to do search operations on.
@@ -938,9 +979,13 @@ public class SearchManager
 	private void setupIndex(boolean rebuild) throws Exception {
 		// if rebuild forced don't check
 		boolean badIndex = true;
+		String analyzerVersion = null;
 		if (!rebuild) {
 			try {
 				IndexReader indexReader = IndexReader.open(FSDirectory.open(_luceneDir));
+				Map<String, String> userData = indexReader.getCommitUserData();
+				_fieldTermTypes.load(userData);
+				analyzerVersion = (userData == null) ? null : userData.get(LuceneIndexWriterFactory.ANALYZER_VERSION);
 				indexReader.close();
 				badIndex = false;
 			} catch (Exception e) {
@@ -953,12 +998,34 @@ public class SearchManager
 		if (rebuild || badIndex) {
 			Log.error(Geonet.INDEX_ENGINE, "Rebuilding lucene index");
 			if (_spatial != null) _spatial.writer().reset();
+			_fieldTermTypes.clear();
+			analyzerVersion = _analyzerVersion;
 			IndexWriter writer = new IndexWriter(FSDirectory.open(_luceneDir), _analyzer, true, IndexWriter.MaxFieldLength.UNLIMITED);
 			writer.close();
 		}
 		
     _indexReader = new LuceneIndexReaderFactory(_luceneDir);
-		_indexWriter = new LuceneIndexWriterFactory(_luceneDir, _analyzer);
+		_indexWriter = new LuceneIndexWriterFactory(_luceneDir, _analyzer, _fieldTermTypes);
+		_indexWriter.setAnalyzerVersion(analyzerVersion);
+	}
+
+	//----------------------------------------------------------------------------
+	/**
+	 * Tells if the documents of the index have been analyzed differently, for
+	 * example with other index languages or by a previous version. All of them
+	 * must then be indexed again.
+	 */
+	public boolean isAnalyzerChanged() {
+		return !_analyzerVersion.equals(_indexWriter.getAnalyzerVersion());
+	}
+
+	//----------------------------------------------------------------------------
+	/**
+	 * Records that all documents have been indexed with the current analyzer.
+	 * Saved by the next commit of the index.
+	 */
+	public void setAnalyzerIndexed() {
+		_indexWriter.setAnalyzerVersion(_analyzerVersion);
 	}
 
 	//----------------------------------------------------------------------------
@@ -1022,11 +1089,30 @@ public class SearchManager
 	private Document newDocument(Element xml)
 	{
 		Document doc = new Document();
+        IndexInfo info = new IndexInfo();
+        String anyText = null;
+        String mainLanguage = null;
+        boolean hasLocaleText = false;
         for (Object o : xml.getChildren()) {
             Element field = (Element) o;
             String name = field.getAttributeValue("name");
             String string = field.getAttributeValue("string"); // Lower case field is handled by Lucene Analyzer.
+            String locale = field.getAttributeValue("locale");
+            if (locale != null) {
+                // text of one language, indexed in the per language copy of the field (if it is an index language)
+                hasLocaleText = true;
+                name = getLocaleField(name, locale);
+                if (name == null) {
+                    continue;
+                }
+            }
             if (string.trim().length() > 0) {
+                if (name.equals(LuceneIndexField.ANY)) {
+                    anyText = string;
+                }
+                else if (name.equals(LuceneIndexField.LANGUAGE) && mainLanguage == null) {
+                    mainLanguage = string;
+                }
                 String sStore = field.getAttributeValue("store");
                 String sIndex = field.getAttributeValue("index");
                 String sToken = field.getAttributeValue("token");
@@ -1037,6 +1123,11 @@ public class SearchManager
                 boolean token = sToken != null && sToken.equals("true");
                 boolean bNumberic = sNumeric != null;
                 
+                // system fields are stored together in the compact info record
+                if (bStore && bIndex && !bNumberic && IndexInfo.isPacked(name) && info.add(name, string)) {
+                    bStore = false;
+                }
+
                 Field.Store store;
                 if (bStore) {
                     store = Field.Store.YES;
@@ -1055,6 +1146,10 @@ public class SearchManager
                     index = Field.Index.NO;
                 }
 
+                if (bIndex) {
+                    _fieldTermTypes.add(name, !token && !bNumberic);
+                }
+
                 if(bNumberic) {
 					NumericField nf = new NumericField(name, store, bIndex);
 
@@ -1074,6 +1169,18 @@ public class SearchManager
                 doc.add(new Field(name, string, store, index));
             }
         }
+        }
+        // schemas that do not split their free text per language (no locale attribute) get the whole free text
+        // indexed in the field of the main language of the record, using the analyzer of that language
+        if (!hasLocaleText && anyText != null && mainLanguage != null) {
+            String localeField = getLocaleField(LuceneIndexField.ANY, mainLanguage);
+            if (localeField != null) {
+                doc.add(new Field(localeField, anyText, Field.Store.NO, Field.Index.ANALYZED));
+                _fieldTermTypes.add(localeField, false);
+            }
+        }
+        if (!info.isEmpty()) {
+            doc.add(info.toField());
         }
 		return doc;
 	}
@@ -1149,15 +1256,29 @@ public class SearchManager
             rebuildIndex = createWriter(_datastore);
             if (rebuildIndex) {
                 setupIndex(true);
-            }else{
-                // since the index is considered good we will 
-                // call getIndex to make sure the in-memory index is 
-                // generated
-                _writer.getIndex();
             }
+            // the in-memory index is generated by warmUp or, if it has not
+            // been called, by the first spatial search
             addShutdownHook();
         }
 
+        /**
+         * Generates the in-memory index so that the first spatial search does
+         * not have to wait for it. Can run in the background while other
+         * subsystems start.
+         *
+         * @throws Exception
+         */
+        public void warmUp() throws Exception
+        {
+            _lock.lock();
+            try {
+                writerNoLocking().getIndex();
+            } finally {
+                _lock.unlock();
+            }
+        }
+
         /**
          * TODO javadoc.
          *
@@ -1220,22 +1341,104 @@ public class SearchManager
          */
         public Filter filter(org.apache.lucene.search.Query query, int numHits, Element filterExpr, String filterVersion)
                 throws Exception {
-            _lock.lock();
+            return filter(query, numHits, parseFilter(filterExpr, filterVersion));
+        }
+
+        /**
+         * Parses the spatial part of an OGC filter, so that it can be reused
+         * by {@link #filter(org.apache.lucene.search.Query, int, OgcGenericFilters.ParsedFilter)}.
+         *
+         * @param filterExpr
+         * @param filterVersion
+         * @return the parsed filter or null if there are no spatial operators
+         * @throws Exception
+         */
+        public OgcGenericFilters.ParsedFilter parseFilter(Element filterExpr, String filterVersion)
+                throws Exception {
             try {
             	Parser filterParser = getFilterParser(filterVersion);
-                Pair<FeatureSource<SimpleFeatureType, SimpleFeature>, SpatialIndex> accessor = new SpatialIndexAccessor();
-                return OgcGenericFilters.create(query, numHits, filterExpr, accessor , filterParser);
+                return OgcGenericFilters.parse(filterExpr, filterParser);
             }
             catch (Exception e) {
             	// TODO Handle NPE creating spatial filter (due to constraint language version).
     			throw new NoApplicableCodeEx("Error when parsing spatial filter (version: " + filterVersion + "):" +
                         Xml.getString(filterExpr) + ". Error is: " + e.toString());
             }
+        }
+
+        /**
+         * Creates a spatial filter from an already parsed OGC filter.
+         *
+         * @param query
+         * @param numHits
+         * @param parsed
+         * @return
+         */
+        public Filter filter(org.apache.lucene.search.Query query, int numHits, OgcGenericFilters.ParsedFilter parsed) {
+            _lock.lock();
+            try {
+                Pair<FeatureSource<SimpleFeatureType, SimpleFeature>, SpatialIndex> accessor = new SpatialIndexAccessor();
+                return OgcGenericFilters.create(query, numHits, parsed, accessor);
+            }
             finally {
                 _lock.unlock();
             }
         }
 
+        /**
+         * Returns the filter of the documents matching an already parsed OGC filter, whatever the query. The
+         * filter is shared by all the searches using the same spatial predicate (see {@link SpatialFilterCache}).
+         *
+         * @param parsed
+         * @return the filter or null if parsed is null
+         * @throws Exception
+         */
+        public Filter filter(final OgcGenericFilters.ParsedFilter parsed) throws Exception {
+            if (parsed == null) {
+                return null;
+            }
+            return SpatialFilterCache.get(parsed.getKey(), new SpatialFilterCache.Factory() {
+                public SpatialFilter create() {
+                    _lock.lock();
+                    try {
+                        return OgcGenericFilters.create(null, Integer.MAX_VALUE, parsed, new SpatialIndexAccessor());
+                    }
+                    finally {
+                        _lock.unlock();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Returns the filter of the documents matching a geometry with the relation of the request, whatever the
+         * query. The filter is shared by all the searches using the same relation and geometry (see
+         * {@link SpatialFilterCache}).
+         *
+         * @param geom
+         * @param request
+         * @return
+         * @throws Exception
+         */
+        public Filter filter(final Geometry geom, Element request) throws Exception {
+            final String relation = Util.getParam(request,
+                    Geonet.SearchResult.RELATION,
+                    Geonet.SearchResult.Relation.INTERSECTION);
+            Geometry normalised = (Geometry) geom.clone();
+            normalised.normalize();
+            return SpatialFilterCache.get(relation + "|" + normalised.toText(), new SpatialFilterCache.Factory() {
+                public SpatialFilter create() throws Exception {
+                    _lock.lock();
+                    try {
+                        return _types.get(relation).newInstance(null, Integer.MAX_VALUE, geom, new SpatialIndexAccessor());
+                    }
+                    finally {
+                        _lock.unlock();
+                    }
+                }
+            });
+        }
+
         /**
          * TODO javadoc.
          *
@@ -21,16 +21,25 @@
 //===	Rome - Italy. email: geonetwork@osgeo.org
 //==============================================================================
 
-package org.fao.oaipmh.util;
+package org.fao.geonet.kernel.search;
 
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import org.fao.oaipmh.exceptions.BadResumptionTokenException;
-import org.fao.oaipmh.responses.ListResponse;
-import org.fao.oaipmh.responses.ResumptionToken;
 
 //=============================================================================
 
-public class SearchResult
+/** Collects the uuids of the hits, in index order, reading them from the
+  * FieldCache instead of the stored fields. Hits are neither scored nor
+  * sorted: used when all the matching records are needed (eg. select all).
+  */
+
+public class UuidCollector extends Collector
 {
 	//---------------------------------------------------------------------------
 	//---
@@ -38,9 +47,9 @@ public class SearchResult
 	//---
 	//---------------------------------------------------------------------------
 
-	public SearchResult(String prefix)
+	public UuidCollector(int maxHits)
 	{
-		this.prefix = prefix;
+		this.maxHits = maxHits;
 	}
 
 	//---------------------------------------------------------------------------
@@ -49,37 +58,34 @@ public class SearchResult
 	//---
 	//---------------------------------------------------------------------------
 
-	public int parseToken(String token) throws BadResumptionTokenException
-	{
-		if (!Lib.isInteger(token))
-			throw new BadResumptionTokenException("Invalid token : "+ token);
+	public List<String> getUuids() { return uuids; }
 
-		int pos = Integer.parseInt(token);
+	//---------------------------------------------------------------------------
+	//---
+	//--- Collector
+	//---
+	//---------------------------------------------------------------------------
 
-		if (pos >= ids.size())
-			throw new BadResumptionTokenException("Token beyond limit : "+ token);
+	public void setScorer(Scorer scorer) {}
 
-		this.token = token;
+	//---------------------------------------------------------------------------
 
-		return pos;
+	public void setNextReader(IndexReader reader, int docBase) throws IOException
+	{
+		values = FieldCache.DEFAULT.getStrings(reader, "_uuid");
 	}
 
 	//---------------------------------------------------------------------------
 
-/*
-	public void setupToken(ListResponse res, int pos)
+	public void collect(int doc)
 	{
-		if (pos < ids.size())
-			res.setResumptionToken(new ResumptionToken(Integer.toString(pos)));
-		else
-		{
-			//--- in case of a last chunk, we return an empty token
-
-			if (token != null)
-				res.setResumptionToken(new ResumptionToken(""));
-		}
+		if (uuids.size() < maxHits && values[doc] != null)
+			uuids.add(values[doc]);
 	}
-*/
+
+	//---------------------------------------------------------------------------
+
+	public boolean acceptsDocsOutOfOrder() { return true; }
 
 	//---------------------------------------------------------------------------
 	//---
@@ -87,10 +93,10 @@ public class SearchResult
 	//---
 	//---------------------------------------------------------------------------
 
-	public String        prefix;
-	public List<Integer> ids;
+	private int      maxHits;
+	private String[] values;
 
-	private String token;
+	private List<String> uuids = new ArrayList<String>();
 }
 
 //=============================================================================
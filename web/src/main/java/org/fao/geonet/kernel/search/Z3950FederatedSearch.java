@@ -0,0 +1,492 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import jeeves.utils.Log;
+import org.fao.geonet.constants.Geonet;
+import org.jdom.Element;
+import org.jzkit.search.LandscapeSpecification;
+import org.jzkit.search.StatelessSearchResultsPageDTO;
+import org.jzkit.search.impl.StatelessQueryService;
+import org.jzkit.search.landscape.SimpleLandscapeSpecification;
+import org.jzkit.search.util.QueryModel.QueryModel;
+import org.jzkit.search.util.RecordModel.RecordFormatSpecification;
+import org.jzkit.search.util.ResultSet.IRResultSetStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//=============================================================================
+
+/** Searches a set of Z39.50 targets concurrently, one task per target. The
+  * targets are kept in the order they answered, so that the records of the
+  * targets already shown do not move when the other targets complete. Each
+  * target has its own timeout, which is checked when the search is queried,
+  * and targets that keep failing are skipped (see Z3950TargetStats).
+  * All searches share a bounded pool: each target takes one thread while it
+  * is queried and a target that cannot even be queued fails at once.
+  */
+
+class Z3950FederatedSearch
+{
+	public static final String EXECUTING = "executing";
+	public static final String COMPLETE  = "complete";
+	public static final String FAILURE   = "failure";
+	public static final String TIMEOUT   = "timeout";
+	public static final String SKIPPED   = "skipped";
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Constructor
+	//---
+	//--------------------------------------------------------------------------
+
+	public Z3950FederatedSearch(StatelessQueryService sqs, QueryModel qm, List<String> servers,
+										 RecordFormatSpecification spec, long timeout,
+										 int failures, long retryAfter)
+	{
+		this(qm, servers, new QueryServiceSearch(sqs, qm, spec), timeout, failures, retryAfter);
+	}
+
+	//--------------------------------------------------------------------------
+
+	Z3950FederatedSearch(QueryModel qm, List<String> servers, Search search, long timeout,
+								int failures, long retryAfter)
+	{
+		this.qm      = qm;
+		this.search  = search;
+		this.timeout = timeout;
+
+		for (String server : servers)
+		{
+			Target t = new Target(server);
+			targets.add(t);
+
+			if (!Z3950TargetStats.isAvailable(server, failures, retryAfter))
+			{
+				Log.info(Geonet.SEARCH_ENGINE, "Skipping failing Z39.50 target : "+ server);
+				Z3950TargetStats.skipped(server);
+				t.state = SKIPPED;
+			}
+			else
+			{
+				t.start  = System.currentTimeMillis();
+
+				try
+				{
+					t.future = getExecutor().submit(new Task(t));
+				}
+				catch(RejectedExecutionException e)
+				{
+					Log.warning(Geonet.SEARCH_ENGINE, "Too many Z39.50 searches, not querying : "+ server);
+					t.state   = FAILURE;
+					t.time    = 0;
+					t.message = "Too many concurrent searches";
+				}
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//--------------------------------------------------------------------------
+
+	public QueryModel getQueryModel() { return qm; }
+
+	//--------------------------------------------------------------------------
+	/** Waits until at least one target has answered (or all of them have
+	  * failed or timed out) */
+
+	public synchronized void awaitFirst() throws InterruptedException
+	{
+		while (completed.isEmpty() && isExecuting())
+		{
+			long wait = getNextTimeout() - System.currentTimeMillis();
+
+			if (wait > 0)
+				wait(wait);
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	public synchronized boolean isExecuting()
+	{
+		checkTimeouts();
+
+		for (Target t : targets)
+			if (t.state == EXECUTING)
+				return true;
+
+		return false;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Returns the number of targets that have not answered yet */
+
+	public synchronized int getPending()
+	{
+		checkTimeouts();
+
+		int pending = 0;
+
+		for (Target t : targets)
+			if (t.state == EXECUTING)
+				pending++;
+
+		return pending;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Returns the number of records found by the targets answered so far */
+
+	public synchronized int getSize()
+	{
+		checkTimeouts();
+
+		int size = 0;
+
+		for (Target t : completed)
+			size += t.count;
+
+		return size;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Returns the targets that have answered, in the order they did */
+
+	public synchronized List<Target> getCompleted()
+	{
+		checkTimeouts();
+
+		return new ArrayList<Target>(completed);
+	}
+
+	//--------------------------------------------------------------------------
+
+	public synchronized Element toXml()
+	{
+		checkTimeouts();
+
+		Element root = new Element("targets");
+
+		for (Target t : targets)
+		{
+			Element target = new Element("target");
+			target.setAttribute("name",   t.name);
+			target.setAttribute("status", t.state);
+
+			if (t.state == COMPLETE)
+				target.setAttribute("count", t.count +"");
+
+			if (t.time >= 0)
+				target.setAttribute("time", t.time +"");
+
+			if (t.message != null)
+				target.setAttribute("message", t.message);
+
+			root.addContent(target);
+		}
+
+		return root;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Runs the task in the search pool and waits for it at most the target
+	  * timeout, so that a target that stops answering while its records are
+	  * retrieved does not block the caller. The task is cancelled on timeout */
+
+	public <V> V call(Callable<V> task) throws Exception
+	{
+		Future<V> future = getExecutor().submit(task);
+
+		try
+		{
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		}
+		catch(ExecutionException e)
+		{
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+
+			throw e;
+		}
+		finally
+		{
+			future.cancel(true);
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	/** Stops the targets that are still searching */
+
+	public synchronized void close()
+	{
+		for (Target t : targets)
+			if (t.state == EXECUTING)
+			{
+				t.future.cancel(true);
+				t.state = FAILURE;
+				t.message = "Search closed";
+			}
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//--------------------------------------------------------------------------
+
+	private void checkTimeouts()
+	{
+		long now = System.currentTimeMillis();
+
+		for (Target t : targets)
+			if (t.state == EXECUTING && now - t.start >= timeout)
+			{
+				t.future.cancel(true);
+				t.state   = TIMEOUT;
+				t.time    = now - t.start;
+				t.message = "No answer after "+ t.time +" ms";
+
+				Log.warning(Geonet.SEARCH_ENGINE, "Z39.50 target timed out : "+ t.name);
+				Z3950TargetStats.failure(t.name, t.time);
+			}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private long getNextTimeout()
+	{
+		long next = Long.MAX_VALUE;
+
+		for (Target t : targets)
+			if (t.state == EXECUTING)
+				next = Math.min(next, t.start + timeout);
+
+		return next;
+	}
+
+	//--------------------------------------------------------------------------
+	/** Called by the tasks. A target that has already timed out is ignored */
+
+	private synchronized void done(Target t, int count, String message)
+	{
+		if (t.state != EXECUTING)
+			return;
+
+		t.time = System.currentTimeMillis() - t.start;
+
+		if (message == null)
+		{
+			t.state = COMPLETE;
+			t.count = count;
+			completed.add(t);
+			Z3950TargetStats.success(t.name, t.time);
+		}
+		else
+		{
+			t.state   = FAILURE;
+			t.message = message;
+			Log.warning(Geonet.SEARCH_ENGINE, "Z39.50 target "+ t.name +" failed : "+ message);
+			Z3950TargetStats.failure(t.name, t.time);
+		}
+
+		notifyAll();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+														  new ArrayBlockingQueue<Runnable>(MAX_QUEUED),
+														  new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "Z39.50 federated search");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return executor;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Task : searches one target, without retrieving records
+	//---
+	//--------------------------------------------------------------------------
+
+	private class Task implements Runnable
+	{
+		public Task(Target target)
+		{
+			this.target = target;
+		}
+
+		//-----------------------------------------------------------------------
+
+		public void run()
+		{
+			try
+			{
+				int count = search.search(target);
+
+				if (count < 0)
+					done(target, 0, "Search failed");
+				else
+					done(target, count, null);
+			}
+			catch(Exception e)
+			{
+				done(target, 0, e.getClass().getName() +": "+ e.getMessage());
+			}
+		}
+
+		//-----------------------------------------------------------------------
+
+		private Target target;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Search : runs the query on one target
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Returns the number of hits of the target or -1 if the search failed */
+
+	interface Search
+	{
+		public int search(Target target) throws Exception;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static class QueryServiceSearch implements Search
+	{
+		public QueryServiceSearch(StatelessQueryService sqs, QueryModel qm, RecordFormatSpecification spec)
+		{
+			this.sqs  = sqs;
+			this.qm   = qm;
+			this.spec = spec;
+		}
+
+		//-----------------------------------------------------------------------
+
+		public int search(Target target) throws Exception
+		{
+			StatelessSearchResultsPageDTO res = sqs.getResultsPageFor(null, qm, target.landscape, 0, 0, spec, null, null);
+
+			if (res.getSearchStatus() == IRResultSetStatus.FAILURE)
+				return -1;
+
+			return res.total_hit_count;
+		}
+
+		//-----------------------------------------------------------------------
+
+		private StatelessQueryService     sqs;
+		private QueryModel                qm;
+		private RecordFormatSpecification spec;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Target
+	//---
+	//--------------------------------------------------------------------------
+
+	static class Target
+	{
+		public Target(String name)
+		{
+			Vector<String> collections = new Vector<String>();
+			collections.add(name);
+
+			this.name      = name;
+			this.landscape = new SimpleLandscapeSpecification(collections);
+		}
+
+		//-----------------------------------------------------------------------
+
+		public String getName()                    { return name;      }
+		public LandscapeSpecification getLandscape() { return landscape; }
+		public int    getCount()                   { return count;     }
+
+		//-----------------------------------------------------------------------
+
+		private final String                 name;
+		private final LandscapeSpecification landscape;
+
+		private String    state = EXECUTING;
+		private int       count;
+		private long      start;
+		private long      time  = -1;
+		private String    message;
+		private Future<?> future;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Targets queried at the same time, by all searches */
+	private static final int MAX_THREADS = 20;
+
+	/** Targets waiting for a thread before new ones are refused */
+	private static final int MAX_QUEUED  = 100;
+
+	private static ExecutorService executor;
+
+	private QueryModel qm;
+	private Search     search;
+	private long       timeout;
+
+	private List<Target> targets   = new ArrayList<Target>();
+	private List<Target> completed = new ArrayList<Target>();
+}
+
+//=============================================================================
+
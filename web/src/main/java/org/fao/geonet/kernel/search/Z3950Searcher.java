@@ -62,6 +62,9 @@ import java.io.File;
 import java.util.List;
 import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 import static java.lang.Integer.parseInt;
 
@@ -76,6 +79,11 @@ class Z3950Searcher extends MetaSearcher
 	//public final static int COMPLETE  = SearchTask.TASK_COMPLETE;
 	//public final static int IDLE      = SearchTask.TASK_IDLE;
 
+	/** main.search parameters: consecutive failures after which a target is
+	  * skipped in federated searches and seconds before it is tried again */
+	private static final String TARGET_FAILURES    = "z3950TargetFailures";
+	private static final String TARGET_RETRY_AFTER = "z3950TargetRetryAfter";
+
 	private SearchManager _sm;
 	private String        _styleSheetName;
 	private int size = 0;
@@ -85,6 +93,7 @@ class Z3950Searcher extends MetaSearcher
 	private boolean				_html;
 
 	private ZSetInfo zinfo ;
+	private Z3950FederatedSearch _federated;
 	RecordFormatSpecification def_request_spec = new ArchetypeRecordFormatSpecification("F");
 	RecordFormatSpecification def_html_request_spec = new ArchetypeRecordFormatSpecification("H");
 
@@ -149,6 +158,23 @@ class Z3950Searcher extends MetaSearcher
 		// get hold of JZKit SearchSession
 		StatelessQueryService sqs = getQueryService(srvContext);
 
+		// federated search: query each server on its own and return as soon as
+		// one of them answers. The other results are added at the next present
+		if (Geonet.Text.ON.equals(request.getChildText(Geonet.SearchResult.FEDERATED)))
+		{
+			int  failures   = parseInt(config.getValue(TARGET_FAILURES, "3"));
+			long retryAfter = parseInt(config.getValue(TARGET_RETRY_AFTER, "300")) * 1000L;
+
+			Log.debug(Geonet.SEARCH_ENGINE, "Starting federated remote search");
+
+			_federated = new Z3950FederatedSearch(sqs, qm, servers, def_request_spec, timeout * 1000L, failures, retryAfter);
+			_federated.awaitFirst();
+
+			Log.debug(Geonet.SEARCH_ENGINE, "First remote results received. Status is : "+ getStatus());
+			initSearchRange(srvContext);
+			return;
+		}
+
 		LandscapeSpecification landscape = new SimpleLandscapeSpecification( collection_ids );
 		ExplicitRecordFormatSpecification exp = null;
 
@@ -198,103 +224,179 @@ class Z3950Searcher extends MetaSearcher
 		if (getTo() > 0)
 		{
 			StatelessQueryService sqs = getQueryService(srvContext);
-			InformationFragment fragshtml[] = null;
+			int presented;
+
+			if (_federated != null)
+				presented = presentFederated(srvContext, sqs, response);
+			else
+				presented = presentRange(srvContext, sqs, this.zinfo.getSetname(), this.zinfo.getQueryModel(), this.zinfo.getLandscape(), getFrom(), getTo(), getFrom(), response);
+
+			// if we didn't get all results for a page then something went wrong!
+			// In federated mode the missing records may belong to targets that
+			// have not answered yet: these are listed in the summary instead
+			int expected = (_federated != null && _federated.isExecuting()) ? presented : getPageSize();
+
+			for (int i = presented; i < expected;i++) {
+				Element error = new Element("error");
+				error.setAttribute("message", "Unable to retrieve record "+(getFrom()+i));
+				response.addContent(error);
+			}
+		}
+		Log.debug(Geonet.SEARCH_ENGINE, "Presented metadata is:\n" + Xml.getString(response));
+
+		return response;
+	}
+
+	//-----------------------------------------------------------------------------
+	/** Spreads the requested range over the targets that have answered, in the
+	  * order they did. Returns the number of records added to the response.
+	  * Each target gets the search timeout to return its records: the records
+	  * of a target that does not are reported as missing
+	  */
+	private int presentFederated(final ServiceContext srvContext, final StatelessQueryService sqs, Element response) throws Exception
+	{
+		int presented = 0;
+		int offset    = 0;
+
+		for (final Z3950FederatedSearch.Target t : _federated.getCompleted())
+		{
+			final int from  = Math.max(getFrom(), offset + 1);
+			final int to    = Math.min(getTo(),   offset + t.getCount());
+			final int delta = offset;
+
+			if (from <= to)
+			{
+				//--- records go to a holder first, so that a target that
+				//--- answers after its timeout cannot change the response
+
+				final Element holder = new Element("response");
+
+				try
+				{
+					presented += _federated.call(new Callable<Integer>()
+					{
+						public Integer call() throws Exception
+						{
+							return presentRange(srvContext, sqs, null, _federated.getQueryModel(), t.getLandscape(), from - delta, to - delta, from, holder);
+						}
+					});
+
+					response.addContent(holder.removeContent());
+				}
+				catch(TimeoutException e)
+				{
+					Log.warning(Geonet.SEARCH_ENGINE, "Z39.50 target "+ t.getName() +" did not return its records in time");
+				}
+				catch(RejectedExecutionException e)
+				{
+					Log.warning(Geonet.SEARCH_ENGINE, "Too many Z39.50 searches, not presenting records of : "+ t.getName());
+				}
+			}
+
+			offset += t.getCount();
+		}
+
+		return presented;
+	}
+
+	//-----------------------------------------------------------------------------
+	/** Adds the records from..to of the given landscape to the response, using
+	  * firstId as the id of the first one. Returns the number of records added
+	  */
+	private int presentRange(ServiceContext srvContext, StatelessQueryService sqs, String setName, QueryModel qm,
+									 LandscapeSpecification landscape, int from, int to, int firstId, Element response) throws Exception
+	{
+		InformationFragment fragshtml[] = null;
+
+		if (_html) {
+			ExplicitRecordFormatSpecification htmlrfs = new ExplicitRecordFormatSpecification("html", null, "f");
+			StatelessSearchResultsPageDTO res = sqs.getResultsPageFor(setName,qm,landscape,from,to,def_html_request_spec,htmlrfs,null);
+			fragshtml = res.records; 
+		}
+
+		ExplicitRecordFormatSpecification rfs = new ExplicitRecordFormatSpecification("xml", null, "f");
+		StatelessSearchResultsPageDTO res = sqs.getResultsPageFor(setName,qm,landscape,from,to,def_request_spec,rfs,null);
+		InformationFragment frags[] = res.records;
 
+		// FIXME: we may not get all the records we want back sometimes!
+		int theLimit = Math.min(to - from + 1,frags.length);
+		for (int i = 0; i < theLimit; i++) {
+			InformationFragment fraghtml = null;
 			if (_html) {
-				ExplicitRecordFormatSpecification htmlrfs = new ExplicitRecordFormatSpecification("html", null, "f");
-				StatelessSearchResultsPageDTO res = sqs.getResultsPageFor(this.zinfo.getSetname(),this.zinfo.getQueryModel(),this.zinfo.getLandscape(),getFrom(),getTo(),def_html_request_spec,htmlrfs,null);
-				fragshtml = res.records; 
+				fraghtml = fragshtml[i];
 			}
+			InformationFragment frag = frags[i];
+			try {
+				DOMBuilder builder = new DOMBuilder();
 
-			ExplicitRecordFormatSpecification rfs = new ExplicitRecordFormatSpecification("xml", null, "f");
-			StatelessSearchResultsPageDTO res = sqs.getResultsPageFor(this.zinfo.getSetname(),this.zinfo.getQueryModel(),this.zinfo.getLandscape(),getFrom(),getTo(),def_request_spec,rfs,null);
-			InformationFragment frags[] = res.records;
+				org.w3c.dom.Document doc = (Document)frag.getOriginalObject();
+				org.w3c.dom.Element  el  = doc.getDocumentElement();
+				Element md = builder.build(el);
+				md.detach();
 
-			// FIXME: we may not get all the records we want back sometimes!
-			int theLimit = Math.min(getPageSize(),frags.length);
-			for (int i = 0; i < theLimit; i++) {
-				InformationFragment fraghtml = null;
+				String elementFileName = "none";
+				String htmlError = "";
 				if (_html) {
-					fraghtml = fragshtml[i];
-				}
-				InformationFragment frag = frags[i];
-				try {
-					DOMBuilder builder = new DOMBuilder();
-	
-					org.w3c.dom.Document doc = (Document)frag.getOriginalObject();
-					org.w3c.dom.Element  el  = doc.getDocumentElement();
-					Element md = builder.build(el);
-					md.detach();
-
-					String elementFileName = "none";
-					String htmlError = "";
-					if (_html) {
-						Object docObj = fraghtml.getOriginalObject();
-						if (docObj instanceof org.w3c.dom.Document) {
-							org.w3c.dom.Document dochtml = (Document)fraghtml.getOriginalObject();	
-							String fileid = UUID.randomUUID().toString();
-							String filename = srvContext.getAppPath()+_sm.getHtmlCacheDir()+File.separator+fileid+".html";
-							elementFileName = srvContext.getBaseUrl()+"/"+_sm.getHtmlCacheDir()+"/"+fileid+".html";
-							File outHtmlFile = new File(filename);
-							try {
-								Transformer xformer = TransformerFactoryFactory.getTransformerFactory().newTransformer();
-								xformer.setOutputProperty(OutputKeys.METHOD, "text");
-								Source source = new DOMSource(dochtml);
-								Result result = new StreamResult(outHtmlFile.toURI().getPath());
-								xformer.transform(source,result);
-							} catch (TransformerConfigurationException e) {
-								e.printStackTrace();
-							} catch (TransformerException e) {
-								e.printStackTrace();
-							}
-						} else {
-							htmlError = "HTML result not available. Error message: "+docObj.toString();
+					Object docObj = fraghtml.getOriginalObject();
+					if (docObj instanceof org.w3c.dom.Document) {
+						org.w3c.dom.Document dochtml = (Document)fraghtml.getOriginalObject();	
+						String fileid = UUID.randomUUID().toString();
+						String filename = srvContext.getAppPath()+_sm.getHtmlCacheDir()+File.separator+fileid+".html";
+						elementFileName = srvContext.getBaseUrl()+"/"+_sm.getHtmlCacheDir()+"/"+fileid+".html";
+						File outHtmlFile = new File(filename);
+						try {
+							Transformer xformer = TransformerFactoryFactory.getTransformerFactory().newTransformer();
+							xformer.setOutputProperty(OutputKeys.METHOD, "text");
+							Source source = new DOMSource(dochtml);
+							Result result = new StreamResult(outHtmlFile.toURI().getPath());
+							xformer.transform(source,result);
+						} catch (TransformerConfigurationException e) {
+							e.printStackTrace();
+						} catch (TransformerException e) {
+							e.printStackTrace();
 						}
+					} else {
+						htmlError = "HTML result not available. Error message: "+docObj.toString();
 					}
-	
-					Element info = new Element(Edit.RootChild.INFO, Edit.NAMESPACE);
-					md.removeChild(Edit.RootChild.INFO, Edit.NAMESPACE);
-
-					addElement(info, Edit.Info.Elem.ID,     (getFrom() + i)+"");
-					addElement(info, Edit.Info.Elem.SERVER, frag.getSourceRepositoryID());
-					addElement(info, Edit.Info.Elem.COLLECTION, frag.getSourceCollectionName());
-					if (_html) {
-						Element html = new Element(Edit.Info.Elem.HTML).setText(elementFileName);
-						if (!htmlError.equals("")) html.setAttribute("error", htmlError);
-						info.addContent(html);
-					}
+				}
+
+				Element info = new Element(Edit.RootChild.INFO, Edit.NAMESPACE);
+				md.removeChild(Edit.RootChild.INFO, Edit.NAMESPACE);
 
-					md.addContent(info);
-
-					response.addContent(md);
-				} catch (Exception ex) {
-					ex.printStackTrace();
-					Element error = new Element("error");
-					error.setAttribute("server",  frag.getSourceRepositoryID());
-					error.setAttribute("collection",  frag.getSourceCollectionName());
-					error.setAttribute("id",      (getFrom() + i)+"");
-					error.setAttribute("message", ex.getClass().getName() + ": " + ex.getMessage());
-					Log.error(Geonet.SEARCH_ENGINE, "Exception raised during Z3950 search and retrieval "+" Server: "+error.getAttributeValue("server")+" id: "+error.getAttributeValue("id"));
-					response.addContent(error);
+				addElement(info, Edit.Info.Elem.ID,     (firstId + i)+"");
+				addElement(info, Edit.Info.Elem.SERVER, frag.getSourceRepositoryID());
+				addElement(info, Edit.Info.Elem.COLLECTION, frag.getSourceCollectionName());
+				if (_html) {
+					Element html = new Element(Edit.Info.Elem.HTML).setText(elementFileName);
+					if (!htmlError.equals("")) html.setAttribute("error", htmlError);
+					info.addContent(html);
 				}
-			}
 
-			// if we didn't get all results for a page then something went wrong!
-			for (int i = theLimit; i < getPageSize();i++) {
+				md.addContent(info);
+
+				response.addContent(md);
+			} catch (Exception ex) {
+				ex.printStackTrace();
 				Element error = new Element("error");
-				error.setAttribute("message", "Unable to retrieve record "+(getFrom()+i));
+				error.setAttribute("server",  frag.getSourceRepositoryID());
+				error.setAttribute("collection",  frag.getSourceCollectionName());
+				error.setAttribute("id",      (firstId + i)+"");
+				error.setAttribute("message", ex.getClass().getName() + ": " + ex.getMessage());
+				Log.error(Geonet.SEARCH_ENGINE, "Exception raised during Z3950 search and retrieval "+" Server: "+error.getAttributeValue("server")+" id: "+error.getAttributeValue("id"));
 				response.addContent(error);
 			}
 		}
-		Log.debug(Geonet.SEARCH_ENGINE, "Presented metadata is:\n" + Xml.getString(response));
 
-		return response;
+		return theLimit;
 	}
 
 	//-----------------------------------------------------------------------------
 
 	public int getSize()
 	{
+		if (_federated != null)
+			return _federated.getSize();
+
 		return this.size;
 	}
 
@@ -312,6 +414,8 @@ class Z3950Searcher extends MetaSearcher
 	  */
 	public void close()
 	{
+		if (_federated != null)
+			_federated.close();
 	}
 
 	//--------------------------------------------------------------------------------
@@ -380,6 +484,12 @@ class Z3950Searcher extends MetaSearcher
 		else
 			summary.setAttribute("format","xml");
 
+		if (_federated != null)
+		{
+			summary.setAttribute("pending", _federated.getPending() +"");
+			summary.addContent(_federated.toXml());
+		}
+
 		return summary;
 	}
 
@@ -388,6 +498,14 @@ class Z3950Searcher extends MetaSearcher
 	  */
 	private String getStatus()
 	{
+		if (_federated != null)
+		{
+			if (_federated.isExecuting())
+				return Z3950FederatedSearch.EXECUTING;
+
+			return IRResultSetStatus.getCode(_federated.getCompleted().isEmpty() ? IRResultSetStatus.FAILURE : IRResultSetStatus.COMPLETE);
+		}
+
 		return IRResultSetStatus.getCode(this.status);
 	}
 
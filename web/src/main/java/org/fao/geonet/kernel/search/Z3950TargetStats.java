@@ -0,0 +1,208 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.kernel.search;
+
+import org.jdom.Element;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+//=============================================================================
+
+/** Collects per target statistics (number of searches, failures and latency)
+  * of the Z39.50 federated searches. It also works as a circuit breaker: a
+  * target that failed too many times in a row is skipped until some time has
+  * passed since its last failure.
+  */
+
+public class Z3950TargetStats
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Returns false if the target failed at least 'failures' times in a row and
+	  * the last failure happened less than 'retryAfter' millis ago */
+
+	public static boolean isAvailable(String target, int failures, long retryAfter)
+	{
+		Target t = targets.get(target);
+
+		return (t == null) || t.isAvailable(failures, retryAfter);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static void success(String target, long millis)
+	{
+		getTarget(target).add(millis, false);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static void failure(String target, long millis)
+	{
+		getTarget(target).add(millis, true);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static void skipped(String target)
+	{
+		getTarget(target).skip();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static void clear()
+	{
+		targets.clear();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static Element toXml()
+	{
+		Element root = new Element("z3950Metrics");
+
+		Map<String, Target> sorted = new TreeMap<String, Target>(targets);
+
+		for (Map.Entry<String, Target> entry : sorted.entrySet())
+			root.addContent(entry.getValue().toXml(entry.getKey()));
+
+		return root;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private static Target getTarget(String target)
+	{
+		Target t = targets.get(target);
+
+		if (t == null)
+		{
+			targets.putIfAbsent(target, new Target());
+			t = targets.get(target);
+		}
+
+		return t;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Target
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class Target
+	{
+		public synchronized void add(long millis, boolean failure)
+		{
+			searches++;
+			totalTime += millis;
+
+			if (millis > maxTime)
+				maxTime = millis;
+
+			if (failure)
+			{
+				failures++;
+				consecutive++;
+				lastFailure = System.currentTimeMillis();
+			}
+			else
+				consecutive = 0;
+		}
+
+		//------------------------------------------------------------------------
+
+		public synchronized void skip()
+		{
+			skipped++;
+		}
+
+		//------------------------------------------------------------------------
+
+		public synchronized boolean isAvailable(int failures, long retryAfter)
+		{
+			if (failures <= 0 || consecutive < failures)
+				return true;
+
+			return System.currentTimeMillis() - lastFailure >= retryAfter;
+		}
+
+		//------------------------------------------------------------------------
+
+		public synchronized Element toXml(String name)
+		{
+			Element target = new Element("target");
+			target.setAttribute("name", name);
+
+			add(target, "searches",    searches);
+			add(target, "failures",    failures);
+			add(target, "consecutive", consecutive);
+			add(target, "skipped",     skipped);
+			add(target, "totalTime",   totalTime);
+			add(target, "maxTime",     maxTime);
+			add(target, "avgTime",     (searches == 0) ? 0 : totalTime / searches);
+
+			return target;
+		}
+
+		//------------------------------------------------------------------------
+
+		private void add(Element el, String name, long value)
+		{
+			el.addContent(new Element(name).setText(Long.toString(value)));
+		}
+
+		//------------------------------------------------------------------------
+
+		private long searches;
+		private long failures;
+		private long consecutive;
+		private long skipped;
+		private long totalTime;
+		private long maxTime;
+		private long lastFailure;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static ConcurrentHashMap<String, Target> targets = new ConcurrentHashMap<String, Target>();
+}
+
+//=============================================================================
+
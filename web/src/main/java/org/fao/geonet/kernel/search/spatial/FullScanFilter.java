@@ -28,7 +28,6 @@ import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
@@ -37,6 +36,7 @@ import org.apache.lucene.search.Query;
 import org.geotools.data.FeatureSource;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.fao.geonet.kernel.search.IndexColumns;
 import org.jdom.Element;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
@@ -80,6 +80,7 @@ public class FullScanFilter extends SpatialFilter
         final BitSet bits = new BitSet(reader.maxDoc());
 
         final Set<String> matches = loadMatches();
+        final String[] ids = IndexColumns.get(reader, IndexColumns.ID);
 
         new IndexSearcher(reader).search(_query, new Collector()
         {
@@ -95,14 +96,9 @@ public class FullScanFilter extends SpatialFilter
 
             public final void collect(int doc)
             {
-                Document document;
-                try {
-                    document = reader.document(doc, _selector);
-                    if (matches.contains(document.get("_id"))) {
-                        bits.set(doc);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                doc = doc + docBase;
+                if (matches.contains(ids[doc])) {
+                    bits.set(doc);
                 }
             }
 
@@ -86,9 +86,23 @@ public class OgcGenericFilters
      * @return
      * @throws Exception
      */
-    @SuppressWarnings("serial")
     public static SpatialFilter create(Query query, int numHits,
             Element filterExpr, Pair<FeatureSource<SimpleFeatureType, SimpleFeature>, SpatialIndex> sourceAccessor, Parser parser) throws Exception
+    {
+        return create(query, numHits, parse(filterExpr, parser), sourceAccessor);
+    }
+
+    /**
+     * Parses the spatial part of an OGC filter. The result does not depend on
+     * the query or on the spatial index, so it can be kept and used by many
+     * searches (it is immutable).
+     *
+     * @param filterExpr
+     * @param parser
+     * @return the parsed filter, or null if the filter has no spatial operators
+     * @throws Exception
+     */
+    public static ParsedFilter parse(Element filterExpr, Parser parser) throws Exception
     {
 		// -- parse Filter and report any validation issues
         String string = Xml.getString(filterExpr);
@@ -135,7 +149,32 @@ public class OgcGenericFilters
 				Log.debug(Geonet.SEARCH_ENGINE,"Filter Envelope is "+bounds);
         
         Boolean disjointFilter = (Boolean) finalFilter.accept(new DisjointDetector(), false);
-        if( disjointFilter ){
+
+        return new ParsedFilter(finalFilter, bounds, disjointFilter);
+    }
+
+    /**
+     * Creates the spatial filter of a search from a parsed OGC filter.
+     *
+     * @param query
+     * @param numHits
+     * @param parsed
+     *            the result of {@link #parse}. If null, no filter is created
+     * @param sourceAccessor
+     * @return
+     */
+    @SuppressWarnings("serial")
+    public static SpatialFilter create(Query query, int numHits, ParsedFilter parsed,
+            Pair<FeatureSource<SimpleFeatureType, SimpleFeature>, SpatialIndex> sourceAccessor)
+    {
+        if (parsed == null) {
+            return null;
+        }
+
+        final Filter finalFilter = parsed.filter;
+        Envelope bounds = parsed.bounds;
+
+        if( parsed.disjoint ){
             return new FullScanFilter(query, numHits, bounds, sourceAccessor){
                 @Override
                 protected Filter createFilter(FeatureSource source)
@@ -156,6 +195,33 @@ public class OgcGenericFilters
     }
 
 
+    /**
+     * The spatial part of an OGC filter, reprojected to WGS84 and renamed to
+     * match the attributes of the spatial index.
+     */
+    public static final class ParsedFilter
+    {
+        private final Filter   filter;
+        private final Envelope bounds;
+        private final boolean  disjoint;
+
+        private ParsedFilter(Filter filter, Envelope bounds, boolean disjoint)
+        {
+            this.filter = filter;
+            this.bounds = bounds;
+            this.disjoint = disjoint;
+        }
+
+        /**
+         * Returns a key identifying the spatial predicate, used to share the
+         * filter between searches (see {@link SpatialFilterCache}).
+         */
+        public String getKey()
+        {
+            return (disjoint ? "disjoint|" : "") + filter + "|" + bounds;
+        }
+    }
+
     /**
      * Renames all ProperyNames to the geometry attribute name thatis used by the SpatialIndex shapefile
      * 
@@ -29,10 +29,11 @@ import com.vividsolutions.jts.geom.TopologyException;
 import com.vividsolutions.jts.index.SpatialIndex;
 import com.vividsolutions.jts.io.WKTReader;
 import jeeves.utils.Log;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.document.FieldSelectorResult;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.Filter;
@@ -41,6 +42,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.util.DocIdBitSet;
 import org.fao.geonet.constants.Geonet;
+import org.fao.geonet.kernel.search.IndexColumns;
 import org.geotools.data.DefaultQuery;
 import org.geotools.data.FeatureSource;
 import org.geotools.factory.CommonFactoryFinder;
@@ -130,6 +132,25 @@ public abstract class SpatialFilter extends Filter
         
         if(unrefinedSpatialMatches.isEmpty() || _hits >= _numHits) return new DocIdBitSet(bits);
 
+        if (_query == null) {
+            // no query: the matches are looked up by id, for filters shared by all searches (see SpatialFilterCache)
+            TermDocs termDocs = reader.termDocs();
+            try {
+                for (Map.Entry<String, FeatureId> entry : unrefinedSpatialMatches.entrySet()) {
+                    termDocs.seek(new Term("_id", entry.getKey()));
+                    if (termDocs.next()) {
+                        matches.add(entry.getValue());
+                        docIndexLookup.put(entry.getValue(), termDocs.doc());
+                    }
+                }
+            } finally {
+                termDocs.close();
+            }
+            return new DocIdBitSet(matches.isEmpty() ? bits : applySpatialFilter(matches, docIndexLookup, bits));
+        }
+
+        final String[] ids = IndexColumns.get(reader, IndexColumns.ID);
+
         new IndexSearcher(reader).search(_query, new Collector() {
 						private int docBase;
 
@@ -144,17 +165,12 @@ public abstract class SpatialFilter extends Filter
             public final void collect(int doc)
             {
 								doc = doc + docBase;
-                try {
-                    Document document = reader.document(doc, _selector);
-                    String key = document.get("_id");
-                    FeatureId featureId = unrefinedSpatialMatches.get(key); 
-                    if (featureId!=null && _hits < _numHits) {
-						_hits ++ ;
-                        matches.add(featureId);
-                        docIndexLookup.put(featureId, doc);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                String key = ids[doc];
+                FeatureId featureId = unrefinedSpatialMatches.get(key); 
+                if (featureId!=null && _hits < _numHits) {
+					_hits ++ ;
+                    matches.add(featureId);
+                    docIndexLookup.put(featureId, doc);
                 }
             }
 
@@ -0,0 +1,189 @@
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+
+package org.fao.geonet.kernel.search.spatial;
+
+import jeeves.utils.Log;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.DocIdBitSet;
+import org.fao.geonet.constants.Geonet;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Process wide cache of the documents matched by spatial predicates. The cached filters do not depend on the query of
+ * the search (Lucene intersects them with the query anyway), so that the same bounding boxes or regions sent again and
+ * again by map clients are only looked up in the spatial index and refined once.
+ * <p/>
+ * The matches are kept per index segment, keyed on the segment core, so that unchanged segments are reused when the
+ * index is reopened. The whole cache is dropped when the spatial index changes (see
+ * {@link SpatialIndexWriter#getGeneration()}) and the least recently used filters are evicted when the cached bitsets
+ * take more than MAX_BYTES.
+ */
+public class SpatialFilterCache
+{
+    private static final int  MAX_ENTRIES = 500;
+    private static final long MAX_BYTES   = 32 * 1024 * 1024;
+
+    private static final Map<String, CachedFilter> cache = new LinkedHashMap<String, CachedFilter>(16, 0.75f, true);
+
+    private static long generation = -1;
+    private static long bytes;
+
+    /**
+     * Creates spatial filters on cache misses.
+     */
+    public interface Factory
+    {
+        /**
+         * @return a spatial filter with no query, or null if there is no spatial filter
+         */
+        public SpatialFilter create() throws Exception;
+    }
+
+    /**
+     * Returns the cached filter of a spatial predicate, creating it if needed.
+     *
+     * @param key the predicate, e.g. the relation and the normalised geometry
+     * @param factory creates the filter if it is not cached
+     * @return
+     * @throws Exception
+     */
+    public static Filter get(String key, Factory factory) throws Exception
+    {
+        synchronized (cache) {
+            long current = SpatialIndexWriter.getGeneration();
+            if (current != generation) {
+                clear();
+                generation = current;
+            }
+
+            CachedFilter filter = cache.get(key);
+            if (filter == null) {
+                SpatialFilter spatialFilter = factory.create();
+                if (spatialFilter == null) {
+                    return null;
+                }
+                filter = new CachedFilter(spatialFilter);
+                cache.put(key, filter);
+                trim(filter);
+            }
+            return filter;
+        }
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public static void clear()
+    {
+        synchronized (cache) {
+            for (CachedFilter filter : cache.values()) {
+                filter.evicted = true;
+            }
+            cache.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Evicts the least recently used filters, except the one being used, while the cache is too large.
+     */
+    private static void trim(CachedFilter current)
+    {
+        Iterator<CachedFilter> it = cache.values().iterator();
+        while ((bytes > MAX_BYTES || cache.size() > MAX_ENTRIES) && it.hasNext()) {
+            CachedFilter filter = it.next();
+            if (filter != current) {
+                it.remove();
+                filter.evicted = true;
+                bytes -= filter.bytes;
+                Log.debug(Geonet.SPATIAL, "Evicted spatial filter from cache, cached bytes : " + bytes);
+            }
+        }
+    }
+
+    /**
+     * Accounts for the bitset of a new segment.
+     */
+    private static void grown(CachedFilter filter, long size)
+    {
+        synchronized (cache) {
+            if (filter.evicted) {
+                return;
+            }
+            filter.bytes += size;
+            bytes += size;
+            trim(filter);
+        }
+    }
+
+    /**
+     * Caches the DocIdSet of each segment reader.
+     */
+    private static final class CachedFilter extends Filter
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final SpatialFilter filter;
+        private final Map<Object, DocIdSet> segments = new WeakHashMap<Object, DocIdSet>();
+
+        private long bytes;
+        private boolean evicted;
+
+        private CachedFilter(SpatialFilter filter)
+        {
+            this.filter = filter;
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(IndexReader reader) throws IOException
+        {
+            Object coreKey = reader.getCoreCacheKey();
+
+            synchronized (segments) {
+                DocIdSet docIdSet = segments.get(coreKey);
+                if (docIdSet != null) {
+                    return docIdSet;
+                }
+            }
+
+            // computed outside of the lock: at worst two searches compute the same segment
+            DocIdSet docIdSet = filter.getDocIdSet(reader);
+
+            synchronized (segments) {
+                segments.put(coreKey, docIdSet);
+            }
+            if (docIdSet instanceof DocIdBitSet) {
+                grown(this, ((DocIdBitSet) docIdSet).getBitSet().size() / 8);
+            }
+            return docIdSet;
+        }
+    }
+}
@@ -64,6 +64,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 
@@ -88,6 +89,7 @@ public class SpatialIndexWriter
     private FeatureStore<SimpleFeatureType, SimpleFeature>       _featureStore;
     private STRtree                                              _index;
     private static int                                           _writes;
+    private static final AtomicLong                              _generation = new AtomicLong();
 
     public SpatialIndexWriter(DataStore datastore, Parser parser,
             Transaction transaction, Lock lock) throws Exception
@@ -122,6 +124,7 @@ public class SpatialIndexWriter
         _lock.lock();
         try {
             _index = null;
+            _generation.incrementAndGet();
             Geometry geometry = extractGeometriesFrom(
                     schemasDir, type, metadata, _parser);
 
@@ -183,6 +186,7 @@ public class SpatialIndexWriter
                     factory.property(IDS_ATTRIBUTE_NAME), factory.literal(id));
 
             _index = null;
+            _generation.incrementAndGet();
 
             _featureStore.removeFeatures(filter);
             _writes++;
@@ -200,6 +204,7 @@ public class SpatialIndexWriter
                 _writes = 0;
                 _transaction.commit();
                 _index = null;
+                _generation.incrementAndGet();
                 populateIndex();
             }
         } finally {
@@ -208,6 +213,15 @@ public class SpatialIndexWriter
 
     }
 
+    /**
+     * Returns a number that changes each time the content of the spatial index changes, so that the results of
+     * spatial filters can be cached until then.
+     */
+    public static long getGeneration()
+    {
+        return _generation.get();
+    }
+
     public SpatialIndex getIndex() throws IOException
     {
         _lock.lock();
@@ -232,6 +246,7 @@ public class SpatialIndexWriter
         try {
             _featureStore.setTransaction(Transaction.AUTO_COMMIT);
             _index=null;
+            _generation.incrementAndGet();
             _featureStore.removeFeatures(Filter.INCLUDE);
             _featureStore.setTransaction(_transaction);
         }finally{
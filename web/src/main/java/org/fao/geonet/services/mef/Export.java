@@ -28,8 +28,8 @@ import jeeves.interfaces.Service;
 import jeeves.server.ServiceConfig;
 import jeeves.server.UserSession;
 import jeeves.server.context.ServiceContext;
-import jeeves.utils.BinaryFile;
 import jeeves.utils.Log;
+import jeeves.utils.StreamedFile;
 import jeeves.utils.Util;
 import jeeves.utils.Xml;
 import org.fao.geonet.GeonetContext;
@@ -43,6 +43,8 @@ import org.fao.geonet.kernel.search.MetaSearcher;
 import org.fao.geonet.kernel.search.SearchManager;
 import org.jdom.Element;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashSet;
@@ -82,15 +84,15 @@ public class Export implements Service {
 	 *            related metadata (Using xml.relation.get service).</li>
 	 *            </ul>
 	 */
-	public Element exec(Element params, ServiceContext context)
+	public Element exec(Element params, final ServiceContext context)
 			throws Exception {
 
 		// Get parameters
-		String file = null;
-		String uuid = Util.getParam(params, "uuid", null);
-		String format = Util.getParam(params, "format", "full");
+		StreamedFile.Producer producer;
+		final String uuid = Util.getParam(params, "uuid", null);
+		final String format = Util.getParam(params, "format", "full");
 		String version = Util.getParam(params, "version", null);
-		String skipUUID = Util.getParam(params, "skipUuid", "false");
+		final String skipUUID = Util.getParam(params, "skipUuid", "false");
 		String relatedMetadataRecord = Util
 				.getParam(params, "relation", "true");
 
@@ -115,8 +117,12 @@ public class Export implements Service {
 		// Uuid parameter MUST be set and add to selection manager before
 		// export.
 		if (version == null) {
-			file = MEFLib.doExport(context, uuid, format, skipUUID
-					.equals("true"));
+			producer = new Producer() {
+				public void write(OutputStream os) throws Exception {
+					MEFLib.doExport(context, uuid, format, skipUUID
+							.equals("true"), os);
+				}
+			};
 		} else {
 			// MEF version 2 support multiple metadata record by file.
 
@@ -166,8 +172,15 @@ public class Export implements Service {
 			Log.info(Geonet.MEF, "Building MEF2 file with " + uuids.size()
 					+ " records.");
 
-			file = MEFLib
-					.doMEF2Export(context, uuids, format, false, stylePath);
+			// the selection is reset before the file is written
+			final List<String> exportUuids = new ArrayList<String>(uuids);
+
+			producer = new Producer() {
+				public void write(OutputStream os) throws Exception {
+					MEFLib.doMEF2Export(context, exportUuids, format, false,
+							stylePath, os);
+				}
+			};
 		}
 
 		// -- Reset selection manager
@@ -177,8 +190,17 @@ public class Export implements Service {
 
 		String fname = String.valueOf(Calendar.getInstance().getTimeInMillis());
 
-		return BinaryFile.encode(200, file, "export-" + format + "-" + fname
-				+ ".zip", true);
+		// the zip file is written directly to the response
+		return new StreamedFile("export-" + format + "-" + fname + ".zip",
+				"application/zip", producer);
+	}
+
+	/**
+	 * Producer of the MEF file, that has nothing to release.
+	 */
+	private static abstract class Producer implements StreamedFile.Producer {
+		public void close() {
+		}
 	}
 
 	/**
@@ -104,6 +104,15 @@ public class GetList implements Service {
 			elLoop.addContent(elDname);
 			elLoop.addContent(elFname);
 			elLoop.addContent(elType);
+
+			// load info : time in ms, statements in memory and whether the
+			// thesaurus has been loaded from its snapshot
+			Element elLoad = new Element("load");
+			elLoad.setAttribute("loaded", String.valueOf(currentTh.isLoaded()));
+			elLoad.setAttribute("snapshot", String.valueOf(currentTh.isFromSnapshot()));
+			elLoad.addContent(new Element("time").setText(String.valueOf(currentTh.getLoadTime())));
+			elLoad.addContent(new Element("statements").setText(String.valueOf(currentTh.getStatements())));
+			elLoop.addContent(elLoad);
 			
 			elRoot.addContent(elLoop);
 		}
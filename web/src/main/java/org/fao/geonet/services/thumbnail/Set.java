@@ -28,21 +28,20 @@ import jeeves.resources.dbms.Dbms;
 import jeeves.server.ServiceConfig;
 import jeeves.server.context.ServiceContext;
 import jeeves.utils.Util;
-import lizard.tiff.Tiff;
 import org.fao.geonet.GeonetContext;
 import org.fao.geonet.constants.Geonet;
 import org.fao.geonet.constants.Params;
 import org.fao.geonet.exceptions.ConcurrentUpdateEx;
 import org.fao.geonet.kernel.DataManager;
 import org.fao.geonet.lib.Lib;
+import org.fao.geonet.util.ThumbnailMaker;
 import org.jdom.Element;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 //=============================================================================
 
@@ -100,34 +99,40 @@ public class Set implements Service
 		new File(dataDir).mkdirs();
 
 		//-----------------------------------------------------------------------
-		//--- create the small thumbnail, removing the old one
+		//--- remove the old thumbnails and create the new ones in one pass
+
+		String smallFile = getFileName(file, true);
+		String newFile   = getFileName(file, type.equals("small"));
+		String upload    = context.getUploadDir() + file;
+
+		List<ThumbnailMaker.Variant> variants = new ArrayList<ThumbnailMaker.Variant>();
 
 		if (createSmall)
 		{
-			String smallFile = getFileName(file, true);
-			String inFile    = context.getUploadDir() + file;
-			String outFile   = dataDir + smallFile;
-
 			removeOldThumbnail(context, id, "small");
-			createThumbnail(inFile, outFile, smallScalingFactor, smallScalingDir);
-			dataMan.setThumbnail(dbms, id, true, smallFile);
+			variants.add(new ThumbnailMaker.Variant(smallScalingFactor, smallScalingDir, new File(dataDir + smallFile)));
 		}
 
-		//-----------------------------------------------------------------------
-		//--- create the requested thumbnail, removing the old one
-
 		removeOldThumbnail(context, id, type);
 
 		if (scaling)
-		{
-			String newFile = getFileName(file, type.equals("small"));
-			String inFile  = context.getUploadDir() + file;
-			String outFile = dataDir + newFile;
+			variants.add(new ThumbnailMaker.Variant(scalingFactor, scalingDir, new File(dataDir + newFile)));
+
+		ThumbnailMaker.create(new File(upload), variants);
 
-			createThumbnail(inFile, outFile, scalingFactor, scalingDir);
+		//-----------------------------------------------------------------------
+		//--- register the small thumbnail
+
+		if (createSmall)
+			dataMan.setThumbnail(dbms, id, true, smallFile);
 
-			if (!new File(inFile).delete())
-				context.error("Error while deleting thumbnail : "+inFile);
+		//-----------------------------------------------------------------------
+		//--- register the requested thumbnail
+
+		if (scaling)
+		{
+			if (!new File(upload).delete())
+				context.error("Error while deleting thumbnail : "+upload);
 
 			dataMan.setThumbnail(dbms, id, type.equals("small"), newFile);
 		}
@@ -181,32 +186,37 @@ public class Set implements Service
 
 		new File(dataDir).mkdirs();
 		//-----------------------------------------------------------------------
-		//--- create the small thumbnail, removing the old one
+		//--- create the thumbnails in one pass
+
+		String smallFile = getFileName(file, true);
+		String newFile   = getFileName(file, type.equals("small"));
+		String upload    = context.getUploadDir() + file;
+
+		List<ThumbnailMaker.Variant> variants = new ArrayList<ThumbnailMaker.Variant>();
+
+		// FIXME should be done before removeOldThumbnail(context, id, "small");
+		if (createSmall)
+			variants.add(new ThumbnailMaker.Variant(smallScalingFactor, smallScalingDir, new File(dataDir + smallFile)));
+
+		// FIXME removeOldThumbnail(context, id, type);
+		if (scaling)
+			variants.add(new ThumbnailMaker.Variant(scalingFactor, scalingDir, new File(dataDir + newFile)));
+
+		ThumbnailMaker.create(new File(upload), variants);
+
+		//-----------------------------------------------------------------------
+		//--- register the small thumbnail
 
 		if (createSmall)
-		{
-			String smallFile = getFileName(file, true);
-			String inFile    = context.getUploadDir() + file;
-			String outFile   = dataDir + smallFile;
-			// FIXME should be done before removeOldThumbnail(context, id, "small");
-			createThumbnail(inFile, outFile, smallScalingFactor, smallScalingDir);
 			dataMan.setThumbnail(dbms, id, true, smallFile);
-		}
 
 		//-----------------------------------------------------------------------
-		//--- create the requested thumbnail, removing the old one
-		// FIXME removeOldThumbnail(context, id, type);
+		//--- register the requested thumbnail
 
 		if (scaling)
 		{
-			String newFile = getFileName(file, type.equals("small"));
-			String inFile  = context.getUploadDir() + file;
-			String outFile = dataDir + newFile;
-
-			createThumbnail(inFile, outFile, scalingFactor, scalingDir);
-
-			if (!new File(inFile).delete())
-				context.error("Error while deleting thumbnail : "+inFile);
+			if (!new File(upload).delete())
+				context.error("Error while deleting thumbnail : "+upload);
 
 			dataMan.setThumbnail(dbms, id, type.equals("small"), newFile);
 		}
@@ -276,41 +286,6 @@ public class Set implements Service
 
 	//--------------------------------------------------------------------------
 
-	private void createThumbnail(String inFile, String outFile, int scalingFactor,
-										  String scalingDir) throws IOException
-	{
-		BufferedImage origImg = getImage(inFile);
-
-		int imgWidth  = origImg.getWidth();
-		int imgHeight = origImg.getHeight();
-
-		int width;
-		int height;
-
-		if (scalingDir.equals("width"))
-		{
-			width  = scalingFactor;
-			height = width * imgHeight / imgWidth;
-		}
-		else
-		{
-			height = scalingFactor;
-			width  = height * imgWidth / imgHeight;
-		}
-
-		Image thumb = origImg.getScaledInstance(width, height, BufferedImage.SCALE_SMOOTH);
-
-		BufferedImage bimg = new BufferedImage(width, height, BufferedImage.TRANSLUCENT);
-
-		Graphics2D g = bimg.createGraphics();
-		g.drawImage(thumb, 0, 0, null);
-		g.dispose();
-
-		ImageIO.write(bimg, IMAGE_TYPE, new File(outFile));
-	}
-
-	//--------------------------------------------------------------------------
-
 	private String getFileName(String file, boolean small)
 	{
 		int pos = file.lastIndexOf('.');
@@ -318,47 +293,15 @@ public class Set implements Service
 		if (pos != -1)
 			file = file.substring(0, pos);
 
-		return small 	? file + SMALL_SUFFIX +"."+ IMAGE_TYPE
-							: file +"."+ IMAGE_TYPE;
+		return small 	? file + SMALL_SUFFIX +"."+ ThumbnailMaker.IMAGE_TYPE
+							: file +"."+ ThumbnailMaker.IMAGE_TYPE;
 	}
 
 	//--------------------------------------------------------------------------
 
 	public BufferedImage getImage(String inFile) throws IOException
 	{
-		String lcFile = inFile.toLowerCase();
-
-		if (lcFile.endsWith(".tif") || lcFile.endsWith(".tiff"))
-		{
-			//--- load the TIFF/GEOTIFF file format
-
-			Image image = getTiffImage(inFile);
-
-			int width = image.getWidth(null);
-			int height= image.getHeight(null);
-
-			BufferedImage bimg = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-			Graphics2D g = bimg.createGraphics();
-			g.drawImage(image, 0,0, null);
-			g.dispose();
-
-			return bimg;
-		}
-
-		return ImageIO.read(new File(inFile));
-	}
-
-	//--------------------------------------------------------------------------
-
-	private Image getTiffImage(String inFile) throws IOException
-	{
-		Tiff t = new Tiff();
-		t.readInputStream(new FileInputStream(inFile));
-
-		if (t.getPageCount() == 0)
-			throw new IOException("No images inside TIFF file");
-
-		return t.getImage(0);
+		return ThumbnailMaker.read(new File(inFile));
 	}
 
 	//--------------------------------------------------------------------------
@@ -367,7 +310,6 @@ public class Set implements Service
 	//---
 	//--------------------------------------------------------------------------
 
-	private static final String IMAGE_TYPE   = "png";
 	private static final String SMALL_SUFFIX = "_s";
 
 }
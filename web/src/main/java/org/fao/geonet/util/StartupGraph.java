@@ -0,0 +1,317 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.util;
+
+import jeeves.utils.Log;
+import org.fao.geonet.constants.Geonet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//=============================================================================
+
+/** Runs the initialization of subsystems as a dependency graph: a task starts
+  * as soon as all the tasks it depends on have completed, so independent
+  * tasks run at the same time. Background tasks are not waited for by run():
+  * they go on after it returns and their completion is only reported through
+  * StartupStatus. If a task fails, the tasks that depend on it are not run.
+  */
+
+public class StartupGraph
+{
+	//---------------------------------------------------------------------------
+	//---
+	//--- Task
+	//---
+	//---------------------------------------------------------------------------
+
+	public interface Task
+	{
+		public void run() throws Exception;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	/** Adds a task that run() waits for */
+
+	public void add(String name, Task task, String... depends)
+	{
+		add(name, task, false, depends);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Adds a task that is left running when run() returns */
+
+	public void addBackground(String name, Task task, String... depends)
+	{
+		add(name, task, true, depends);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Runs all tasks using the given number of threads and waits for the
+	  * foreground ones. The first failure is rethrown */
+
+	public void run(int threads) throws Exception
+	{
+		if (nodes.isEmpty())
+			return;
+
+		for (Node node : nodes.values())
+			for (String dep : node.depends)
+			{
+				Node parent = nodes.get(dep);
+
+				if (parent == null)
+					throw new IllegalArgumentException("Unknown dependency '"+ dep +"' of task : "+ node.name);
+
+				parent.dependents.add(node);
+			}
+
+		checkCycles();
+
+		for (Node node : nodes.values())
+		{
+			node.remaining.set(node.depends.length);
+
+			if (!node.background)
+				foreground++;
+		}
+
+		running  = new AtomicInteger(nodes.size());
+		done     = new CountDownLatch(foreground);
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "startup-"+ threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		for (Node node : nodes.values())
+			if (node.depends.length == 0 && node.state.compareAndSet(WAITING, SCHEDULED))
+				submit(node);
+
+		done.await();
+
+		if (error != null)
+			throw error;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private void add(String name, Task task, boolean background, String... depends)
+	{
+		if (nodes.containsKey(name))
+			throw new IllegalArgumentException("Task already added : "+ name);
+
+		nodes.put(name, new Node(name, task, background, depends));
+
+		StartupStatus.pending(name);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Removes the tasks without dependencies one level at a time: whatever is
+	  * left belongs to a cycle */
+
+	private void checkCycles()
+	{
+		Map<String, Integer> remaining = new LinkedHashMap<String, Integer>();
+
+		for (Node node : nodes.values())
+			remaining.put(node.name, node.depends.length);
+
+		List<Node> free = new ArrayList<Node>();
+
+		for (Node node : nodes.values())
+			if (node.depends.length == 0)
+				free.add(node);
+
+		while (!free.isEmpty())
+		{
+			Node node = free.remove(free.size() -1);
+			remaining.remove(node.name);
+
+			for (Node child : node.dependents)
+			{
+				int count = remaining.get(child.name) -1;
+				remaining.put(child.name, count);
+
+				if (count == 0)
+					free.add(child);
+			}
+		}
+
+		if (!remaining.isEmpty())
+			throw new IllegalStateException("Cyclic dependencies between tasks : "+ remaining.keySet());
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void submit(final Node node)
+	{
+		executor.execute(new Runnable()
+		{
+			public void run()
+			{
+				execute(node);
+			}
+		});
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void execute(Node node)
+	{
+		StartupStatus.starting(node.name);
+
+		long start = System.currentTimeMillis();
+
+		try
+		{
+			node.task.run();
+
+			StartupStatus.ready(node.name);
+			Log.info(Geonet.GEONETWORK, "Started "+ node.name +" in "+ (System.currentTimeMillis() - start) +" ms");
+
+			for (Node child : node.dependents)
+				if (child.remaining.decrementAndGet() == 0 && child.state.compareAndSet(WAITING, SCHEDULED))
+					submit(child);
+		}
+		catch(Throwable t)
+		{
+			Log.error(Geonet.GEONETWORK, "Cannot start "+ node.name +" : "+ t, t);
+
+			StartupStatus.failed(node.name, t.getClass().getSimpleName());
+
+			if (!node.background)
+				setError(t);
+
+			skipDependents(node);
+		}
+
+		completed(node);
+	}
+
+	//---------------------------------------------------------------------------
+	/** The dependents of a failed task are never run: they are marked as
+	  * failed. A task is either scheduled or skipped, never both */
+
+	private void skipDependents(Node node)
+	{
+		for (Node child : node.dependents)
+			if (child.state.compareAndSet(WAITING, SKIPPED))
+			{
+				StartupStatus.failed(child.name, "dependency failed : "+ node.name);
+				skipDependents(child);
+				completed(child);
+			}
+	}
+
+	//---------------------------------------------------------------------------
+
+	private synchronized void setError(Throwable t)
+	{
+		if (error == null)
+			error = (t instanceof Exception) ? (Exception) t : new Exception(t);
+	}
+
+	//---------------------------------------------------------------------------
+
+	private void completed(Node node)
+	{
+		if (!node.background)
+			done.countDown();
+
+		if (running.decrementAndGet() == 0)
+			executor.shutdown();
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Node
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class Node
+	{
+		public Node(String name, Task task, boolean background, String[] depends)
+		{
+			this.name       = name;
+			this.task       = task;
+			this.background = background;
+			this.depends    = depends;
+		}
+
+		//------------------------------------------------------------------------
+
+		public final String   name;
+		public final Task     task;
+		public final boolean  background;
+		public final String[] depends;
+
+		public final List<Node>    dependents = new ArrayList<Node>();
+		public final AtomicInteger remaining  = new AtomicInteger();
+		public final AtomicInteger state      = new AtomicInteger(WAITING);
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static final int WAITING   = 0;
+	private static final int SCHEDULED = 1;
+	private static final int SKIPPED   = 2;
+
+	private Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+
+	private int             foreground;
+	private AtomicInteger   running;
+	private CountDownLatch  done;
+	private ExecutorService executor;
+	private Exception       error;
+
+	private AtomicInteger threadCount = new AtomicInteger();
+}
+
+//=============================================================================
+
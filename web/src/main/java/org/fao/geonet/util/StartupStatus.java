@@ -0,0 +1,210 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.util;
+
+import org.jdom.Element;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//=============================================================================
+
+/** Keeps the state of the subsystems started by Geonetwork.start and of the
+  * work they leave running in the background (spatial index warm-up, records
+  * to be indexed). The node is ready when all registered subsystems are.
+  */
+
+public class StartupStatus
+{
+	public static final String PENDING  = "pending";
+	public static final String STARTING = "starting";
+	public static final String READY    = "ready";
+	public static final String FAILED   = "failed";
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//---------------------------------------------------------------------------
+
+	public static synchronized void pending(String name)
+	{
+		get(name).set(PENDING, null);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized void starting(String name)
+	{
+		Subsystem s = get(name);
+		s.set(STARTING, null);
+		s.start = System.currentTimeMillis();
+		s.end   = 0;
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized void ready(String name)
+	{
+		Subsystem s = get(name);
+		s.set(READY, null);
+		s.end = System.currentTimeMillis();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized void failed(String name, String error)
+	{
+		Subsystem s = get(name);
+		s.set(FAILED, error);
+		s.end = System.currentTimeMillis();
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized boolean isReady(String name)
+	{
+		Subsystem s = subsystems.get(name);
+
+		return s != null && s.state.equals(READY);
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized boolean isFailed(String name)
+	{
+		Subsystem s = subsystems.get(name);
+
+		return s != null && s.state.equals(FAILED);
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns true if all registered subsystems are ready */
+
+	public static synchronized boolean isReady()
+	{
+		if (subsystems.isEmpty())
+			return false;
+
+		for (Subsystem s : subsystems.values())
+			if (!s.state.equals(READY))
+				return false;
+
+		return true;
+	}
+
+	//---------------------------------------------------------------------------
+	/** Returns the subsystems that are not ready */
+
+	public static synchronized List<String> getNotReady()
+	{
+		List<String> list = new ArrayList<String>();
+
+		for (Map.Entry<String, Subsystem> entry : subsystems.entrySet())
+			if (!entry.getValue().state.equals(READY))
+				list.add(entry.getKey());
+
+		return list;
+	}
+
+	//---------------------------------------------------------------------------
+
+	public static synchronized Element toXml()
+	{
+		Element root = new Element("startup");
+		root.setAttribute("ready", Boolean.toString(isReady()));
+
+		long now = System.currentTimeMillis();
+
+		for (Map.Entry<String, Subsystem> entry : subsystems.entrySet())
+		{
+			Subsystem s = entry.getValue();
+
+			Element el = new Element("subsystem");
+			el.setAttribute("name",  entry.getKey());
+			el.setAttribute("state", s.state);
+
+			if (s.start != 0)
+				el.setAttribute("time", Long.toString(((s.end == 0) ? now : s.end) - s.start));
+
+			if (s.error != null)
+				el.setAttribute("error", s.error);
+
+			root.addContent(el);
+		}
+
+		return root;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//---------------------------------------------------------------------------
+
+	private static Subsystem get(String name)
+	{
+		Subsystem s = subsystems.get(name);
+
+		if (s == null)
+			subsystems.put(name, s = new Subsystem());
+
+		return s;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Subsystem
+	//---
+	//---------------------------------------------------------------------------
+
+	private static class Subsystem
+	{
+		public void set(String state, String error)
+		{
+			this.state = state;
+			this.error = error;
+		}
+
+		//------------------------------------------------------------------------
+
+		public String state = PENDING;
+		public String error;
+		public long   start;
+		public long   end;
+	}
+
+	//---------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//---------------------------------------------------------------------------
+
+	private static Map<String, Subsystem> subsystems = new LinkedHashMap<String, Subsystem>();
+}
+
+//=============================================================================
+
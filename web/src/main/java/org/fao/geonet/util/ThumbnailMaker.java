@@ -0,0 +1,385 @@
+//=============================================================================
+//===	Copyright (C) 2001-2007 Food and Agriculture Organization of the
+//===	United Nations (FAO-UN), United Nations World Food Programme (WFP)
+//===	and United Nations Environment Programme (UNEP)
+//===
+//===	This program is free software; you can redistribute it and/or modify
+//===	it under the terms of the GNU General Public License as published by
+//===	the Free Software Foundation; either version 2 of the License, or (at
+//===	your option) any later version.
+//===
+//===	This program is distributed in the hope that it will be useful, but
+//===	WITHOUT ANY WARRANTY; without even the implied warranty of
+//===	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+//===	General Public License for more details.
+//===
+//===	You should have received a copy of the GNU General Public License
+//===	along with this program; if not, write to the Free Software
+//===	Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301, USA
+//===
+//===	Contact: Jeroen Ticheler - FAO - Viale delle Terme di Caracalla 2,
+//===	Rome - Italy. email: geonetwork@osgeo.org
+//==============================================================================
+
+package org.fao.geonet.util;
+
+import lizard.tiff.Tiff;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//=============================================================================
+
+/** Creates the thumbnails of an image. The image is decoded once for all the
+  * variants and subsampled while it is read, so that huge images are never
+  * fully loaded in memory. Each variant is then scaled in progressive steps
+  * (halving the size with bilinear interpolation), which gives a quality close
+  * to SCALE_SMOOTH at a fraction of its cost. Images are processed by a small
+  * pool of threads with a bounded queue, which limits the number of images
+  * decoded at the same time.
+  */
+
+public class ThumbnailMaker
+{
+	public static final String IMAGE_TYPE = "png";
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- API methods
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Creates the thumbnails of an image using the pool, waiting for them */
+
+	public static void create(final File inFile, final List<Variant> variants) throws IOException
+	{
+		Future<Object> future;
+
+		try
+		{
+			future = getExecutor().submit(new Callable<Object>()
+			{
+				public Object call() throws Exception
+				{
+					createNow(inFile, variants);
+					return null;
+				}
+			});
+		}
+		catch(RejectedExecutionException e)
+		{
+			throw new IOException("Too many thumbnails are being created, try again later");
+		}
+
+		try
+		{
+			future.get();
+		}
+		catch(ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new IOException("Cannot create thumbnails of "+ inFile +" : "+ e.getCause());
+		}
+		catch(InterruptedException e)
+		{
+			future.cancel(true);
+			throw new IOException("Interrupted while creating thumbnails of "+ inFile);
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	/** Creates the thumbnails of an image in the calling thread */
+
+	public static void createNow(File inFile, List<Variant> variants) throws IOException
+	{
+		if (variants.isEmpty())
+			return;
+
+		BufferedImage image = read(inFile, variants);
+
+		//--- largest variants first : each one is the source of the next one
+
+		List<Variant> sorted = new ArrayList<Variant>(variants);
+
+		final int width  = image.getWidth();
+		final int height = image.getHeight();
+
+		Collections.sort(sorted, new Comparator<Variant>()
+		{
+			public int compare(Variant v1, Variant v2)
+			{
+				return v2.getWidth(width, height) - v1.getWidth(width, height);
+			}
+		});
+
+		for (Variant v : sorted)
+		{
+			BufferedImage thumb = scale(image, v.getWidth(width, height), v.getHeight(width, height));
+
+			ImageIO.write(thumb, IMAGE_TYPE, v.getOutFile());
+
+			image = thumb;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	/** Reads the whole image */
+
+	public static BufferedImage read(File inFile) throws IOException
+	{
+		return read(inFile, new ArrayList<Variant>());
+	}
+
+	//--------------------------------------------------------------------------
+	/** Reads the image, subsampled so that it is still twice as large as the
+	  * largest variant */
+
+	public static BufferedImage read(File inFile, List<Variant> variants) throws IOException
+	{
+		String lcFile = inFile.getName().toLowerCase();
+
+		if (lcFile.endsWith(".tif") || lcFile.endsWith(".tiff"))
+			return readTiff(inFile);
+
+		ImageInputStream iis = ImageIO.createImageInputStream(inFile);
+
+		if (iis == null)
+			throw new IOException("Cannot read image : "+ inFile);
+
+		try
+		{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+
+			if (!readers.hasNext())
+				throw new IOException("Unsupported image format : "+ inFile);
+
+			ImageReader reader = readers.next();
+
+			try
+			{
+				reader.setInput(iis, true, true);
+
+				int width  = reader.getWidth(0);
+				int height = reader.getHeight(0);
+
+				ImageReadParam param = reader.getDefaultReadParam();
+
+				int step = getSubsampling(width, height, variants);
+
+				if (step > 1)
+					param.setSourceSubsampling(step, step, 0, 0);
+
+				return reader.read(0, param);
+			}
+			finally
+			{
+				reader.dispose();
+			}
+		}
+		finally
+		{
+			iis.close();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	/** Scales an image halving its size until the last step, so that every
+	  * pixel of the source contributes to the result */
+
+	public static BufferedImage scale(BufferedImage image, int width, int height)
+	{
+		width  = Math.max(1, width);
+		height = Math.max(1, height);
+
+		int type = (image.getTransparency() == Transparency.OPAQUE)
+							? BufferedImage.TYPE_INT_RGB
+							: BufferedImage.TYPE_INT_ARGB;
+
+		int w = image.getWidth();
+		int h = image.getHeight();
+
+		do
+		{
+			w = (w / 2 > width)  ? w / 2 : width;
+			h = (h / 2 > height) ? h / 2 : height;
+
+			BufferedImage step = new BufferedImage(w, h, type);
+
+			Graphics2D g = step.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING,     RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(image, 0, 0, w, h, null);
+			g.dispose();
+
+			image = step;
+		}
+		while (w != width || h != height);
+
+		return image;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Private methods
+	//---
+	//--------------------------------------------------------------------------
+
+	private static int getSubsampling(int width, int height, List<Variant> variants)
+	{
+		if (variants.isEmpty())
+			return 1;
+
+		int maxWidth  = 1;
+		int maxHeight = 1;
+
+		for (Variant v : variants)
+		{
+			maxWidth  = Math.max(maxWidth,  v.getWidth (width, height));
+			maxHeight = Math.max(maxHeight, v.getHeight(width, height));
+		}
+
+		return Math.max(1, Math.min(width / (maxWidth * 2), height / (maxHeight * 2)));
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static BufferedImage readTiff(File inFile) throws IOException
+	{
+		Tiff t = new Tiff();
+
+		FileInputStream is = new FileInputStream(inFile);
+
+		try
+		{
+			t.readInputStream(is);
+		}
+		finally
+		{
+			is.close();
+		}
+
+		if (t.getPageCount() == 0)
+			throw new IOException("No images inside TIFF file");
+
+		Image image = t.getImage(0);
+
+		int width = image.getWidth(null);
+		int height= image.getHeight(null);
+
+		BufferedImage bimg = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = bimg.createGraphics();
+		g.drawImage(image, 0,0, null);
+		g.dispose();
+
+		return bimg;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static synchronized ThreadPoolExecutor getExecutor()
+	{
+		if (executor == null)
+		{
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+			executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+														 new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+														 new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "Thumbnail maker");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return executor;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Variant
+	//---
+	//--------------------------------------------------------------------------
+
+	/** A thumbnail to create : its size along the scaling direction ('width'
+	  * or 'height') and the file to write */
+
+	public static class Variant
+	{
+		public Variant(int size, String scalingDir, File outFile)
+		{
+			this.size       = size;
+			this.scalingDir = scalingDir;
+			this.outFile    = outFile;
+		}
+
+		//-----------------------------------------------------------------------
+
+		public File getOutFile() { return outFile; }
+
+		//-----------------------------------------------------------------------
+
+		public int getWidth(int imgWidth, int imgHeight)
+		{
+			return "width".equals(scalingDir) ? size : size * imgWidth / imgHeight;
+		}
+
+		//-----------------------------------------------------------------------
+
+		public int getHeight(int imgWidth, int imgHeight)
+		{
+			return "width".equals(scalingDir) ? size * imgHeight / imgWidth : size;
+		}
+
+		//-----------------------------------------------------------------------
+
+		private int    size;
+		private String scalingDir;
+		private File   outFile;
+	}
+
+	//--------------------------------------------------------------------------
+	//---
+	//--- Variables
+	//---
+	//--------------------------------------------------------------------------
+
+	/** Images waiting to be processed : beyond this, requests are refused */
+	private static final int QUEUE_SIZE = 32;
+
+	private static ThreadPoolExecutor executor;
+}
+
+//=============================================================================
+
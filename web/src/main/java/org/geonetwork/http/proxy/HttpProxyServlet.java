@@ -1,11 +1,19 @@
 package org.geonetwork.http.proxy;
 
+import jeeves.utils.HttpMetrics;
 import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.InputStreamRequestEntity;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.geonetwork.http.proxy.util.ProxyCache;
 import org.geonetwork.http.proxy.util.RequestUtil;
 import org.geonetwork.http.proxy.util.ServletConfigUtil;
 
@@ -14,12 +22,15 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Enumeration;
 
 /**
- * Http proxy for ajax calls
+ * Http proxy for ajax calls. Connections are pooled and the responses are streamed to the client;
+ * GetCapabilities responses can optionally be cached (see the CacheSize init parameter).
  *
  * @author Jose Garcia
  */
@@ -34,6 +45,15 @@ public class HttpProxyServlet extends HttpServlet {
     private final String INIT_PARAM_ALLOWED_HOSTS = "AllowedHosts";
     private final String INIT_PARAM_ALLOWED_CONTENT_TYPES = "AllowedContentTypes";
     private final String INIT_PARAM_DEFAULT_PROXY_URL = "DefaultProxyUrl";
+    private final String INIT_PARAM_MAX_CONNECTIONS_PER_HOST = "MaxConnectionsPerHost";
+    private final String INIT_PARAM_MAX_TOTAL_CONNECTIONS = "MaxTotalConnections";
+    private final String INIT_PARAM_TIMEOUT = "Timeout";
+    private final String INIT_PARAM_CACHE_SIZE = "CacheSize";
+    private final String INIT_PARAM_CACHE_TTL = "CacheTtl";
+    private final String INIT_PARAM_CACHE_MAX_ENTRY_SIZE = "CacheMaxEntrySize";
+
+    // Size of the buffer used to copy the responses
+    private static final int BUFFER_SIZE = 8192;
 
     // Default URL for proxy
     private String defaultProxyUrl;
@@ -44,6 +64,13 @@ public class HttpProxyServlet extends HttpServlet {
     // List of valid content types for request
     private String[] validContentTypes;
 
+    // Pooled connections shared by all the requests
+    private MultiThreadedHttpConnectionManager connectionManager;
+    private HttpClient client;
+
+    // Cache of GET responses, null if disabled
+    private ProxyCache cache;
+
 
     /**
      * Initializes servlet Content Types allowed and the host to use in the proxy
@@ -69,6 +96,35 @@ public class HttpProxyServlet extends HttpServlet {
         // List of allowed content types for request
         if (validContentTypesValues != null)
             validContentTypes = validContentTypesValues.split(",");
+
+        // Connections are pooled and shared between the requests
+        int timeout = getIntInitParam(servletConfig, INIT_PARAM_TIMEOUT, 30000);
+
+        connectionManager = new MultiThreadedHttpConnectionManager();
+
+        HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(getIntInitParam(servletConfig, INIT_PARAM_MAX_CONNECTIONS_PER_HOST, 20));
+        params.setMaxTotalConnections(getIntInitParam(servletConfig, INIT_PARAM_MAX_TOTAL_CONNECTIONS, 100));
+        params.setConnectionTimeout(timeout);
+        params.setSoTimeout(timeout);
+
+        client = new HttpClient(connectionManager);
+        client.getParams().setConnectionManagerTimeout(timeout);
+
+        // Optional cache for GET requests
+        int cacheSize = getIntInitParam(servletConfig, INIT_PARAM_CACHE_SIZE, 0);
+
+        if (cacheSize > 0) {
+            cache = new ProxyCache(cacheSize,
+                    getIntInitParam(servletConfig, INIT_PARAM_CACHE_TTL, 300) * 1000L,
+                    getIntInitParam(servletConfig, INIT_PARAM_CACHE_MAX_ENTRY_SIZE, 1024 * 1024));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        connectionManager.shutdown();
+        super.destroy();
     }
 
     @Override
@@ -79,21 +135,8 @@ public class HttpProxyServlet extends HttpServlet {
             String url = RequestUtil.getParameter(request, PARAM_URL, defaultProxyUrl);
             String host = url.split("/")[2];
 
-            // Get the proxy parameters
-            //TODO: Add dependency injection to set proxy config from GeoNetwork settings, using also the credentials configured
-            String proxyHost = System.getProperty("http.proxyHost");
-            String proxyPort = System.getProperty("http.proxyPort");
-
             // Get rest of parameters to pass to proxied url
-            HttpMethodParams urlParams = new HttpMethodParams();
-
-            Enumeration paramNames = request.getParameterNames();
-            while (paramNames.hasMoreElements()) {
-                String paramName = (String) paramNames.nextElement();
-                if (!paramName.equalsIgnoreCase(PARAM_URL)) {
-                    urlParams.setParameter(paramName, request.getParameter(paramName));
-                }
-            }
+            HttpMethodParams urlParams = getUrlParams(request);
 
             // Checks if allowed host
             if (!isAllowedHost(host)) {
@@ -103,44 +146,31 @@ public class HttpProxyServlet extends HttpServlet {
             }
 
             if (url.startsWith("http://") || url.startsWith("https://")) {
-                HttpClient client = new HttpClient();
+                ProxyCache.Entry cached = (cache == null) ? null : cache.get(url);
 
-                // Added support for proxy
-                if (proxyHost != null && proxyPort != null) {
-                    client.getHostConfiguration().setProxy(proxyHost, new Integer(proxyPort));
+                if (cached != null && cached.isFresh()) {
+                    HttpMetrics.recordCacheHit(host);
+                    sendCached(response, cached);
+                    return;
                 }
 
                 httpGet = new GetMethod(url);
                 httpGet.setParams(urlParams);
-                client.executeMethod(httpGet);
-
-                if (httpGet.getStatusCode() == HttpStatus.SC_OK) {
-                    Header contentType = httpGet.getResponseHeader(HEADER_CONTENT_TYPE);
-                    String[] contentTypesReturned = contentType.getValue().split(";");
-                    if (!isValidContentType(contentTypesReturned[0])) {
-                        contentTypesReturned = contentType.getValue().split(" ");
-                        if (!isValidContentType(contentTypesReturned[0])) {
-                            throw new ServletException("Status: 415 Unsupported media type");
-                        }
-                    }
-
-                    // Sets response contentType
-                    response.setContentType(getResponseContentType(contentTypesReturned));
 
-                    String responseBody = httpGet.getResponseBodyAsString().trim();
+                // Stale entries are revalidated with a conditional request
+                if (cached != null) cached.addValidators(httpGet);
 
-                    PrintWriter out = response.getWriter();
-                    out.print(responseBody);
-
-                    out.flush();
-                    out.close();
+                long start = System.currentTimeMillis();
+                execute(httpGet, host, start);
 
+                if (cached != null && httpGet.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    HttpMetrics.record(host, System.currentTimeMillis() - start, 0, false);
+                    cache.revalidated(cached, httpGet);
+                    sendCached(response, cached);
                 } else {
-                    returnExceptionMessage(response, "Unexpected failure: " + httpGet.getStatusLine().toString());
+                    forward(httpGet, response, host, start, (cache == null) ? null : url);
                 }
 
-                httpGet.releaseConnection();
-
             } else {
                 //throw new ServletException("only HTTP(S) protocol supported");
                 returnExceptionMessage(response, "only HTTP(S) protocol supported");
@@ -163,21 +193,8 @@ public class HttpProxyServlet extends HttpServlet {
             String url = RequestUtil.getParameter(request, PARAM_URL, defaultProxyUrl);
             String host = url.split("/")[2];
 
-            // Get the proxy parameters
-            //TODO: Add dependency injection to set proxy config from GeoNetwork settings, using also the credentials configured
-            String proxyHost = System.getProperty("http.proxyHost");
-            String proxyPort = System.getProperty("http.proxyPort");
-
             // Get rest of parameters to pass to proxied url
-            HttpMethodParams urlParams = new HttpMethodParams();
-
-            Enumeration paramNames = request.getParameterNames();
-            while (paramNames.hasMoreElements()) {
-                String paramName = (String) paramNames.nextElement();
-                if (!paramName.equalsIgnoreCase(PARAM_URL)) {
-                    urlParams.setParameter(paramName, request.getParameter(paramName));
-                }
-            }
+            HttpMethodParams urlParams = getUrlParams(request);
 
             // Checks if allowed host
             if (!isAllowedHost(host)) {
@@ -190,45 +207,14 @@ public class HttpProxyServlet extends HttpServlet {
                 httpPost = new PostMethod(url);
                 httpPost.setParams(urlParams);
 
-                // Transfer bytes from in to out
-                PrintWriter out = response.getWriter();
-                String body = RequestUtil.inputStreamAsString(request);
+                // The body is streamed to the upstream server as it is read
+                httpPost.setRequestEntity(new InputStreamRequestEntity(request.getInputStream(),
+                        request.getContentLength(), request.getContentType()));
 
-                HttpClient client = new HttpClient();
+                long start = System.currentTimeMillis();
+                execute(httpPost, host, start);
 
-                 // Added support for proxy
-                if (proxyHost != null && proxyPort != null) {
-                    client.getHostConfiguration().setProxy(proxyHost, new Integer(proxyPort));
-                }
-
-                httpPost.setRequestBody(body);
-
-                client.executeMethod(httpPost);
-
-                if (httpPost.getStatusCode() == HttpStatus.SC_OK) {
-                    Header contentType = httpPost.getResponseHeader(HEADER_CONTENT_TYPE);
-                    String[] contentTypesReturned = contentType.getValue().split(";");
-                    if (!isValidContentType(contentTypesReturned[0])) {
-                        contentTypesReturned = contentType.getValue().split(" ");
-                        if (!isValidContentType(contentTypesReturned[0])) {
-                            throw new ServletException("Status: 415 Unsupported media type");
-                        }
-                    }
-
-                    // Sets response contentType
-                    response.setContentType(getResponseContentType(contentTypesReturned));
-
-                    String responseBody = httpPost.getResponseBodyAsString();
-
-                    out.print(responseBody);
-                    out.flush();
-                    out.close();
-
-                } else {
-                    returnExceptionMessage(response, "Unexpected failure: " + httpPost.getStatusLine().toString());
-                }
-
-                httpPost.releaseConnection();
+                forward(httpPost, response, host, start, null);
 
             } else {
                 //throw new ServletException("only HTTP(S) protocol supported");
@@ -243,6 +229,148 @@ public class HttpProxyServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Gets the parameters of the request to pass to the proxied url
+     *
+     * @param request   Servlet request
+     * @return          Parameters, except the url one
+     */
+    private HttpMethodParams getUrlParams(HttpServletRequest request) {
+        HttpMethodParams urlParams = new HttpMethodParams();
+
+        Enumeration paramNames = request.getParameterNames();
+        while (paramNames.hasMoreElements()) {
+            String paramName = (String) paramNames.nextElement();
+            if (!paramName.equalsIgnoreCase(PARAM_URL)) {
+                urlParams.setParameter(paramName, request.getParameter(paramName));
+            }
+        }
+
+        return urlParams;
+    }
+
+    /**
+     * Executes a method with a pooled connection, using the http proxy defined in the system properties
+     *
+     * @param method    Method to execute
+     * @param host      Upstream host, used for the metrics
+     * @param start     Time the request was started
+     * @throws IOException
+     */
+    private void execute(HttpMethod method, String host, long start) throws IOException {
+        //TODO: Add dependency injection to set proxy config from GeoNetwork settings, using also the credentials configured
+        String proxyHost = System.getProperty("http.proxyHost");
+        String proxyPort = System.getProperty("http.proxyPort");
+
+        HostConfiguration hostConfig = new HostConfiguration();
+
+        // Added support for proxy
+        if (proxyHost != null && proxyPort != null) {
+            hostConfig.setProxy(proxyHost, new Integer(proxyPort));
+        }
+
+        try {
+            client.executeMethod(hostConfig, method);
+        } catch (IOException e) {
+            HttpMetrics.record(host, System.currentTimeMillis() - start, 0, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the upstream response to the client. The body is never held in memory, except when it is
+     * cached, and the upstream server is only read as fast as the client reads.
+     *
+     * @param method    Executed method
+     * @param response  Servlet response
+     * @param host      Upstream host, used for the metrics
+     * @param start     Time the request was started
+     * @param cacheKey  Key used to cache the response, null if it must not be cached
+     * @throws Exception
+     */
+    private void forward(HttpMethodBase method, HttpServletResponse response, String host, long start,
+                         String cacheKey) throws Exception {
+        if (method.getStatusCode() != HttpStatus.SC_OK) {
+            HttpMetrics.record(host, System.currentTimeMillis() - start, 0, true);
+            returnExceptionMessage(response, "Unexpected failure: " + method.getStatusLine().toString());
+            return;
+        }
+
+        Header contentType = method.getResponseHeader(HEADER_CONTENT_TYPE);
+        if (contentType == null) {
+            HttpMetrics.record(host, System.currentTimeMillis() - start, 0, true);
+            throw new ServletException("Status: 415 Unsupported media type");
+        }
+
+        String[] contentTypesReturned = contentType.getValue().split(";");
+        if (!isValidContentType(contentTypesReturned[0])) {
+            contentTypesReturned = contentType.getValue().split(" ");
+            if (!isValidContentType(contentTypesReturned[0])) {
+                HttpMetrics.record(host, System.currentTimeMillis() - start, 0, true);
+                throw new ServletException("Status: 415 Unsupported media type");
+            }
+        }
+
+        // Sets response contentType
+        String responseContentType = getResponseContentType(contentTypesReturned);
+        response.setContentType(responseContentType);
+
+        long length = method.getResponseContentLength();
+        if (length >= 0 && length <= Integer.MAX_VALUE) response.setContentLength((int) length);
+
+        ByteArrayOutputStream copy = null;
+        if (cacheKey != null && cache.isCacheable(method, length)) copy = new ByteArrayOutputStream();
+
+        long bytes = 0;
+        boolean error = true;
+
+        try {
+            InputStream in = method.getResponseBodyAsStream();
+            OutputStream out = response.getOutputStream();
+
+            // Transfer bytes from in to out
+            if (in != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    bytes += n;
+
+                    if (copy != null) {
+                        if (copy.size() + n > cache.getMaxEntrySize()) copy = null;
+                        else copy.write(buffer, 0, n);
+                    }
+                }
+            }
+
+            out.flush();
+            error = false;
+        } finally {
+            HttpMetrics.record(host, System.currentTimeMillis() - start, bytes, error);
+        }
+
+        if (copy != null) cache.put(cacheKey, responseContentType, copy.toByteArray(), method);
+    }
+
+    /**
+     * Sends a cached response to the client
+     *
+     * @param response  Servlet response
+     * @param entry     Cached response
+     * @throws IOException
+     */
+    private void sendCached(HttpServletResponse response, ProxyCache.Entry entry) throws IOException {
+        byte[] body = entry.getBody();
+
+        response.setContentType(entry.getContentType());
+        response.setContentLength(body.length);
+
+        OutputStream out = response.getOutputStream();
+        out.write(body);
+        out.flush();
+    }
+
     /**
      * Gets the contentType for response
      *
@@ -307,12 +435,38 @@ public class HttpProxyServlet extends HttpServlet {
     }
 
     private void returnExceptionMessage(HttpServletResponse response, String message) throws IOException {
+        // Nothing can be done once the proxied response has started to be sent
+        if (response.isCommitted()) return;
+
+        response.resetBuffer();
         response.setContentType("Content-Type: text/plain");
 
-        response.setContentLength(message.length());
+        byte[] data = message.getBytes("ISO-8859-1");
+        response.setContentLength(data.length);
 
-        PrintWriter out = response.getWriter();
-        out.print(message);
+        OutputStream out = response.getOutputStream();
+        out.write(data);
         response.flushBuffer();
     }
+
+    /**
+     * Gets an integer init parameter
+     *
+     * @param servletConfig     Servlet configuration
+     * @param paramName         Name of the parameter
+     * @param defaultValue      Value used if the parameter is missing
+     * @return                  Value of the parameter
+     * @throws ServletException If the value is not a number
+     */
+    private int getIntInitParam(ServletConfig servletConfig, String paramName, int defaultValue) throws ServletException {
+        String value = ServletConfigUtil.getInitParamValue(servletConfig, paramName);
+
+        if (value == null || value.length() == 0) return defaultValue;
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ServletException("Init parameter " + paramName + " must be a number: " + value);
+        }
+    }
 }
@@ -0,0 +1,227 @@
+package org.geonetwork.http.proxy.util;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache for the responses of GET requests. Only GetCapabilities
+ * responses and responses with an explicit max-age or Expires header are
+ * cached: other OGC requests (GetMap, GetFeatureInfo, GetFeature...) return
+ * data that can change at any time. Entries expire after a time to live,
+ * shortened by the max-age or Expires of the upstream server if smaller. Stale
+ * entries with an ETag or a Last-Modified header are kept so they can be
+ * revalidated with a conditional request instead of being downloaded again.
+ */
+public class ProxyCache {
+    private final int maxEntrySize;
+    private final long ttl;
+    private final Map<String, Entry> entries;
+
+    /**
+     * @param maxEntries    Maximum number of cached responses
+     * @param ttl           Time to live of an entry, in milliseconds
+     * @param maxEntrySize  Responses larger than this size (in bytes) are not cached
+     */
+    public ProxyCache(final int maxEntries, long ttl, int maxEntrySize) {
+        this.ttl = ttl;
+        this.maxEntrySize = maxEntrySize;
+
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Gets the entry of an url
+     *
+     * @param url   Proxied url
+     * @return      The entry (fresh or to be revalidated), null if not cached
+     */
+    public synchronized Entry get(String url) {
+        Entry entry = entries.get(url);
+
+        if (entry != null && !entry.isFresh() && !entry.hasValidators()) {
+            entries.remove(url);
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Checks if the response of a method can be cached
+     *
+     * @param method        Executed method
+     * @param contentLength Content length of the response, -1 if unknown
+     * @return              True for a GetCapabilities response or a response with an explicit
+     *                      freshness, unless it is too big or the upstream server forbids caching
+     */
+    public boolean isCacheable(HttpMethod method, long contentLength) {
+        if (contentLength > maxEntrySize) return false;
+
+        String cacheControl = getHeader(method, "Cache-Control");
+
+        if (cacheControl != null) {
+            cacheControl = cacheControl.toLowerCase();
+
+            if (cacheControl.indexOf("no-store") != -1 ||
+                    cacheControl.indexOf("no-cache") != -1 ||
+                    cacheControl.indexOf("private") != -1) return false;
+        }
+
+        return isGetCapabilities(method) || getExplicitTimeToLive(method) > 0;
+    }
+
+    /**
+     * Stores a response
+     *
+     * @param url           Proxied url
+     * @param contentType   Content type sent to the client
+     * @param body          Response body
+     * @param method        Executed method, used to get the validators and the max-age
+     */
+    public synchronized void put(String url, String contentType, byte[] body, HttpMethod method) {
+        Entry entry = new Entry(contentType, body, getHeader(method, "ETag"), getHeader(method, "Last-Modified"));
+        entry.expires = System.currentTimeMillis() + getTimeToLive(method);
+
+        entries.put(url, entry);
+    }
+
+    /**
+     * Marks an entry as fresh again after the upstream server answered 304
+     *
+     * @param entry     Revalidated entry
+     * @param method    Executed conditional method
+     */
+    public synchronized void revalidated(Entry entry, HttpMethod method) {
+        entry.expires = System.currentTimeMillis() + getTimeToLive(method);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private long getTimeToLive(HttpMethod method) {
+        long explicit = getExplicitTimeToLive(method);
+
+        return (explicit == -1) ? ttl : Math.min(ttl, explicit);
+    }
+
+    /**
+     * Gets the freshness set by the upstream server with max-age or, if missing, Expires
+     *
+     * @param method    Executed method
+     * @return          Time to live in milliseconds, -1 if the server does not set any
+     */
+    private static long getExplicitTimeToLive(HttpMethod method) {
+        String cacheControl = getHeader(method, "Cache-Control");
+
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase();
+
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        return Math.max(0, Long.parseLong(directive.substring(8)) * 1000);
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+
+        String expires = getHeader(method, "Expires");
+
+        if (expires == null) return -1;
+
+        try {
+            // relative to the Date of the server, so that clocks need not be in sync
+            String date = getHeader(method, "Date");
+            long now = (date == null) ? System.currentTimeMillis() : DateUtil.parseDate(date).getTime();
+
+            return Math.max(0, DateUtil.parseDate(expires).getTime() - now);
+        } catch (DateParseException e) {
+            // invalid dates (eg "0") mean already expired
+            return 0;
+        }
+    }
+
+    /**
+     * Checks if the method is an OGC GetCapabilities request
+     */
+    private static boolean isGetCapabilities(HttpMethod method) {
+        String query = method.getQueryString();
+
+        if (query == null) return false;
+
+        for (String param : query.split("&")) {
+            int pos = param.indexOf('=');
+
+            if (pos != -1 && param.substring(0, pos).equalsIgnoreCase("request") &&
+                    param.substring(pos + 1).equalsIgnoreCase("GetCapabilities")) return true;
+        }
+
+        return false;
+    }
+
+    private static String getHeader(HttpMethod method, String name) {
+        Header header = method.getResponseHeader(name);
+
+        return (header == null) ? null : header.getValue();
+    }
+
+    /**
+     * A cached response
+     */
+    public static class Entry {
+        private final String contentType;
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private volatile long expires;
+
+        private Entry(String contentType, byte[] body, String etag, String lastModified) {
+            this.contentType = contentType;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expires;
+        }
+
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        /**
+         * Turns a request into a conditional one, using the validators of the entry
+         *
+         * @param method    Method to execute
+         */
+        public void addValidators(HttpMethod method) {
+            if (etag != null) method.setRequestHeader("If-None-Match", etag);
+            if (lastModified != null) method.setRequestHeader("If-Modified-Since", lastModified);
+        }
+    }
+}
@@ -50,8 +50,6 @@ ConfigModel.prototype.getConfig_OK = function(node)
 			Z3950_PORT        : xml.evalXPath(node, 'z3950/port'),
 
 			OAI_MDMODE        : xml.evalXPath(node, 'oai/mdmode'),
-			OAI_CACHESIZE     : xml.evalXPath(node, 'oai/cachesize'),
-			OAI_TOKENTIMEOUT  : xml.evalXPath(node, 'oai/tokentimeout'),
 
 			XLINKRESOLVER_ENABLE      : xml.evalXPath(node, 'xlinkResolver/enable'),
 
@@ -177,8 +175,6 @@ ConfigModel.updateTemp =
 '	</z3950>'+
 '	<oai>'+
 '		<mdmode>{OAI_MDMODE}</mdmode>'+
-'		<tokentimeout>{OAI_TOKENTIMEOUT}</tokentimeout>'+
-'		<cachesize>{OAI_CACHESIZE}</cachesize>'+
 '	</oai>'+
 '	<xlinkResolver>'+
 '		<enable>{XLINKRESOLVER_ENABLE}</enable>'+
@@ -34,8 +34,6 @@ function ConfigView(strLoader)
 		{ id:'z3950.port',   type:'integer',  minValue:80, maxValue:65535, empty:true },
 
 		{ id:'oai.mdmode',   type:'integer',  minValue:1, maxValue:2, empty:false },
-		{ id:'oai.tokentimeout',   type:'integer',  minValue:60, maxValue:86400, empty:false },
-		{ id:'oai.cachesize',   type:'integer',  minValue:10, maxValue:1000, empty:false },
 
 		{ id:'feedback.email',     type:'length',   minSize :0,  maxSize :200 },		
 		{ id:'feedback.mail.host', type:'length',   minSize :0,  maxSize :200 },
@@ -191,8 +189,6 @@ ConfigView.prototype.setData = function(data)
 	$('z3950.port')  .value   = data['Z3950_PORT'];
 
 	$('oai.mdmode').value = data['OAI_MDMODE'];
-	$('oai.cachesize').value   = data['OAI_CACHESIZE'];
-	$('oai.tokentimeout').value   = data['OAI_TOKENTIMEOUT'];
 	
 	$('xlinkResolver.enable').checked = data['XLINKRESOLVER_ENABLE'] == 'true';
 
@@ -305,8 +301,6 @@ ConfigView.prototype.getData = function()
 		Z3950_PORT   : $('z3950.port')  .value,
 
 		OAI_MDMODE				: $('oai.mdmode').value,
-		OAI_TOKENTIMEOUT	: $('oai.tokentimeout')  .value,
-		OAI_CACHESIZE			: $('oai.cachesize')  .value,
 
 		XLINKRESOLVER_ENABLE : $('xlinkResolver.enable').checked,
 	
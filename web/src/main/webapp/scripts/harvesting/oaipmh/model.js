@@ -201,6 +201,7 @@ var updateTemp =
 '      <every>{EVERY}</every>'+
 '      <oneRunOnly>{ONE_RUN_ONLY}</oneRunOnly>'+
 '      <validate>{VALIDATE}</validate>'+
+'      <streaming>{STREAMING}</streaming>'+
 '    </options>'+
 
 '    <content>'+
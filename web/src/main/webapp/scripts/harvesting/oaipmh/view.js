@@ -75,6 +75,7 @@ function setEmpty()
 	$('oai.url').value = '';
 	
 	$('wd.validate').checked = false;
+	$('oai.streaming').checked = false;
 
 	var icons = $('oai.icon').options;
 	
@@ -103,6 +104,7 @@ function setData(node)
 	hvutil.setOption(site,    'url',      'oai.url');
 	hvutil.setOption(site,    'icon',     'oai.icon');
 	hvutil.setOption(options, 'validate', 'oai.validate');
+	hvutil.setOption(options, 'streaming','oai.streaming');
 	
 	//--- add search entries
 	
@@ -136,6 +138,7 @@ function getData()
 	data.URL      = $F('oai.url');
 	data.ICON     = $F('oai.icon');
 	data.VALIDATE = $('oai.validate').checked;
+	data.STREAMING= $('oai.streaming').checked;
 	
 	//--- retrieve search information
 	
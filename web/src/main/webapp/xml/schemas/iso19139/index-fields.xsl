@@ -117,6 +117,12 @@
 				<Field name="abstract" string="{string(.)}" store="true" index="true" token="true"/>
 			</xsl:for-each>
 
+			<!-- browse graphics, stored only to present search results from the index -->
+
+			<xsl:for-each select="gmd:graphicOverview/gmd:MD_BrowseGraphic[gmd:fileName/gco:CharacterString!='']">
+				<Field name="image" string="{concat(gmd:fileDescription/gco:CharacterString, '|', gmd:fileName/gco:CharacterString)}" store="true" index="false" token="false"/>
+			</xsl:for-each>
+
 			<!-- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -->		
 
 			<xsl:for-each select="*/gmd:EX_Extent">
@@ -297,6 +303,11 @@
 					<Field name="protocol" string="{string(.)}" store="true" index="true" token="false"/>
 				</xsl:if>  
 
+				<!-- download links, stored only to present search results from the index -->
+				<xsl:if test="starts-with(., 'WWW:DOWNLOAD-') and contains(., 'http--download') and normalize-space($linkage)!='' and not(contains($linkage,$download_check))">
+					<Field name="downloadLink" string="{normalize-space($linkage)}" store="true" index="false" token="false"/>
+				</xsl:if>
+
 				<xsl:variable name="mimetype" select="../../gmd:name/gmx:MimeFileType/@type"/>
 				<xsl:if test="normalize-space($mimetype)!=''">
           <Field name="mimetype" string="{$mimetype}" store="true" index="true" token="false"/>
@@ -411,6 +422,31 @@
 			</xsl:attribute>
 		</Field>
 
+		<!-- Free text of each language: the translations of each PT_Locale and the other texts in the 
+		     metadata language. The locale attribute makes the indexer use the field and the analyzer
+		     of that language. -->
+		<xsl:variable name="mainLanguage" select="string(gmd:language/gco:CharacterString|gmd:language/gmd:LanguageCode/@codeListValue)"/>
+
+		<xsl:if test="$mainLanguage != ''">
+			<Field name="any" locale="{$mainLanguage}" store="false" index="true" token="true">
+				<xsl:attribute name="string">
+					<xsl:apply-templates select="." mode="mainLanguageText"/>
+				</xsl:attribute>
+			</Field>
+		</xsl:if>
+
+		<xsl:for-each select="gmd:locale/gmd:PT_Locale[@id]">
+			<xsl:variable name="id" select="concat('#', @id)"/>
+
+			<Field name="any" locale="{gmd:languageCode/gmd:LanguageCode/@codeListValue}" store="false" index="true" token="true">
+				<xsl:attribute name="string">
+					<xsl:for-each select="//gmd:LocalisedCharacterString[@locale = $id]">
+						<xsl:value-of select="concat(string(.),' ')"/>
+					</xsl:for-each>
+				</xsl:attribute>
+			</Field>
+		</xsl:for-each>
+
 		<xsl:apply-templates select="." mode="codeList"/>
 		
 	</xsl:template>
@@ -469,6 +505,24 @@
 		</xsl:choose>
 	</xsl:template>
 
+	<!-- ========================================================================================= -->
+	<!-- mainLanguageText : allText without the translations -->
+
+	<xsl:template match="gmd:PT_FreeText" mode="mainLanguageText"/>
+
+	<xsl:template match="*" mode="mainLanguageText">
+		<xsl:for-each select="@*">
+			<xsl:if test="name(.) != 'codeList' ">
+				<xsl:value-of select="concat(string(.),' ')"/>
+			</xsl:if>	
+		</xsl:for-each>
+
+		<xsl:choose>
+			<xsl:when test="*"><xsl:apply-templates select="*" mode="mainLanguageText"/></xsl:when>
+			<xsl:otherwise><xsl:value-of select="concat(string(.),' ')"/></xsl:otherwise>
+		</xsl:choose>
+	</xsl:template>
+
 	<!-- ========================================================================================= -->
 
 	<!-- inspireThemes is a nodeset consisting of skos:Concept elements -->
@@ -390,15 +390,6 @@
 						</select>
 					</td>
 				</tr>
-	
-				<tr>
-					<td class="padded" width="{$width}"><xsl:value-of select="/root/gui/config/tokentimeout"/></td>
-					<td class="padded"><input id="oai.tokentimeout" class="content" type="text" value="" size="20"/></td>
-				</tr>
-				<tr>
-					<td class="padded" width="{$width}"><xsl:value-of select="/root/gui/config/cachesize"/></td>
-					<td class="padded"><input id="oai.cachesize" class="content" type="text" value="" size="20"/></td>
-				</tr>
 							
 			</table>
 		</div>
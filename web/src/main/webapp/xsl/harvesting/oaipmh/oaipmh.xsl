@@ -115,6 +115,11 @@
 				<td class="padded"><xsl:value-of select="/root/gui/harvesting/validate"/></td>
 				<td class="padded"><input id="oai.validate" type="checkbox" value=""/></td>
 			</tr>
+
+			<tr>
+				<td class="padded"><xsl:value-of select="/root/gui/harvesting/streaming"/></td>
+				<td class="padded"><input id="oai.streaming" type="checkbox" value=""/></td>
+			</tr>
 		</table>
 	</xsl:template>
 	
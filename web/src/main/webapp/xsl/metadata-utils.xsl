@@ -61,6 +61,11 @@
 				</metadata>
 			</xsl:when>
 
+			<!-- already built from the index (see LuceneSearcher) -->
+			<xsl:when test="geonet:info/fromIndex='true'">
+				<xsl:copy-of select="."/>
+			</xsl:when>
+
 			<!-- ISO 19115 -->
 			<xsl:when test="$schema='iso19115'">
 				<xsl:call-template name="iso19115Brief"/>
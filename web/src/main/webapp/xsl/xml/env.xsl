@@ -56,8 +56,6 @@
 
 			<oai>
 				<mdmode><xsl:value-of select="$oai/mdmode/value"/></mdmode>
-				<tokentimeout><xsl:value-of select="$oai/tokentimeout/value"/></tokentimeout>
-				<cachesize><xsl:value-of select="$oai/cachesize/value"/></cachesize>
 			</oai>
 
 			<xlinkResolver>
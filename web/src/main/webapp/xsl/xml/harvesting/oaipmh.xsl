@@ -19,6 +19,7 @@
 
 	<xsl:template match="*" mode="options">
 		<validate><xsl:value-of  select="validate/value" /></validate>
+		<streaming><xsl:value-of select="streaming/value" /></streaming>
 	</xsl:template>
 
 	<!-- ============================================================================================= -->
@@ -0,0 +1,97 @@
+package org.fao.geonet.kernel.csw.services.getrecords;
+
+import jeeves.utils.TransformerFactoryFactory;
+import jeeves.utils.Xml;
+import junit.framework.TestCase;
+import org.jdom.Element;
+
+/**
+ * Checks that the filters compiled by FilterToLucene give the same Lucene
+ * query as the filter-to-lucene stylesheet.
+ */
+public class FilterToLuceneTest extends TestCase {
+
+	private static final String STYLESHEET = "src/main/webapp/xml/csw/filter-to-lucene.xsl";
+
+	private static final String OGC = "xmlns:ogc=\"http://www.opengis.net/ogc\" xmlns:gml=\"http://www.opengis.net/gml\"";
+
+	public FilterToLuceneTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() {
+		TransformerFactoryFactory.init("net.sf.saxon.TransformerFactoryImpl");
+	}
+
+	public void testEmptyFilter() throws Exception {
+		assertSame("<ogc:Filter " + OGC + "/>");
+	}
+
+	public void testEqualTo() throws Exception {
+		assertSame(filter("<ogc:PropertyIsEqualTo><ogc:PropertyName>title</ogc:PropertyName>"
+				+ "<ogc:Literal>rivers of europe</ogc:Literal></ogc:PropertyIsEqualTo>"));
+	}
+
+	public void testGroupAndSystemFields() throws Exception {
+		assertSame(filter("<ogc:PropertyIsEqualTo><ogc:PropertyName>group</ogc:PropertyName>"
+				+ "<ogc:Literal>2</ogc:Literal></ogc:PropertyIsEqualTo>"));
+		assertSame(filter("<ogc:PropertyIsEqualTo><ogc:PropertyName>_isTemplate</ogc:PropertyName>"
+				+ "<ogc:Literal>y</ogc:Literal></ogc:PropertyIsEqualTo>"));
+	}
+
+	public void testLike() throws Exception {
+		assertSame(filter("<ogc:PropertyIsLike wildCard=\"%\" singleChar=\"_\" escapeChar=\"\\\">"
+				+ "<ogc:PropertyName>AnyText</ogc:PropertyName><ogc:Literal>%wat_r, sea/land  %</ogc:Literal>"
+				+ "</ogc:PropertyIsLike>"));
+		assertSame(filter("<ogc:PropertyIsLike wildCard=\"*\" singleChar=\"?\" escapeChar=\"\\\">"
+				+ "<ogc:PropertyName>AnyText</ogc:PropertyName><ogc:Literal>*</ogc:Literal></ogc:PropertyIsLike>"));
+	}
+
+	public void testBetween() throws Exception {
+		assertSame(filter("<ogc:PropertyIsBetween><ogc:PropertyName>modified</ogc:PropertyName>"
+				+ "<ogc:LowerBoundary><ogc:Literal>2001</ogc:Literal></ogc:LowerBoundary>"
+				+ "<ogc:UpperBoundary><ogc:Literal>2010</ogc:Literal></ogc:UpperBoundary></ogc:PropertyIsBetween>"));
+	}
+
+	public void testLogicalAndSpatial() throws Exception {
+		assertSame(filter("<ogc:And>"
+				+ "<ogc:PropertyIsLike wildCard=\"%\" singleChar=\"_\" escapeChar=\"\\\">"
+				+ "<ogc:PropertyName>AnyText</ogc:PropertyName><ogc:Literal>%</ogc:Literal></ogc:PropertyIsLike>"
+				+ "<ogc:Or><ogc:PropertyIsEqualTo><ogc:PropertyName>type</ogc:PropertyName>"
+				+ "<ogc:Literal>dataset</ogc:Literal></ogc:PropertyIsEqualTo>"
+				+ "<ogc:PropertyIsEqualTo><ogc:PropertyName>group</ogc:PropertyName>"
+				+ "<ogc:Literal>1</ogc:Literal></ogc:PropertyIsEqualTo></ogc:Or>"
+				+ "<ogc:Not><ogc:PropertyIsEqualTo><ogc:PropertyName>type</ogc:PropertyName>"
+				+ "<ogc:Literal>service</ogc:Literal></ogc:PropertyIsEqualTo></ogc:Not>"
+				+ "<ogc:BBOX><ogc:PropertyName>ows:BoundingBox</ogc:PropertyName><gml:Envelope>"
+				+ "<gml:lowerCorner>-10 40</gml:lowerCorner><gml:upperCorner>10 50</gml:upperCorner>"
+				+ "</gml:Envelope></ogc:BBOX></ogc:And>"));
+	}
+
+	public void testUnsupportedFilters() throws Exception {
+		// --- left to the stylesheet
+		assertNull(FilterToLucene.compile(Xml.loadString(filter("<ogc:PropertyIsLessThan>"
+				+ "<ogc:PropertyName>modified</ogc:PropertyName><ogc:Literal>2001</ogc:Literal>"
+				+ "</ogc:PropertyIsLessThan>"), false)));
+		assertNull(FilterToLucene.compile(Xml.loadString(filter("<ogc:And><ogc:PropertyIsEqualTo>"
+				+ "<ogc:PropertyName>similarity</ogc:PropertyName><ogc:Literal>0.8</ogc:Literal>"
+				+ "</ogc:PropertyIsEqualTo><ogc:PropertyIsEqualTo><ogc:PropertyName>title</ogc:PropertyName>"
+				+ "<ogc:Literal>sea</ogc:Literal></ogc:PropertyIsEqualTo></ogc:And>"), false)));
+		assertNull(FilterToLucene.compile(Xml.loadString(filter("<ogc:Not><ogc:BBOX>"
+				+ "<ogc:PropertyName>ows:BoundingBox</ogc:PropertyName></ogc:BBOX></ogc:Not>"), false)));
+	}
+
+	//---------------------------------------------------------------------------
+
+	private static String filter(String operator) {
+		return "<ogc:Filter " + OGC + ">" + operator + "</ogc:Filter>";
+	}
+
+	private static void assertSame(String filter) throws Exception {
+		Element compiled = FilterToLucene.compile(Xml.loadString(filter, false));
+		Element transformed = Xml.transform(Xml.loadString(filter, false), STYLESHEET);
+
+		assertNotNull("Filter not compiled : " + filter, compiled);
+		assertEquals(Xml.getString(transformed), Xml.getString(compiled));
+	}
+}
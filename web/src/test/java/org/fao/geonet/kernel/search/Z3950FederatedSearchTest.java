@@ -0,0 +1,315 @@
+package org.fao.geonet.kernel.search;
+
+import junit.framework.TestCase;
+import org.jdom.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Unit test for the concurrent search of Z39.50 targets. The targets are
+ * stubbed, so no Z39.50 server is needed.
+ *
+ */
+public class Z3950FederatedSearchTest extends TestCase {
+
+	private static final long TIMEOUT = 5000;
+
+	public Z3950FederatedSearchTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() {
+		Z3950TargetStats.clear();
+	}
+
+	/**
+	 * Targets are kept in the order they answered, not in the order they were
+	 * queried.
+	 */
+	public void testOrdering() throws Exception {
+		StubSearch search = new StubSearch();
+		search.hits("slow", 5).block("slow");
+		search.hits("fast", 3);
+
+		Z3950FederatedSearch fs = newSearch(search, TIMEOUT, 3, 0, "slow", "fast");
+		fs.awaitFirst();
+
+		assertEquals(Arrays.asList("fast"), names(fs.getCompleted()));
+
+		search.release("slow");
+		waitDone(fs);
+
+		assertEquals(Arrays.asList("fast", "slow"), names(fs.getCompleted()));
+		assertEquals(3, fs.getCompleted().get(0).getCount());
+		assertEquals(5, fs.getCompleted().get(1).getCount());
+		assertEquals(8, fs.getSize());
+	}
+
+	/**
+	 * A target that does not answer in time is dropped, without waiting for
+	 * it.
+	 */
+	public void testTimeout() throws Exception {
+		StubSearch search = new StubSearch();
+		search.hits("hanging", 10).block("hanging");
+
+		long start = System.currentTimeMillis();
+
+		Z3950FederatedSearch fs = newSearch(search, 200, 3, 0, "hanging");
+		fs.awaitFirst();
+
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertTrue("Waited "+ elapsed +" ms", elapsed < 2000);
+		assertFalse(fs.isExecuting());
+		assertEquals(0, fs.getPending());
+		assertEquals(0, fs.getSize());
+		assertEquals(Z3950FederatedSearch.TIMEOUT, status(fs, "hanging"));
+
+		// an answer arriving after the timeout is ignored
+		search.release("hanging");
+		Thread.sleep(100);
+
+		assertEquals(0, fs.getSize());
+		assertEquals(Z3950FederatedSearch.TIMEOUT, status(fs, "hanging"));
+	}
+
+	/**
+	 * A target that failed 'failures' times in a row is skipped until
+	 * 'retryAfter' has passed since its last failure.
+	 */
+	public void testFailureBackOff() throws Exception {
+		StubSearch search = new StubSearch();
+		search.fail("broken");
+		search.hits("good", 2);
+
+		for (int i = 0; i < 2; i++) {
+			Z3950FederatedSearch fs = newSearch(search, TIMEOUT, 2, 60000, "broken", "good");
+			waitDone(fs);
+			assertEquals(Z3950FederatedSearch.FAILURE, status(fs, "broken"));
+		}
+
+		assertEquals(2, search.calls("broken"));
+
+		Z3950FederatedSearch fs = newSearch(search, TIMEOUT, 2, 60000, "broken", "good");
+		waitDone(fs);
+
+		assertEquals(Z3950FederatedSearch.SKIPPED,  status(fs, "broken"));
+		assertEquals(Z3950FederatedSearch.COMPLETE, status(fs, "good"));
+		assertEquals(2, search.calls("broken"));
+		assertEquals(2, fs.getSize());
+
+		// once the back off has expired the target is queried again
+		fs = newSearch(search, TIMEOUT, 2, 0, "broken", "good");
+		waitDone(fs);
+
+		assertEquals(Z3950FederatedSearch.FAILURE, status(fs, "broken"));
+		assertEquals(3, search.calls("broken"));
+
+		// a success resets the count of consecutive failures
+		search.hits("broken", 1);
+		fs = newSearch(search, TIMEOUT, 2, 0, "broken");
+		waitDone(fs);
+		search.fail("broken");
+		fs = newSearch(search, TIMEOUT, 2, 60000, "broken");
+		waitDone(fs);
+
+		assertEquals(Z3950FederatedSearch.FAILURE, status(fs, "broken"));
+		assertEquals(5, search.calls("broken"));
+	}
+
+	/**
+	 * The results of the targets that answered are available while the other
+	 * targets are still searching.
+	 */
+	public void testPartialResults() throws Exception {
+		StubSearch search = new StubSearch();
+		search.hits("first", 4);
+		search.hits("second", 6).block("second");
+		search.fail("third");
+
+		Z3950FederatedSearch fs = newSearch(search, TIMEOUT, 3, 0, "first", "second", "third");
+		fs.awaitFirst();
+		waitStatus(fs, "third", Z3950FederatedSearch.FAILURE);
+
+		assertTrue(fs.isExecuting());
+		assertEquals(1, fs.getPending());
+		assertEquals(4, fs.getSize());
+		assertEquals(Z3950FederatedSearch.EXECUTING, status(fs, "second"));
+
+		search.release("second");
+		waitDone(fs);
+
+		assertEquals(0, fs.getPending());
+		assertEquals(10, fs.getSize());
+		assertEquals(Arrays.asList("first", "second"), names(fs.getCompleted()));
+		assertEquals(Z3950FederatedSearch.FAILURE, status(fs, "third"));
+	}
+
+	/**
+	 * Closing the search stops the targets that are still searching.
+	 */
+	public void testClose() throws Exception {
+		StubSearch search = new StubSearch();
+		search.hits("hanging", 1).block("hanging");
+
+		Z3950FederatedSearch fs = newSearch(search, TIMEOUT, 3, 0, "hanging");
+		fs.close();
+
+		assertFalse(fs.isExecuting());
+		assertEquals(Z3950FederatedSearch.FAILURE, status(fs, "hanging"));
+
+		search.release("hanging");
+	}
+
+	/**
+	 * Presenting records waits at most the timeout and cancels the task.
+	 */
+	public void testCallTimeout() throws Exception {
+		StubSearch search = new StubSearch();
+		search.hits("fast", 1);
+
+		Z3950FederatedSearch fs = newSearch(search, 200, 3, 0, "fast");
+		waitDone(fs);
+
+		assertEquals("done", fs.call(new Callable<String>() {
+			public String call() {
+				return "done";
+			}
+		}));
+
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+
+		try {
+			fs.call(new Callable<String>() {
+				public String call() throws Exception {
+					try {
+						Thread.sleep(TIMEOUT);
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+					return "late";
+				}
+			});
+			fail("The call did not time out");
+		} catch (TimeoutException e) {
+			long elapsed = System.currentTimeMillis() - start;
+			assertTrue("Waited "+ elapsed +" ms", elapsed < 2000);
+		}
+
+		assertTrue(interrupted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	//--------------------------------------------------------------------------
+
+	private Z3950FederatedSearch newSearch(StubSearch search, long timeout, int failures, long retryAfter, String... servers) {
+		return new Z3950FederatedSearch(null, Arrays.asList(servers), search, timeout, failures, retryAfter);
+	}
+
+	private void waitDone(Z3950FederatedSearch fs) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+
+		while (fs.isExecuting()) {
+			assertTrue("Targets did not complete", System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	private void waitStatus(Z3950FederatedSearch fs, String name, String status) throws InterruptedException {
+		long end = System.currentTimeMillis() + TIMEOUT;
+
+		while (!status.equals(status(fs, name))) {
+			assertTrue("Target "+ name +" is not "+ status, System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	private List<String> names(List<Z3950FederatedSearch.Target> targets) {
+		List<String> names = new ArrayList<String>();
+
+		for (Z3950FederatedSearch.Target t : targets)
+			names.add(t.getName());
+
+		return names;
+	}
+
+	private String status(Z3950FederatedSearch fs, String name) {
+		for (Object o : fs.toXml().getChildren("target")) {
+			Element target = (Element) o;
+
+			if (name.equals(target.getAttributeValue("name")))
+				return target.getAttributeValue("status");
+		}
+
+		fail("Unknown target : "+ name);
+		return null;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Stub targets: each one returns a fixed number of hits or fails, and can
+	 * be held back until released.
+	 */
+	private static class StubSearch implements Z3950FederatedSearch.Search {
+
+		private Map<String, Integer>        hits    = new HashMap<String, Integer>();
+		private Map<String, CountDownLatch> latches = new HashMap<String, CountDownLatch>();
+		private Map<String, AtomicInteger>  calls   = new HashMap<String, AtomicInteger>();
+
+		public synchronized StubSearch hits(String name, int count) {
+			hits.put(name, count);
+			return this;
+		}
+
+		public synchronized StubSearch fail(String name) {
+			hits.put(name, -1);
+			return this;
+		}
+
+		public synchronized StubSearch block(String name) {
+			latches.put(name, new CountDownLatch(1));
+			return this;
+		}
+
+		public synchronized void release(String name) {
+			latches.remove(name).countDown();
+		}
+
+		public synchronized int calls(String name) {
+			AtomicInteger count = calls.get(name);
+			return (count == null) ? 0 : count.get();
+		}
+
+		public int search(Z3950FederatedSearch.Target target) throws Exception {
+			CountDownLatch latch;
+			String name = target.getName();
+
+			synchronized (this) {
+				if (!calls.containsKey(name))
+					calls.put(name, new AtomicInteger());
+
+				calls.get(name).incrementAndGet();
+				latch = latches.get(name);
+			}
+
+			if (latch != null)
+				latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+
+			synchronized (this) {
+				return hits.get(name);
+			}
+		}
+	}
+}